@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.benchmark;
+
+import java.io.File;
+
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.annotation.concurrent.Immutable;
+import com.helger.annotation.style.ReturnsMutableCopy;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.io.file.FileSystemRecursiveIterator;
+
+/**
+ * The documents used by the benchmarks and load tests. All of them are created
+ * by the {@link SyntheticUBLGenerator}, so that they are identical on every
+ * run.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class BenchmarkDocuments
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (BenchmarkDocuments.class);
+
+  /**
+   * The document shapes used in the benchmarks.
+   *
+   * @author Philip Helger
+   */
+  public enum EDocumentSize
+  {
+    /** A typical small invoice */
+    SMALL (new SyntheticUBLSettings ().setLineCount (10)),
+    /** A larger invoice with several VAT rates, discounts and a long note */
+    MEDIUM (new SyntheticUBLSettings ().setLineCount (1_000)
+                                       .setVatRateCount (5)
+                                       .setAllowanceChargeDensity (0.2)
+                                       .setDocumentAllowanceCount (2)
+                                       .setNoteLength (2_000)),
+    /** A very large invoice as sent by utilities */
+    LARGE (new SyntheticUBLSettings ().setLineCount (100_000)
+                                      .setVatRateCount (12)
+                                      .setAllowanceChargeDensity (0.3)
+                                      .setDocumentAllowanceCount (5)
+                                      .setNoteLength (10_000)
+                                      .setItemPropertyCount (2)),
+    /** A small invoice with a 30 MiB attachment */
+    LARGE_ATTACHMENT (new SyntheticUBLSettings ().setLineCount (10).setAttachments (1, 30 * 1024 * 1024));
+
+    private final SyntheticUBLSettings m_aSettings;
+
+    EDocumentSize (@NonNull final SyntheticUBLSettings aSettings)
+    {
+      m_aSettings = aSettings;
+    }
+
+    /**
+     * @param eType
+     *        The document type to create. May not be <code>null</code>.
+     * @return The serialized document of this shape. Never <code>null</code>.
+     */
+    public byte @NonNull [] createDocument (final SyntheticUBLGenerator.@NonNull EDocumentType eType)
+    {
+      return new SyntheticUBLGenerator (m_aSettings).getAsBytes (eType);
+    }
+  }
+
+  private BenchmarkDocuments ()
+  {}
+
+  /**
+   * Get a corpus of distinct documents with different seeds. Every third
+   * document is a CreditNote.
+   *
+   * @param aSettings
+   *        The base settings. The seed is overwritten. May not be
+   *        <code>null</code>.
+   * @param nCount
+   *        The number of documents to create. Must be &gt; 0.
+   * @return The serialized documents. Never <code>null</code>.
+   */
+  @NonNull
+  @ReturnsMutableCopy
+  public static ICommonsList <byte []> createCorpus (@NonNull final SyntheticUBLSettings aSettings, final int nCount)
+  {
+    ValueEnforcer.notNull (aSettings, "Settings");
+    ValueEnforcer.isGT0 (nCount, "Count");
+
+    final ICommonsList <byte []> ret = new CommonsArrayList <> (nCount);
+    final SyntheticUBLGenerator aGenerator = new SyntheticUBLGenerator (aSettings);
+    for (int i = 0; i < nCount; ++i)
+    {
+      aSettings.setSeed (i);
+      ret.add (aGenerator.getAsBytes (i % 3 == 2 ? SyntheticUBLGenerator.EDocumentType.CREDIT_NOTE
+                                                 : SyntheticUBLGenerator.EDocumentType.INVOICE));
+    }
+    return ret;
+  }
+
+  /**
+   * Derive UBL documents from all CII files in a directory, e.g. the XRechnung
+   * samples in the test resources of the library.
+   *
+   * @param aCIIDir
+   *        The directory to scan recursively for '.xml' files. May not be
+   *        <code>null</code>.
+   * @return The UBL documents that could be derived. Never <code>null</code>.
+   */
+  @NonNull
+  @ReturnsMutableCopy
+  public static ICommonsList <byte []> deriveAllFromCII (@NonNull final File aCIIDir)
+  {
+    ValueEnforcer.notNull (aCIIDir, "CIIDir");
+
+    final ICommonsList <byte []> ret = new CommonsArrayList <> ();
+    for (final File f : new FileSystemRecursiveIterator (aCIIDir))
+      if (f.isFile () && f.getName ().endsWith (".xml"))
+      {
+        final byte [] aUBL = SyntheticUBLGenerator.deriveFromCII (f);
+        if (aUBL != null)
+          ret.add (aUBL);
+        else
+          LOGGER.warn ("Failed to derive UBL from CII file '" + f.getAbsolutePath () + "'");
+      }
+    return ret;
+  }
+}
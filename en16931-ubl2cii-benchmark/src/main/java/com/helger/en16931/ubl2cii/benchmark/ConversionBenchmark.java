@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import com.helger.base.io.nonblocking.NonBlockingByteArrayInputStream;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.base.state.ESuccess;
+import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
+import com.helger.diagnostics.error.list.ErrorList;
+import com.helger.en16931.ubl2cii.UBL21CreditNoteToCIID16BConverter;
+import com.helger.en16931.ubl2cii.UBL21InvoiceToCIID16BConverter;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+import com.helger.ubl21.UBL21Marshaller;
+
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * JMH benchmarks for the conversion hot paths. Each phase is measured in
+ * isolation on prepared input, plus the complete stream to stream conversion.
+ * Run with <code>java -jar target/benchmarks.jar -prof gc</code> to include
+ * the allocation rate.
+ *
+ * @author Philip Helger
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 3, time = 2)
+@Measurement (iterations = 5, time = 2)
+@Fork (value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ConversionBenchmark
+{
+  @Param ({ "SMALL", "MEDIUM", "LARGE", "LARGE_ATTACHMENT" })
+  public BenchmarkDocuments.EDocumentSize m_eSize;
+
+  private byte [] m_aInvoiceBytes;
+  private byte [] m_aCreditNoteBytes;
+  private InvoiceType m_aInvoice;
+  private CreditNoteType m_aCreditNote;
+  private CrossIndustryInvoiceType m_aCII;
+
+  @Setup (Level.Trial)
+  public void setup ()
+  {
+    m_aInvoiceBytes = m_eSize.createDocument (SyntheticUBLGenerator.EDocumentType.INVOICE);
+    m_aCreditNoteBytes = m_eSize.createDocument (SyntheticUBLGenerator.EDocumentType.CREDIT_NOTE);
+    m_aInvoice = UBL21Marshaller.invoice ().read (m_aInvoiceBytes);
+    m_aCreditNote = UBL21Marshaller.creditNote ().read (m_aCreditNoteBytes);
+    if (m_aInvoice == null || m_aCreditNote == null)
+      throw new IllegalStateException ("Failed to read the benchmark documents");
+    m_aCII = UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (m_aInvoice, new ErrorList ());
+    if (m_aCII == null)
+      throw new IllegalStateException ("Failed to convert the benchmark invoice");
+  }
+
+  @Benchmark
+  public Document parseDOM ()
+  {
+    return UBLToCIIConversionHelper.readXMLDocument (new NonBlockingByteArrayInputStream (m_aInvoiceBytes),
+                                                     new ErrorList ());
+  }
+
+  @Benchmark
+  public InvoiceType parseInvoice ()
+  {
+    return UBL21Marshaller.invoice ().read (m_aInvoiceBytes);
+  }
+
+  @Benchmark
+  public CrossIndustryInvoiceType mapInvoice ()
+  {
+    return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (m_aInvoice, new ErrorList ());
+  }
+
+  @Benchmark
+  public CrossIndustryInvoiceType mapCreditNote ()
+  {
+    return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (m_aCreditNote, new ErrorList ());
+  }
+
+  private byte [] _marshal (final boolean bFormattedOutput)
+  {
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (bFormattedOutput).write (m_aCII, aBAOS);
+      return aBAOS.toByteArray ();
+    }
+  }
+
+  @Benchmark
+  public byte [] marshalFormatted ()
+  {
+    return _marshal (true);
+  }
+
+  @Benchmark
+  public byte [] marshalCompact ()
+  {
+    return _marshal (false);
+  }
+
+  @Benchmark
+  public ESuccess convertStreamToStream ()
+  {
+    return UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (m_aInvoiceBytes),
+                                                                     new NonBlockingByteArrayOutputStream (),
+                                                                     new ErrorList ());
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.benchmark;
+
+import java.io.File;
+import java.time.Duration;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.collection.commons.CommonsHashMap;
+import com.helger.collection.commons.CommonsHashSet;
+import com.helger.collection.commons.ICommonsMap;
+import com.helger.collection.commons.ICommonsSet;
+
+/**
+ * Minimal parser for the <code>--name value</code> arguments of the harness
+ * main classes in this module, to avoid a dependency on a command line
+ * library.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+final class HarnessArguments
+{
+  private final ICommonsMap <String, String> m_aValues = new CommonsHashMap <> ();
+
+  /**
+   * @param aArgs
+   *        The command line arguments. May not be <code>null</code>.
+   * @param aSupportedNames
+   *        The supported argument names without the leading "--". May not be
+   *        <code>null</code>.
+   * @throws IllegalArgumentException
+   *         For unsupported arguments or missing values
+   */
+  HarnessArguments (@NonNull final String [] aArgs, @NonNull final String... aSupportedNames)
+  {
+    ValueEnforcer.notNull (aArgs, "Args");
+    final ICommonsSet <String> aSupported = new CommonsHashSet <> (aSupportedNames);
+    for (int i = 0; i < aArgs.length; i += 2)
+    {
+      final String sArg = aArgs[i];
+      if (!sArg.startsWith ("--") || !aSupported.contains (sArg.substring (2)))
+        throw new IllegalArgumentException ("Unsupported argument '" + sArg + "' - supported are " + aSupported);
+      if (i + 1 >= aArgs.length)
+        throw new IllegalArgumentException ("Missing value for argument '" + sArg + "'");
+      m_aValues.put (sArg.substring (2), aArgs[i + 1]);
+    }
+  }
+
+  @Nullable
+  String getAsString (@NonNull final String sName, @Nullable final String sDefault)
+  {
+    return m_aValues.getOrDefault (sName, sDefault);
+  }
+
+  int getAsInt (@NonNull final String sName, final int nDefault)
+  {
+    final String sValue = m_aValues.get (sName);
+    return sValue == null ? nDefault : Integer.parseInt (sValue);
+  }
+
+  double getAsDouble (@NonNull final String sName, final double dDefault)
+  {
+    final String sValue = m_aValues.get (sName);
+    return sValue == null ? dDefault : Double.parseDouble (sValue);
+  }
+
+  /**
+   * @return The value as a duration. Values are either plain seconds or use
+   *         one of the suffixes "ms", "s", "m" or "h".
+   */
+  @NonNull
+  Duration getAsDuration (@NonNull final String sName, @NonNull final Duration aDefault)
+  {
+    final String sValue = m_aValues.get (sName);
+    if (sValue == null)
+      return aDefault;
+    if (sValue.endsWith ("ms"))
+      return Duration.ofMillis (Long.parseLong (sValue.substring (0, sValue.length () - 2)));
+    if (sValue.endsWith ("s"))
+      return Duration.ofSeconds (Long.parseLong (sValue.substring (0, sValue.length () - 1)));
+    if (sValue.endsWith ("m"))
+      return Duration.ofMinutes (Long.parseLong (sValue.substring (0, sValue.length () - 1)));
+    if (sValue.endsWith ("h"))
+      return Duration.ofHours (Long.parseLong (sValue.substring (0, sValue.length () - 1)));
+    return Duration.ofSeconds (Long.parseLong (sValue));
+  }
+
+  @Nullable
+  File getAsFile (@NonNull final String sName)
+  {
+    final String sValue = m_aValues.get (sName);
+    return sValue == null ? null : new File (sValue);
+  }
+}
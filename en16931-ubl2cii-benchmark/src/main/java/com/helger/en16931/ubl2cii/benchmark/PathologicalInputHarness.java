@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.function.ObjIntConsumer;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayInputStream;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.diagnostics.error.list.ErrorList;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+
+/**
+ * Converts schema valid but adversarial invoices, scaling one dimension at a
+ * time (note length, party identifications, tax subtotals, item properties and
+ * document references) by powers of 2. For each dimension the growth exponent
+ * of conversion time and allocated memory is fitted on a log-log scale. 1 means
+ * linear, 2 quadratic. The process exits with a non-zero code if any exponent
+ * exceeds the limit.
+ * <p>
+ * Usage:
+ * <code>java -cp benchmarks.jar com.helger.en16931.ubl2cii.benchmark.PathologicalInputHarness [--steps n] [--runs n] [--max-exponent x] [--dimensions NOTE,...]</code>
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class PathologicalInputHarness
+{
+  /**
+   * The dimensions to scale. The base value is chosen so that the dimension
+   * dominates the conversion of the otherwise small document.
+   *
+   * @author Philip Helger
+   */
+  enum EDimension
+  {
+    /** Characters of the document note */
+    NOTE (250_000, SyntheticUBLSettings::setNoteLength),
+    /** Party identifications of seller and buyer */
+    PARTY_IDENTIFICATION (500, SyntheticUBLSettings::setPartyIdentificationCount),
+    /**
+     * Tax subtotals - every rate needs a line to be used, so the lines grow as
+     * well
+     */
+    TAX_SUBTOTAL (SyntheticUBLSettings.MAX_VAT_RATE_COUNT / 8, (s, n) -> s.setVatRateCount (n).setLineCount (n)),
+    /** Additional item properties of each of the 10 lines */
+    ITEM_PROPERTY (250, SyntheticUBLSettings::setItemPropertyCount),
+    /** Additional document references */
+    DOCUMENT_REFERENCE (500, SyntheticUBLSettings::setDocumentReferenceCount);
+
+    private final int m_nBaseValue;
+    private final ObjIntConsumer <SyntheticUBLSettings> m_aSetter;
+
+    EDimension (final int nBaseValue, @NonNull final ObjIntConsumer <SyntheticUBLSettings> aSetter)
+    {
+      m_nBaseValue = nBaseValue;
+      m_aSetter = aSetter;
+    }
+
+    @NonNull
+    SyntheticUBLSettings createSettings (final int nValue)
+    {
+      final SyntheticUBLSettings ret = new SyntheticUBLSettings ().setLineCount (10);
+      m_aSetter.accept (ret, nValue);
+      return ret;
+    }
+  }
+
+  /** The measurement of a single document */
+  private static final class Point
+  {
+    private final int m_nValue;
+    private final int m_nInputBytes;
+    private final long m_nNanos;
+    private final long m_nAllocatedBytes;
+
+    Point (final int nValue, final int nInputBytes, final long nNanos, final long nAllocatedBytes)
+    {
+      m_nValue = nValue;
+      m_nInputBytes = nInputBytes;
+      m_nNanos = nNanos;
+      m_nAllocatedBytes = nAllocatedBytes;
+    }
+  }
+
+  private final com.sun.management.ThreadMXBean m_aThreadBean;
+  private final int m_nRuns;
+
+  private PathologicalInputHarness (final com.sun.management.@Nullable ThreadMXBean aThreadBean, final int nRuns)
+  {
+    m_aThreadBean = aThreadBean;
+    m_nRuns = nRuns;
+  }
+
+  private static com.sun.management.@Nullable ThreadMXBean _getThreadMXBean ()
+  {
+    final ThreadMXBean aBean = ManagementFactory.getThreadMXBean ();
+    if (!(aBean instanceof com.sun.management.ThreadMXBean))
+      return null;
+    final com.sun.management.ThreadMXBean ret = (com.sun.management.ThreadMXBean) aBean;
+    return ret.isThreadAllocatedMemorySupported () && ret.isThreadAllocatedMemoryEnabled () ? ret : null;
+  }
+
+  private long _getAllocatedBytes ()
+  {
+    return m_aThreadBean == null ? 0 : m_aThreadBean.getCurrentThreadAllocatedBytes ();
+  }
+
+  /**
+   * Convert the document several times and keep the minimum of time and
+   * allocation, which are least affected by JIT, GC and other noise.
+   */
+  @NonNull
+  private Point _measure (final int nValue, final byte @NonNull [] aDoc)
+  {
+    long nMinNanos = Long.MAX_VALUE;
+    long nMinAllocated = Long.MAX_VALUE;
+    for (int i = 0; i < m_nRuns; ++i)
+    {
+      final long nAllocatedBefore = _getAllocatedBytes ();
+      final long nStart = System.nanoTime ();
+      final ErrorList aErrorList = new ErrorList ();
+      final boolean bSuccess = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aDoc),
+                                                                                         new NonBlockingByteArrayOutputStream (),
+                                                                                         aErrorList)
+                                                       .isSuccess ();
+      final long nNanos = System.nanoTime () - nStart;
+      final long nAllocated = _getAllocatedBytes () - nAllocatedBefore;
+      if (!bSuccess)
+        throw new IllegalStateException ("Failed to convert the generated document: " + aErrorList);
+      nMinNanos = Math.min (nMinNanos, nNanos);
+      nMinAllocated = Math.min (nMinAllocated, nAllocated);
+    }
+    return new Point (nValue, aDoc.length, nMinNanos, nMinAllocated);
+  }
+
+  /**
+   * @return The least squares slope of log(y) over log(x).
+   */
+  private static double _getExponent (final double @NonNull [] aX, final double @NonNull [] aY)
+  {
+    final int n = aX.length;
+    double dMeanX = 0;
+    double dMeanY = 0;
+    for (int i = 0; i < n; ++i)
+    {
+      dMeanX += Math.log (aX[i]) / n;
+      dMeanY += Math.log (Math.max (aY[i], 1)) / n;
+    }
+    double dCov = 0;
+    double dVarX = 0;
+    for (int i = 0; i < n; ++i)
+    {
+      final double dX = Math.log (aX[i]) - dMeanX;
+      dCov += dX * (Math.log (Math.max (aY[i], 1)) - dMeanY);
+      dVarX += dX * dX;
+    }
+    return dVarX == 0 ? 0 : dCov / dVarX;
+  }
+
+  /**
+   * @return <code>true</code> if the growth of the dimension is within the
+   *         limit.
+   */
+  private boolean _checkDimension (@NonNull final EDimension eDimension, final int nSteps, final double dMaxExponent)
+  {
+    final ICommonsList <Point> aPoints = new CommonsArrayList <> ();
+    for (int i = 0; i < nSteps; ++i)
+    {
+      final int nValue = eDimension.m_nBaseValue << i;
+      final byte [] aDoc = new SyntheticUBLGenerator (eDimension.createSettings (nValue)).getAsBytes (SyntheticUBLGenerator.EDocumentType.INVOICE);
+      aPoints.add (_measure (nValue, aDoc));
+    }
+
+    final double [] aX = new double [nSteps];
+    final double [] aTime = new double [nSteps];
+    final double [] aMemory = new double [nSteps];
+    System.out.println (eDimension.name ());
+    for (int i = 0; i < nSteps; ++i)
+    {
+      final Point aPoint = aPoints.get (i);
+      aX[i] = aPoint.m_nValue;
+      aTime[i] = aPoint.m_nNanos;
+      aMemory[i] = aPoint.m_nAllocatedBytes;
+      System.out.println (String.format (Locale.ROOT,
+                                         "  %,10d: %,12d bytes in, %10.2f ms, %,14d bytes allocated",
+                                         Integer.valueOf (aPoint.m_nValue),
+                                         Integer.valueOf (aPoint.m_nInputBytes),
+                                         Double.valueOf (aPoint.m_nNanos / 1_000_000d),
+                                         Long.valueOf (aPoint.m_nAllocatedBytes)));
+    }
+
+    final double dTimeExponent = _getExponent (aX, aTime);
+    final boolean bTimeOK = dTimeExponent <= dMaxExponent;
+    boolean bMemoryOK = true;
+    String sMemory = "n/a";
+    if (m_aThreadBean != null)
+    {
+      final double dMemoryExponent = _getExponent (aX, aMemory);
+      bMemoryOK = dMemoryExponent <= dMaxExponent;
+      sMemory = String.format (Locale.ROOT, "%.2f%s", Double.valueOf (dMemoryExponent), bMemoryOK ? "" : " (!)");
+    }
+    System.out.println (String.format (Locale.ROOT,
+                                       "  growth exponent: time %.2f%s, memory %s - %s",
+                                       Double.valueOf (dTimeExponent),
+                                       bTimeOK ? "" : " (!)",
+                                       sMemory,
+                                       bTimeOK && bMemoryOK ? "OK" : "SUPERLINEAR"));
+    return bTimeOK && bMemoryOK;
+  }
+
+  public static void main (final String [] aArgs) throws Exception
+  {
+    final HarnessArguments aArguments = new HarnessArguments (aArgs, "steps", "runs", "max-exponent", "dimensions");
+    final int nSteps = aArguments.getAsInt ("steps", 4);
+    final int nRuns = aArguments.getAsInt ("runs", 5);
+    final double dMaxExponent = aArguments.getAsDouble ("max-exponent", 1.25);
+    final String sDimensions = aArguments.getAsString ("dimensions", null);
+    ValueEnforcer.isBetweenInclusive (nSteps, "Steps", 2, 16);
+    ValueEnforcer.isGT0 (nRuns, "Runs");
+
+    final ICommonsList <EDimension> aDimensions = new CommonsArrayList <> ();
+    if (sDimensions == null)
+      aDimensions.addAll (EDimension.values ());
+    else
+      for (final String s : sDimensions.split (","))
+        aDimensions.add (EDimension.valueOf (s.trim ().toUpperCase (Locale.ROOT)));
+    for (final EDimension e : aDimensions)
+      if (e == EDimension.TAX_SUBTOTAL && (e.m_nBaseValue << (nSteps - 1)) > SyntheticUBLSettings.MAX_VAT_RATE_COUNT)
+        throw new IllegalArgumentException ("At most " +
+                                            (Integer.numberOfTrailingZeros (SyntheticUBLSettings.MAX_VAT_RATE_COUNT /
+                                                                            e.m_nBaseValue) +
+                                             1) +
+                                            " steps are possible for " +
+                                            e);
+
+    final com.sun.management.ThreadMXBean aThreadBean = _getThreadMXBean ();
+    if (aThreadBean == null)
+      System.out.println ("Thread allocation measurement is not supported by this JVM - only checking time");
+    final PathologicalInputHarness aHarness = new PathologicalInputHarness (aThreadBean, nRuns);
+
+    // Warm up all code paths with the smallest documents
+    for (int i = 0; i < 3; ++i)
+      for (final EDimension e : aDimensions)
+        aHarness._measure (e.m_nBaseValue,
+                           new SyntheticUBLGenerator (e.createSettings (e.m_nBaseValue)).getAsBytes (SyntheticUBLGenerator.EDocumentType.INVOICE));
+
+    boolean bOK = true;
+    for (final EDimension e : aDimensions)
+      if (!aHarness._checkDimension (e, nSteps, dMaxExponent))
+        bOK = false;
+    if (!bOK)
+    {
+      System.out.println ("At least one dimension grows faster than n^" + dMaxExponent);
+      System.exit (1);
+    }
+  }
+}
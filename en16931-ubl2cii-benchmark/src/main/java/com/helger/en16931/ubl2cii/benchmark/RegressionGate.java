@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.CommonsTreeMap;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.collection.commons.ICommonsSortedMap;
+
+/**
+ * Runs a short version of {@link ConversionBenchmark} in throughput mode with
+ * the GC profiler, writes the JMH JSON results and compares the normalized
+ * allocation (<code>gc.alloc.rate.norm</code>) of each benchmark to a stored
+ * baseline. The allocation does not depend on the host, so it is always
+ * checked. The throughput does, so it is only checked with
+ * <code>--throughput true</code> on the machine the baseline was recorded on.
+ * The baseline is a properties file with the following keys, where
+ * <code>&lt;name&gt;</code> is the benchmark method followed by the document
+ * size, e.g. <code>mapInvoice.SMALL</code>:
+ * <ul>
+ * <li><code>&lt;name&gt;.throughput</code> - operations per second</li>
+ * <li><code>&lt;name&gt;.allocation</code> - bytes allocated per
+ * operation</li>
+ * <li><code>&lt;name&gt;.throughput.tolerance</code> and
+ * <code>&lt;name&gt;.allocation.tolerance</code> - the tolerated change in
+ * percent, falling back to <code>default.throughput.tolerance</code> and
+ * <code>default.allocation.tolerance</code></li>
+ * </ul>
+ * The process exits with a non-zero code if a checked value has no baseline
+ * or if the throughput drops or the allocation rises beyond the tolerance.
+ * With <code>--update true</code> the checked values are written to the
+ * baseline instead, keeping all other entries. If the baseline contains no
+ * values at all yet, e.g. on a fresh checkout, the first run records them the
+ * same way and reports that they need to be committed.
+ * <p>
+ * Usage:
+ * <code>java -cp benchmarks.jar com.helger.en16931.ubl2cii.benchmark.RegressionGate --baseline file [--results file] [--report file] [--sizes SMALL,MEDIUM] [--throughput true] [--update true]</code>
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class RegressionGate
+{
+  private static final String SUFFIX_THROUGHPUT = ".throughput";
+  private static final String SUFFIX_ALLOCATION = ".allocation";
+  private static final String SUFFIX_TOLERANCE = ".tolerance";
+  private static final String PREFIX_DEFAULT = "default";
+  private static final double DEFAULT_THROUGHPUT_TOLERANCE = 10;
+  private static final double DEFAULT_ALLOCATION_TOLERANCE = 5;
+  // The name changed in JMH 1.36 - support both
+  private static final String [] ALLOCATION_RESULT_NAMES = { "gc.alloc.rate.norm", "·gc.alloc.rate.norm" };
+
+  private RegressionGate ()
+  {}
+
+  @NonNull
+  private static Options _createOptions (@NonNull final String [] aSizes, @Nullable final File aResultFile)
+  {
+    final OptionsBuilder ret = new OptionsBuilder ();
+    ret.include ("^" + ConversionBenchmark.class.getName () + "\\.")
+       .param ("m_eSize", aSizes)
+       .mode (Mode.Throughput)
+       .timeUnit (TimeUnit.SECONDS)
+       .warmupIterations (2)
+       .warmupTime (TimeValue.seconds (1))
+       .measurementIterations (3)
+       .measurementTime (TimeValue.seconds (2))
+       .forks (1)
+       .addProfiler (GCProfiler.class);
+    if (aResultFile != null)
+      ret.result (aResultFile.getAbsolutePath ()).resultFormat (ResultFormatType.JSON);
+    return ret.build ();
+  }
+
+  @NonNull
+  private static String _getName (@NonNull final RunResult aRunResult)
+  {
+    final String sBenchmark = aRunResult.getParams ().getBenchmark ();
+    final String sMethod = sBenchmark.substring (sBenchmark.lastIndexOf ('.') + 1);
+    return sMethod + "." + aRunResult.getParams ().getParam ("m_eSize");
+  }
+
+  @Nullable
+  private static Result <?> _getAllocationResult (@NonNull final RunResult aRunResult)
+  {
+    final Map <String, Result> aSecondary = aRunResult.getSecondaryResults ();
+    for (final String sName : ALLOCATION_RESULT_NAMES)
+    {
+      final Result <?> ret = aSecondary.get (sName);
+      if (ret != null)
+        return ret;
+    }
+    return null;
+  }
+
+  /**
+   * @param aRunResults
+   *        The JMH results. May not be <code>null</code>.
+   * @param bThroughput
+   *        <code>true</code> to include the host dependent throughput.
+   * @return The measured values to be checked with the same keys as in the
+   *         baseline.
+   * @throws IllegalStateException
+   *         if the GC profiler reported no allocation for a benchmark
+   */
+  @NonNull
+  private static ICommonsSortedMap <String, Double> _getMeasuredValues (@NonNull final Collection <RunResult> aRunResults,
+                                                                        final boolean bThroughput)
+  {
+    final ICommonsSortedMap <String, Double> ret = new CommonsTreeMap <> ();
+    for (final RunResult aRunResult : aRunResults)
+    {
+      final String sName = _getName (aRunResult);
+      if (bThroughput)
+        ret.put (sName + SUFFIX_THROUGHPUT, Double.valueOf (aRunResult.getPrimaryResult ().getScore ()));
+      final Result <?> aAllocation = _getAllocationResult (aRunResult);
+      if (aAllocation == null)
+        throw new IllegalStateException ("The GC profiler reported no normalized allocation for '" + sName + "'");
+      ret.put (sName + SUFFIX_ALLOCATION, Double.valueOf (aAllocation.getScore ()));
+    }
+    return ret;
+  }
+
+  private static double _getTolerance (@NonNull final Properties aBaseline,
+                                       @NonNull final String sKey,
+                                       @NonNull final String sSuffix,
+                                       final double dDefault)
+  {
+    String sValue = aBaseline.getProperty (sKey + SUFFIX_TOLERANCE);
+    if (sValue == null)
+      sValue = aBaseline.getProperty (PREFIX_DEFAULT + sSuffix + SUFFIX_TOLERANCE);
+    return sValue == null ? dDefault : Double.parseDouble (sValue.trim ());
+  }
+
+  /**
+   * Compare all measured values to the baseline.
+   *
+   * @param aMeasured
+   *        The measured values. May not be <code>null</code>.
+   * @param aBaseline
+   *        The baseline. May not be <code>null</code>.
+   * @param aReport
+   *        The report lines to be filled. May not be <code>null</code>.
+   * @return The number of regressions, including the measured values without
+   *         baseline.
+   */
+  private static int _compare (@NonNull final ICommonsSortedMap <String, Double> aMeasured,
+                               @NonNull final Properties aBaseline,
+                               @NonNull final ICommonsList <String> aReport)
+  {
+    int ret = 0;
+    aReport.add (String.format (Locale.ROOT,
+                                "%-40s %16s %16s %9s %9s  %s",
+                                "Benchmark",
+                                "Baseline",
+                                "Measured",
+                                "Change",
+                                "Limit",
+                                "Result"));
+    for (final Map.Entry <String, Double> aEntry : aMeasured.entrySet ())
+    {
+      final String sKey = aEntry.getKey ();
+      final double dMeasured = aEntry.getValue ().doubleValue ();
+      final boolean bThroughput = sKey.endsWith (SUFFIX_THROUGHPUT);
+      final String sBaseline = aBaseline.getProperty (sKey);
+      if (sBaseline == null)
+      {
+        aReport.add (String.format (Locale.ROOT,
+                                    "%-40s %16s %16.1f %9s %9s  %s",
+                                    sKey,
+                                    "-",
+                                    Double.valueOf (dMeasured),
+                                    "-",
+                                    "-",
+                                    "NO BASELINE"));
+        ret++;
+        continue;
+      }
+
+      final double dBaseline = Double.parseDouble (sBaseline.trim ());
+      final double dTolerance = bThroughput ? _getTolerance (aBaseline,
+                                                             sKey,
+                                                             SUFFIX_THROUGHPUT,
+                                                             DEFAULT_THROUGHPUT_TOLERANCE)
+                                            : _getTolerance (aBaseline,
+                                                             sKey,
+                                                             SUFFIX_ALLOCATION,
+                                                             DEFAULT_ALLOCATION_TOLERANCE);
+      final double dChange = dBaseline == 0 ? 0 : (dMeasured - dBaseline) * 100 / dBaseline;
+      // Lower throughput is worse, higher allocation is worse
+      final boolean bRegression = bThroughput ? dChange < -dTolerance : dChange > dTolerance;
+      if (bRegression)
+        ret++;
+      aReport.add (String.format (Locale.ROOT,
+                                  "%-40s %16.1f %16.1f %+8.1f%% %s%7.1f%%  %s",
+                                  sKey,
+                                  Double.valueOf (dBaseline),
+                                  Double.valueOf (dMeasured),
+                                  Double.valueOf (dChange),
+                                  bThroughput ? "-" : "+",
+                                  Double.valueOf (dTolerance),
+                                  bRegression ? "REGRESSION" : "OK"));
+    }
+    return ret;
+  }
+
+  /**
+   * @return <code>true</code> if the baseline contains at least one measured
+   *         value and not only tolerances.
+   */
+  private static boolean _containsValues (@NonNull final Properties aBaseline)
+  {
+    for (final String sKey : aBaseline.stringPropertyNames ())
+      if (sKey.endsWith (SUFFIX_THROUGHPUT) || sKey.endsWith (SUFFIX_ALLOCATION))
+        return true;
+    return false;
+  }
+
+  @NonNull
+  private static Properties _readBaseline (@NonNull final File aFile) throws IOException
+  {
+    final Properties ret = new Properties ();
+    if (aFile.isFile ())
+      try (final Reader aReader = Files.newBufferedReader (aFile.toPath (), StandardCharsets.ISO_8859_1))
+      {
+        ret.load (aReader);
+      }
+    return ret;
+  }
+
+  private static void _writeBaseline (@NonNull final Properties aBaseline,
+                                      @NonNull final ICommonsSortedMap <String, Double> aMeasured,
+                                      @NonNull final File aFile) throws IOException
+  {
+    final ICommonsSortedMap <String, String> aAll = new CommonsTreeMap <> ();
+    for (final String sKey : aBaseline.stringPropertyNames ())
+      aAll.put (sKey, aBaseline.getProperty (sKey));
+    for (final Map.Entry <String, Double> aEntry : aMeasured.entrySet ())
+      aAll.put (aEntry.getKey (), String.format (Locale.ROOT, "%.1f", aEntry.getValue ()));
+
+    final File aParent = aFile.getAbsoluteFile ().getParentFile ();
+    if (aParent != null)
+      Files.createDirectories (aParent.toPath ());
+    try (final Writer aWriter = Files.newBufferedWriter (aFile.toPath (), StandardCharsets.ISO_8859_1))
+    {
+      aWriter.write ("# JMH baseline of ConversionBenchmark - measured on " +
+                     System.getProperty ("os.name") +
+                     ", Java " +
+                     System.getProperty ("java.version") +
+                     " with " +
+                     Runtime.getRuntime ().availableProcessors () +
+                     " processors\n");
+      aWriter.write ("# Throughput in operations per second, allocation in bytes per operation, tolerances in percent\n");
+      for (final Map.Entry <String, String> aEntry : aAll.entrySet ())
+        aWriter.write (aEntry.getKey () + "=" + aEntry.getValue () + "\n");
+    }
+  }
+
+  public static void main (final String [] aArgs) throws Exception
+  {
+    final HarnessArguments aArguments = new HarnessArguments (aArgs,
+                                                              "baseline",
+                                                              "results",
+                                                              "report",
+                                                              "sizes",
+                                                              "throughput",
+                                                              "update");
+    final File aBaselineFile = aArguments.getAsFile ("baseline");
+    if (aBaselineFile == null)
+      throw new IllegalArgumentException ("The baseline file must be provided with '--baseline'");
+    final File aResultFile = aArguments.getAsFile ("results");
+    final File aReportFile = aArguments.getAsFile ("report");
+    // LARGE takes too long for a gate
+    final String [] aSizes = aArguments.getAsString ("sizes", "SMALL,MEDIUM").split (",");
+    final boolean bThroughput = Boolean.parseBoolean (aArguments.getAsString ("throughput", "false"));
+    final boolean bUpdate = Boolean.parseBoolean (aArguments.getAsString ("update", "false"));
+
+    final Collection <RunResult> aRunResults = new Runner (_createOptions (aSizes, aResultFile)).run ();
+    final ICommonsSortedMap <String, Double> aMeasured = _getMeasuredValues (aRunResults, bThroughput);
+    final Properties aBaseline = _readBaseline (aBaselineFile);
+
+    if (bUpdate)
+    {
+      _writeBaseline (aBaseline, aMeasured, aBaselineFile);
+      System.out.println ("Wrote " + aMeasured.size () + " baseline value(s) to '" + aBaselineFile.getAbsolutePath () + "'");
+      return;
+    }
+
+    if (!_containsValues (aBaseline))
+    {
+      // First run: there is nothing to compare to yet
+      _writeBaseline (aBaseline, aMeasured, aBaselineFile);
+      final String sMsg = "The baseline contained no values - recorded " +
+                          aMeasured.size () +
+                          " value(s) of this run in '" +
+                          aBaselineFile.getAbsolutePath () +
+                          "'. Commit the file to enable the gate.";
+      System.out.println (sMsg);
+      if (aReportFile != null)
+        Files.write (aReportFile.toPath (), new CommonsArrayList <> (sMsg), StandardCharsets.UTF_8);
+      return;
+    }
+
+    final ICommonsList <String> aReport = new CommonsArrayList <> ();
+    final int nRegressions = _compare (aMeasured, aBaseline, aReport);
+    aReport.add (nRegressions == 0 ? "No regressions"
+                                   : nRegressions + " regression(s) beyond the tolerance or without baseline");
+    for (final String sLine : aReport)
+      System.out.println (sLine);
+    if (aReportFile != null)
+    {
+      Files.write (aReportFile.toPath (), aReport, StandardCharsets.UTF_8);
+      System.out.println ("Wrote report to '" + aReportFile.getAbsolutePath () + "'");
+    }
+    if (nRegressions > 0)
+      System.exit (1);
+  }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayInputStream;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.CommonsHashMap;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.collection.commons.ICommonsMap;
+import com.helger.diagnostics.error.list.ErrorList;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Runs the complete stream to stream conversion of a fixed corpus with 1, 2, 4
+ * ... N threads and reports throughput, speedup and the most contended locks
+ * of each configuration. Lock contention is taken from the JFR events
+ * <code>jdk.JavaMonitorEnter</code> (synchronized) and
+ * <code>jdk.ThreadPark</code> (java.util.concurrent locks).
+ * <p>
+ * Usage:
+ * <code>java -cp benchmarks.jar com.helger.en16931.ubl2cii.benchmark.ScalabilityHarness [--max-threads n] [--documents n] [--lines n] [--warmup duration] [--duration duration] [--lock-threshold duration] [--cii-dir dir]</code>
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class ScalabilityHarness
+{
+  private static final String EVENT_MONITOR_ENTER = "jdk.JavaMonitorEnter";
+  private static final String EVENT_THREAD_PARK = "jdk.ThreadPark";
+  private static final int TOP_LOCK_COUNT = 5;
+
+  private static final String THREAD_NAME_PREFIX = "ubl2cii-scalability-";
+
+  private int m_nMaxThreads;
+  private int m_nDocuments;
+  private int m_nLines;
+  private Duration m_aWarmup;
+  private Duration m_aDuration;
+  private Duration m_aLockThreshold;
+  private File m_aCIIDir;
+
+  /** The aggregated contention of a single lock site */
+  private static final class LockSite
+  {
+    private final String m_sKey;
+    private long m_nCount;
+    private long m_nNanos;
+
+    LockSite (@NonNull final String sKey)
+    {
+      m_sKey = sKey;
+    }
+  }
+
+  /** The result of a single configuration */
+  private static final class Result
+  {
+    private final int m_nThreads;
+    private final long m_nConversions;
+    private final long m_nNanos;
+    private final ICommonsList <LockSite> m_aTopLocks;
+
+    Result (final int nThreads,
+            final long nConversions,
+            final long nNanos,
+            @NonNull final ICommonsList <LockSite> aTopLocks)
+    {
+      m_nThreads = nThreads;
+      m_nConversions = nConversions;
+      m_nNanos = nNanos;
+      m_aTopLocks = aTopLocks;
+    }
+
+    double getThroughput ()
+    {
+      return m_nConversions * 1_000_000_000d / m_nNanos;
+    }
+  }
+
+  private ScalabilityHarness ()
+  {}
+
+  /**
+   * @return The thread counts to measure: powers of 2 up to the maximum, plus
+   *         the maximum itself.
+   */
+  @NonNull
+  private ICommonsList <Integer> _getThreadCounts ()
+  {
+    final ICommonsList <Integer> ret = new CommonsArrayList <> ();
+    for (int n = 1; n < m_nMaxThreads; n *= 2)
+      ret.add (Integer.valueOf (n));
+    ret.add (Integer.valueOf (m_nMaxThreads));
+    return ret;
+  }
+
+  /**
+   * Convert documents of the corpus round robin with the provided number of
+   * threads until the duration is over.
+   *
+   * @return The number of successful conversions.
+   */
+  private static long _run (@NonNull final ICommonsList <byte []> aCorpus,
+                            final int nThreads,
+                            @NonNull final Duration aDuration) throws InterruptedException
+  {
+    final long nEndNanos = System.nanoTime () + aDuration.toNanos ();
+    final AtomicInteger aNextIndex = new AtomicInteger ();
+    final LongAdder aConversions = new LongAdder ();
+    final LongAdder aFailures = new LongAdder ();
+    final CountDownLatch aDone = new CountDownLatch (nThreads);
+    for (int i = 0; i < nThreads; ++i)
+    {
+      final Thread aThread = new Thread ( () -> {
+        try
+        {
+          while (System.nanoTime () < nEndNanos)
+          {
+            final byte [] aDoc = aCorpus.get (Math.floorMod (aNextIndex.getAndIncrement (), aCorpus.size ()));
+            if (UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aDoc),
+                                                                          new NonBlockingByteArrayOutputStream (),
+                                                                          new ErrorList ())
+                                        .isSuccess ())
+              aConversions.increment ();
+            else
+              aFailures.increment ();
+          }
+        }
+        finally
+        {
+          aDone.countDown ();
+        }
+      }, THREAD_NAME_PREFIX + i);
+      aThread.start ();
+    }
+    aDone.await ();
+    if (aFailures.sum () > 0)
+      throw new IllegalStateException (aFailures.sum () + " conversion(s) of the corpus failed");
+    return aConversions.sum ();
+  }
+
+  @NonNull
+  private static String _getLockKey (@NonNull final RecordedEvent aEvent)
+  {
+    final String sField = aEvent.getEventType ().getName ().equals (EVENT_MONITOR_ENTER) ? "monitorClass"
+                                                                                         : "parkedClass";
+    final RecordedClass aClass = aEvent.hasField (sField) ? aEvent.getClass (sField) : null;
+    final StringBuilder aSB = new StringBuilder (aClass != null ? aClass.getName () : "<unknown>");
+
+    // The first frame outside the JDK is where the lock is taken
+    final RecordedStackTrace aStackTrace = aEvent.getStackTrace ();
+    if (aStackTrace != null)
+      for (final RecordedFrame aFrame : aStackTrace.getFrames ())
+        if (aFrame.isJavaFrame ())
+        {
+          final String sType = aFrame.getMethod ().getType ().getName ();
+          if (!sType.startsWith ("java.") && !sType.startsWith ("jdk.") && !sType.startsWith ("sun."))
+          {
+            aSB.append (" at ").append (sType).append ('.').append (aFrame.getMethod ().getName ());
+            break;
+          }
+        }
+    return aSB.toString ();
+  }
+
+  @NonNull
+  private static ICommonsList <LockSite> _getTopLocks (@NonNull final Path aRecordingFile) throws IOException
+  {
+    final ICommonsMap <String, LockSite> aSites = new CommonsHashMap <> ();
+    for (final RecordedEvent aEvent : RecordingFile.readAllEvents (aRecordingFile))
+    {
+      // Ignore e.g. the main thread waiting for the workers
+      final String sThreadName = aEvent.getThread () == null ? null : aEvent.getThread ().getJavaName ();
+      if (sThreadName == null || !sThreadName.startsWith (THREAD_NAME_PREFIX))
+        continue;
+
+      final String sKey = _getLockKey (aEvent);
+      final LockSite aSite = aSites.computeIfAbsent (sKey, LockSite::new);
+      aSite.m_nCount++;
+      aSite.m_nNanos += aEvent.getDuration ().toNanos ();
+    }
+    final ICommonsList <LockSite> ret = new CommonsArrayList <> (aSites.values ());
+    ret.sort (Comparator.comparingLong ((final LockSite x) -> x.m_nNanos).reversed ());
+    return new CommonsArrayList <> (ret.subList (0, Math.min (TOP_LOCK_COUNT, ret.size ())));
+  }
+
+  @NonNull
+  private Result _measure (@NonNull final ICommonsList <byte []> aCorpus, final int nThreads) throws IOException,
+                                                                                                InterruptedException
+  {
+    // Warm up outside of the recording
+    _run (aCorpus, nThreads, m_aWarmup);
+
+    final Path aRecordingFile = Files.createTempFile ("ubl2cii-scalability-" + nThreads + "-", ".jfr");
+    try (final Recording aRecording = new Recording ())
+    {
+      aRecording.enable (EVENT_MONITOR_ENTER).withThreshold (m_aLockThreshold).withStackTrace ();
+      aRecording.enable (EVENT_THREAD_PARK).withThreshold (m_aLockThreshold).withStackTrace ();
+      aRecording.start ();
+
+      final long nStart = System.nanoTime ();
+      final long nConversions = _run (aCorpus, nThreads, m_aDuration);
+      final long nNanos = System.nanoTime () - nStart;
+
+      aRecording.stop ();
+      aRecording.dump (aRecordingFile);
+      return new Result (nThreads, nConversions, nNanos, _getTopLocks (aRecordingFile));
+    }
+    finally
+    {
+      Files.deleteIfExists (aRecordingFile);
+    }
+  }
+
+  private static void _printReport (@NonNull final ICommonsList <Result> aResults)
+  {
+    final double dBase = aResults.getFirstOrNull ().getThroughput ();
+    System.out.println ();
+    System.out.println (String.format (Locale.ROOT,
+                                       "%8s %14s %10s %12s",
+                                       "threads",
+                                       "docs/second",
+                                       "speedup",
+                                       "efficiency"));
+    for (final Result aResult : aResults)
+    {
+      final double dSpeedup = aResult.getThroughput () / dBase;
+      System.out.println (String.format (Locale.ROOT,
+                                         "%8d %14.1f %9.2fx %11.0f%%",
+                                         Integer.valueOf (aResult.m_nThreads),
+                                         Double.valueOf (aResult.getThroughput ()),
+                                         Double.valueOf (dSpeedup),
+                                         Double.valueOf (dSpeedup * 100 / aResult.m_nThreads)));
+    }
+
+    for (final Result aResult : aResults)
+    {
+      System.out.println ();
+      System.out.println ("Most contended locks with " + aResult.m_nThreads + " thread(s):");
+      if (aResult.m_aTopLocks.isEmpty ())
+        System.out.println ("  none above the threshold");
+      for (final LockSite aSite : aResult.m_aTopLocks)
+        System.out.println (String.format (Locale.ROOT,
+                                           "  %10.1f ms %8d x  %s",
+                                           Double.valueOf (aSite.m_nNanos / 1_000_000d),
+                                           Long.valueOf (aSite.m_nCount),
+                                           aSite.m_sKey));
+    }
+  }
+
+  @NonNull
+  private ICommonsList <byte []> _createCorpus ()
+  {
+    final ICommonsList <byte []> ret = BenchmarkDocuments.createCorpus (new SyntheticUBLSettings ().setLineCount (m_nLines)
+                                                                                                   .setVatRateCount (3)
+                                                                                                   .setAllowanceChargeDensity (0.2),
+                                                                        m_nDocuments);
+    if (m_aCIIDir != null)
+      ret.addAll (BenchmarkDocuments.deriveAllFromCII (m_aCIIDir));
+    return ret;
+  }
+
+  private void _execute () throws IOException, InterruptedException
+  {
+    final ICommonsList <byte []> aCorpus = _createCorpus ();
+    System.out.println ("Corpus of " +
+                        aCorpus.size () +
+                        " document(s); " +
+                        m_aWarmup.toSeconds () +
+                        "s warmup and " +
+                        m_aDuration.toSeconds () +
+                        "s measurement per configuration");
+
+    final ICommonsList <Result> aResults = new CommonsArrayList <> ();
+    for (final Integer aThreads : _getThreadCounts ())
+    {
+      final Result aResult = _measure (aCorpus, aThreads.intValue ());
+      System.out.println (String.format (Locale.ROOT,
+                                         "%d thread(s): %.1f docs/second",
+                                         aThreads,
+                                         Double.valueOf (aResult.getThroughput ())));
+      aResults.add (aResult);
+    }
+    _printReport (aResults);
+  }
+
+  public static void main (final String [] aArgs) throws Exception
+  {
+    final HarnessArguments aArguments = new HarnessArguments (aArgs,
+                                                              "max-threads",
+                                                              "documents",
+                                                              "lines",
+                                                              "warmup",
+                                                              "duration",
+                                                              "lock-threshold",
+                                                              "cii-dir");
+    final ScalabilityHarness aHarness = new ScalabilityHarness ();
+    aHarness.m_nMaxThreads = aArguments.getAsInt ("max-threads", Runtime.getRuntime ().availableProcessors ());
+    aHarness.m_nDocuments = aArguments.getAsInt ("documents", 200);
+    aHarness.m_nLines = aArguments.getAsInt ("lines", 100);
+    aHarness.m_aWarmup = aArguments.getAsDuration ("warmup", Duration.ofSeconds (5));
+    aHarness.m_aDuration = aArguments.getAsDuration ("duration", Duration.ofSeconds (10));
+    aHarness.m_aLockThreshold = aArguments.getAsDuration ("lock-threshold", Duration.ofMillis (1));
+    aHarness.m_aCIIDir = aArguments.getAsFile ("cii-dir");
+    ValueEnforcer.isGT0 (aHarness.m_nMaxThreads, "MaxThreads");
+    ValueEnforcer.isGT0 (aHarness.m_nDocuments, "Documents");
+    ValueEnforcer.isGT0 (aHarness.m_nLines, "Lines");
+    aHarness._execute ();
+  }
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.diagnostics.error.list.ErrorList;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+import com.helger.en16931.ubl2cii.cli.ConversionInput;
+import com.helger.en16931.ubl2cii.cli.ConversionPipeline;
+import com.helger.en16931.ubl2cii.cli.DirectoryConversionTarget;
+import com.helger.en16931.ubl2cii.cli.EFsyncPolicy;
+import com.helger.io.file.FileOperationManager;
+import com.helger.io.file.FileSystemRecursiveIterator;
+
+/**
+ * Converts a corpus of UBL files continuously on multiple threads and checks
+ * for resource leaks. The threads alternate between the file stream based
+ * {@link UBLToCIIConversionHelper#convertUBL21AutoDetectToCIID16B(InputStream, OutputStream, ErrorList)}
+ * and the {@link ConversionPipeline} of the CLI. The latency of each
+ * conversion is recorded in a {@link LatencyHistogram}. In regular intervals
+ * the used heap after an explicit GC and the number of open file descriptors
+ * are sampled. After the warm-up, a linear regression over the samples must
+ * not show a heap growth above the threshold (in percent) or a file descriptor
+ * growth above the threshold (absolute), otherwise the process exits with a
+ * non-zero code. Failed conversions fail the run as well, and so do less than
+ * {@link #MIN_SAMPLES} samples after the warm-up, as no trend can be derived
+ * then. A duration that does not leave room for that many samples is rejected
+ * up front.
+ * <p>
+ * Usage:
+ * <code>java -cp benchmarks.jar com.helger.en16931.ubl2cii.benchmark.SoakHarness [--threads n] [--duration duration] [--warmup duration] [--sample-interval duration] [--documents n] [--lines n] [--corpus-dir dir] [--max-heap-growth percent] [--max-fd-growth n]</code>
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class SoakHarness
+{
+  private static final String THREAD_NAME_PREFIX = "ubl2cii-soak-";
+  /** The minimum number of samples after the warm-up for a trend analysis */
+  static final int MIN_SAMPLES = 3;
+
+  private int m_nThreads;
+  private Duration m_aDuration;
+  private Duration m_aWarmup;
+  private Duration m_aSampleInterval;
+  private double m_dMaxHeapGrowthPercent;
+  private double m_dMaxFDGrowth;
+
+  private final LatencyHistogram m_aTotalLatency = new LatencyHistogram ();
+  private final LatencyHistogram m_aIntervalLatency = new LatencyHistogram ();
+  private final LongAdder m_aConversions = new LongAdder ();
+  private final LongAdder m_aFailures = new LongAdder ();
+
+  /** A single sample of the resource usage */
+  private static final class Sample
+  {
+    private final double m_dSeconds;
+    private final long m_nHeapBytes;
+    private final long m_nOpenFDs;
+
+    Sample (final double dSeconds, final long nHeapBytes, final long nOpenFDs)
+    {
+      m_dSeconds = dSeconds;
+      m_nHeapBytes = nHeapBytes;
+      m_nOpenFDs = nOpenFDs;
+    }
+  }
+
+  /** A linear regression y = a + b * x */
+  private static final class Trend
+  {
+    private final double m_dStart;
+    private final double m_dGrowth;
+
+    /**
+     * @param aX
+     *        The x values. At least 2 distinct ones.
+     * @param aY
+     *        The y values.
+     */
+    Trend (final double @NonNull [] aX, final double @NonNull [] aY)
+    {
+      final int n = aX.length;
+      double dSumX = 0;
+      double dSumY = 0;
+      for (int i = 0; i < n; ++i)
+      {
+        dSumX += aX[i];
+        dSumY += aY[i];
+      }
+      final double dMeanX = dSumX / n;
+      final double dMeanY = dSumY / n;
+      double dCov = 0;
+      double dVarX = 0;
+      for (int i = 0; i < n; ++i)
+      {
+        dCov += (aX[i] - dMeanX) * (aY[i] - dMeanY);
+        dVarX += (aX[i] - dMeanX) * (aX[i] - dMeanX);
+      }
+      final double dSlope = dVarX == 0 ? 0 : dCov / dVarX;
+      // Fitted values at the first and the last sample
+      m_dStart = dMeanY + dSlope * (aX[0] - dMeanX);
+      m_dGrowth = dSlope * (aX[n - 1] - aX[0]);
+    }
+  }
+
+  private SoakHarness ()
+  {}
+
+  @NonNull
+  private static ICommonsList <File> _createCorpus (@NonNull final Path aWorkDir,
+                                                   final int nDocuments,
+                                                   final int nLines,
+                                                   @NonNull final ICommonsList <File> aAdditionalFiles) throws IOException
+  {
+    final ICommonsList <File> ret = new CommonsArrayList <> (aAdditionalFiles);
+    final SyntheticUBLSettings aSettings = new SyntheticUBLSettings ().setLineCount (nLines)
+                                                                     .setVatRateCount (3)
+                                                                     .setAllowanceChargeDensity (0.2)
+                                                                     .setDocumentAllowanceCount (1)
+                                                                     .setNoteLength (500);
+    int nIndex = 0;
+    for (final byte [] aDoc : BenchmarkDocuments.createCorpus (aSettings, nDocuments))
+    {
+      final Path aFile = aWorkDir.resolve ("corpus-" + nIndex++ + ".xml");
+      Files.write (aFile, aDoc);
+      ret.add (aFile.toFile ());
+    }
+    return ret;
+  }
+
+  private boolean _convertWithHelper (@NonNull final File aFile, @NonNull final Path aOutputFile) throws IOException
+  {
+    try (final InputStream aIS = Files.newInputStream (aFile.toPath ());
+         final OutputStream aOS = Files.newOutputStream (aOutputFile))
+    {
+      return UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (aIS, aOS, new ErrorList ()).isSuccess ();
+    }
+  }
+
+  private void _runWorker (@NonNull final ICommonsList <File> aCorpus,
+                           @NonNull final AtomicInteger aNextIndex,
+                           @NonNull final Path aWorkDir,
+                           final long nEndNanos) throws IOException
+  {
+    final Path aOutputDir = Files.createDirectory (aWorkDir.resolve (Thread.currentThread ().getName ()));
+    final Path aHelperOutput = aOutputDir.resolve ("helper.xml");
+    try (final DirectoryConversionTarget aTarget = new DirectoryConversionTarget (aOutputDir.toFile (),
+                                                                                  "",
+                                                                                  false,
+                                                                                  EFsyncPolicy.NONE);
+         final ConversionPipeline aPipeline = new ConversionPipeline (aTarget, null, null, null, 1))
+    {
+      long nIteration = 0;
+      while (System.nanoTime () < nEndNanos)
+      {
+        final File aFile = aCorpus.get (Math.floorMod (aNextIndex.getAndIncrement (), aCorpus.size ()));
+        final long nStart = System.nanoTime ();
+        boolean bSuccess;
+        try
+        {
+          if ((nIteration++ & 1) == 0)
+            bSuccess = _convertWithHelper (aFile, aHelperOutput);
+          else
+            bSuccess = aPipeline.convertAndWrite (ConversionInput.ofFile (aFile)).isSuccess ();
+        }
+        catch (final IOException ex)
+        {
+          System.err.println ("Failed to convert '" + aFile.getAbsolutePath () + "': " + ex.getMessage ());
+          bSuccess = false;
+        }
+        final long nNanos = System.nanoTime () - nStart;
+        m_aTotalLatency.record (nNanos);
+        m_aIntervalLatency.record (nNanos);
+        if (bSuccess)
+          m_aConversions.increment ();
+        else
+          m_aFailures.increment ();
+      }
+    }
+  }
+
+  /**
+   * @return The number of open file descriptors of this process or -1 if this
+   *         is not supported (e.g. on Windows).
+   */
+  private static long _getOpenFileDescriptorCount ()
+  {
+    final OperatingSystemMXBean aBean = ManagementFactory.getOperatingSystemMXBean ();
+    if (aBean instanceof com.sun.management.UnixOperatingSystemMXBean)
+      return ((com.sun.management.UnixOperatingSystemMXBean) aBean).getOpenFileDescriptorCount ();
+    return -1;
+  }
+
+  private static long _getUsedHeapAfterGC ()
+  {
+    // Explicit GC, so that the samples are comparable independent of the GC
+    // cycle. The cost is irrelevant at the sample interval.
+    System.gc ();
+    return ManagementFactory.getMemoryMXBean ().getHeapMemoryUsage ().getUsed ();
+  }
+
+  private static double _millis (final long nNanos)
+  {
+    return nNanos / 1_000_000d;
+  }
+
+  /**
+   * @return <code>true</code> if the trend is within the limit.
+   */
+  private static boolean _checkTrend (@NonNull final String sName,
+                                      @NonNull final Trend aTrend,
+                                      final double dLimit,
+                                      @NonNull final String sUnit)
+  {
+    final boolean bOK = aTrend.m_dGrowth <= dLimit;
+    System.out.println (String.format (Locale.ROOT,
+                                       "%s: fitted start %.1f %s, growth %+.1f %s, limit %.1f %s - %s",
+                                       sName,
+                                       Double.valueOf (aTrend.m_dStart),
+                                       sUnit,
+                                       Double.valueOf (aTrend.m_dGrowth),
+                                       sUnit,
+                                       Double.valueOf (dLimit),
+                                       sUnit,
+                                       bOK ? "OK" : "UPWARD TREND"));
+    return bOK;
+  }
+
+  /**
+   * @return <code>true</code> if all checks passed.
+   */
+  private boolean _execute (@NonNull final ICommonsList <File> aCorpus, @NonNull final Path aWorkDir) throws Exception
+  {
+    System.out.println ("Soak test with " +
+                        m_nThreads +
+                        " thread(s) and " +
+                        aCorpus.size () +
+                        " document(s) for " +
+                        m_aDuration +
+                        " (warm-up " +
+                        m_aWarmup +
+                        ")");
+
+    final long nStartNanos = System.nanoTime ();
+    final long nEndNanos = nStartNanos + m_aDuration.toNanos ();
+    final long nWarmupEndNanos = nStartNanos + m_aWarmup.toNanos ();
+    final AtomicInteger aNextIndex = new AtomicInteger ();
+    final CountDownLatch aDone = new CountDownLatch (m_nThreads);
+    for (int i = 0; i < m_nThreads; ++i)
+    {
+      final Thread aThread = new Thread ( () -> {
+        try
+        {
+          _runWorker (aCorpus, aNextIndex, aWorkDir, nEndNanos);
+        }
+        catch (final IOException ex)
+        {
+          System.err.println ("Worker " + Thread.currentThread ().getName () + " failed: " + ex.getMessage ());
+          m_aFailures.increment ();
+        }
+        finally
+        {
+          aDone.countDown ();
+        }
+      }, THREAD_NAME_PREFIX + i);
+      aThread.start ();
+    }
+
+    // Sample until all workers are done
+    final ICommonsList <Sample> aSamples = new CommonsArrayList <> ();
+    long nLastConversions = 0;
+    while (!aDone.await (m_aSampleInterval.toMillis (), TimeUnit.MILLISECONDS))
+    {
+      final long nNow = System.nanoTime ();
+      final long nHeap = _getUsedHeapAfterGC ();
+      final long nFDs = _getOpenFileDescriptorCount ();
+      final long nConversions = m_aConversions.sum ();
+      final boolean bWarmup = nNow < nWarmupEndNanos;
+      System.out.println (String.format (Locale.ROOT,
+                                         "%8.0fs%s: %,d conversions (+%,d), p99 %.2f ms, max %.2f ms, heap after GC %,d KB, open FDs %d",
+                                         Double.valueOf ((nNow - nStartNanos) / 1_000_000_000d),
+                                         bWarmup ? " (warm-up)" : "",
+                                         Long.valueOf (nConversions),
+                                         Long.valueOf (nConversions - nLastConversions),
+                                         Double.valueOf (_millis (m_aIntervalLatency.getPercentile (99))),
+                                         Double.valueOf (_millis (m_aIntervalLatency.getMax ())),
+                                         Long.valueOf (nHeap / 1024),
+                                         Long.valueOf (nFDs)));
+      m_aIntervalLatency.reset ();
+      nLastConversions = nConversions;
+      if (!bWarmup)
+        aSamples.add (new Sample ((nNow - nStartNanos) / 1_000_000_000d, nHeap, nFDs));
+    }
+
+    System.out.println (String.format (Locale.ROOT,
+                                       "Latency of %,d conversions: p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                                       Long.valueOf (m_aTotalLatency.getTotalCount ()),
+                                       Double.valueOf (_millis (m_aTotalLatency.getPercentile (50))),
+                                       Double.valueOf (_millis (m_aTotalLatency.getPercentile (90))),
+                                       Double.valueOf (_millis (m_aTotalLatency.getPercentile (99))),
+                                       Double.valueOf (_millis (m_aTotalLatency.getPercentile (99.9))),
+                                       Double.valueOf (_millis (m_aTotalLatency.getMax ()))));
+
+    boolean bOK = true;
+    if (m_aFailures.sum () > 0)
+    {
+      System.out.println (m_aFailures.sum () + " conversion(s) failed");
+      bOK = false;
+    }
+
+    if (aSamples.size () < MIN_SAMPLES)
+    {
+      System.out.println ("Only " +
+                          aSamples.size () +
+                          " sample(s) after the warm-up, but at least " +
+                          MIN_SAMPLES +
+                          " are needed for the trend analysis - increase the duration");
+      return false;
+    }
+
+    final int n = aSamples.size ();
+    final double [] aSeconds = new double [n];
+    final double [] aHeapKB = new double [n];
+    final double [] aFDs = new double [n];
+    for (int i = 0; i < n; ++i)
+    {
+      final Sample aSample = aSamples.get (i);
+      aSeconds[i] = aSample.m_dSeconds;
+      aHeapKB[i] = aSample.m_nHeapBytes / 1024d;
+      aFDs[i] = aSample.m_nOpenFDs;
+    }
+    final Trend aHeapTrend = new Trend (aSeconds, aHeapKB);
+    if (!_checkTrend ("Heap after GC", aHeapTrend, aHeapTrend.m_dStart * m_dMaxHeapGrowthPercent / 100, "KB"))
+      bOK = false;
+    if (aSamples.getFirst ().m_nOpenFDs >= 0)
+    {
+      if (!_checkTrend ("Open file descriptors", new Trend (aSeconds, aFDs), m_dMaxFDGrowth, "FDs"))
+        bOK = false;
+    }
+    else
+      System.out.println ("Open file descriptors cannot be determined on this platform");
+    return bOK;
+  }
+
+  public static void main (final String [] aArgs) throws Exception
+  {
+    // The CLI pipeline logs every written file
+    if (System.getProperty ("org.slf4j.simpleLogger.defaultLogLevel") == null)
+      System.setProperty ("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+
+    final HarnessArguments aArguments = new HarnessArguments (aArgs,
+                                                              "threads",
+                                                              "duration",
+                                                              "warmup",
+                                                              "sample-interval",
+                                                              "documents",
+                                                              "lines",
+                                                              "corpus-dir",
+                                                              "max-heap-growth",
+                                                              "max-fd-growth");
+    final SoakHarness aHarness = new SoakHarness ();
+    aHarness.m_nThreads = aArguments.getAsInt ("threads", Runtime.getRuntime ().availableProcessors ());
+    aHarness.m_aDuration = aArguments.getAsDuration ("duration", Duration.ofHours (1));
+    aHarness.m_aWarmup = aArguments.getAsDuration ("warmup", Duration.ofMinutes (5));
+    aHarness.m_aSampleInterval = aArguments.getAsDuration ("sample-interval", Duration.ofSeconds (30));
+    aHarness.m_dMaxHeapGrowthPercent = aArguments.getAsDouble ("max-heap-growth", 10);
+    aHarness.m_dMaxFDGrowth = aArguments.getAsDouble ("max-fd-growth", 5);
+    final int nDocuments = aArguments.getAsInt ("documents", 50);
+    final int nLines = aArguments.getAsInt ("lines", 100);
+    final File aCorpusDir = aArguments.getAsFile ("corpus-dir");
+    ValueEnforcer.isGT0 (aHarness.m_nThreads, "Threads");
+    ValueEnforcer.isGT0 (aHarness.m_aSampleInterval.toMillis (), "SampleInterval");
+    // One more interval, as the last sample may fall after the end
+    final Duration aMinDuration = aHarness.m_aWarmup.plus (aHarness.m_aSampleInterval.multipliedBy (MIN_SAMPLES + 1L));
+    if (aHarness.m_aDuration.compareTo (aMinDuration) < 0)
+      throw new IllegalArgumentException ("The duration " +
+                                          aHarness.m_aDuration +
+                                          " is too short for " +
+                                          MIN_SAMPLES +
+                                          " samples after the warm-up of " +
+                                          aHarness.m_aWarmup +
+                                          " - use at least " +
+                                          aMinDuration);
+    ValueEnforcer.isGE0 (nDocuments, "Documents");
+    ValueEnforcer.isGT0 (nLines, "Lines");
+
+    final ICommonsList <File> aAdditionalFiles = new CommonsArrayList <> ();
+    if (aCorpusDir != null)
+      for (final File f : new FileSystemRecursiveIterator (aCorpusDir))
+        if (f.isFile () && f.getName ().endsWith (".xml"))
+          aAdditionalFiles.add (f);
+    if (nDocuments == 0 && aAdditionalFiles.isEmpty ())
+      throw new IllegalArgumentException ("The corpus is empty");
+
+    final Path aWorkDir = Files.createTempDirectory ("ubl2cii-soak");
+    final boolean bOK;
+    try
+    {
+      bOK = aHarness._execute (_createCorpus (aWorkDir, nDocuments, nLines, aAdditionalFiles), aWorkDir);
+    }
+    finally
+    {
+      FileOperationManager.INSTANCE.deleteDirRecursiveIfExisting (aWorkDir.toFile ());
+    }
+    if (!bOK)
+      System.exit (1);
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.string.StringHelper;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.io.file.FileOperationManager;
+
+/**
+ * Measures the cold start of the shaded CLI jar. Each run launches a fresh JVM
+ * that converts a single small invoice, and measures the time until the first
+ * document was written and until the process ended. The medians are compared
+ * to a stored baseline and the process exits with a non-zero code if they
+ * exceed the baseline by more than the budget. If the baseline file does not
+ * exist yet, the first run records it and reports that it needs to be
+ * committed. A missing value in an existing baseline is an error. Use
+ * <code>--update true</code> to record the current measurement as the new
+ * baseline.
+ * <p>
+ * Usage:
+ * <code>java -cp benchmarks.jar com.helger.en16931.ubl2cii.benchmark.StartupHarness --cli-jar file --baseline file [--runs n] [--budget percent] [--jvm-args "args"] [--update true|false]</code>
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class StartupHarness
+{
+  private static final String KEY_FIRST_CONVERSION = "timeToFirstConversionMillis";
+  private static final String KEY_TOTAL = "totalMillis";
+  // Logged by the CLI after each written document
+  private static final String MARKER_CONVERTED = "Successfully wrote CII file";
+
+  private final File m_aCliJar;
+  private final int m_nRuns;
+  private final String [] m_aJvmArgs;
+
+  private StartupHarness (@NonNull final File aCliJar, final int nRuns, final String @NonNull [] aJvmArgs)
+  {
+    m_aCliJar = aCliJar;
+    m_nRuns = nRuns;
+    m_aJvmArgs = aJvmArgs;
+  }
+
+  /** The durations of a single run in milliseconds */
+  private static final class Run
+  {
+    private final long m_nFirstConversionMillis;
+    private final long m_nTotalMillis;
+
+    Run (final long nFirstConversionMillis, final long nTotalMillis)
+    {
+      m_nFirstConversionMillis = nFirstConversionMillis;
+      m_nTotalMillis = nTotalMillis;
+    }
+  }
+
+  @NonNull
+  private Run _runOnce (@NonNull final Path aInvoice, @NonNull final Path aOutputDir) throws IOException,
+                                                                                      InterruptedException
+  {
+    final ICommonsList <String> aCmd = new CommonsArrayList <> ();
+    aCmd.add (Path.of (System.getProperty ("java.home"), "bin", "java").toString ());
+    aCmd.addAll (m_aJvmArgs);
+    aCmd.add ("-jar");
+    aCmd.add (m_aCliJar.getAbsolutePath ());
+    aCmd.add ("-t");
+    aCmd.add (aOutputDir.toString ());
+    aCmd.add (aInvoice.toString ());
+
+    final long nStart = System.nanoTime ();
+    final Process aProcess = new ProcessBuilder (aCmd).redirectErrorStream (true).start ();
+    long nFirstConversion = -1;
+    final StringBuilder aOutput = new StringBuilder ();
+    try (final Reader aReader = new InputStreamReader (aProcess.getInputStream (), Charset.defaultCharset ());
+         final BufferedReader aBR = new BufferedReader (aReader))
+    {
+      String sLine;
+      while ((sLine = aBR.readLine ()) != null)
+      {
+        if (nFirstConversion < 0 && sLine.contains (MARKER_CONVERTED))
+          nFirstConversion = System.nanoTime () - nStart;
+        aOutput.append (sLine).append ('\n');
+      }
+    }
+    final int nExitCode = aProcess.waitFor ();
+    final long nTotal = System.nanoTime () - nStart;
+
+    if (nExitCode != 0 || nFirstConversion < 0)
+      throw new IllegalStateException ("The CLI failed with exit code " + nExitCode + ":\n" + aOutput);
+    return new Run (nFirstConversion / 1_000_000, nTotal / 1_000_000);
+  }
+
+  private static long _median (final long @NonNull [] aValues)
+  {
+    final long [] aSorted = aValues.clone ();
+    Arrays.sort (aSorted);
+    return aSorted[aSorted.length / 2];
+  }
+
+  @NonNull
+  private Properties _measure () throws IOException, InterruptedException
+  {
+    final Path aWorkDir = Files.createTempDirectory ("ubl2cii-startup");
+    try
+    {
+      final Path aInvoice = aWorkDir.resolve ("invoice.xml");
+      Files.write (aInvoice,
+                   BenchmarkDocuments.EDocumentSize.SMALL.createDocument (SyntheticUBLGenerator.EDocumentType.INVOICE));
+
+      final long [] aFirst = new long [m_nRuns];
+      final long [] aTotal = new long [m_nRuns];
+      for (int i = 0; i < m_nRuns; ++i)
+      {
+        final Path aOutputDir = Files.createDirectory (aWorkDir.resolve ("out-" + i));
+        final Run aRun = _runOnce (aInvoice, aOutputDir);
+        aFirst[i] = aRun.m_nFirstConversionMillis;
+        aTotal[i] = aRun.m_nTotalMillis;
+        System.out.println ("Run " +
+                            (i + 1) +
+                            ": first conversion after " +
+                            aRun.m_nFirstConversionMillis +
+                            " ms, total " +
+                            aRun.m_nTotalMillis +
+                            " ms");
+      }
+
+      final Properties ret = new Properties ();
+      ret.setProperty (KEY_FIRST_CONVERSION, Long.toString (_median (aFirst)));
+      ret.setProperty (KEY_TOTAL, Long.toString (_median (aTotal)));
+      return ret;
+    }
+    finally
+    {
+      FileOperationManager.INSTANCE.deleteDirRecursiveIfExisting (aWorkDir.toFile ());
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the measured value is within the budget,
+   *         <code>false</code> if it exceeds the budget or if there is no
+   *         baseline value.
+   */
+  private static boolean _check (@NonNull final String sKey,
+                                 @NonNull final Properties aMeasured,
+                                 @NonNull final Properties aBaseline,
+                                 final double dBudgetPercent)
+  {
+    final long nMeasured = Long.parseLong (aMeasured.getProperty (sKey));
+    final String sBaseline = aBaseline.getProperty (sKey);
+    if (sBaseline == null)
+    {
+      System.out.println (sKey + ": " + nMeasured + " ms - NO BASELINE");
+      return false;
+    }
+    final long nBaseline = Long.parseLong (sBaseline.trim ());
+    final double dLimit = nBaseline * (1 + dBudgetPercent / 100);
+    final boolean bOK = nMeasured <= dLimit;
+    System.out.println (String.format (Locale.ROOT,
+                                       "%s: %d ms - baseline %d ms, limit %.0f ms (%+.1f%%) %s",
+                                       sKey,
+                                       Long.valueOf (nMeasured),
+                                       Long.valueOf (nBaseline),
+                                       Double.valueOf (dLimit),
+                                       Double.valueOf ((nMeasured - nBaseline) * 100d / nBaseline),
+                                       bOK ? "OK" : "EXCEEDED"));
+    return bOK;
+  }
+
+  private static void _writeBaseline (@NonNull final Properties aMeasured, @NonNull final File aFile) throws IOException
+  {
+    final File aParent = aFile.getAbsoluteFile ().getParentFile ();
+    if (aParent != null)
+      Files.createDirectories (aParent.toPath ());
+    try (final Writer aWriter = Files.newBufferedWriter (aFile.toPath (), StandardCharsets.ISO_8859_1))
+    {
+      aMeasured.store (aWriter,
+                       "Startup baseline of the CLI (medians) - measured on " +
+                                System.getProperty ("os.name") +
+                                ", Java " +
+                                System.getProperty ("java.version") +
+                                " with " +
+                                Runtime.getRuntime ().availableProcessors () +
+                                " processors");
+    }
+  }
+
+  @Nullable
+  private static Properties _readBaseline (@NonNull final File aFile) throws IOException
+  {
+    if (!aFile.isFile ())
+      return null;
+    final Properties ret = new Properties ();
+    try (final Reader aReader = Files.newBufferedReader (aFile.toPath (), StandardCharsets.ISO_8859_1))
+    {
+      ret.load (aReader);
+    }
+    return ret;
+  }
+
+  public static void main (final String [] aArgs) throws Exception
+  {
+    final HarnessArguments aArguments = new HarnessArguments (aArgs, "cli-jar", "runs", "baseline", "budget", "jvm-args", "update");
+    final File aCliJar = aArguments.getAsFile ("cli-jar");
+    if (aCliJar == null || !aCliJar.isFile ())
+      throw new IllegalArgumentException ("The CLI jar must be provided with '--cli-jar' and must exist: " + aCliJar);
+    final int nRuns = aArguments.getAsInt ("runs", 5);
+    ValueEnforcer.isGT0 (nRuns, "Runs");
+    final File aBaselineFile = aArguments.getAsFile ("baseline");
+    if (aBaselineFile == null)
+      throw new IllegalArgumentException ("The baseline file must be provided with '--baseline'");
+    final double dBudgetPercent = aArguments.getAsDouble ("budget", 25);
+    final String sJvmArgs = aArguments.getAsString ("jvm-args", null);
+    final String [] aJvmArgs = StringHelper.isEmpty (sJvmArgs) ? new String [0] : sJvmArgs.trim ().split ("\\s+");
+    final boolean bUpdate = Boolean.parseBoolean (aArguments.getAsString ("update", "false"));
+
+    final Properties aMeasured = new StartupHarness (aCliJar, nRuns, aJvmArgs)._measure ();
+
+    if (bUpdate)
+    {
+      _writeBaseline (aMeasured, aBaselineFile);
+      System.out.println (KEY_FIRST_CONVERSION + ": " + aMeasured.getProperty (KEY_FIRST_CONVERSION) + " ms");
+      System.out.println (KEY_TOTAL + ": " + aMeasured.getProperty (KEY_TOTAL) + " ms");
+      System.out.println ("Updated baseline '" + aBaselineFile.getAbsolutePath () + "' - commit it to enable the check");
+      return;
+    }
+
+    final Properties aBaseline = _readBaseline (aBaselineFile);
+    if (aBaseline == null)
+    {
+      // First run: there is nothing to compare to yet
+      _writeBaseline (aMeasured, aBaselineFile);
+      System.out.println (KEY_FIRST_CONVERSION + ": " + aMeasured.getProperty (KEY_FIRST_CONVERSION) + " ms");
+      System.out.println (KEY_TOTAL + ": " + aMeasured.getProperty (KEY_TOTAL) + " ms");
+      System.out.println ("The baseline did not exist - recorded this run in '" +
+                          aBaselineFile.getAbsolutePath () +
+                          "'. Commit the file to enable the check.");
+      return;
+    }
+
+    // Check both, so that both are reported
+    final boolean bFirstOK = _check (KEY_FIRST_CONVERSION, aMeasured, aBaseline, dBudgetPercent);
+    final boolean bTotalOK = _check (KEY_TOTAL, aMeasured, aBaseline, dBudgetPercent);
+    if (!bFirstOK || !bTotalOK)
+    {
+      System.out.println ("The startup time exceeds the budget of " +
+                          dBudgetPercent +
+                          "% above the baseline or a baseline value is missing");
+      System.exit (1);
+    }
+  }
+}
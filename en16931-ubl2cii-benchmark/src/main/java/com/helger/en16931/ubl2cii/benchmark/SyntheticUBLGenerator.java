@@ -0,0 +1,525 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.annotation.WillNotClose;
+import com.helger.annotation.concurrent.Immutable;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
+import com.helger.diagnostics.error.list.ErrorList;
+import com.helger.en16931.cii2ubl.CIIToUBL21Converter;
+import com.helger.ubl21.UBL21Marshaller;
+
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Creates schema valid UBL 2.1 Invoices and CreditNotes of configurable shape
+ * for benchmarks and load tests. The output only depends on the
+ * {@link SyntheticUBLSettings}, so the same seed always creates the same
+ * document. The amounts are consistent: line, tax and document totals add up
+ * according to EN 16931. Documents are streamed, so even documents with many
+ * lines or large attachments need little memory to create.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class SyntheticUBLGenerator
+{
+  /**
+   * The document types that can be created.
+   *
+   * @author Philip Helger
+   */
+  public enum EDocumentType
+  {
+    INVOICE ("Invoice", "urn:oasis:names:specification:ubl:schema:xsd:Invoice-2", "380", "InvoicedQuantity"),
+    CREDIT_NOTE ("CreditNote", "urn:oasis:names:specification:ubl:schema:xsd:CreditNote-2", "381", "CreditedQuantity");
+
+    private final String m_sRootElement;
+    private final String m_sNamespaceURI;
+    private final String m_sTypeCode;
+    private final String m_sQuantityElement;
+
+    EDocumentType (@NonNull final String sRootElement,
+                   @NonNull final String sNamespaceURI,
+                   @NonNull final String sTypeCode,
+                   @NonNull final String sQuantityElement)
+    {
+      m_sRootElement = sRootElement;
+      m_sNamespaceURI = sNamespaceURI;
+      m_sTypeCode = sTypeCode;
+      m_sQuantityElement = sQuantityElement;
+    }
+  }
+
+  private static final String NS_CAC = "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2";
+  private static final String NS_CBC = "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2";
+  private static final String CURRENCY = "EUR";
+  // A multiple of 3, so that the chunks can be Base64 encoded separately
+  private static final int ATTACHMENT_CHUNK_SIZE = 3 * 16 * 1024;
+  private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance ();
+
+  private final SyntheticUBLSettings m_aSettings;
+
+  /**
+   * @param aSettings
+   *        The settings to use. They are read on every call, so they should
+   *        not be modified while documents are created. May not be
+   *        <code>null</code>.
+   */
+  public SyntheticUBLGenerator (@NonNull final SyntheticUBLSettings aSettings)
+  {
+    ValueEnforcer.notNull (aSettings, "Settings");
+    m_aSettings = aSettings;
+  }
+
+  /** The randomly chosen values of all lines, in cents */
+  private static final class Lines
+  {
+    private final int [] m_aQuantity;
+    private final long [] m_aPriceCents;
+    private final long [] m_aAllowanceCents;
+    private final int [] m_aVatRate;
+
+    Lines (final int nCount)
+    {
+      m_aQuantity = new int [nCount];
+      m_aPriceCents = new long [nCount];
+      m_aAllowanceCents = new long [nCount];
+      m_aVatRate = new int [nCount];
+    }
+
+    long getNetCents (final int nIndex)
+    {
+      return m_aQuantity[nIndex] * m_aPriceCents[nIndex] - m_aAllowanceCents[nIndex];
+    }
+  }
+
+  @NonNull
+  private static BigDecimal _getVatRate (final int nIndex)
+  {
+    // 25.00, 24.99, 24.98 etc.
+    return BigDecimal.valueOf (2500L - nIndex, 2);
+  }
+
+  @NonNull
+  private static String _amount (final long nCents)
+  {
+    return BigDecimal.valueOf (nCents, 2).toPlainString ();
+  }
+
+  private static void _text (@NonNull final XMLStreamWriter aW,
+                             @NonNull final String sElement,
+                             @NonNull final String sText) throws XMLStreamException
+  {
+    aW.writeStartElement ("cbc", sElement, NS_CBC);
+    aW.writeCharacters (sText);
+    aW.writeEndElement ();
+  }
+
+  private static void _attrText (@NonNull final XMLStreamWriter aW,
+                                 @NonNull final String sElement,
+                                 @NonNull final String sAttrName,
+                                 @NonNull final String sAttrValue,
+                                 @NonNull final String sText) throws XMLStreamException
+  {
+    aW.writeStartElement ("cbc", sElement, NS_CBC);
+    aW.writeAttribute (sAttrName, sAttrValue);
+    aW.writeCharacters (sText);
+    aW.writeEndElement ();
+  }
+
+  private static void _money (@NonNull final XMLStreamWriter aW,
+                              @NonNull final String sElement,
+                              final long nCents) throws XMLStreamException
+  {
+    _attrText (aW, sElement, "currencyID", CURRENCY, _amount (nCents));
+  }
+
+  private static void _start (@NonNull final XMLStreamWriter aW, @NonNull final String sElement) throws XMLStreamException
+  {
+    aW.writeStartElement ("cac", sElement, NS_CAC);
+  }
+
+  private static void _taxCategory (@NonNull final XMLStreamWriter aW,
+                                    @NonNull final String sElement,
+                                    final int nVatRate) throws XMLStreamException
+  {
+    _start (aW, sElement);
+    _text (aW, "ID", "S");
+    _text (aW, "Percent", _getVatRate (nVatRate).toPlainString ());
+    _start (aW, "TaxScheme");
+    _text (aW, "ID", "VAT");
+    aW.writeEndElement ();
+    aW.writeEndElement ();
+  }
+
+  @NonNull
+  private static String _randomText (@NonNull final Random aRandom, final int nLength)
+  {
+    final char [] ret = new char [nLength];
+    for (int i = 0; i < nLength; ++i)
+    {
+      // Mostly letters with some spaces
+      final int n = aRandom.nextInt (27);
+      ret[i] = n == 26 ? ' ' : (char) ('a' + n);
+    }
+    return new String (ret);
+  }
+
+  private void _party (@NonNull final XMLStreamWriter aW,
+                       @NonNull final String sElement,
+                       @NonNull final String sName,
+                       @NonNull final String sCountry) throws XMLStreamException
+  {
+    _start (aW, sElement);
+    _start (aW, "Party");
+    _attrText (aW, "EndpointID", "schemeID", "0088", "9482348239847239874");
+    for (int i = 0; i < m_aSettings.getPartyIdentificationCount (); ++i)
+    {
+      _start (aW, "PartyIdentification");
+      _text (aW, "ID", sName + "-ID-" + (i + 1));
+      aW.writeEndElement ();
+    }
+    _start (aW, "PartyName");
+    _text (aW, "Name", sName);
+    aW.writeEndElement ();
+    _start (aW, "PostalAddress");
+    _text (aW, "StreetName", "Main street 1");
+    _text (aW, "CityName", "Vienna");
+    _text (aW, "PostalZone", "1010");
+    _start (aW, "Country");
+    _text (aW, "IdentificationCode", sCountry);
+    aW.writeEndElement ();
+    aW.writeEndElement ();
+    _start (aW, "PartyTaxScheme");
+    _text (aW, "CompanyID", sCountry + "U12345678");
+    _start (aW, "TaxScheme");
+    _text (aW, "ID", "VAT");
+    aW.writeEndElement ();
+    aW.writeEndElement ();
+    _start (aW, "PartyLegalEntity");
+    _text (aW, "RegistrationName", sName + " GmbH");
+    aW.writeEndElement ();
+    aW.writeEndElement ();
+    aW.writeEndElement ();
+  }
+
+  private static void _attachment (@NonNull final XMLStreamWriter aW,
+                                   @NonNull final Random aRandom,
+                                   final int nIndex,
+                                   final int nSize) throws XMLStreamException
+  {
+    _start (aW, "AdditionalDocumentReference");
+    _text (aW, "ID", "ATT-" + nIndex);
+    _text (aW, "DocumentDescription", "Synthetic attachment " + nIndex);
+    _start (aW, "Attachment");
+    aW.writeStartElement ("cbc", "EmbeddedDocumentBinaryObject", NS_CBC);
+    aW.writeAttribute ("mimeCode", "application/pdf");
+    aW.writeAttribute ("filename", "attachment-" + nIndex + ".pdf");
+    final byte [] aChunk = new byte [ATTACHMENT_CHUNK_SIZE];
+    final Base64.Encoder aEncoder = Base64.getEncoder ();
+    int nRemaining = nSize;
+    while (nRemaining > 0)
+    {
+      final int nChunk = Math.min (nRemaining, aChunk.length);
+      aRandom.nextBytes (aChunk);
+      final byte [] aEncoded = aEncoder.encode (nChunk == aChunk.length ? aChunk : Arrays.copyOf (aChunk, nChunk));
+      aW.writeCharacters (new String (aEncoded, StandardCharsets.ISO_8859_1));
+      nRemaining -= nChunk;
+    }
+    aW.writeEndElement ();
+    aW.writeEndElement ();
+    aW.writeEndElement ();
+  }
+
+  @NonNull
+  private Lines _createLines (@NonNull final Random aRandom)
+  {
+    final int nCount = m_aSettings.getLineCount ();
+    final Lines ret = new Lines (nCount);
+    for (int i = 0; i < nCount; ++i)
+    {
+      ret.m_aQuantity[i] = 1 + aRandom.nextInt (100);
+      ret.m_aPriceCents[i] = 1 + aRandom.nextInt (99_999);
+      // Round robin, so that all rates are used if there are enough lines
+      ret.m_aVatRate[i] = i % m_aSettings.getVatRateCount ();
+      if (aRandom.nextDouble () < m_aSettings.getAllowanceChargeDensity ())
+      {
+        // 5% discount
+        ret.m_aAllowanceCents[i] = ret.m_aQuantity[i] * ret.m_aPriceCents[i] / 20;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Write a document to the provided output stream.
+   *
+   * @param eType
+   *        The document type to create. May not be <code>null</code>.
+   * @param aOS
+   *        The stream to write to. It is not closed. May not be
+   *        <code>null</code>.
+   * @throws IOException
+   *         If writing fails
+   */
+  public void write (@NonNull final EDocumentType eType, @NonNull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    ValueEnforcer.notNull (eType, "Type");
+    ValueEnforcer.notNull (aOS, "OutputStream");
+
+    try
+    {
+      _write (eType, aOS);
+    }
+    catch (final XMLStreamException ex)
+    {
+      throw new IOException ("Failed to write synthetic " + eType.m_sRootElement, ex);
+    }
+  }
+
+  private void _write (@NonNull final EDocumentType eType, @NonNull final OutputStream aOS) throws XMLStreamException
+  {
+    final SyntheticUBLSettings aS = m_aSettings;
+    final Random aRandom = new Random (aS.getSeed ());
+    final Lines aLines = _createLines (aRandom);
+
+    // Calculate all totals up front, as they precede the lines
+    final int nVatRateCount = aS.getVatRateCount ();
+    final long [] aTaxableCents = new long [nVatRateCount];
+    final boolean [] aVatRateUsed = new boolean [nVatRateCount];
+    long nLineTotalCents = 0;
+    for (int i = 0; i < aS.getLineCount (); ++i)
+    {
+      final long nNet = aLines.getNetCents (i);
+      nLineTotalCents += nNet;
+      aTaxableCents[aLines.m_aVatRate[i]] += nNet;
+      aVatRateUsed[aLines.m_aVatRate[i]] = true;
+    }
+    // Document level allowances of 1.00 each on the first VAT rate
+    final long nAllowanceTotalCents = aS.getDocumentAllowanceCount () * 100L;
+    aTaxableCents[0] -= nAllowanceTotalCents;
+    final long [] aTaxCents = new long [nVatRateCount];
+    long nTaxTotalCents = 0;
+    for (int i = 0; i < nVatRateCount; ++i)
+    {
+      aTaxCents[i] = BigDecimal.valueOf (aTaxableCents[i])
+                               .multiply (_getVatRate (i))
+                               .divide (BigDecimal.valueOf (100), 0, RoundingMode.HALF_UP)
+                               .longValueExact ();
+      nTaxTotalCents += aTaxCents[i];
+    }
+    final long nTaxExclusiveCents = nLineTotalCents - nAllowanceTotalCents;
+
+    final XMLStreamWriter aW = XML_OUTPUT_FACTORY.createXMLStreamWriter (aOS, StandardCharsets.UTF_8.name ());
+    aW.writeStartDocument (StandardCharsets.UTF_8.name (), "1.0");
+    aW.setDefaultNamespace (eType.m_sNamespaceURI);
+    aW.setPrefix ("cac", NS_CAC);
+    aW.setPrefix ("cbc", NS_CBC);
+    aW.writeStartElement (eType.m_sNamespaceURI, eType.m_sRootElement);
+    aW.writeDefaultNamespace (eType.m_sNamespaceURI);
+    aW.writeNamespace ("cac", NS_CAC);
+    aW.writeNamespace ("cbc", NS_CBC);
+
+    _text (aW, "CustomizationID", "urn:cen.eu:en16931:2017#compliant#urn:fdc:peppol.eu:2017:poacc:billing:3.0");
+    _text (aW, "ProfileID", "urn:fdc:peppol.eu:2017:poacc:billing:01:1.0");
+    _text (aW, "ID", "SYN-" + aS.getSeed ());
+    _text (aW, "IssueDate", "2026-01-15");
+    if (eType == EDocumentType.INVOICE)
+    {
+      _text (aW, "DueDate", "2026-02-15");
+      _text (aW, "InvoiceTypeCode", eType.m_sTypeCode);
+    }
+    else
+      _text (aW, "CreditNoteTypeCode", eType.m_sTypeCode);
+    if (aS.getNoteLength () > 0)
+      _text (aW, "Note", _randomText (aRandom, aS.getNoteLength ()));
+    _text (aW, "DocumentCurrencyCode", CURRENCY);
+    _text (aW, "BuyerReference", "synthetic");
+
+    for (int i = 0; i < aS.getDocumentReferenceCount (); ++i)
+    {
+      _start (aW, "AdditionalDocumentReference");
+      _text (aW, "ID", "REF-" + (i + 1));
+      _text (aW, "DocumentDescription", "Synthetic reference " + (i + 1));
+      aW.writeEndElement ();
+    }
+    for (int i = 0; i < aS.getAttachmentCount (); ++i)
+      _attachment (aW, aRandom, i + 1, aS.getAttachmentSize ());
+
+    _party (aW, "AccountingSupplierParty", "Seller", "AT");
+    _party (aW, "AccountingCustomerParty", "Buyer", "DE");
+
+    _start (aW, "PaymentMeans");
+    _attrText (aW, "PaymentMeansCode", "name", "Credit transfer", "30");
+    _start (aW, "PayeeFinancialAccount");
+    _text (aW, "ID", "AT611904300234573201");
+    aW.writeEndElement ();
+    aW.writeEndElement ();
+
+    for (int i = 0; i < aS.getDocumentAllowanceCount (); ++i)
+    {
+      _start (aW, "AllowanceCharge");
+      _text (aW, "ChargeIndicator", "false");
+      _text (aW, "AllowanceChargeReason", "Discount");
+      _money (aW, "Amount", 100);
+      _taxCategory (aW, "TaxCategory", 0);
+      aW.writeEndElement ();
+    }
+
+    _start (aW, "TaxTotal");
+    _money (aW, "TaxAmount", nTaxTotalCents);
+    for (int i = 0; i < nVatRateCount; ++i)
+    {
+      // There is always at least one line, using the first rate
+      if (!aVatRateUsed[i])
+        continue;
+      _start (aW, "TaxSubtotal");
+      _money (aW, "TaxableAmount", aTaxableCents[i]);
+      _money (aW, "TaxAmount", aTaxCents[i]);
+      _taxCategory (aW, "TaxCategory", i);
+      aW.writeEndElement ();
+    }
+    aW.writeEndElement ();
+
+    _start (aW, "LegalMonetaryTotal");
+    _money (aW, "LineExtensionAmount", nLineTotalCents);
+    _money (aW, "TaxExclusiveAmount", nTaxExclusiveCents);
+    _money (aW, "TaxInclusiveAmount", nTaxExclusiveCents + nTaxTotalCents);
+    if (nAllowanceTotalCents > 0)
+      _money (aW, "AllowanceTotalAmount", nAllowanceTotalCents);
+    _money (aW, "PayableAmount", nTaxExclusiveCents + nTaxTotalCents);
+    aW.writeEndElement ();
+
+    final String sLineElement = eType.m_sRootElement + "Line";
+    for (int i = 0; i < aS.getLineCount (); ++i)
+    {
+      _start (aW, sLineElement);
+      _text (aW, "ID", Integer.toString (i + 1));
+      _attrText (aW, eType.m_sQuantityElement, "unitCode", "C62", Integer.toString (aLines.m_aQuantity[i]));
+      _money (aW, "LineExtensionAmount", aLines.getNetCents (i));
+      if (aLines.m_aAllowanceCents[i] > 0)
+      {
+        _start (aW, "AllowanceCharge");
+        _text (aW, "ChargeIndicator", "false");
+        _text (aW, "AllowanceChargeReason", "Discount");
+        _money (aW, "Amount", aLines.m_aAllowanceCents[i]);
+        aW.writeEndElement ();
+      }
+      _start (aW, "Item");
+      _text (aW, "Description", "Description of item " + (i + 1));
+      _text (aW, "Name", "Item " + (i + 1));
+      _start (aW, "SellersItemIdentification");
+      _text (aW, "ID", "ART-" + (i + 1));
+      aW.writeEndElement ();
+      _taxCategory (aW, "ClassifiedTaxCategory", aLines.m_aVatRate[i]);
+      for (int j = 0; j < aS.getItemPropertyCount (); ++j)
+      {
+        _start (aW, "AdditionalItemProperty");
+        _text (aW, "Name", "Property " + (j + 1));
+        _text (aW, "Value", "Value " + (j + 1));
+        aW.writeEndElement ();
+      }
+      aW.writeEndElement ();
+      _start (aW, "Price");
+      _money (aW, "PriceAmount", aLines.m_aPriceCents[i]);
+      aW.writeEndElement ();
+      aW.writeEndElement ();
+    }
+
+    aW.writeEndElement ();
+    aW.writeEndDocument ();
+    aW.flush ();
+    aW.close ();
+  }
+
+  /**
+   * @param eType
+   *        The document type to create. May not be <code>null</code>.
+   * @return The serialized document. Never <code>null</code>.
+   */
+  public byte @NonNull [] getAsBytes (@NonNull final EDocumentType eType)
+  {
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      write (eType, aBAOS);
+      return aBAOS.toByteArray ();
+    }
+    catch (final IOException ex)
+    {
+      // Cannot happen for in-memory streams
+      throw new IllegalStateException (ex);
+    }
+  }
+
+  /**
+   * Derive a UBL document from an existing CII document, using the inverse
+   * converter. This is used to turn the CII XRechnung samples into additional
+   * realistic UBL input. CII documents with type code 381 become CreditNotes,
+   * all others Invoices.
+   *
+   * @param aCIIFile
+   *        The CII file to read. May not be <code>null</code>.
+   * @return <code>null</code> if the CII could not be read or converted.
+   */
+  public static byte @Nullable [] deriveFromCII (@NonNull final File aCIIFile)
+  {
+    ValueEnforcer.notNull (aCIIFile, "CIIFile");
+
+    final CrossIndustryInvoiceType aCII = new CIID16BCrossIndustryInvoiceTypeMarshaller ().read (aCIIFile);
+    if (aCII == null)
+      return null;
+
+    final ErrorList aErrorList = new ErrorList ();
+    final CIIToUBL21Converter aConverter = new CIIToUBL21Converter ();
+    final boolean bCreditNote = aCII.getExchangedDocument () != null &&
+                                aCII.getExchangedDocument ().getTypeCode () != null &&
+                                "381".equals (aCII.getExchangedDocument ().getTypeCode ().getValue ());
+    if (bCreditNote)
+    {
+      final CreditNoteType aCreditNote = aConverter.convertToCreditNote (aCII, aErrorList);
+      return aCreditNote == null || aErrorList.containsAtLeastOneError () ? null
+                                                                          : UBL21Marshaller.creditNote ()
+                                                                                           .getAsBytes (aCreditNote);
+    }
+    final InvoiceType aInvoice = aConverter.convertToInvoice (aCII, aErrorList);
+    return aInvoice == null || aErrorList.containsAtLeastOneError () ? null
+                                                                     : UBL21Marshaller.invoice ().getAsBytes (aInvoice);
+  }
+}
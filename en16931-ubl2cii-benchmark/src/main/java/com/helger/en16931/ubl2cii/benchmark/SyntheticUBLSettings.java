@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.benchmark;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+
+/**
+ * The shape of the documents created by {@link SyntheticUBLGenerator}. All
+ * setters return this object for chaining.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public class SyntheticUBLSettings
+{
+  /** The maximum number of distinct VAT rates */
+  public static final int MAX_VAT_RATE_COUNT = 2400;
+
+  private long m_nSeed = 0;
+  private int m_nLineCount = 10;
+  private int m_nVatRateCount = 1;
+  private double m_dAllowanceChargeDensity = 0;
+  private int m_nDocumentAllowanceCount = 0;
+  private int m_nNoteLength = 0;
+  private int m_nAttachmentCount = 0;
+  private int m_nAttachmentSize = 0;
+  private int m_nDocumentReferenceCount = 0;
+  private int m_nPartyIdentificationCount = 1;
+  private int m_nItemPropertyCount = 0;
+
+  public long getSeed ()
+  {
+    return m_nSeed;
+  }
+
+  /**
+   * @param nSeed
+   *        The seed of the random generator. The same settings with the same
+   *        seed always create the same document.
+   * @return this for chaining
+   */
+  @NonNull
+  public SyntheticUBLSettings setSeed (final long nSeed)
+  {
+    m_nSeed = nSeed;
+    return this;
+  }
+
+  public int getLineCount ()
+  {
+    return m_nLineCount;
+  }
+
+  /**
+   * @param nLineCount
+   *        The number of invoice or credit note lines. Must be &gt; 0.
+   * @return this for chaining
+   */
+  @NonNull
+  public SyntheticUBLSettings setLineCount (final int nLineCount)
+  {
+    ValueEnforcer.isGT0 (nLineCount, "LineCount");
+    m_nLineCount = nLineCount;
+    return this;
+  }
+
+  public int getVatRateCount ()
+  {
+    return m_nVatRateCount;
+  }
+
+  /**
+   * @param nVatRateCount
+   *        The number of distinct VAT rates used by the lines. Each rate
+   *        results in a separate tax subtotal. Must be between 1 and
+   *        {@link #MAX_VAT_RATE_COUNT}.
+   * @return this for chaining
+   */
+  @NonNull
+  public SyntheticUBLSettings setVatRateCount (final int nVatRateCount)
+  {
+    ValueEnforcer.isBetweenInclusive (nVatRateCount, "VatRateCount", 1, MAX_VAT_RATE_COUNT);
+    m_nVatRateCount = nVatRateCount;
+    return this;
+  }
+
+  public double getAllowanceChargeDensity ()
+  {
+    return m_dAllowanceChargeDensity;
+  }
+
+  /**
+   * @param dAllowanceChargeDensity
+   *        The share of lines with an allowance or charge. Must be between 0
+   *        and 1.
+   * @return this for chaining
+   */
+  @NonNull
+  public SyntheticUBLSettings setAllowanceChargeDensity (final double dAllowanceChargeDensity)
+  {
+    ValueEnforcer.isBetweenInclusive (dAllowanceChargeDensity, "AllowanceChargeDensity", 0, 1);
+    m_dAllowanceChargeDensity = dAllowanceChargeDensity;
+    return this;
+  }
+
+  public int getDocumentAllowanceCount ()
+  {
+    return m_nDocumentAllowanceCount;
+  }
+
+  /**
+   * @param nDocumentAllowanceCount
+   *        The number of document level allowances. Must be &ge; 0.
+   * @return this for chaining
+   */
+  @NonNull
+  public SyntheticUBLSettings setDocumentAllowanceCount (final int nDocumentAllowanceCount)
+  {
+    ValueEnforcer.isGE0 (nDocumentAllowanceCount, "DocumentAllowanceCount");
+    m_nDocumentAllowanceCount = nDocumentAllowanceCount;
+    return this;
+  }
+
+  public int getNoteLength ()
+  {
+    return m_nNoteLength;
+  }
+
+  /**
+   * @param nNoteLength
+   *        The number of characters of the document note. 0 means no note.
+   *        Must be &ge; 0.
+   * @return this for chaining
+   */
+  @NonNull
+  public SyntheticUBLSettings setNoteLength (final int nNoteLength)
+  {
+    ValueEnforcer.isGE0 (nNoteLength, "NoteLength");
+    m_nNoteLength = nNoteLength;
+    return this;
+  }
+
+  public int getAttachmentCount ()
+  {
+    return m_nAttachmentCount;
+  }
+
+  public int getAttachmentSize ()
+  {
+    return m_nAttachmentSize;
+  }
+
+  /**
+   * @param nAttachmentCount
+   *        The number of embedded binary attachments. Must be &ge; 0.
+   * @param nAttachmentSize
+   *        The size of each attachment in bytes, before Base64 encoding. Must
+   *        be &ge; 0.
+   * @return this for chaining
+   */
+  @NonNull
+  public SyntheticUBLSettings setAttachments (final int nAttachmentCount, final int nAttachmentSize)
+  {
+    ValueEnforcer.isGE0 (nAttachmentCount, "AttachmentCount");
+    ValueEnforcer.isGE0 (nAttachmentSize, "AttachmentSize");
+    m_nAttachmentCount = nAttachmentCount;
+    m_nAttachmentSize = nAttachmentSize;
+    return this;
+  }
+
+  public int getDocumentReferenceCount ()
+  {
+    return m_nDocumentReferenceCount;
+  }
+
+  /**
+   * @param nDocumentReferenceCount
+   *        The number of additional document references without attachment.
+   *        Must be &ge; 0.
+   * @return this for chaining
+   */
+  @NonNull
+  public SyntheticUBLSettings setDocumentReferenceCount (final int nDocumentReferenceCount)
+  {
+    ValueEnforcer.isGE0 (nDocumentReferenceCount, "DocumentReferenceCount");
+    m_nDocumentReferenceCount = nDocumentReferenceCount;
+    return this;
+  }
+
+  public int getPartyIdentificationCount ()
+  {
+    return m_nPartyIdentificationCount;
+  }
+
+  /**
+   * @param nPartyIdentificationCount
+   *        The number of party identifications of the seller and the buyer.
+   *        Must be &ge; 0.
+   * @return this for chaining
+   */
+  @NonNull
+  public SyntheticUBLSettings setPartyIdentificationCount (final int nPartyIdentificationCount)
+  {
+    ValueEnforcer.isGE0 (nPartyIdentificationCount, "PartyIdentificationCount");
+    m_nPartyIdentificationCount = nPartyIdentificationCount;
+    return this;
+  }
+
+  public int getItemPropertyCount ()
+  {
+    return m_nItemPropertyCount;
+  }
+
+  /**
+   * @param nItemPropertyCount
+   *        The number of additional item properties per line. Must be &ge; 0.
+   * @return this for chaining
+   */
+  @NonNull
+  public SyntheticUBLSettings setItemPropertyCount (final int nItemPropertyCount)
+  {
+    ValueEnforcer.isGE0 (nItemPropertyCount, "ItemPropertyCount");
+    m_nItemPropertyCount = nItemPropertyCount;
+    return this;
+  }
+}
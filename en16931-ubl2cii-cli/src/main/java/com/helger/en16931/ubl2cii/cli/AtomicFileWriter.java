@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.annotation.concurrent.ThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.collection.commons.CommonsLinkedHashSet;
+import com.helger.collection.commons.ICommonsOrderedSet;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+
+/**
+ * Writes files so that they appear under their final name only when they are
+ * complete: the content is written to a temporary file in the same directory,
+ * which is then atomically moved into place. Readers polling the directory
+ * never see partial files, and a crash leaves at most a hidden temporary file
+ * behind.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class AtomicFileWriter
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (AtomicFileWriter.class);
+
+  private final EFsyncPolicy m_eFsyncPolicy;
+  // Files written since the last batch sync
+  private final Queue <Path> m_aUnsyncedFiles = new ConcurrentLinkedQueue <> ();
+
+  /**
+   * @param eFsyncPolicy
+   *        The fsync policy to use. May not be <code>null</code>.
+   */
+  public AtomicFileWriter (@NonNull final EFsyncPolicy eFsyncPolicy)
+  {
+    ValueEnforcer.notNull (eFsyncPolicy, "FsyncPolicy");
+    m_eFsyncPolicy = eFsyncPolicy;
+  }
+
+  /**
+   * @return The fsync policy. Never <code>null</code>.
+   */
+  @NonNull
+  public EFsyncPolicy getFsyncPolicy ()
+  {
+    return m_eFsyncPolicy;
+  }
+
+  /**
+   * Create a new temporary file next to the provided target file. The name
+   * starts with a dot and ends with '.tmp', so that it is ignored by the watch
+   * mode.
+   *
+   * @param aTargetFile
+   *        The final file. May not be <code>null</code>.
+   * @return The path of the created, empty temporary file. Never
+   *         <code>null</code>.
+   * @throws IOException
+   *         If the file cannot be created
+   */
+  @NonNull
+  public Path createTempFile (@NonNull final File aTargetFile) throws IOException
+  {
+    ValueEnforcer.notNull (aTargetFile, "TargetFile");
+    final Path aTarget = aTargetFile.toPath ().toAbsolutePath ();
+    while (true)
+    {
+      // Files.createTempFile would restrict the permissions to the owner,
+      // which would be inherited by the final file
+      final Path aTempFile = aTarget.resolveSibling ("." +
+                                                     aTarget.getFileName () +
+                                                     "." +
+                                                     Long.toHexString (ThreadLocalRandom.current ().nextLong ()) +
+                                                     ".tmp");
+      try
+      {
+        return Files.createFile (aTempFile);
+      }
+      catch (final FileAlreadyExistsException ex)
+      {
+        // Try another name
+      }
+    }
+  }
+
+  /**
+   * Force the content of the provided file or directory to disk. Directories
+   * cannot be opened on all platforms, which is silently ignored.
+   */
+  private static void _force (@NonNull final Path aPath, final boolean bDirectory) throws IOException
+  {
+    try (final FileChannel aChannel = FileChannel.open (aPath, StandardOpenOption.READ))
+    {
+      aChannel.force (true);
+    }
+    catch (final IOException ex)
+    {
+      if (!bDirectory)
+        throw ex;
+      LOGGER.debug ("Cannot force directory '" + aPath + "' to disk: " + ex.getMessage ());
+    }
+  }
+
+  /**
+   * Move a completely written temporary file to its final name. Depending on
+   * the fsync policy, the file is forced to disk before.
+   *
+   * @param aTempFile
+   *        The temporary file as created by {@link #createTempFile(File)}. May
+   *        not be <code>null</code>.
+   * @param aTargetFile
+   *        The final file. An existing file is replaced. May not be
+   *        <code>null</code>.
+   * @throws IOException
+   *         If syncing or moving fails. The temporary file is deleted in this
+   *         case.
+   */
+  public void commit (@NonNull final Path aTempFile, @NonNull final File aTargetFile) throws IOException
+  {
+    ValueEnforcer.notNull (aTempFile, "TempFile");
+    ValueEnforcer.notNull (aTargetFile, "TargetFile");
+
+    final Path aTarget = aTargetFile.toPath ().toAbsolutePath ();
+    try
+    {
+      if (m_eFsyncPolicy == EFsyncPolicy.PER_FILE)
+        _force (aTempFile, false);
+
+      try
+      {
+        Files.move (aTempFile, aTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (final AtomicMoveNotSupportedException ex)
+      {
+        Files.move (aTempFile, aTarget, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (final IOException ex)
+    {
+      discard (aTempFile);
+      throw ex;
+    }
+
+    switch (m_eFsyncPolicy)
+    {
+      case PER_FILE:
+        // Make the rename itself durable
+        _force (aTarget.getParent (), true);
+        break;
+      case PER_BATCH:
+        m_aUnsyncedFiles.add (aTarget);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Delete a temporary file that is not needed anymore.
+   *
+   * @param aTempFile
+   *        The temporary file to delete. May not be <code>null</code>.
+   */
+  public void discard (@NonNull final Path aTempFile)
+  {
+    try
+    {
+      Files.deleteIfExists (aTempFile);
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.warn ("Failed to delete temporary file '" + aTempFile + "'", ex);
+    }
+  }
+
+  /**
+   * Atomically write the provided content to the target file.
+   *
+   * @param aTargetFile
+   *        The final file. May not be <code>null</code>.
+   * @param aContent
+   *        The content to write. May not be <code>null</code>.
+   * @param bCompress
+   *        <code>true</code> to GZIP compress the content while writing.
+   * @throws IOException
+   *         In case of an error. No partial file is left behind.
+   */
+  public void write (@NonNull final File aTargetFile, final byte @NonNull [] aContent, final boolean bCompress)
+                                                                                                            throws IOException
+  {
+    ValueEnforcer.notNull (aContent, "Content");
+
+    final Path aTempFile = createTempFile (aTargetFile);
+    try (final FileChannel aChannel = FileChannel.open (aTempFile, StandardOpenOption.WRITE))
+    {
+      if (bCompress)
+      {
+        // Deflate into a large buffer, so that the channel sees few big writes
+        try (final OutputStream aOS = new GZIPOutputStream (Channels.newOutputStream (aChannel),
+                                                            UBLToCIIConversionHelper.GZIP_BUFFER_SIZE))
+        {
+          aOS.write (aContent);
+        }
+      }
+      else
+      {
+        // The whole document is already in memory - write it in one go
+        final ByteBuffer aBuffer = ByteBuffer.wrap (aContent);
+        while (aBuffer.hasRemaining ())
+          aChannel.write (aBuffer);
+      }
+    }
+    catch (final IOException ex)
+    {
+      discard (aTempFile);
+      throw ex;
+    }
+    commit (aTempFile, aTargetFile);
+  }
+
+  /**
+   * With the {@link EFsyncPolicy#PER_BATCH} policy, force all files committed
+   * since the last call and their directories to disk. Does nothing for the
+   * other policies.
+   *
+   * @throws IOException
+   *         If a file cannot be forced to disk
+   */
+  public void syncBatch () throws IOException
+  {
+    if (m_eFsyncPolicy != EFsyncPolicy.PER_BATCH)
+      return;
+
+    final ICommonsOrderedSet <Path> aDirs = new CommonsLinkedHashSet <> ();
+    int nFiles = 0;
+    Path aFile;
+    while ((aFile = m_aUnsyncedFiles.poll ()) != null)
+    {
+      _force (aFile, false);
+      aDirs.add (aFile.getParent ());
+      nFiles++;
+    }
+    for (final Path aDir : aDirs)
+      _force (aDir, true);
+    if (nFiles > 0)
+      LOGGER.info ("Forced " + nFiles + " file(s) in " + aDirs.size () + " directories to disk");
+  }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.concurrent.Immutable;
+import com.helger.base.enforce.ValueEnforcer;
+
+/**
+ * Splits bulk input files, that contain many UBL documents, into the single
+ * documents. The file is memory mapped and every record is handed out as a
+ * read-only slice of the mapping, so the file content is never copied onto the
+ * heap as a whole. A single mapping is limited to 2 GB, so larger files are
+ * mapped in consecutive windows. Each window starts with the record that did
+ * not fit completely into the previous window, so records may straddle window
+ * boundaries, but a single record must not exceed the window size.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class BulkInputSplitter
+{
+  /**
+   * Callback for each record found.
+   *
+   * @author Philip Helger
+   */
+  @FunctionalInterface
+  public interface IRecordHandler
+  {
+    /**
+     * @param nIndex
+     *        The 1-based index of the record within the bulk input.
+     * @param aRecord
+     *        A read-only slice with the bytes of the record. May be retained by
+     *        the handler. Never <code>null</code>.
+     * @throws IOException
+     *         To abort splitting
+     */
+    void onRecord (int nIndex, @NonNull ByteBuffer aRecord) throws IOException;
+  }
+
+  /**
+   * Thrown if the data ends inside a record. This is only an error in the last
+   * window of a file.
+   *
+   * @author Philip Helger
+   */
+  private static final class UnexpectedEndException extends IOException
+  {
+    private static final long serialVersionUID = 1L;
+
+    UnexpectedEndException (@NonNull final String sMessage)
+    {
+      super (sMessage);
+    }
+  }
+
+  /**
+   * The state that is carried from one window to the next.
+   *
+   * @author Philip Helger
+   */
+  private static final class SplitState
+  {
+    private int m_nRecords;
+  }
+
+  /** The maximum size of a single mapping */
+  static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+  private BulkInputSplitter ()
+  {}
+
+  @NonNull
+  private static ByteBuffer _slice (@NonNull final ByteBuffer aData, final int nStart, final int nEnd)
+  {
+    return aData.duplicate ().position (nStart).limit (nEnd).slice ().asReadOnlyBuffer ();
+  }
+
+  private static boolean _isWhitespace (final int b)
+  {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+  }
+
+  private static boolean _isUTF8BOM (@NonNull final ByteBuffer aData, final int nPos)
+  {
+    return nPos + 3 <= aData.limit () &&
+           (aData.get (nPos) & 0xff) == 0xef &&
+           (aData.get (nPos + 1) & 0xff) == 0xbb &&
+           (aData.get (nPos + 2) & 0xff) == 0xbf;
+  }
+
+  private static boolean _startsWith (@NonNull final ByteBuffer aData, final int nPos, @NonNull final String sPrefix)
+  {
+    if (nPos + sPrefix.length () > aData.limit ())
+      return false;
+    for (int i = 0; i < sPrefix.length (); ++i)
+      if (aData.get (nPos + i) != sPrefix.charAt (i))
+        return false;
+    return true;
+  }
+
+  /**
+   * @return The position directly after the first occurrence of the terminator
+   *         at or after nPos.
+   */
+  private static int _skipPast (@NonNull final ByteBuffer aData,
+                                final int nPos,
+                                @NonNull final String sTerminator) throws IOException
+  {
+    final int nLast = aData.limit () - sTerminator.length ();
+    for (int i = nPos; i <= nLast; ++i)
+      if (_startsWith (aData, i, sTerminator))
+        return i + sTerminator.length ();
+    throw new UnexpectedEndException ("Unexpected end of bulk input while looking for '" + sTerminator + "'");
+  }
+
+  /**
+   * Skip a start or end tag, honouring quoted attribute values.
+   *
+   * @return The position directly after the closing '&gt;'.
+   */
+  private static int _skipTag (@NonNull final ByteBuffer aData, final int nPos) throws IOException
+  {
+    final int nLimit = aData.limit ();
+    int nQuote = 0;
+    for (int i = nPos; i < nLimit; ++i)
+    {
+      final int b = aData.get (i);
+      if (nQuote != 0)
+      {
+        if (b == nQuote)
+          nQuote = 0;
+      }
+      else
+        if (b == '"' || b == '\'')
+          nQuote = b;
+        else
+          if (b == '>')
+            return i + 1;
+    }
+    throw new UnexpectedEndException ("Unexpected end of bulk input inside a tag");
+  }
+
+  /**
+   * Find the end of the XML document starting at the provided position.
+   *
+   * @return The position directly after the end of the root element.
+   */
+  private static int _findDocumentEnd (@NonNull final ByteBuffer aData, final int nStart) throws IOException
+  {
+    final int nLimit = aData.limit ();
+    int nDepth = 0;
+    int nPos = nStart;
+    while (nPos < nLimit)
+    {
+      if (aData.get (nPos) != '<')
+      {
+        nPos++;
+        continue;
+      }
+
+      if (_startsWith (aData, nPos, "<!--"))
+        nPos = _skipPast (aData, nPos + 4, "-->");
+      else
+        if (_startsWith (aData, nPos, "<![CDATA["))
+          nPos = _skipPast (aData, nPos + 9, "]]>");
+        else
+          if (_startsWith (aData, nPos, "<?"))
+            nPos = _skipPast (aData, nPos + 2, "?>");
+          else
+            if (_startsWith (aData, nPos, "<!"))
+            {
+              // DOCTYPE - internal subsets are not supported
+              nPos = _skipTag (aData, nPos);
+            }
+            else
+              if (_startsWith (aData, nPos, "</"))
+              {
+                nPos = _skipTag (aData, nPos);
+                nDepth--;
+                if (nDepth == 0)
+                  return nPos;
+                if (nDepth < 0)
+                  throw new IOException ("Unexpected end tag at position " + nPos + " of bulk input");
+              }
+              else
+              {
+                nPos = _skipTag (aData, nPos);
+                final boolean bEmptyElement = aData.get (nPos - 2) == '/';
+                if (!bEmptyElement)
+                  nDepth++;
+                else
+                  if (nDepth == 0)
+                    return nPos;
+              }
+    }
+    throw new UnexpectedEndException ("Unexpected end of bulk input inside an XML document starting at position " +
+                                      nStart);
+  }
+
+  /**
+   * @return The position directly after the last complete record. In the last
+   *         window this is always the limit.
+   */
+  private static int _splitXML (@NonNull final ByteBuffer aData,
+                                final boolean bLastWindow,
+                                @NonNull final SplitState aState,
+                                @NonNull final IRecordHandler aHandler) throws IOException
+  {
+    final int nLimit = aData.limit ();
+    int nPos = 0;
+    while (true)
+    {
+      // Skip whitespace and byte order marks between documents
+      while (nPos < nLimit)
+      {
+        if (_isWhitespace (aData.get (nPos)))
+          nPos++;
+        else
+          if (_isUTF8BOM (aData, nPos))
+            nPos += 3;
+          else
+            break;
+      }
+      if (nPos >= nLimit)
+        return nLimit;
+
+      final int nEnd;
+      try
+      {
+        nEnd = _findDocumentEnd (aData, nPos);
+      }
+      catch (final UnexpectedEndException ex)
+      {
+        if (bLastWindow)
+          throw ex;
+        // Continue with this document in the next window
+        return nPos;
+      }
+      aHandler.onRecord (++aState.m_nRecords, _slice (aData, nPos, nEnd));
+      nPos = nEnd;
+    }
+  }
+
+  private static int _splitLength (@NonNull final ByteBuffer aData,
+                                   final boolean bLastWindow,
+                                   @NonNull final SplitState aState,
+                                   @NonNull final IRecordHandler aHandler) throws IOException
+  {
+    final int nLimit = aData.limit ();
+    int nPos = 0;
+    while (nPos < nLimit)
+    {
+      if (nPos + 4 > nLimit)
+      {
+        if (bLastWindow)
+          throw new IOException ("Unexpected end of bulk input inside a record length");
+        return nPos;
+      }
+      final long nLength = aData.getInt (nPos) & 0xffffffffL;
+      if (nLength > nLimit - nPos - 4)
+      {
+        if (bLastWindow)
+          throw new IOException ("Record " +
+                                 (aState.m_nRecords + 1) +
+                                 " of length " +
+                                 nLength +
+                                 " exceeds the bulk input");
+        return nPos;
+      }
+      final int nEnd = nPos + 4 + (int) nLength;
+      aHandler.onRecord (++aState.m_nRecords, _slice (aData, nPos + 4, nEnd));
+      nPos = nEnd;
+    }
+    return nLimit;
+  }
+
+  private static int _splitNUL (@NonNull final ByteBuffer aData,
+                                final boolean bLastWindow,
+                                @NonNull final SplitState aState,
+                                @NonNull final IRecordHandler aHandler) throws IOException
+  {
+    final int nLimit = aData.limit ();
+    int nStart = 0;
+    for (int i = 0; i < nLimit; ++i)
+      if (aData.get (i) == 0)
+      {
+        aHandler.onRecord (++aState.m_nRecords, _slice (aData, nStart, i));
+        nStart = i + 1;
+      }
+    if (!bLastWindow)
+      return nStart;
+    // The last record does not need to be terminated
+    if (nLimit > nStart)
+      aHandler.onRecord (++aState.m_nRecords, _slice (aData, nStart, nLimit));
+    return nLimit;
+  }
+
+  private static int _split (@NonNull final ByteBuffer aData,
+                             @NonNull final EBulkFormat eFormat,
+                             final boolean bLastWindow,
+                             @NonNull final SplitState aState,
+                             @NonNull final IRecordHandler aHandler) throws IOException
+  {
+    switch (eFormat)
+    {
+      case LENGTH:
+        return _splitLength (aData, bLastWindow, aState, aHandler);
+      case NUL:
+        return _splitNUL (aData, bLastWindow, aState, aHandler);
+      case XML:
+        return _splitXML (aData, bLastWindow, aState, aHandler);
+      default:
+        throw new IllegalStateException ("Unsupported bulk format " + eFormat);
+    }
+  }
+
+  /**
+   * Split the provided data into records.
+   *
+   * @param aData
+   *        The bulk data from position 0 to its limit. May not be
+   *        <code>null</code>.
+   * @param eFormat
+   *        The layout of the data. May not be <code>null</code>.
+   * @param aHandler
+   *        The handler to be invoked for each record. May not be
+   *        <code>null</code>.
+   * @return The number of records found.
+   * @throws IOException
+   *         If the data is malformed or the handler failed. All records found
+   *         before were already passed to the handler.
+   */
+  public static int split (@NonNull final ByteBuffer aData,
+                           @NonNull final EBulkFormat eFormat,
+                           @NonNull final IRecordHandler aHandler) throws IOException
+  {
+    ValueEnforcer.notNull (aData, "Data");
+    ValueEnforcer.notNull (eFormat, "Format");
+    ValueEnforcer.notNull (aHandler, "Handler");
+
+    final SplitState aState = new SplitState ();
+    _split (aData, eFormat, true, aState, aHandler);
+    return aState.m_nRecords;
+  }
+
+  /**
+   * Memory map the provided file and split it into records.
+   *
+   * @param aFile
+   *        The bulk input file. May not be <code>null</code>.
+   * @param eFormat
+   *        The layout of the file. May not be <code>null</code>.
+   * @param aHandler
+   *        The handler to be invoked for each record. May not be
+   *        <code>null</code>.
+   * @return The number of records found.
+   * @throws IOException
+   *         If the file cannot be read, is malformed, contains a record larger
+   *         than 2 GB or the handler failed. All records found before were
+   *         already passed to the handler.
+   */
+  public static int split (@NonNull final File aFile,
+                           @NonNull final EBulkFormat eFormat,
+                           @NonNull final IRecordHandler aHandler) throws IOException
+  {
+    return split (aFile, eFormat, MAX_WINDOW_SIZE, aHandler);
+  }
+
+  static int split (@NonNull final File aFile,
+                    @NonNull final EBulkFormat eFormat,
+                    final int nMaxWindowSize,
+                    @NonNull final IRecordHandler aHandler) throws IOException
+  {
+    ValueEnforcer.notNull (aFile, "File");
+    ValueEnforcer.notNull (eFormat, "Format");
+    ValueEnforcer.isGT0 (nMaxWindowSize, "MaxWindowSize");
+    ValueEnforcer.notNull (aHandler, "Handler");
+
+    final SplitState aState = new SplitState ();
+    // The mappings stay valid after the channel is closed
+    try (final FileChannel aChannel = FileChannel.open (aFile.toPath (), StandardOpenOption.READ))
+    {
+      final long nFileSize = aChannel.size ();
+      long nWindowStart = 0;
+      while (nWindowStart < nFileSize)
+      {
+        final long nRemaining = nFileSize - nWindowStart;
+        final boolean bLastWindow = nRemaining <= nMaxWindowSize;
+        final ByteBuffer aWindow = aChannel.map (FileChannel.MapMode.READ_ONLY,
+                                                 nWindowStart,
+                                                 bLastWindow ? nRemaining : nMaxWindowSize);
+        final int nConsumed = _split (aWindow, eFormat, bLastWindow, aState, aHandler);
+        if (bLastWindow)
+          break;
+        if (nConsumed == 0)
+          throw new IOException ("Record " +
+                                 (aState.m_nRecords + 1) +
+                                 " at position " +
+                                 nWindowStart +
+                                 " of bulk input file '" +
+                                 aFile.getAbsolutePath () +
+                                 "' exceeds the maximum size of " +
+                                 nMaxWindowSize +
+                                 " bytes");
+        nWindowStart += nConsumed;
+      }
+    }
+    return aState.m_nRecords;
+  }
+}
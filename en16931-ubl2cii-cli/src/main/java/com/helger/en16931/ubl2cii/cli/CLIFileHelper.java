@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.concurrent.Immutable;
+import com.helger.base.enforce.ValueEnforcer;
+
+/**
+ * Internal file helper of the CLI.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+final class CLIFileHelper
+{
+  // Avoid looping forever on a broken directory
+  private static final int MAX_UNIQUE_NAME_ATTEMPTS = 10_000;
+
+  private CLIFileHelper ()
+  {}
+
+  /**
+   * Get the name to use for the n-th collision of the provided filename. The
+   * counter is inserted before the first extension, so that
+   * <code>a.xml.gz</code> becomes <code>a-2.xml.gz</code>.
+   *
+   * @param sFilename
+   *        The original filename. May not be <code>null</code>.
+   * @param nIndex
+   *        The index to insert. Must be &gt; 1.
+   * @return The unique filename candidate. Never <code>null</code>.
+   */
+  @NonNull
+  static String getIndexedFilename (@NonNull final String sFilename, final int nIndex)
+  {
+    // A leading dot is not an extension
+    final int nDot = sFilename.indexOf ('.', 1);
+    if (nDot < 0)
+      return sFilename + "-" + nIndex;
+    return sFilename.substring (0, nDot) + "-" + nIndex + sFilename.substring (nDot);
+  }
+
+  /**
+   * Move a file into the provided directory without ever replacing an existing
+   * file. If a file with the same name already exists in the target directory,
+   * a counter is added to the name. The target name is reserved by creating
+   * it exclusively before the move, so that this is race free even if
+   * multiple processes move into the same directory.
+   *
+   * @param aSource
+   *        The file to move. May not be <code>null</code>.
+   * @param aTargetDir
+   *        The existing directory to move the file into. May not be
+   *        <code>null</code>.
+   * @return The path the file was moved to. Never <code>null</code>.
+   * @throws IOException
+   *         If the file could not be moved
+   */
+  @NonNull
+  static Path moveToUniqueName (@NonNull final Path aSource, @NonNull final Path aTargetDir) throws IOException
+  {
+    ValueEnforcer.notNull (aSource, "Source");
+    ValueEnforcer.notNull (aTargetDir, "TargetDir");
+
+    final String sFilename = aSource.getFileName ().toString ();
+    for (int i = 1; i <= MAX_UNIQUE_NAME_ATTEMPTS; ++i)
+    {
+      final Path aTarget = aTargetDir.resolve (i == 1 ? sFilename : getIndexedFilename (sFilename, i));
+      try
+      {
+        Files.createFile (aTarget);
+      }
+      catch (final FileAlreadyExistsException ex)
+      {
+        continue;
+      }
+
+      // Only the placeholder created above is replaced
+      try
+      {
+        try
+        {
+          Files.move (aSource, aTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final AtomicMoveNotSupportedException ex)
+        {
+          Files.move (aSource, aTarget, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return aTarget;
+      }
+      catch (final IOException | RuntimeException ex)
+      {
+        Files.deleteIfExists (aTarget);
+        throw ex;
+      }
+    }
+    throw new FileAlreadyExistsException (aTargetDir.resolve (sFilename).toString (),
+                                          null,
+                                          "No unique name found after " + MAX_UNIQUE_NAME_ATTEMPTS + " attempts");
+  }
+}
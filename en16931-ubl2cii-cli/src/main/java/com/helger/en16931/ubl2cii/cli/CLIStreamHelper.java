@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.concurrent.Immutable;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+
+/**
+ * Internal stream helper of the CLI.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+final class CLIStreamHelper
+{
+  /**
+   * Thrown if a stream contains more bytes than allowed.
+   *
+   * @author Philip Helger
+   */
+  static final class SizeLimitExceededException extends IOException
+  {
+    private static final long serialVersionUID = 1L;
+
+    SizeLimitExceededException (final long nMaxBytes)
+    {
+      super ("The content exceeds the maximum size of " + nMaxBytes + " bytes");
+    }
+  }
+
+  /** The default maximum size of a single archive entry in bytes */
+  static final long DEFAULT_MAX_ENTRY_SIZE = 256L * 1024 * 1024;
+  /** The default maximum size of a single archive entry as CLI option */
+  static final String DEFAULT_MAX_ENTRY_SIZE_SPEC = "256m";
+
+  // Some VMs reserve header words in an array
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  private CLIStreamHelper ()
+  {}
+
+  /**
+   * Read all remaining bytes of a stream, but at most the provided number of
+   * bytes. Unlike {@link InputStream#readAllBytes()}, this protects against
+   * decompression bombs and huge entries, as reading stops as soon as the
+   * limit is exceeded.
+   *
+   * @param aIS
+   *        The stream to read from. It is not closed. May not be
+   *        <code>null</code>.
+   * @param nMaxBytes
+   *        The maximum number of bytes to read. Must be &gt; 0.
+   * @return The bytes read. Never <code>null</code>.
+   * @throws SizeLimitExceededException
+   *         If the stream contains more than nMaxBytes bytes
+   * @throws IOException
+   *         In case of a read error
+   */
+  static byte @NonNull [] readAllBytes (@NonNull final InputStream aIS, final long nMaxBytes) throws IOException
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.isGT0 (nMaxBytes, "MaxBytes");
+
+    final long nLimit = Math.min (nMaxBytes, MAX_ARRAY_SIZE - 1);
+    // Reads in chunks, so the memory grows with the actual content only
+    final byte [] ret = aIS.readNBytes ((int) nLimit + 1);
+    if (ret.length > nLimit)
+      throw new SizeLimitExceededException (nLimit);
+    return ret;
+  }
+
+  /**
+   * GZIP compress a single document in memory.
+   *
+   * @param aBytes
+   *        The bytes to compress. May not be <code>null</code>.
+   * @return The compressed bytes. Never <code>null</code>.
+   * @throws IOException
+   *         In case of a compression error
+   */
+  static byte @NonNull [] compress (final byte @NonNull [] aBytes) throws IOException
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+
+    // XML usually compresses to less than a quarter
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream (aBytes.length / 4);
+    try (final GZIPOutputStream aGZOS = new GZIPOutputStream (aBAOS, UBLToCIIConversionHelper.GZIP_BUFFER_SIZE))
+    {
+      aGZOS.write (aBytes);
+    }
+    return aBAOS.toByteArray ();
+  }
+}
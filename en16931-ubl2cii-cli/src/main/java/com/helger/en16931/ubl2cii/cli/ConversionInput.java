@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.annotation.concurrent.Immutable;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayInputStream;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+import com.helger.io.file.FileHelper;
+import com.helger.io.file.FilenameHelper;
+
+/**
+ * A single UBL document to be converted. It is either backed by a file, by an
+ * in-memory byte array (e.g. from an archive entry or from stdin) or by a
+ * slice of a memory mapped bulk input file. An input that could not be read at
+ * all (e.g. an oversized archive entry) carries an error message instead, so
+ * that it is reported as a failed conversion in the regular order.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class ConversionInput
+{
+  private static final String GZIP_EXTENSION = ".gz";
+  // The smallest possible GZIP member: 10 bytes header and 8 bytes trailer
+  private static final int GZIP_MIN_SIZE = 18;
+
+  private final String m_sDisplayName;
+  private final String m_sBaseName;
+  private final String m_sJournalKey;
+  private final File m_aFile;
+  private final byte [] m_aBytes;
+  private final ByteBuffer m_aBuffer;
+  private final String m_sErrorMessage;
+  // Determined on first use, as it requires I/O for files
+  private volatile long m_nUncompressedSize = -1;
+
+  /**
+   * An input stream over a byte buffer, that does not modify the buffer
+   * itself.
+   */
+  private static final class ByteBufferInputStream extends InputStream
+  {
+    private final ByteBuffer m_aBuf;
+
+    ByteBufferInputStream (@NonNull final ByteBuffer aBuf)
+    {
+      // Independent position and limit per stream
+      m_aBuf = aBuf.duplicate ();
+    }
+
+    @Override
+    public int read ()
+    {
+      return m_aBuf.hasRemaining () ? m_aBuf.get () & 0xff : -1;
+    }
+
+    @Override
+    public int read (final byte [] aDest, final int nOfs, final int nLen)
+    {
+      if (nLen == 0)
+        return 0;
+      if (!m_aBuf.hasRemaining ())
+        return -1;
+      final int nRead = Math.min (nLen, m_aBuf.remaining ());
+      m_aBuf.get (aDest, nOfs, nRead);
+      return nRead;
+    }
+
+    @Override
+    public int available ()
+    {
+      return m_aBuf.remaining ();
+    }
+  }
+
+  private ConversionInput (@NonNull final String sDisplayName,
+                           @NonNull final String sBaseName,
+                           @Nullable final String sJournalKey,
+                           @Nullable final File aFile,
+                           final byte @Nullable [] aBytes,
+                           @Nullable final ByteBuffer aBuffer,
+                           @Nullable final String sErrorMessage)
+  {
+    m_sDisplayName = sDisplayName;
+    m_sBaseName = sBaseName;
+    m_sJournalKey = sJournalKey;
+    m_aFile = aFile;
+    m_aBytes = aBytes;
+    m_aBuffer = aBuffer;
+    m_sErrorMessage = sErrorMessage;
+  }
+
+  /**
+   * @return The name of the input to be used in log messages. Never
+   *         <code>null</code>.
+   */
+  @NonNull
+  public String getDisplayName ()
+  {
+    return m_sDisplayName;
+  }
+
+  /**
+   * @return The name without path and extension, that is used to build the
+   *         name of the output. Never <code>null</code>.
+   */
+  @NonNull
+  public String getBaseName ()
+  {
+    return m_sBaseName;
+  }
+
+  /**
+   * @return The stable key that identifies this input in a
+   *         {@link ConversionJournal} across runs, or <code>null</code> if the
+   *         input cannot be identified again (e.g. a document from stdin).
+   */
+  @Nullable
+  public String getJournalKey ()
+  {
+    return m_sJournalKey;
+  }
+
+  /**
+   * @return The source file or <code>null</code> if this input is not backed
+   *         by a file.
+   */
+  @Nullable
+  public File getFile ()
+  {
+    return m_aFile;
+  }
+
+  /**
+   * @return The reason why this input could not be read or <code>null</code>
+   *         if it is readable.
+   */
+  @Nullable
+  public String getErrorMessage ()
+  {
+    return m_sErrorMessage;
+  }
+
+  /**
+   * @return The size of the input in bytes.
+   */
+  public long getSize ()
+  {
+    if (m_sErrorMessage != null)
+      return 0;
+    if (m_aFile != null)
+      return m_aFile.length ();
+    return m_aBytes != null ? m_aBytes.length : m_aBuffer.remaining ();
+  }
+
+  /**
+   * Read the first 2 and the last 4 bytes, which contain the GZIP magic bytes
+   * and the GZIP ISIZE trailer field.
+   */
+  private byte @Nullable [] _readHeadAndTail (final long nSize)
+  {
+    final byte [] ret = new byte [6];
+    if (m_aFile != null)
+    {
+      try (final RandomAccessFile aRAF = new RandomAccessFile (m_aFile, "r"))
+      {
+        aRAF.readFully (ret, 0, 2);
+        aRAF.seek (nSize - 4);
+        aRAF.readFully (ret, 2, 4);
+      }
+      catch (final IOException ex)
+      {
+        // Reported when the file is converted
+        return null;
+      }
+    }
+    else
+      for (int i = 0; i < 6; ++i)
+      {
+        final long nIndex = i < 2 ? i : nSize - 6 + i;
+        ret[i] = m_aBytes != null ? m_aBytes[(int) nIndex] : m_aBuffer.get (m_aBuffer.position () + (int) nIndex);
+      }
+    return ret;
+  }
+
+  /**
+   * @return The size of the UBL document in bytes. For GZIP compressed input
+   *         this is the uncompressed size as stated in the GZIP trailer, but
+   *         never less than {@link #getSize()}. As the trailer only contains
+   *         the size modulo 2<sup>32</sup> of the last GZIP member, it is an
+   *         estimation for inputs of more than 4 GB or with multiple members.
+   */
+  public long getUncompressedSize ()
+  {
+    long ret = m_nUncompressedSize;
+    if (ret < 0)
+    {
+      ret = getSize ();
+      if (ret >= GZIP_MIN_SIZE)
+      {
+        final byte [] aHeadAndTail = _readHeadAndTail (ret);
+        if (aHeadAndTail != null && UBLToCIIConversionHelper.isGZIPCompressed (aHeadAndTail))
+        {
+          // ISIZE is little endian
+          final long nISize = (aHeadAndTail[2] & 0xffL) |
+                              (aHeadAndTail[3] & 0xffL) << 8 |
+                              (aHeadAndTail[4] & 0xffL) << 16 |
+                              (aHeadAndTail[5] & 0xffL) << 24;
+          ret = Math.max (ret, nISize);
+        }
+      }
+      m_nUncompressedSize = ret;
+    }
+    return ret;
+  }
+
+  /**
+   * @return A new input stream to read the UBL document from or
+   *         <code>null</code> if the underlying file could not be opened or
+   *         the input is not readable.
+   */
+  @Nullable
+  public InputStream openInputStream ()
+  {
+    if (m_sErrorMessage != null)
+      return null;
+    if (m_aFile != null)
+      return FileHelper.getBufferedInputStream (m_aFile);
+    if (m_aBytes != null)
+      return new NonBlockingByteArrayInputStream (m_aBytes);
+    return new ByteBufferInputStream (m_aBuffer);
+  }
+
+  /**
+   * Get the base name of the provided filename, that is used to build the
+   * name of the output. A trailing '.gz' of compressed input is removed
+   * together with the regular extension.
+   *
+   * @param sFilename
+   *        The filename, optionally with a path. May not be <code>null</code>.
+   * @return The base name. Never <code>null</code>.
+   */
+  @NonNull
+  public static String getBaseName (@NonNull final String sFilename)
+  {
+    String sName = FilenameHelper.getWithoutPath (sFilename);
+    if (sName.toLowerCase (Locale.ROOT).endsWith (GZIP_EXTENSION))
+      sName = sName.substring (0, sName.length () - GZIP_EXTENSION.length ());
+    return FilenameHelper.getBaseName (sName);
+  }
+
+  @NonNull
+  public static ConversionInput ofFile (@NonNull final File aFile)
+  {
+    ValueEnforcer.notNull (aFile, "File");
+    return new ConversionInput ("file '" + aFile.getAbsolutePath () + "'",
+                                getBaseName (aFile.getName ()),
+                                aFile.getAbsolutePath (),
+                                aFile,
+                                null,
+                                null,
+                                null);
+  }
+
+  @NonNull
+  public static ConversionInput ofBytes (@NonNull final String sDisplayName,
+                                         @NonNull final String sBaseName,
+                                         final byte @NonNull [] aBytes)
+  {
+    return ofBytes (sDisplayName, sBaseName, null, aBytes);
+  }
+
+  @NonNull
+  public static ConversionInput ofBytes (@NonNull final String sDisplayName,
+                                         @NonNull final String sBaseName,
+                                         @Nullable final String sJournalKey,
+                                         final byte @NonNull [] aBytes)
+  {
+    ValueEnforcer.notNull (sDisplayName, "DisplayName");
+    ValueEnforcer.notNull (sBaseName, "BaseName");
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    return new ConversionInput (sDisplayName, sBaseName, sJournalKey, null, aBytes, null, null);
+  }
+
+  @NonNull
+  public static ConversionInput ofBuffer (@NonNull final String sDisplayName,
+                                          @NonNull final String sBaseName,
+                                          @Nullable final String sJournalKey,
+                                          @NonNull final ByteBuffer aBuffer)
+  {
+    ValueEnforcer.notNull (sDisplayName, "DisplayName");
+    ValueEnforcer.notNull (sBaseName, "BaseName");
+    ValueEnforcer.notNull (aBuffer, "Buffer");
+    return new ConversionInput (sDisplayName, sBaseName, sJournalKey, null, null, aBuffer, null);
+  }
+
+  /**
+   * Create an input that could not be read and is reported as failed.
+   *
+   * @param sDisplayName
+   *        The display name. May not be <code>null</code>.
+   * @param sBaseName
+   *        The base name. May not be <code>null</code>.
+   * @param sJournalKey
+   *        The optional journal key. May be <code>null</code>.
+   * @param sErrorMessage
+   *        The reason why the input could not be read. May not be
+   *        <code>null</code>.
+   * @return The new input. Never <code>null</code>.
+   */
+  @NonNull
+  public static ConversionInput ofError (@NonNull final String sDisplayName,
+                                         @NonNull final String sBaseName,
+                                         @Nullable final String sJournalKey,
+                                         @NonNull final String sErrorMessage)
+  {
+    ValueEnforcer.notNull (sDisplayName, "DisplayName");
+    ValueEnforcer.notNull (sBaseName, "BaseName");
+    ValueEnforcer.notNull (sErrorMessage, "ErrorMessage");
+    return new ConversionInput (sDisplayName, sBaseName, sJournalKey, null, null, null, sErrorMessage);
+  }
+
+  /**
+   * Get the journal key of an entry of a ZIP file.
+   *
+   * @param aZipFile
+   *        The ZIP file. May not be <code>null</code>.
+   * @param sEntryName
+   *        The full name of the entry. May not be <code>null</code>.
+   * @return The journal key. Never <code>null</code>.
+   */
+  @NonNull
+  public static String getZipEntryJournalKey (@NonNull final File aZipFile, @NonNull final String sEntryName)
+  {
+    return aZipFile.getAbsolutePath () + "!/" + sEntryName;
+  }
+
+  /**
+   * Get the journal key of a record of a bulk input file.
+   *
+   * @param aBulkFile
+   *        The bulk input file. May not be <code>null</code>.
+   * @param nIndex
+   *        The 1-based index of the record.
+   * @return The journal key. Never <code>null</code>.
+   */
+  @NonNull
+  public static String getBulkRecordJournalKey (@NonNull final File aBulkFile, final int nIndex)
+  {
+    return aBulkFile.getAbsolutePath () + "#" + nIndex;
+  }
+}
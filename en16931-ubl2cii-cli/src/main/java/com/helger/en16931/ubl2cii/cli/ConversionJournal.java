@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.annotation.concurrent.ThreadSafe;
+import com.helger.annotation.style.ReturnsMutableCopy;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.collection.commons.CommonsHashMap;
+import com.helger.collection.commons.CommonsHashSet;
+import com.helger.collection.commons.ICommonsMap;
+import com.helger.collection.commons.ICommonsSet;
+
+/**
+ * Append-only journal of a batch conversion run. Each processed input is
+ * recorded as a single tab separated line containing the status, the input key
+ * (see {@link ConversionInput#getJournalKey()}), the output path, the SHA-256
+ * checksum of the uncompressed CII document and a timestamp. The journal is
+ * forced to disk periodically, so that after an abnormal termination a
+ * subsequent run can skip all inputs that were already converted successfully
+ * and whose output is still intact.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class ConversionJournal implements AutoCloseable
+{
+  /**
+   * The status of a single journal entry.
+   *
+   * @author Philip Helger
+   */
+  public enum EStatus
+  {
+    SUCCESS ("ok"),
+    FAILURE ("failed");
+
+    private final String m_sID;
+
+    EStatus (@NonNull final String sID)
+    {
+      m_sID = sID;
+    }
+
+    @NonNull
+    public String getID ()
+    {
+      return m_sID;
+    }
+
+    @Nullable
+    public static EStatus getFromIDOrNull (@Nullable final String sID)
+    {
+      for (final EStatus e : values ())
+        if (e.m_sID.equals (sID))
+          return e;
+      return null;
+    }
+  }
+
+  /** The maximum number of milliseconds between two forced writes */
+  public static final long MAX_SYNC_INTERVAL_MS = 1_000;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (ConversionJournal.class);
+  private static final String HEADER = "# en16931-ubl2cii journal v1\n";
+  private static final char SEPARATOR = '\t';
+  private static final int FIELD_COUNT = 5;
+  private static final String GZIP_EXTENSION = ".gz";
+
+  private final File m_aFile;
+  private final FileChannel m_aChannel;
+  private final int m_nSyncInterval;
+  private int m_nUnsyncedEntries = 0;
+  private long m_nLastSyncMillis = System.currentTimeMillis ();
+
+  /**
+   * Open a journal for appending. If the file does not exist, it is created.
+   *
+   * @param aFile
+   *        The journal file. May not be <code>null</code>.
+   * @param nSyncInterval
+   *        The number of entries after which the journal is forced to disk.
+   *        Additionally the journal is forced to disk at least every
+   *        {@link #MAX_SYNC_INTERVAL_MS} milliseconds. Must be &gt; 0.
+   * @throws IOException
+   *         If the file cannot be opened
+   */
+  public ConversionJournal (@NonNull final File aFile, final int nSyncInterval) throws IOException
+  {
+    ValueEnforcer.notNull (aFile, "File");
+    ValueEnforcer.isGT0 (nSyncInterval, "SyncInterval");
+    m_aFile = aFile;
+    m_aChannel = FileChannel.open (aFile.toPath (),
+                                   StandardOpenOption.CREATE,
+                                   StandardOpenOption.WRITE,
+                                   StandardOpenOption.APPEND);
+    m_nSyncInterval = nSyncInterval;
+    if (m_aChannel.size () == 0)
+      _write (HEADER);
+    else
+      if (!_endsWithNewline (aFile))
+      {
+        // Terminate a line that was torn by an abnormal termination
+        _write ("\n");
+      }
+  }
+
+  private static boolean _endsWithNewline (@NonNull final File aFile) throws IOException
+  {
+    try (final RandomAccessFile aRAF = new RandomAccessFile (aFile, "r"))
+    {
+      final long nLength = aRAF.length ();
+      if (nLength == 0)
+        return true;
+      aRAF.seek (nLength - 1);
+      return aRAF.read () == '\n';
+    }
+  }
+
+  @NonNull
+  public File getFile ()
+  {
+    return m_aFile;
+  }
+
+  private void _write (@NonNull final String sLine) throws IOException
+  {
+    final ByteBuffer aBuf = ByteBuffer.wrap (sLine.getBytes (StandardCharsets.UTF_8));
+    while (aBuf.hasRemaining ())
+      m_aChannel.write (aBuf);
+  }
+
+  @NonNull
+  private static String _field (@Nullable final String s)
+  {
+    if (s == null)
+      return "";
+    // Tabs and line breaks would break the line based format
+    return s.replace (SEPARATOR, ' ').replace ('\n', ' ').replace ('\r', ' ');
+  }
+
+  /**
+   * Get the checksum of a CII document as it is recorded in the journal.
+   *
+   * @param aBytes
+   *        The uncompressed CII document. May not be <code>null</code>.
+   * @return The hex encoded SHA-256 checksum. Never <code>null</code>.
+   */
+  @NonNull
+  public static String getChecksum (final byte @NonNull [] aBytes)
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    return HexFormat.of ().formatHex (_createDigest ().digest (aBytes));
+  }
+
+  @NonNull
+  private static MessageDigest _createDigest ()
+  {
+    try
+    {
+      return MessageDigest.getInstance ("SHA-256");
+    }
+    catch (final NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException ("SHA-256 is not supported", ex);
+    }
+  }
+
+  /**
+   * Append a new entry to the journal.
+   *
+   * @param eStatus
+   *        The conversion status. May not be <code>null</code>.
+   * @param sInputKey
+   *        The key of the input that was processed. May not be
+   *        <code>null</code>.
+   * @param sOutput
+   *        The location of the created output (usually the absolute file
+   *        path). May be <code>null</code>.
+   * @param sChecksum
+   *        The hex encoded SHA-256 checksum of the uncompressed CII document as
+   *        created by {@link #getChecksum(byte[])}. May be <code>null</code>.
+   * @throws IOException
+   *         If writing fails
+   */
+  public synchronized void append (@NonNull final EStatus eStatus,
+                                   @NonNull final String sInputKey,
+                                   @Nullable final String sOutput,
+                                   @Nullable final String sChecksum) throws IOException
+  {
+    ValueEnforcer.notNull (eStatus, "Status");
+    ValueEnforcer.notNull (sInputKey, "InputKey");
+
+    _write (eStatus.getID () +
+            SEPARATOR +
+            _field (sInputKey) +
+            SEPARATOR +
+            _field (sOutput) +
+            SEPARATOR +
+            _field (sChecksum) +
+            SEPARATOR +
+            Instant.now ().toString () +
+            '\n');
+
+    m_nUnsyncedEntries++;
+    final long nNow = System.currentTimeMillis ();
+    if (m_nUnsyncedEntries >= m_nSyncInterval || nNow - m_nLastSyncMillis >= MAX_SYNC_INTERVAL_MS)
+      sync ();
+  }
+
+  /**
+   * Force all pending entries to disk.
+   *
+   * @throws IOException
+   *         If syncing fails
+   */
+  public synchronized void sync () throws IOException
+  {
+    if (m_nUnsyncedEntries > 0)
+    {
+      m_aChannel.force (false);
+      m_nUnsyncedEntries = 0;
+    }
+    m_nLastSyncMillis = System.currentTimeMillis ();
+  }
+
+  public synchronized void close () throws IOException
+  {
+    if (m_aChannel.isOpen ())
+    {
+      sync ();
+      m_aChannel.close ();
+    }
+  }
+
+  /**
+   * Check if the output file still has the recorded content. As outputs may
+   * not have been forced to disk before an abnormal termination, they may be
+   * truncated or empty although the journal entry survived.
+   *
+   * @param sOutput
+   *        The recorded output path. May not be <code>null</code>.
+   * @param sChecksum
+   *        The recorded checksum. May not be <code>null</code>.
+   * @return <code>true</code> if the output is a file whose (uncompressed)
+   *         content matches the checksum.
+   */
+  static boolean isOutputIntact (@NonNull final String sOutput, @NonNull final String sChecksum)
+  {
+    final File aOutputFile = new File (sOutput);
+    if (sChecksum.isEmpty () || !aOutputFile.isFile ())
+      return false;
+
+    final boolean bCompressed = sOutput.toLowerCase (Locale.ROOT).endsWith (GZIP_EXTENSION);
+    final MessageDigest aDigest = _createDigest ();
+    try (final InputStream aFileIS = Files.newInputStream (aOutputFile.toPath ());
+         final InputStream aIS = new DigestInputStream (bCompressed ? new GZIPInputStream (aFileIS) : aFileIS, aDigest))
+    {
+      final byte [] aBuffer = new byte [16 * 1024];
+      while (aIS.read (aBuffer) >= 0)
+      {
+        // Just digest
+      }
+    }
+    catch (final IOException ex)
+    {
+      // E.g. a truncated GZIP file
+      return false;
+    }
+    return HexFormat.of ().formatHex (aDigest.digest ()).equalsIgnoreCase (sChecksum);
+  }
+
+  /**
+   * Read an existing journal and determine all inputs whose last recorded
+   * status is {@link EStatus#SUCCESS} and whose output file still exists with
+   * the recorded checksum. Incomplete or malformed lines (e.g. from an
+   * interrupted write) are ignored. Only outputs written as separate files can
+   * be verified, so entries with any other output location are never
+   * considered as completed.
+   *
+   * @param aFile
+   *        The journal file to read. May not be <code>null</code>.
+   * @return A mutable set with the keys of all completed inputs. Never
+   *         <code>null</code> but maybe empty if the journal does not exist.
+   * @throws IOException
+   *         If reading fails
+   */
+  @NonNull
+  @ReturnsMutableCopy
+  public static ICommonsSet <String> readCompletedInputs (@NonNull final File aFile) throws IOException
+  {
+    ValueEnforcer.notNull (aFile, "File");
+
+    // Last status wins
+    final ICommonsMap <String, String []> aLatest = new CommonsHashMap <> ();
+    if (aFile.exists ())
+      try (final BufferedReader aReader = Files.newBufferedReader (aFile.toPath (), StandardCharsets.UTF_8))
+      {
+        String sLine;
+        while ((sLine = aReader.readLine ()) != null)
+        {
+          if (sLine.isEmpty () || sLine.charAt (0) == '#')
+            continue;
+          final String [] aFields = sLine.split (String.valueOf (SEPARATOR), -1);
+          if (aFields.length != FIELD_COUNT || EStatus.getFromIDOrNull (aFields[0]) == null)
+          {
+            LOGGER.warn ("Ignoring malformed journal line '" + sLine + "'");
+            continue;
+          }
+          aLatest.put (aFields[1], aFields);
+        }
+      }
+
+    final ICommonsSet <String> ret = new CommonsHashSet <> ();
+    for (final String [] aFields : aLatest.values ())
+      if (EStatus.getFromIDOrNull (aFields[0]) == EStatus.SUCCESS)
+      {
+        if (isOutputIntact (aFields[2], aFields[3]))
+          ret.add (aFields[1]);
+        else
+          LOGGER.warn ("The output '" + aFields[2] + "' of '" + aFields[1] + "' is missing or damaged - converting again");
+      }
+    return ret;
+  }
+}
@@ -0,0 +1,758 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+import com.helger.annotation.WillNotClose;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.base.state.ESuccess;
+import com.helger.diagnostics.error.IError;
+import com.helger.diagnostics.error.list.ErrorList;
+import com.helger.en16931.ubl2cii.ConversionMetrics;
+import com.helger.en16931.ubl2cii.EConversionPhase;
+import com.helger.en16931.ubl2cii.IConversionMetrics;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Converts a sequence of {@link ConversionInput} objects and writes the results
+ * to an {@link IConversionTarget}. With more than one thread, conversions run
+ * in parallel. If the target is not thread-safe, the results are written in
+ * submission order. Each input is started as soon as a thread is free,
+ * optionally the largest of the inputs already waiting first, and the results
+ * are written by whichever thread finished the oldest pending conversion.
+ * Otherwise each worker thread writes its own result, and a new input is
+ * accepted as soon as any conversion finished, so that a single large document
+ * does not hold back the others. The number of inputs that are converted or
+ * waiting to be written is limited, so that memory consumption stays bounded
+ * even for very large batches.
+ *
+ * @author Philip Helger
+ */
+public final class ConversionPipeline implements AutoCloseable
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (ConversionPipeline.class);
+
+  /** The number of pending inputs per thread that are scheduled together */
+  private static final int WINDOW_SIZE_PER_THREAD = 8;
+
+  /** The result of a conversion that still needs to be written */
+  private static final class Converted
+  {
+    private final ConversionInput m_aInput;
+    private final byte [] m_aCII;
+    private final ConversionStatistics.DocumentMeasurement m_aMeasurement;
+
+    Converted (@NonNull final ConversionInput aInput,
+               final byte @Nullable [] aCII,
+               final ConversionStatistics.@NonNull DocumentMeasurement aMeasurement)
+    {
+      m_aInput = aInput;
+      m_aCII = aCII;
+      m_aMeasurement = aMeasurement;
+    }
+  }
+
+  /** An input for a target that is not thread-safe, kept in submission order */
+  private static final class OrderedEntry
+  {
+    private final ConversionInput m_aInput;
+    private final long m_nSize;
+    private long m_nHeapEstimate;
+    private boolean m_bStarted;
+    private boolean m_bDone;
+    private Converted m_aResult;
+    private IOException m_aError;
+
+    OrderedEntry (@NonNull final ConversionInput aInput)
+    {
+      m_aInput = aInput;
+      m_nSize = aInput.getUncompressedSize ();
+    }
+  }
+
+  private final IConversionTarget m_aTarget;
+  private final ConversionJournal m_aJournal;
+  private final ConversionStatistics m_aStatistics;
+  // The metrics to restore on close, if statistics are collected
+  private final IConversionMetrics m_aPreviousMetrics;
+  private final HeapBudget m_aHeapBudget;
+  private final ExecutorService m_aExecutor;
+  private final int m_nThreads;
+  private final boolean m_bLargestFirst;
+  private final int m_nMaxPending;
+  private final int m_nWindowSize;
+  // All inputs for targets that are not thread-safe that are not yet written,
+  // in submission order. Guarded by itself.
+  private final Deque <OrderedEntry> m_aOrdered = new ArrayDeque <> ();
+  private int m_nOrderedRunning = 0;
+  private boolean m_bOrderedWriting = false;
+  private IOException m_aOrderedError;
+  // Unordered completion for thread-safe targets
+  private final CompletionService <Converted> m_aCompletion;
+  private int m_nOutstanding = 0;
+  // Inputs that did not fit into the heap budget yet
+  private final Deque <ConversionInput> m_aDeferred = new ArrayDeque <> ();
+  // Number of inputs that were admitted while others were deferred
+  private int m_nBypasses = 0;
+  private final AtomicInteger m_aSuccessCount = new AtomicInteger (0);
+  private final AtomicInteger m_aFailureCount = new AtomicInteger (0);
+
+  /**
+   * @param aTarget
+   *        The target to write to. It is not closed by this class. May not be
+   *        <code>null</code>.
+   * @param aJournal
+   *        The optional journal to record the outcome of all inputs with a
+   *        journal key.
+   *        May be <code>null</code>.
+   * @param aStatistics
+   *        The optional statistics to record the timings and sizes of each
+   *        document. May be <code>null</code>.
+   * @param aHeapBudget
+   *        The optional heap budget that limits the estimated memory of all
+   *        concurrent conversions. Only used with more than one thread. May
+   *        be <code>null</code>.
+   * @param nThreads
+   *        The number of conversion threads. With 1 thread, all conversions
+   *        happen in the submitting thread. Must be &gt; 0.
+   */
+  public ConversionPipeline (@NonNull final IConversionTarget aTarget,
+                             @Nullable final ConversionJournal aJournal,
+                             @Nullable final ConversionStatistics aStatistics,
+                             @Nullable final HeapBudget aHeapBudget,
+                             final int nThreads)
+  {
+    this (aTarget, aJournal, aStatistics, aHeapBudget, nThreads, false);
+  }
+
+  /**
+   * @param aTarget
+   *        The target to write to. It is not closed by this class. May not be
+   *        <code>null</code>.
+   * @param aJournal
+   *        The optional journal to record the outcome of all inputs with a
+   *        journal key.
+   *        May be <code>null</code>.
+   * @param aStatistics
+   *        The optional statistics to record the timings and sizes of each
+   *        document. While the pipeline is open, the global
+   *        {@link ConversionMetrics} are wrapped to receive the phases of the
+   *        core conversion. May be <code>null</code>.
+   * @param aHeapBudget
+   *        The optional heap budget that limits the estimated memory of all
+   *        concurrent conversions. Only used with more than one thread. May
+   *        be <code>null</code>.
+   * @param nThreads
+   *        The number of conversion threads. With 1 thread, all conversions
+   *        happen in the submitting thread. Must be &gt; 0.
+   * @param bLargestFirst
+   *        <code>true</code> to start the largest of the waiting inputs first,
+   *        if the target is not thread-safe. More inputs may wait then, so that
+   *        there is something to choose from. The results are still written
+   *        in submission order. Only used with more than one thread.
+   */
+  public ConversionPipeline (@NonNull final IConversionTarget aTarget,
+                             @Nullable final ConversionJournal aJournal,
+                             @Nullable final ConversionStatistics aStatistics,
+                             @Nullable final HeapBudget aHeapBudget,
+                             final int nThreads,
+                             final boolean bLargestFirst)
+  {
+    ValueEnforcer.notNull (aTarget, "Target");
+    ValueEnforcer.isGT0 (nThreads, "Threads");
+    m_aTarget = aTarget;
+    m_aJournal = aJournal;
+    m_aStatistics = aStatistics;
+    m_aHeapBudget = aHeapBudget;
+    m_aExecutor = nThreads > 1 ? Executors.newFixedThreadPool (nThreads) : null;
+    m_aCompletion = m_aExecutor != null ? new ExecutorCompletionService <> (m_aExecutor) : null;
+    m_nThreads = nThreads;
+    m_bLargestFirst = bLargestFirst;
+    // Keep all threads busy while the oldest result is awaited
+    m_nMaxPending = nThreads * 2;
+    m_nWindowSize = bLargestFirst ? nThreads * WINDOW_SIZE_PER_THREAD : m_nMaxPending;
+    if (aStatistics != null)
+    {
+      m_aPreviousMetrics = ConversionMetrics.getInstance ();
+      ConversionMetrics.setInstance (ConversionStatistics.createMetrics (m_aPreviousMetrics));
+    }
+    else
+      m_aPreviousMetrics = null;
+  }
+
+  /**
+   * @return <code>true</code> if the results are written in submission order,
+   *         because the target is not thread-safe.
+   */
+  public boolean isOrdered ()
+  {
+    return !m_aTarget.isThreadSafe ();
+  }
+
+  private static void _log (@NonNull final IError aError)
+  {
+    final String sMsg = "  " + aError.getAsString (Locale.US);
+    if (aError.isError ())
+      LOGGER.error (sMsg);
+    else
+      if (aError.isFailure ())
+        LOGGER.warn (sMsg);
+      else
+        LOGGER.info (sMsg);
+  }
+
+  private static void _logErrors (@NonNull final ErrorList aErrorList)
+  {
+    for (final IError aError : aErrorList)
+      _log (aError);
+  }
+
+  /**
+   * Convert a single UBL document to CII and log all errors.
+   *
+   * @param aIS
+   *        The input stream to read the UBL document from. May not be
+   *        <code>null</code>.
+   * @param sSourceName
+   *        The display name of the source for logging. May not be
+   *        <code>null</code>.
+   * @param aMeasurement
+   *        The measurement to receive the phases reported by the conversion.
+   *        May not be <code>null</code>.
+   * @return <code>null</code> if the conversion failed.
+   */
+  @Nullable
+  private static CrossIndustryInvoiceType _convertToCII (@NonNull @WillNotClose final InputStream aIS,
+                                                         @NonNull final String sSourceName,
+                                                         final ConversionStatistics.@NonNull DocumentMeasurement aMeasurement)
+  {
+    LOGGER.info ("Converting UBL " + sSourceName + " to CII");
+
+    final ErrorList aErrorList = new ErrorList ();
+
+    final CrossIndustryInvoiceType aCII;
+    ConversionStatistics.bind (aMeasurement);
+    try
+    {
+      // Read XML
+      final Document aDoc = UBLToCIIConversionHelper.readXMLDocument (aIS, aErrorList);
+
+      // Perform the main conversion
+      aCII = aDoc == null ? null : UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (aDoc, aErrorList);
+    }
+    finally
+    {
+      ConversionStatistics.bind (null);
+    }
+
+    if (aErrorList.containsAtLeastOneError () || aCII == null)
+    {
+      LOGGER.error ("Failed to convert UBL " + sSourceName + " to CII:");
+      _logErrors (aErrorList);
+      return null;
+    }
+
+    _logErrors (aErrorList);
+    return aCII;
+  }
+
+  /**
+   * Serialize a CII document. The time and the size are reported to the
+   * {@link ConversionMetrics} as {@link EConversionPhase#MARSHAL} phase.
+   *
+   * @param aCII
+   *        The CII document to serialize. May not be <code>null</code>.
+   * @return <code>null</code> if serialization failed.
+   */
+  public static byte @Nullable [] getAsBytes (@NonNull final CrossIndustryInvoiceType aCII)
+  {
+    final boolean bFormattedOutput = true;
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      if (UBLToCIIConversionHelper.writeCIID16B (aCII, aBAOS, bFormattedOutput, new ErrorList (), null).isFailure ())
+        return null;
+      return aBAOS.toByteArray ();
+    }
+  }
+
+  private static byte @Nullable [] _convertToBytes (@NonNull final ConversionInput aInput,
+                                                    final ConversionStatistics.@NonNull DocumentMeasurement aMeasurement) throws IOException
+  {
+    aMeasurement.setBytesIn (aInput.getSize ());
+    if (aInput.getErrorMessage () != null)
+    {
+      LOGGER.error ("Failed to read UBL " + aInput.getDisplayName () + ": " + aInput.getErrorMessage ());
+      return null;
+    }
+
+    final CrossIndustryInvoiceType aCII;
+    try (final InputStream aIS = aInput.openInputStream ())
+    {
+      if (aIS == null)
+      {
+        LOGGER.error ("Failed to open UBL " + aInput.getDisplayName () + " for reading");
+        return null;
+      }
+      aCII = _convertToCII (aIS, aInput.getDisplayName (), aMeasurement);
+    }
+    if (aCII == null)
+      return null;
+
+    final byte [] ret;
+    // The marshal phase is reported via the metrics
+    ConversionStatistics.bind (aMeasurement);
+    try
+    {
+      ret = getAsBytes (aCII);
+    }
+    finally
+    {
+      ConversionStatistics.bind (null);
+    }
+    if (ret == null)
+      LOGGER.error ("Failed to serialize the CII document created from " + aInput.getDisplayName ());
+    return ret;
+  }
+
+  @NonNull
+  private ESuccess _writeAndRecord (@NonNull final ConversionInput aInput,
+                                    final byte @Nullable [] aCII,
+                                    final ConversionStatistics.@NonNull DocumentMeasurement aMeasurement) throws IOException
+  {
+    final long nStartWrite = System.nanoTime ();
+    String sLocation = null;
+    if (aCII != null)
+      sLocation = m_aTarget.write (aInput.getBaseName (), aCII);
+    else
+      m_aTarget.writeFailure (aInput.getBaseName ());
+    aMeasurement.addDuration (EConversionPhase.WRITE, System.nanoTime () - nStartWrite);
+
+    final boolean bSuccess = sLocation != null;
+    (bSuccess ? m_aSuccessCount : m_aFailureCount).incrementAndGet ();
+    if (m_aStatistics != null)
+    {
+      aMeasurement.setBytesOut (aCII == null ? 0 : aCII.length);
+      aMeasurement.setSuccess (bSuccess);
+      m_aStatistics.add (aMeasurement);
+    }
+
+    final String sJournalKey = aInput.getJournalKey ();
+    if (m_aJournal != null && sJournalKey != null)
+    {
+      if (bSuccess)
+        m_aJournal.append (ConversionJournal.EStatus.SUCCESS,
+                           sJournalKey,
+                           sLocation,
+                           ConversionJournal.getChecksum (aCII));
+      else
+        m_aJournal.append (ConversionJournal.EStatus.FAILURE, sJournalKey, null, null);
+    }
+    return ESuccess.valueOf (bSuccess);
+  }
+
+  /**
+   * Convert a single input synchronously in the calling thread and write the
+   * result. This may only be called concurrently if the target is thread-safe.
+   *
+   * @param aInput
+   *        The input to convert. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if the result was written successfully.
+   * @throws IOException
+   *         In case of an unrecoverable I/O error
+   */
+  @NonNull
+  public ESuccess convertAndWrite (@NonNull final ConversionInput aInput) throws IOException
+  {
+    ValueEnforcer.notNull (aInput, "Input");
+    final ConversionStatistics.DocumentMeasurement aMeasurement = new ConversionStatistics.DocumentMeasurement (aInput.getDisplayName ());
+    return _writeAndRecord (aInput, _convertToBytes (aInput, aMeasurement), aMeasurement);
+  }
+
+  @Nullable
+  private static Converted _get (@NonNull final Future <Converted> aFuture) throws IOException
+  {
+    try
+    {
+      return aFuture.get ();
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new InterruptedIOException ("Interrupted while waiting for a conversion");
+    }
+    catch (final ExecutionException ex)
+    {
+      if (ex.getCause () instanceof IOException)
+        throw (IOException) ex.getCause ();
+      throw new IOException ("Conversion failed unexpectedly", ex.getCause ());
+    }
+  }
+
+  /**
+   * Start waiting inputs while threads are free and the heap budget allows it.
+   * Must be called while holding the lock on {@link #m_aOrdered}.
+   */
+  private void _dispatchOrdered ()
+  {
+    while (m_nOrderedRunning < m_nThreads)
+    {
+      // Only inputs that are already waiting are reordered
+      OrderedEntry aNext = null;
+      for (final OrderedEntry aEntry : m_aOrdered)
+        if (!aEntry.m_bStarted)
+        {
+          if (!m_bLargestFirst)
+          {
+            aNext = aEntry;
+            break;
+          }
+          if (aNext == null || aEntry.m_nSize > aNext.m_nSize)
+            aNext = aEntry;
+        }
+      if (aNext == null)
+        return;
+
+      if (m_aHeapBudget != null)
+      {
+        // Always fits if nothing is running; otherwise a finishing
+        // conversion dispatches again
+        final long nEstimate = m_aHeapBudget.getEstimate (aNext.m_nSize);
+        if (!m_aHeapBudget.tryAcquire (nEstimate))
+          return;
+        aNext.m_nHeapEstimate = nEstimate;
+      }
+
+      final OrderedEntry aEntry = aNext;
+      aEntry.m_bStarted = true;
+      m_nOrderedRunning++;
+      m_aExecutor.execute ( () -> _runOrdered (aEntry));
+    }
+  }
+
+  private void _runOrdered (@NonNull final OrderedEntry aEntry)
+  {
+    Converted aResult = null;
+    IOException aError = null;
+    try
+    {
+      final ConversionStatistics.DocumentMeasurement aMeasurement = new ConversionStatistics.DocumentMeasurement (aEntry.m_aInput.getDisplayName ());
+      aResult = new Converted (aEntry.m_aInput, _convertToBytes (aEntry.m_aInput, aMeasurement), aMeasurement);
+    }
+    catch (final IOException ex)
+    {
+      aError = ex;
+    }
+    catch (final RuntimeException ex)
+    {
+      aError = new IOException ("Conversion failed unexpectedly", ex);
+    }
+    finally
+    {
+      // The budget is given back as soon as the conversion finished, so
+      // waiting cannot dead lock on results that are not written yet
+      if (aEntry.m_nHeapEstimate > 0)
+        m_aHeapBudget.release (aEntry.m_nHeapEstimate);
+      synchronized (m_aOrdered)
+      {
+        aEntry.m_aResult = aResult;
+        aEntry.m_aError = aResult == null && aError == null ? new IOException ("Conversion failed unexpectedly")
+                                                            : aError;
+        aEntry.m_bDone = true;
+        m_nOrderedRunning--;
+        _dispatchOrdered ();
+        m_aOrdered.notifyAll ();
+      }
+    }
+    _writeOrdered ();
+  }
+
+  /**
+   * Write all finished results at the head of the queue, in submission order.
+   * Only one thread writes at a time, the others return immediately.
+   */
+  private void _writeOrdered ()
+  {
+    while (true)
+    {
+      final OrderedEntry aHead;
+      synchronized (m_aOrdered)
+      {
+        if (m_bOrderedWriting)
+          return;
+        aHead = m_aOrdered.peekFirst ();
+        if (aHead == null || !aHead.m_bDone)
+          return;
+        m_aOrdered.removeFirst ();
+        m_bOrderedWriting = true;
+      }
+
+      IOException aError = aHead.m_aError;
+      if (aError == null)
+        try
+        {
+          _writeAndRecord (aHead.m_aInput, aHead.m_aResult.m_aCII, aHead.m_aResult.m_aMeasurement);
+        }
+        catch (final IOException | RuntimeException ex)
+        {
+          aError = ex instanceof IOException ? (IOException) ex : new IOException ("Writing failed unexpectedly", ex);
+        }
+
+      synchronized (m_aOrdered)
+      {
+        if (aError != null && m_aOrderedError == null)
+          m_aOrderedError = aError;
+        m_bOrderedWriting = false;
+        m_aOrdered.notifyAll ();
+      }
+    }
+  }
+
+  /**
+   * Wait while more than the provided number of inputs are not yet written and
+   * rethrow the first error of a worker thread. Must be called while holding
+   * the lock on {@link #m_aOrdered}.
+   */
+  private void _awaitOrdered (final int nMaxOutstanding) throws IOException
+  {
+    try
+    {
+      while (m_aOrderedError == null && (m_aOrdered.size () > nMaxOutstanding || m_bOrderedWriting && nMaxOutstanding == 0))
+        m_aOrdered.wait ();
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new InterruptedIOException ("Interrupted while waiting for a conversion");
+    }
+    if (m_aOrderedError != null)
+    {
+      final IOException ex = m_aOrderedError;
+      m_aOrderedError = null;
+      throw ex;
+    }
+  }
+
+  private void _completeAny () throws IOException
+  {
+    final Future <Converted> aFuture;
+    try
+    {
+      aFuture = m_aCompletion.take ();
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new InterruptedIOException ("Interrupted while waiting for a conversion");
+    }
+    m_nOutstanding--;
+    // The result was already written by the worker thread
+    _get (aFuture);
+  }
+
+  private void _executeUnordered (@NonNull final ConversionInput aInput, final long nHeapEstimate) throws IOException
+  {
+    // Convert and write in the worker thread
+    m_aCompletion.submit ( () -> {
+      try
+      {
+        convertAndWrite (aInput);
+      }
+      finally
+      {
+        if (nHeapEstimate > 0)
+          m_aHeapBudget.release (nHeapEstimate);
+      }
+      return null;
+    });
+    m_nOutstanding++;
+
+    // Wait for whichever conversion finishes first
+    while (m_nOutstanding >= m_nMaxPending)
+      _completeAny ();
+  }
+
+  private void _admitDeferredHead (final boolean bWait) throws IOException
+  {
+    final ConversionInput aHead = m_aDeferred.getFirst ();
+    final long nEstimate = m_aHeapBudget.getEstimate (aHead.getUncompressedSize ());
+    if (bWait)
+    {
+      try
+      {
+        m_aHeapBudget.acquire (nEstimate);
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+        throw new InterruptedIOException ("Interrupted while waiting for heap budget");
+      }
+    }
+    else
+      if (!m_aHeapBudget.tryAcquire (nEstimate))
+        return;
+
+    m_aDeferred.removeFirst ();
+    m_nBypasses = 0;
+    _executeUnordered (aHead, nEstimate);
+  }
+
+  private void _submitUnordered (@NonNull final ConversionInput aInput) throws IOException
+  {
+    if (m_aHeapBudget == null)
+    {
+      _executeUnordered (aInput, 0);
+      return;
+    }
+
+    // Admit the waiting inputs in order, as far as the budget allows
+    int nDeferred;
+    do
+    {
+      nDeferred = m_aDeferred.size ();
+      if (nDeferred > 0)
+        _admitDeferredHead (false);
+    } while (m_aDeferred.size () < nDeferred);
+
+    // Small inputs may flow around large waiting ones, but only a limited
+    // number of times, so that the large ones don't starve
+    final long nEstimate = m_aHeapBudget.getEstimate (aInput.getUncompressedSize ());
+    if ((m_aDeferred.isEmpty () || m_nBypasses < m_nMaxPending) && m_aHeapBudget.tryAcquire (nEstimate))
+    {
+      if (!m_aDeferred.isEmpty ())
+        m_nBypasses++;
+      _executeUnordered (aInput, nEstimate);
+    }
+    else
+    {
+      m_aDeferred.addLast (aInput);
+      while (m_aDeferred.size () > m_nMaxPending)
+        _admitDeferredHead (true);
+    }
+  }
+
+  /**
+   * Submit a new input for conversion. This method blocks if too many
+   * conversions are pending or if the heap budget is exhausted.
+   *
+   * @param aInput
+   *        The input to convert. May not be <code>null</code>.
+   * @throws IOException
+   *         In case of an unrecoverable I/O error
+   */
+  public void submit (@NonNull final ConversionInput aInput) throws IOException
+  {
+    ValueEnforcer.notNull (aInput, "Input");
+
+    if (m_aExecutor == null)
+    {
+      convertAndWrite (aInput);
+      return;
+    }
+
+    if (m_aTarget.isThreadSafe ())
+    {
+      _submitUnordered (aInput);
+      return;
+    }
+
+    // Results are written in submission order; the input is started right
+    // away if a thread is free
+    synchronized (m_aOrdered)
+    {
+      m_aOrdered.addLast (new OrderedEntry (aInput));
+      _dispatchOrdered ();
+      _awaitOrdered (m_nWindowSize);
+    }
+  }
+
+  /**
+   * Wait until all submitted inputs were converted and written.
+   *
+   * @throws IOException
+   *         In case of an unrecoverable I/O error
+   */
+  public void flush () throws IOException
+  {
+    while (!m_aDeferred.isEmpty ())
+      _admitDeferredHead (true);
+    while (m_nOutstanding > 0)
+      _completeAny ();
+    synchronized (m_aOrdered)
+    {
+      _awaitOrdered (0);
+    }
+  }
+
+  public int getSuccessCount ()
+  {
+    return m_aSuccessCount.get ();
+  }
+
+  public int getFailureCount ()
+  {
+    return m_aFailureCount.get ();
+  }
+
+  public void close () throws IOException
+  {
+    try
+    {
+      flush ();
+    }
+    finally
+    {
+      if (m_aExecutor != null)
+      {
+        m_aExecutor.shutdownNow ();
+        try
+        {
+          m_aExecutor.awaitTermination (1, TimeUnit.MINUTES);
+        }
+        catch (final InterruptedException ex)
+        {
+          Thread.currentThread ().interrupt ();
+        }
+      }
+      if (m_aStatistics != null)
+        ConversionMetrics.setInstance (m_aPreviousMetrics);
+    }
+  }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.diagnostics.error.IError;
+import com.helger.diagnostics.error.list.ErrorList;
+import com.helger.en16931.ubl2cii.ConversionDeadline;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Sub command that runs a local HTTP server, so that many conversions can be
+ * performed by a single warm JVM. The UBL document is expected as the body of a
+ * <code>POST /convert</code> request and the complete CII document is sent
+ * back as the response with its exact length. <code>GET /health</code> can be used for liveness checks.
+ *
+ * @author Philip Helger
+ */
+@Command (description = "Run a local HTTP server for UBL to CII conversions", name = "serve", mixinStandardHelpOptions = true, separator = " ")
+public class ConversionServerCommand implements Callable <Integer>
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (ConversionServerCommand.class);
+
+  private static final String CONTENT_TYPE_XML = "application/xml";
+  private static final String CONTENT_TYPE_TEXT = "text/plain; charset=UTF-8";
+
+  @Option (names = "--host", paramLabel = "address", defaultValue = "127.0.0.1", description = "The address to bind to (default: '${DEFAULT-VALUE}')")
+  private String m_sHost;
+
+  @Option (names = "--port", paramLabel = "port", defaultValue = "8080", description = "The port to listen on (default: '${DEFAULT-VALUE}')")
+  private int m_nPort;
+
+  @Option (names = "--max-request-size", paramLabel = "bytes", defaultValue = "52428800", description = "The maximum size of a request body in bytes (default: '${DEFAULT-VALUE}')")
+  private long m_nMaxRequestSize;
+
+  @Option (names = "--max-concurrent", paramLabel = "count", description = "The maximum number of concurrent conversions (default: number of processors)")
+  private int m_nMaxConcurrent = Runtime.getRuntime ().availableProcessors ();
+
+  @Option (names = "--formatted-output", paramLabel = "boolean", defaultValue = "true", description = "Create formatted CII output (default: '${DEFAULT-VALUE}')")
+  private boolean m_bFormattedOutput;
+
+  @Option (names = "--timeout", paramLabel = "ms", defaultValue = "0", description = "The maximum duration of a single conversion in milliseconds, including reading the request and writing the response. 0 means no limit (default: '${DEFAULT-VALUE}')")
+  private long m_nTimeoutMillis;
+
+  /**
+   * Thrown if a request body exceeds the configured maximum size.
+   */
+  private static final class RequestTooLargeException extends IOException
+  {
+    RequestTooLargeException (final long nMaxSize)
+    {
+      super ("The request body exceeds the maximum size of " + nMaxSize + " bytes");
+    }
+  }
+
+  /**
+   * An input stream that fails if more than the allowed number of bytes are
+   * read.
+   */
+  private static final class SizeLimitedInputStream extends FilterInputStream
+  {
+    private final long m_nMaxSize;
+    private long m_nRead = 0;
+    private boolean m_bLimitExceeded = false;
+
+    SizeLimitedInputStream (@NonNull final InputStream aIS, final long nMaxSize)
+    {
+      super (aIS);
+      m_nMaxSize = nMaxSize;
+    }
+
+    private void _count (final long nBytes) throws RequestTooLargeException
+    {
+      if (nBytes > 0)
+      {
+        m_nRead += nBytes;
+        if (m_nRead > m_nMaxSize)
+        {
+          m_bLimitExceeded = true;
+          throw new RequestTooLargeException (m_nMaxSize);
+        }
+      }
+    }
+
+    boolean isLimitExceeded ()
+    {
+      return m_bLimitExceeded;
+    }
+
+    @Override
+    public int read () throws IOException
+    {
+      final int ret = super.read ();
+      if (ret >= 0)
+        _count (1);
+      return ret;
+    }
+
+    @Override
+    public int read (final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+    {
+      final int ret = super.read (aBuf, nOfs, nLen);
+      _count (ret);
+      return ret;
+    }
+
+    @Override
+    public long skip (final long n) throws IOException
+    {
+      final long ret = super.skip (n);
+      _count (ret);
+      return ret;
+    }
+  }
+
+  /**
+   * Create the executor for the HTTP server. On Java 21+ virtual threads are
+   * used, on older runtimes a fixed thread pool is used instead.
+   */
+  @NonNull
+  private ExecutorService _createExecutor ()
+  {
+    try
+    {
+      final Object aExecutor = Executors.class.getMethod ("newVirtualThreadPerTaskExecutor").invoke (null);
+      LOGGER.info ("Using virtual threads for request handling");
+      return (ExecutorService) aExecutor;
+    }
+    catch (final ReflectiveOperationException ex)
+    {
+      // Requests beyond the concurrency limit are rejected quickly, so a few
+      // more threads than conversion slots are sufficient
+      final int nThreads = m_nMaxConcurrent * 2;
+      LOGGER.info ("Using a pool of " + nThreads + " platform threads for request handling");
+      return Executors.newFixedThreadPool (nThreads);
+    }
+  }
+
+  private static void _sendText (@NonNull final HttpExchange aExchange,
+                                 final int nStatusCode,
+                                 @NonNull final String sText) throws IOException
+  {
+    final byte [] aBytes = sText.getBytes (StandardCharsets.UTF_8);
+    aExchange.getResponseHeaders ().set ("Content-Type", CONTENT_TYPE_TEXT);
+    aExchange.sendResponseHeaders (nStatusCode, aBytes.length);
+    try (final OutputStream aOS = aExchange.getResponseBody ())
+    {
+      aOS.write (aBytes);
+    }
+  }
+
+  private static void _handleHealth (@NonNull final HttpExchange aExchange) throws IOException
+  {
+    try
+    {
+      if (!"GET".equals (aExchange.getRequestMethod ()))
+      {
+        aExchange.getResponseHeaders ().set ("Allow", "GET");
+        _sendText (aExchange, 405, "Method not allowed\n");
+      }
+      else
+        _sendText (aExchange, 200, "OK\n");
+    }
+    finally
+    {
+      aExchange.close ();
+    }
+  }
+
+  @Nullable
+  private ConversionDeadline _createDeadline ()
+  {
+    return m_nTimeoutMillis > 0 ? ConversionDeadline.timeout (Duration.ofMillis (m_nTimeoutMillis)) : null;
+  }
+
+  private static boolean _isAborted (@NonNull final ErrorList aErrorList)
+  {
+    return aErrorList.containsAny (x -> ConversionDeadline.ERROR_ID_TIMEOUT.equals (x.getErrorID ()) ||
+                                        ConversionDeadline.ERROR_ID_CANCELLED.equals (x.getErrorID ()));
+  }
+
+  private void _convert (@NonNull final HttpExchange aExchange) throws IOException
+  {
+    final ConversionDeadline aDeadline = _createDeadline ();
+    final ErrorList aErrorList = new ErrorList ();
+    final CrossIndustryInvoiceType aCII;
+    try (final SizeLimitedInputStream aIS = new SizeLimitedInputStream (aExchange.getRequestBody (), m_nMaxRequestSize))
+    {
+      aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (aIS, aErrorList, aDeadline);
+      // The XML parser may swallow the exception
+      if (aIS.isLimitExceeded ())
+        throw new RequestTooLargeException (m_nMaxRequestSize);
+    }
+
+    if (_isAborted (aErrorList))
+    {
+      // Retrying the same document would most likely time out again, so this
+      // is not reported as overload
+      LOGGER.warn ("Abandoned conversion after exceeding the timeout of " + m_nTimeoutMillis + " ms");
+      _sendText (aExchange, 504, "Conversion timed out after " + m_nTimeoutMillis + " ms\n");
+      return;
+    }
+
+    if (aErrorList.containsAtLeastOneError () || aCII == null)
+    {
+      final StringBuilder aSB = new StringBuilder ("Failed to convert UBL to CII\n");
+      for (final IError aError : aErrorList)
+        aSB.append (aError.getAsString (Locale.US)).append ('\n');
+      _sendText (aExchange, 400, aSB.toString ());
+      return;
+    }
+
+    // Serialize completely before the status is sent, so that a failure can
+    // still be reported instead of a truncated document
+    final byte [] aResponse;
+    try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+    {
+      if (UBLToCIIConversionHelper.writeCIID16B (aCII, aBAOS, m_bFormattedOutput, aErrorList, aDeadline).isFailure ())
+      {
+        if (aDeadline != null && aDeadline.isAborted ())
+        {
+          LOGGER.warn ("Abandoned writing the CII response after exceeding the timeout of " + m_nTimeoutMillis + " ms");
+          _sendText (aExchange, 504, "Conversion timed out after " + m_nTimeoutMillis + " ms\n");
+        }
+        else
+        {
+          LOGGER.error ("Failed to serialize the CII response");
+          _sendText (aExchange, 500, "Failed to serialize the CII document\n");
+        }
+        return;
+      }
+      aResponse = aBAOS.toByteArray ();
+    }
+
+    aExchange.getResponseHeaders ().set ("Content-Type", CONTENT_TYPE_XML);
+    aExchange.sendResponseHeaders (200, aResponse.length);
+    try (final OutputStream aOS = aExchange.getResponseBody ())
+    {
+      aOS.write (aResponse);
+    }
+  }
+
+  private void _handleConvert (@NonNull final HttpExchange aExchange, @NonNull final Semaphore aSlots) throws IOException
+  {
+    try
+    {
+      if (!"POST".equals (aExchange.getRequestMethod ()))
+      {
+        aExchange.getResponseHeaders ().set ("Allow", "POST");
+        _sendText (aExchange, 405, "Method not allowed\n");
+        return;
+      }
+
+      final String sContentLength = aExchange.getRequestHeaders ().getFirst ("Content-Length");
+      if (sContentLength != null)
+      {
+        final long nContentLength;
+        try
+        {
+          nContentLength = Long.parseLong (sContentLength.trim ());
+        }
+        catch (final NumberFormatException ex)
+        {
+          _sendText (aExchange, 400, "Invalid Content-Length\n");
+          return;
+        }
+        if (nContentLength > m_nMaxRequestSize)
+        {
+          _sendText (aExchange, 413, "The request body exceeds the maximum size of " + m_nMaxRequestSize + " bytes\n");
+          return;
+        }
+      }
+
+      if (!aSlots.tryAcquire ())
+      {
+        aExchange.getResponseHeaders ().set ("Retry-After", "1");
+        _sendText (aExchange, 503, "Too many concurrent conversions\n");
+        return;
+      }
+
+      try
+      {
+        _convert (aExchange);
+      }
+      catch (final RequestTooLargeException ex)
+      {
+        _sendText (aExchange, 413, ex.getMessage () + "\n");
+      }
+      finally
+      {
+        aSlots.release ();
+      }
+    }
+    catch (final IOException | RuntimeException ex)
+    {
+      LOGGER.error ("Error handling conversion request", ex);
+      throw ex;
+    }
+    finally
+    {
+      aExchange.close ();
+    }
+  }
+
+  /**
+   * Create the HTTP server bound to the configured address, without starting
+   * it.
+   *
+   * @param aExecutor
+   *        The executor to handle the requests. May not be <code>null</code>.
+   * @return The created server. Never <code>null</code>.
+   * @throws IOException
+   *         If the address cannot be bound
+   */
+  @NonNull
+  HttpServer createServer (@NonNull final ExecutorService aExecutor) throws IOException
+  {
+    final Semaphore aSlots = new Semaphore (m_nMaxConcurrent);
+    final HttpServer aServer = HttpServer.create (new InetSocketAddress (m_sHost, m_nPort), 0);
+    aServer.setExecutor (aExecutor);
+    aServer.createContext ("/convert", x -> _handleConvert (x, aSlots));
+    aServer.createContext ("/health", ConversionServerCommand::_handleHealth);
+    return aServer;
+  }
+
+  public Integer call () throws Exception
+  {
+    if (m_nMaxConcurrent <= 0)
+      throw new IllegalArgumentException ("The maximum number of concurrent conversions must be > 0");
+    if (m_nMaxRequestSize <= 0)
+      throw new IllegalArgumentException ("The maximum request size must be > 0");
+    if (m_nTimeoutMillis < 0)
+      throw new IllegalArgumentException ("The timeout must be >= 0");
+
+    final ExecutorService aExecutor = _createExecutor ();
+    final HttpServer aServer = createServer (aExecutor);
+
+    final CountDownLatch aStopped = new CountDownLatch (1);
+    Runtime.getRuntime ().addShutdownHook (new Thread ( () -> {
+      LOGGER.info ("Stopping HTTP server");
+      // Give running requests some time to finish
+      aServer.stop (5);
+      aExecutor.shutdown ();
+      aStopped.countDown ();
+    }, "ubl2cii-server-shutdown"));
+
+    aServer.start ();
+    LOGGER.info ("Listening on http://" +
+                 m_sHost +
+                 ":" +
+                 aServer.getAddress ().getPort () +
+                 " - POST UBL documents to /convert (max. " +
+                 m_nMaxConcurrent +
+                 " concurrent conversions, max. " +
+                 m_nMaxRequestSize +
+                 " bytes per request)");
+
+    aStopped.await ();
+    return Integer.valueOf (0);
+  }
+}
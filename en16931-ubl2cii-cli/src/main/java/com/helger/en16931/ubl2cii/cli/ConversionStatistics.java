@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.annotation.concurrent.ThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.en16931.ubl2cii.EConversionDocumentType;
+import com.helger.en16931.ubl2cii.EConversionErrorCategory;
+import com.helger.en16931.ubl2cii.EConversionPhase;
+import com.helger.en16931.ubl2cii.IConversionMetrics;
+import com.helger.json.IJsonObject;
+import com.helger.json.JsonArray;
+import com.helger.json.JsonObject;
+
+/**
+ * Collects per document timings and sizes of a conversion run and creates a
+ * machine readable summary with throughput figures, latency percentiles per
+ * phase and the slowest documents. The phases are the same
+ * {@link EConversionPhase} values that are reported to
+ * {@link IConversionMetrics}: the phases of the core conversion are received
+ * via {@link #createMetrics(IConversionMetrics)} for the measurement bound to
+ * the converting thread.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class ConversionStatistics
+{
+  /**
+   * The measurements of a single document. Filled by a single thread.
+   *
+   * @author Philip Helger
+   */
+  @NotThreadSafe
+  public static final class DocumentMeasurement
+  {
+    private final String m_sName;
+    private final long [] m_aNanos = new long [EConversionPhase.values ().length];
+    private long m_nBytesIn;
+    private long m_nBytesOut;
+    private boolean m_bSuccess;
+
+    public DocumentMeasurement (@NonNull final String sName)
+    {
+      m_sName = sName;
+    }
+
+    public void addDuration (@NonNull final EConversionPhase ePhase, final long nNanos)
+    {
+      // A phase may be reported more than once per document
+      m_aNanos[ePhase.ordinal ()] += nNanos;
+    }
+
+    public long getTotalNanos ()
+    {
+      long ret = 0;
+      for (final long n : m_aNanos)
+        ret += n;
+      return ret;
+    }
+
+    public void setBytesIn (final long nBytesIn)
+    {
+      m_nBytesIn = nBytesIn;
+    }
+
+    public void setBytesOut (final long nBytesOut)
+    {
+      m_nBytesOut = nBytesOut;
+    }
+
+    public void setSuccess (final boolean bSuccess)
+    {
+      m_bSuccess = bSuccess;
+    }
+  }
+
+  /** A growable array of primitive longs */
+  private static final class LongList
+  {
+    private long [] m_aData = new long [1024];
+    private int m_nSize = 0;
+
+    void add (final long n)
+    {
+      if (m_nSize == m_aData.length)
+        m_aData = Arrays.copyOf (m_aData, m_nSize * 2);
+      m_aData[m_nSize++] = n;
+    }
+
+    @NonNull
+    long [] getSortedCopy ()
+    {
+      final long [] ret = Arrays.copyOf (m_aData, m_nSize);
+      Arrays.sort (ret);
+      return ret;
+    }
+  }
+
+  /**
+   * Forwards everything to the previously active metrics and additionally
+   * records the phases in the measurement bound to the reporting thread.
+   *
+   * @author Philip Helger
+   */
+  @ThreadSafe
+  private static final class MeasurementMetrics implements IConversionMetrics
+  {
+    private final IConversionMetrics m_aDelegate;
+    private final boolean m_bDelegate;
+
+    MeasurementMetrics (@NonNull final IConversionMetrics aDelegate)
+    {
+      m_aDelegate = aDelegate;
+      m_bDelegate = aDelegate.isEnabled ();
+    }
+
+    @Override
+    public void onPhase (@NonNull final EConversionPhase ePhase, final long nNanos)
+    {
+      final DocumentMeasurement aMeasurement = CURRENT.get ();
+      if (aMeasurement != null)
+        aMeasurement.addDuration (ePhase, nNanos);
+      if (m_bDelegate)
+        m_aDelegate.onPhase (ePhase, nNanos);
+    }
+
+    @Override
+    public void onDocumentConverted (@NonNull final EConversionDocumentType eType, final int nLineCount)
+    {
+      if (m_bDelegate)
+        m_aDelegate.onDocumentConverted (eType, nLineCount);
+    }
+
+    @Override
+    public void onError (@NonNull final EConversionErrorCategory eCategory)
+    {
+      if (m_bDelegate)
+        m_aDelegate.onError (eCategory);
+    }
+
+    @Override
+    public void onBytesRead (final long nBytes)
+    {
+      if (m_bDelegate)
+        m_aDelegate.onBytesRead (nBytes);
+    }
+
+    @Override
+    public void onBytesWritten (final long nBytes)
+    {
+      if (m_bDelegate)
+        m_aDelegate.onBytesWritten (nBytes);
+    }
+  }
+
+  // The measurement of the document converted by the current thread
+  private static final ThreadLocal <DocumentMeasurement> CURRENT = new ThreadLocal <> ();
+
+  private static final Comparator <DocumentMeasurement> COMPARATOR_TOTAL = Comparator.comparingLong (DocumentMeasurement::getTotalNanos);
+
+  private final int m_nSlowestCount;
+  private final long m_nStartNanos = System.nanoTime ();
+  // Index is the phase ordinal; the last one is the total
+  private final LongList [] m_aPhaseNanos = new LongList [EConversionPhase.values ().length + 1];
+  // Min-heap, so that the fastest of the slowest is removed first
+  private final PriorityQueue <DocumentMeasurement> m_aSlowest = new PriorityQueue <> (COMPARATOR_TOTAL);
+  private int m_nDocuments = 0;
+  private int m_nSuccess = 0;
+  private long m_nBytesIn = 0;
+  private long m_nBytesOut = 0;
+
+  /**
+   * @param nSlowestCount
+   *        The number of slowest documents to be listed in the summary. Must be
+   *        &ge; 0.
+   */
+  public ConversionStatistics (final int nSlowestCount)
+  {
+    ValueEnforcer.isGE0 (nSlowestCount, "SlowestCount");
+    m_nSlowestCount = nSlowestCount;
+    for (int i = 0; i < m_aPhaseNanos.length; ++i)
+      m_aPhaseNanos[i] = new LongList ();
+  }
+
+  /**
+   * Create the metrics that record the phases reported by the core conversion
+   * in the measurement bound via {@link #bind(DocumentMeasurement)}. Install
+   * them with {@link com.helger.en16931.ubl2cii.ConversionMetrics#setInstance(IConversionMetrics)}.
+   *
+   * @param aDelegate
+   *        The previously active metrics, that still receive everything. May
+   *        not be <code>null</code>.
+   * @return The new metrics. Never <code>null</code>.
+   */
+  @NonNull
+  public static IConversionMetrics createMetrics (@NonNull final IConversionMetrics aDelegate)
+  {
+    ValueEnforcer.notNull (aDelegate, "Delegate");
+    return new MeasurementMetrics (aDelegate);
+  }
+
+  /**
+   * Bind a measurement to the current thread, so that it receives the phases
+   * reported by the conversions of this thread.
+   *
+   * @param aMeasurement
+   *        The measurement to bind. May be <code>null</code> to unbind the
+   *        current one.
+   */
+  public static void bind (@Nullable final DocumentMeasurement aMeasurement)
+  {
+    if (aMeasurement != null)
+      CURRENT.set (aMeasurement);
+    else
+      CURRENT.remove ();
+  }
+
+  /**
+   * Add the measurement of a single document.
+   *
+   * @param aMeasurement
+   *        The measurement to add. May not be <code>null</code>.
+   */
+  public synchronized void add (@NonNull final DocumentMeasurement aMeasurement)
+  {
+    ValueEnforcer.notNull (aMeasurement, "Measurement");
+
+    for (final EConversionPhase e : EConversionPhase.values ())
+      m_aPhaseNanos[e.ordinal ()].add (aMeasurement.m_aNanos[e.ordinal ()]);
+    m_aPhaseNanos[m_aPhaseNanos.length - 1].add (aMeasurement.getTotalNanos ());
+    m_nDocuments++;
+    if (aMeasurement.m_bSuccess)
+      m_nSuccess++;
+    m_nBytesIn += aMeasurement.m_nBytesIn;
+    m_nBytesOut += aMeasurement.m_nBytesOut;
+
+    if (m_nSlowestCount > 0)
+    {
+      m_aSlowest.add (aMeasurement);
+      if (m_aSlowest.size () > m_nSlowestCount)
+        m_aSlowest.poll ();
+    }
+  }
+
+  private static double _millis (final long nNanos)
+  {
+    return nNanos / 1_000_000d;
+  }
+
+  private static long _percentile (final long @NonNull [] aSorted, final int nPercentile)
+  {
+    if (aSorted.length == 0)
+      return 0;
+    // Nearest rank method
+    final int nRank = (int) Math.ceil (nPercentile / 100d * aSorted.length);
+    return aSorted[Math.max (nRank, 1) - 1];
+  }
+
+  @NonNull
+  private static IJsonObject _getPhaseAsJson (@NonNull final LongList aList)
+  {
+    final long [] aSorted = aList.getSortedCopy ();
+    long nTotal = 0;
+    for (final long n : aSorted)
+      nTotal += n;
+    return new JsonObject ().add ("totalMillis", _millis (nTotal))
+                            .add ("p50Millis", _millis (_percentile (aSorted, 50)))
+                            .add ("p95Millis", _millis (_percentile (aSorted, 95)))
+                            .add ("p99Millis", _millis (_percentile (aSorted, 99)))
+                            .add ("maxMillis", _millis (aSorted.length == 0 ? 0 : aSorted[aSorted.length - 1]));
+  }
+
+  /**
+   * @return The summary of all measurements added so far as a JSON object.
+   *         Never <code>null</code>.
+   */
+  @NonNull
+  public synchronized IJsonObject getAsJson ()
+  {
+    final double dSeconds = Math.max (System.nanoTime () - m_nStartNanos, 1) / 1_000_000_000d;
+    final double dMB = 1024d * 1024d;
+
+    final IJsonObject ret = new JsonObject ();
+    ret.add ("documents", m_nDocuments);
+    ret.add ("successful", m_nSuccess);
+    ret.add ("failed", m_nDocuments - m_nSuccess);
+    ret.add ("wallTimeMillis", dSeconds * 1000d);
+    ret.add ("documentsPerSecond", m_nDocuments / dSeconds);
+    ret.add ("inputBytes", m_nBytesIn);
+    ret.add ("outputBytes", m_nBytesOut);
+    ret.add ("inputMBPerSecond", m_nBytesIn / dMB / dSeconds);
+    ret.add ("outputMBPerSecond", m_nBytesOut / dMB / dSeconds);
+
+    final IJsonObject aPhases = new JsonObject ();
+    for (final EConversionPhase e : EConversionPhase.values ())
+      aPhases.add (e.getID (), _getPhaseAsJson (m_aPhaseNanos[e.ordinal ()]));
+    aPhases.add ("total", _getPhaseAsJson (m_aPhaseNanos[m_aPhaseNanos.length - 1]));
+    ret.add ("phases", aPhases);
+
+    final ICommonsList <DocumentMeasurement> aSlowest = new CommonsArrayList <> (m_aSlowest);
+    aSlowest.sort (COMPARATOR_TOTAL.reversed ());
+    final JsonArray aSlowestJson = new JsonArray ();
+    for (final DocumentMeasurement aDoc : aSlowest)
+    {
+      final IJsonObject aDocJson = new JsonObject ();
+      aDocJson.add ("name", aDoc.m_sName);
+      aDocJson.add ("success", aDoc.m_bSuccess);
+      aDocJson.add ("totalMillis", _millis (aDoc.getTotalNanos ()));
+      final IJsonObject aDocPhases = new JsonObject ();
+      for (final EConversionPhase e : EConversionPhase.values ())
+        aDocPhases.add (e.getID (), _millis (aDoc.m_aNanos[e.ordinal ()]));
+      aDocJson.add ("phaseMillis", aDocPhases);
+      aDocJson.add ("inputBytes", aDoc.m_nBytesIn);
+      aDocJson.add ("outputBytes", aDoc.m_nBytesOut);
+      aSlowestJson.add (aDocJson);
+    }
+    ret.add ("slowest", aSlowestJson);
+    return ret;
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.annotation.concurrent.ThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.collection.commons.CommonsHashSet;
+import com.helger.collection.commons.ICommonsSet;
+
+/**
+ * Writes each converted document into a separate file in a directory,
+ * optionally GZIP compressed. Files are written atomically, so that concurrent
+ * readers of the directory only ever see complete documents.
+ * <p>
+ * As only the base name of a source is used, different sources (e.g. ZIP
+ * entries from different folders or 'a.xml' next to 'a.xml.gz') may result in
+ * the same filename. Within a batch, each further document with such a name is
+ * written with an index appended (e.g. 'a-cii-2.xml'), so that no document
+ * overwrites another one. Documents of later batches (see
+ * {@link #syncBatch()}) may replace the files of earlier ones, so that a file
+ * dropped again into a watched folder updates its output.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class DirectoryConversionTarget implements IConversionTarget
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (DirectoryConversionTarget.class);
+
+  private final File m_aDirectory;
+  private final String m_sFileSuffix;
+  private final boolean m_bCompress;
+  private final AtomicFileWriter m_aWriter;
+  // Guarded by itself
+  private final ICommonsSet <String> m_aUsedNames = new CommonsHashSet <> ();
+
+  /**
+   * @param aDirectory
+   *        The target directory. May not be <code>null</code>.
+   * @param sFileSuffix
+   *        The suffix to append to the base name of each source document. May
+   *        not be <code>null</code>.
+   * @param bCompress
+   *        <code>true</code> to write GZIP compressed '.xml.gz' files,
+   *        <code>false</code> to write plain '.xml' files.
+   * @param eFsyncPolicy
+   *        When to force the written files to disk. May not be
+   *        <code>null</code>.
+   */
+  public DirectoryConversionTarget (@NonNull final File aDirectory,
+                                    @NonNull final String sFileSuffix,
+                                    final boolean bCompress,
+                                    @NonNull final EFsyncPolicy eFsyncPolicy)
+  {
+    ValueEnforcer.notNull (aDirectory, "Directory");
+    ValueEnforcer.notNull (sFileSuffix, "FileSuffix");
+    m_aDirectory = aDirectory;
+    m_sFileSuffix = sFileSuffix;
+    m_bCompress = bCompress;
+    m_aWriter = new AtomicFileWriter (eFsyncPolicy);
+  }
+
+  public boolean isThreadSafe ()
+  {
+    return true;
+  }
+
+  /**
+   * Get the file the first document of a batch with the provided base name is
+   * written to.
+   *
+   * @param sBaseName
+   *        The base name of the source document. May not be <code>null</code>.
+   * @return The target file. Never <code>null</code>.
+   */
+  @NonNull
+  public File getTargetFile (@NonNull final String sBaseName)
+  {
+    return new File (m_aDirectory, sBaseName + m_sFileSuffix + _getExtension ());
+  }
+
+  @NonNull
+  private String _getExtension ()
+  {
+    return m_bCompress ? ".xml.gz" : ".xml";
+  }
+
+  @NonNull
+  private File _getUniqueTargetFile (@NonNull final String sBaseName)
+  {
+    String sFilename = sBaseName + m_sFileSuffix + _getExtension ();
+    int nIndex = 1;
+    synchronized (m_aUsedNames)
+    {
+      while (!m_aUsedNames.add (sFilename))
+      {
+        // Same base name from different sources
+        nIndex++;
+        sFilename = sBaseName + m_sFileSuffix + "-" + nIndex + _getExtension ();
+      }
+    }
+    if (nIndex > 1)
+      LOGGER.warn ("Another document with base name '" + sBaseName + "' was already written - using '" + sFilename + "'");
+    return new File (m_aDirectory, sFilename);
+  }
+
+  @Nullable
+  public String write (@NonNull final String sBaseName, final byte @NonNull [] aCII)
+  {
+    final File aDestFile = _getUniqueTargetFile (sBaseName);
+    try
+    {
+      m_aWriter.write (aDestFile, aCII, m_bCompress);
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.error ("Failed to write CII file '" + aDestFile.getAbsolutePath () + "'", ex);
+      return null;
+    }
+    LOGGER.info ("Successfully wrote CII file '" + aDestFile.getAbsolutePath () + "'");
+    return aDestFile.getAbsolutePath ();
+  }
+
+  @Override
+  public void syncBatch () throws IOException
+  {
+    m_aWriter.syncBatch ();
+    synchronized (m_aUsedNames)
+    {
+      m_aUsedNames.clear ();
+    }
+  }
+
+  public void close () throws IOException
+  {
+    syncBatch ();
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+/**
+ * The supported layouts of bulk input files that contain many UBL documents.
+ *
+ * @author Philip Helger
+ */
+public enum EBulkFormat
+{
+  /**
+   * Each document is preceded by its length as a 4 byte big endian unsigned
+   * integer - the same as {@link EFraming#LENGTH}.
+   */
+  LENGTH,
+  /**
+   * Documents are separated by a single NUL byte - the same as
+   * {@link EFraming#NUL}.
+   */
+  NUL,
+  /**
+   * XML documents are simply concatenated, each optionally starting with an XML
+   * declaration. Documents are split after the end of each root element. Only
+   * ASCII compatible encodings like UTF-8 are supported.
+   */
+  XML
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+
+/**
+ * The supported ways to put multiple documents into a single byte stream.
+ *
+ * @author Philip Helger
+ */
+public enum EFraming
+{
+  /**
+   * Each record is preceded by its length as a 4 byte big endian unsigned
+   * integer.
+   */
+  LENGTH,
+  /**
+   * Records are separated by a single NUL byte. The last record does not need
+   * to be terminated.
+   */
+  NUL;
+
+  /**
+   * @return <code>true</code> if records may contain arbitrary bytes, e.g.
+   *         GZIP compressed documents. Delimiter based framings require the
+   *         records to not contain the delimiter.
+   */
+  public boolean isBinarySafe ()
+  {
+    return this == LENGTH;
+  }
+
+  private static int _readByteOrEOF (@NonNull final InputStream aIS, final boolean bFirst) throws IOException
+  {
+    final int n = aIS.read ();
+    if (n < 0 && !bFirst)
+      throw new EOFException ("Unexpected end of stream inside a record length");
+    return n;
+  }
+
+  /**
+   * Read the next record from the provided input stream. The stream should be
+   * buffered, as single bytes are read.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @return <code>null</code> if the end of the stream was reached before the
+   *         next record started.
+   * @throws IOException
+   *         In case of a read error or a truncated record
+   */
+  public byte @Nullable [] readRecord (@NonNull final InputStream aIS) throws IOException
+  {
+    switch (this)
+    {
+      case LENGTH:
+      {
+        final int n0 = _readByteOrEOF (aIS, true);
+        if (n0 < 0)
+          return null;
+        final long nLength = ((long) n0 << 24) |
+                             (_readByteOrEOF (aIS, false) << 16) |
+                             (_readByteOrEOF (aIS, false) << 8) |
+                             _readByteOrEOF (aIS, false);
+        if (nLength > Integer.MAX_VALUE - 8)
+          throw new IOException ("The record length " + nLength + " is too large");
+        final byte [] ret = aIS.readNBytes ((int) nLength);
+        if (ret.length != nLength)
+          throw new EOFException ("Unexpected end of stream - expected " + nLength + " bytes but got " + ret.length);
+        return ret;
+      }
+      case NUL:
+      {
+        try (final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ())
+        {
+          int n;
+          while ((n = aIS.read ()) > 0)
+            aBAOS.write (n);
+          if (n < 0 && aBAOS.size () == 0)
+            return null;
+          return aBAOS.toByteArray ();
+        }
+      }
+      default:
+        throw new IllegalStateException ("Unsupported framing " + this);
+    }
+  }
+
+  /**
+   * Write a single record to the provided output stream.
+   *
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>.
+   * @param aRecord
+   *        The record to write. May not be <code>null</code> but may be empty.
+   *        For {@link #NUL} framing it may not contain NUL bytes.
+   * @throws IOException
+   *         In case of a write error or if the record contains the delimiter
+   */
+  public void writeRecord (@NonNull final OutputStream aOS, final byte @NonNull [] aRecord) throws IOException
+  {
+    switch (this)
+    {
+      case LENGTH:
+      {
+        final int nLength = aRecord.length;
+        aOS.write ((nLength >>> 24) & 0xff);
+        aOS.write ((nLength >>> 16) & 0xff);
+        aOS.write ((nLength >>> 8) & 0xff);
+        aOS.write (nLength & 0xff);
+        aOS.write (aRecord);
+        break;
+      }
+      case NUL:
+      {
+        for (final byte b : aRecord)
+          if (b == 0)
+            throw new IOException ("A record with NUL bytes cannot be written with NUL framing");
+        aOS.write (aRecord);
+        aOS.write (0);
+        break;
+      }
+      default:
+        throw new IllegalStateException ("Unsupported framing " + this);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+/**
+ * Defines when written output files are forced to the storage device.
+ *
+ * @author Philip Helger
+ */
+public enum EFsyncPolicy
+{
+  /**
+   * Every file is forced to disk before it is moved to its final name. Safest
+   * and slowest.
+   */
+  PER_FILE,
+  /**
+   * All files of a batch are forced to disk together: after every polling
+   * cycle in watch and spool mode and when the target is closed at the end of
+   * the run.
+   */
+  PER_BATCH,
+  /** Leave it to the operating system when to write the data. */
+  NONE
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.util.Locale;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.concurrent.ThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+
+/**
+ * A budget of heap memory shared by all concurrent conversions. The footprint
+ * of a conversion is estimated from the size of its input, as the UBL DOM, the
+ * UBL object tree, the CII object tree and the serialized CII all need to be
+ * held at the same time. A single input that exceeds the whole budget is
+ * admitted when nothing else is running, so that it is converted at all.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class HeapBudget
+{
+  /** The default number of heap bytes needed per input byte */
+  public static final int DEFAULT_FACTOR = 12;
+
+  private final long m_nBudget;
+  private final int m_nFactor;
+  private long m_nUsed = 0;
+
+  /**
+   * @param nBudget
+   *        The budget in bytes. Must be &gt; 0.
+   * @param nFactor
+   *        The estimated number of heap bytes needed per input byte. Must be
+   *        &gt; 0.
+   */
+  public HeapBudget (final long nBudget, final int nFactor)
+  {
+    ValueEnforcer.isGT0 (nBudget, "Budget");
+    ValueEnforcer.isGT0 (nFactor, "Factor");
+    m_nBudget = nBudget;
+    m_nFactor = nFactor;
+  }
+
+  public long getBudget ()
+  {
+    return m_nBudget;
+  }
+
+  /**
+   * @param nInputSize
+   *        The size of the input in bytes.
+   * @return The estimated heap footprint of converting the input in bytes.
+   */
+  public long getEstimate (final long nInputSize)
+  {
+    try
+    {
+      return Math.multiplyExact (Math.max (nInputSize, 1), m_nFactor);
+    }
+    catch (final ArithmeticException ex)
+    {
+      // Absurd size
+      return Long.MAX_VALUE;
+    }
+  }
+
+  private boolean _fits (final long nEstimate)
+  {
+    return m_nUsed == 0 || nEstimate <= m_nBudget - m_nUsed;
+  }
+
+  /**
+   * Reserve the provided amount if it fits into the remaining budget.
+   *
+   * @param nEstimate
+   *        The amount to reserve.
+   * @return <code>true</code> if the amount was reserved.
+   */
+  public synchronized boolean tryAcquire (final long nEstimate)
+  {
+    if (!_fits (nEstimate))
+      return false;
+    m_nUsed += nEstimate;
+    return true;
+  }
+
+  /**
+   * Reserve the provided amount, waiting until it fits into the remaining
+   * budget.
+   *
+   * @param nEstimate
+   *        The amount to reserve.
+   * @throws InterruptedException
+   *         If the thread was interrupted while waiting
+   */
+  public synchronized void acquire (final long nEstimate) throws InterruptedException
+  {
+    while (!_fits (nEstimate))
+      wait ();
+    m_nUsed += nEstimate;
+  }
+
+  /**
+   * Give back a reserved amount.
+   *
+   * @param nEstimate
+   *        The amount that was reserved before.
+   */
+  public synchronized void release (final long nEstimate)
+  {
+    m_nUsed -= nEstimate;
+    notifyAll ();
+  }
+
+  /**
+   * Parse a budget specification, either as a percentage of the maximum heap
+   * (e.g. "75%") or as an absolute number of bytes with an optional unit k, m or
+   * g (e.g. "2g").
+   *
+   * @param sSpec
+   *        The specification to parse. May not be <code>null</code>.
+   * @param nMaxHeap
+   *        The maximum heap size in bytes, as used for percentages.
+   * @return The budget in bytes or -1 if the specification is invalid.
+   */
+  public static long parseBudget (@NonNull final String sSpec, final long nMaxHeap)
+  {
+    final String s = sSpec.trim ().toLowerCase (Locale.ROOT);
+    try
+    {
+      if (s.endsWith ("%"))
+      {
+        final double dPercent = Double.parseDouble (s.substring (0, s.length () - 1));
+        if (dPercent <= 0 || dPercent > 100)
+          return -1;
+        return (long) (nMaxHeap * dPercent / 100);
+      }
+
+      long nMultiplier = 1;
+      String sNumber = s;
+      if (s.endsWith ("k") || s.endsWith ("m") || s.endsWith ("g"))
+      {
+        nMultiplier = s.endsWith ("k") ? 1024L : s.endsWith ("m") ? 1024L * 1024 : 1024L * 1024 * 1024;
+        sNumber = s.substring (0, s.length () - 1);
+      }
+      final long ret = Math.multiplyExact (Long.parseLong (sNumber.trim ()), nMultiplier);
+      return ret > 0 ? ret : -1;
+    }
+    catch (final NumberFormatException | ArithmeticException ex)
+    {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The destination of converted CII documents.
+ *
+ * @author Philip Helger
+ */
+public interface IConversionTarget extends Closeable
+{
+  /**
+   * @return <code>true</code> if {@link #write(String, byte[])} may be called
+   *         concurrently from multiple threads, <code>false</code> if the
+   *         documents must be written one after the other in a defined order.
+   */
+  boolean isThreadSafe ();
+
+  /**
+   * Write a single converted document.
+   *
+   * @param sBaseName
+   *        The base name of the source document, without path and extension.
+   *        May not be <code>null</code>.
+   * @param aCII
+   *        The serialized CII document. May not be <code>null</code>.
+   * @return The location the document was written to (e.g. the absolute file
+   *         path) or <code>null</code> if writing failed.
+   * @throws IOException
+   *         In case of an unrecoverable I/O error
+   */
+  @Nullable
+  String write (@NonNull String sBaseName, byte @NonNull [] aCII) throws IOException;
+
+  /**
+   * Called instead of {@link #write(String, byte[])} if the conversion of a
+   * document failed. Does nothing by default.
+   *
+   * @param sBaseName
+   *        The base name of the source document, without path and extension.
+   *        May not be <code>null</code>.
+   * @throws IOException
+   *         In case of an unrecoverable I/O error
+   */
+  default void writeFailure (@NonNull final String sBaseName) throws IOException
+  {}
+
+  /**
+   * Force all documents written since the last call to disk, as far as the
+   * fsync policy of the target requires it. Long running modes call this after
+   * each batch, as {@link #close()} happens only at the very end. Does nothing
+   * by default.
+   *
+   * @throws IOException
+   *         If the documents cannot be forced to disk
+   */
+  default void syncBatch () throws IOException
+  {}
+
+  /**
+   * Called once after all documents were written successfully, before
+   * {@link #close()}. Targets that publish their result only when closed, like
+   * archives, discard it if this was not called, so that an aborted run does
+   * not leave a partial result that looks complete. Does nothing by default.
+   *
+   * @throws IOException
+   *         In case of an unrecoverable I/O error
+   */
+  default void complete () throws IOException
+  {}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.base.state.ESuccess;
+
+/**
+ * Callback interface to convert a single UBL source file.
+ *
+ * @author Philip Helger
+ */
+@FunctionalInterface
+public interface IFileConverter
+{
+  /**
+   * Convert the provided UBL file to CII.
+   *
+   * @param aSrcFile
+   *        The source file to convert. May not be <code>null</code>.
+   * @return {@link ESuccess#SUCCESS} if the conversion and writing of the
+   *         result worked, {@link ESuccess#FAILURE} otherwise.
+   * @throws IOException
+   *         In case of an I/O error
+   */
+  @NonNull
+  ESuccess convert (@NonNull File aSrcFile) throws IOException;
+
+  /**
+   * Force the results of all conversions finished so far to disk, as far as
+   * the fsync policy requires it. Called once per polling cycle before the
+   * converted source files are moved away. Does nothing by default.
+   *
+   * @throws IOException
+   *         If the results cannot be forced to disk
+   */
+  default void syncBatch () throws IOException
+  {}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.io.nonblocking.NonBlockingBufferedOutputStream;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+
+/**
+ * Appends all converted documents to a single packed container file followed
+ * by a compact offset index. This avoids the file system metadata operations of
+ * creating one file per document. See {@link PackedContainerReader} for the
+ * layout and for reading the entries back. The container is only moved to its
+ * final name when it is closed after {@link #complete()}; otherwise it is
+ * discarded.
+ * <p>
+ * The document ID in the index is the 1-based sequence number of the document
+ * within the container and not the ID of the invoice. The target only receives
+ * the serialized CII bytes, and parsing them again just to extract the invoice
+ * ID would cost more than the container saves. Together with the input name it
+ * identifies each document uniquely, and the invoice ID is part of the
+ * document itself.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public class PackedContainerConversionTarget implements IConversionTarget
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (PackedContainerConversionTarget.class);
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private final File m_aFile;
+  private final boolean m_bCompress;
+  private final AtomicFileWriter m_aWriter;
+  private final Path m_aTempFile;
+  private final DataOutputStream m_aDOS;
+  private final ICommonsList <PackedContainerReader.Entry> m_aEntries = new CommonsArrayList <> ();
+  // DataOutputStream.size () overflows at 2 GB
+  private long m_nPosition;
+  private boolean m_bComplete = false;
+
+  /**
+   * @param aFile
+   *        The container file to create. May not be <code>null</code>.
+   * @param bCompress
+   *        <code>true</code> to GZIP compress each document individually.
+   * @param eFsyncPolicy
+   *        When to force the container to disk. May not be <code>null</code>.
+   * @throws IOException
+   *         If the file cannot be created
+   */
+  public PackedContainerConversionTarget (@NonNull final File aFile,
+                                          final boolean bCompress,
+                                          @NonNull final EFsyncPolicy eFsyncPolicy) throws IOException
+  {
+    ValueEnforcer.notNull (aFile, "File");
+    m_aFile = aFile;
+    m_bCompress = bCompress;
+    m_aWriter = new AtomicFileWriter (eFsyncPolicy);
+    m_aTempFile = m_aWriter.createTempFile (aFile);
+    m_aDOS = new DataOutputStream (new NonBlockingBufferedOutputStream (Channels.newOutputStream (FileChannel.open (m_aTempFile,
+                                                                                                                   StandardOpenOption.WRITE)),
+                                                                        BUFFER_SIZE));
+    final byte [] aHeader = PackedContainerReader.HEADER_MAGIC.getBytes (StandardCharsets.US_ASCII);
+    m_aDOS.write (aHeader);
+    m_nPosition = aHeader.length;
+  }
+
+  public boolean isThreadSafe ()
+  {
+    return false;
+  }
+
+  @NonNull
+  public String write (@NonNull final String sBaseName, final byte @NonNull [] aCII) throws IOException
+  {
+    final byte [] aData = m_bCompress ? CLIStreamHelper.compress (aCII) : aCII;
+    final int nDocumentID = m_aEntries.size () + 1;
+    m_aDOS.write (aData);
+    m_aEntries.add (new PackedContainerReader.Entry (nDocumentID, sBaseName, m_nPosition, aData.length));
+    m_nPosition += aData.length;
+    LOGGER.debug ("Appended CII document " + nDocumentID + " for '" + sBaseName + "' to packed container");
+    return m_aFile.getAbsolutePath () + "#" + nDocumentID;
+  }
+
+  @Override
+  public void complete ()
+  {
+    m_bComplete = true;
+  }
+
+  public void close () throws IOException
+  {
+    if (!m_bComplete)
+    {
+      // Don't publish a partial container that looks complete
+      try
+      {
+        m_aDOS.close ();
+      }
+      catch (final IOException ex)
+      {
+        // Discarded anyway
+      }
+      m_aWriter.discard (m_aTempFile);
+      LOGGER.warn ("Discarded the incomplete packed container '" +
+                   m_aFile.getAbsolutePath () +
+                   "' with " +
+                   m_aEntries.size () +
+                   " entries");
+      return;
+    }
+
+    try
+    {
+      // Index
+      final long nIndexOffset = m_nPosition;
+      for (final PackedContainerReader.Entry aEntry : m_aEntries)
+      {
+        m_aDOS.writeInt (aEntry.getDocumentID ());
+        m_aDOS.writeUTF (aEntry.getInputName ());
+        m_aDOS.writeLong (aEntry.getOffset ());
+        m_aDOS.writeInt (aEntry.getLength ());
+      }
+
+      // Trailer
+      m_aDOS.writeLong (nIndexOffset);
+      m_aDOS.writeInt (m_aEntries.size ());
+      m_aDOS.write (PackedContainerReader.TRAILER_MAGIC.getBytes (StandardCharsets.US_ASCII));
+      m_aDOS.close ();
+    }
+    catch (final IOException ex)
+    {
+      m_aDOS.close ();
+      m_aWriter.discard (m_aTempFile);
+      throw ex;
+    }
+    m_aWriter.commit (m_aTempFile, m_aFile);
+    m_aWriter.syncBatch ();
+    LOGGER.info ("Wrote " + m_aEntries.size () + " CII document(s) to packed container '" + m_aFile.getAbsolutePath () + "'");
+  }
+}
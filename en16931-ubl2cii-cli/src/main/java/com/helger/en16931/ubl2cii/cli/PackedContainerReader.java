@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.concurrent.Immutable;
+import com.helger.annotation.concurrent.ThreadSafe;
+import com.helger.annotation.style.ReturnsMutableCopy;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayInputStream;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+
+/**
+ * Reads packed container files as created by
+ * {@link PackedContainerConversionTarget}. The layout of a container is:
+ * <ol>
+ * <li>The 8 byte header {@value #HEADER_MAGIC}</li>
+ * <li>All documents, back to back</li>
+ * <li>The index: for each document the document ID (int), the input name
+ * (modified UTF-8 as of {@link java.io.DataOutput#writeUTF(String)}), the
+ * offset (long) and the length (int)</li>
+ * <li>The 20 byte trailer: the offset of the index (long), the number of
+ * entries (int) and the 8 byte {@value #TRAILER_MAGIC}</li>
+ * </ol>
+ * All numbers are big endian. Documents may be GZIP compressed individually.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class PackedContainerReader implements Closeable
+{
+  /** The file extension of packed containers */
+  public static final String FILE_EXTENSION = ".ciipack";
+
+  static final String HEADER_MAGIC = "CIIPACK1";
+  static final String TRAILER_MAGIC = "CIIPIDX1";
+  static final int TRAILER_SIZE = 8 + 4 + 8;
+
+  /**
+   * A single index entry.
+   *
+   * @author Philip Helger
+   */
+  @Immutable
+  public static final class Entry
+  {
+    private final int m_nDocumentID;
+    private final String m_sInputName;
+    private final long m_nOffset;
+    private final int m_nLength;
+
+    Entry (final int nDocumentID, @NonNull final String sInputName, final long nOffset, final int nLength)
+    {
+      m_nDocumentID = nDocumentID;
+      m_sInputName = sInputName;
+      m_nOffset = nOffset;
+      m_nLength = nLength;
+    }
+
+    /**
+     * @return The 1-based sequence number of the document within the
+     *         container. This is not the invoice ID.
+     */
+    public int getDocumentID ()
+    {
+      return m_nDocumentID;
+    }
+
+    /**
+     * @return The base name of the input the document was created from. Not
+     *         necessarily unique. Never <code>null</code>.
+     */
+    @NonNull
+    public String getInputName ()
+    {
+      return m_sInputName;
+    }
+
+    /**
+     * @return The absolute position of the document in the container.
+     */
+    public long getOffset ()
+    {
+      return m_nOffset;
+    }
+
+    /**
+     * @return The number of stored bytes of the document.
+     */
+    public int getLength ()
+    {
+      return m_nLength;
+    }
+  }
+
+  private final File m_aFile;
+  private final FileChannel m_aChannel;
+  private final ICommonsList <Entry> m_aEntries;
+
+  /**
+   * Open a packed container and read its index.
+   *
+   * @param aFile
+   *        The container file. May not be <code>null</code>.
+   * @throws IOException
+   *         If the file cannot be read or is not a valid container
+   */
+  public PackedContainerReader (@NonNull final File aFile) throws IOException
+  {
+    ValueEnforcer.notNull (aFile, "File");
+    m_aFile = aFile;
+    m_aChannel = FileChannel.open (aFile.toPath (), StandardOpenOption.READ);
+    try
+    {
+      m_aEntries = _readIndex ();
+    }
+    catch (final IOException ex)
+    {
+      m_aChannel.close ();
+      throw ex;
+    }
+  }
+
+  private void _readFully (@NonNull final ByteBuffer aBuffer, final long nPosition) throws IOException
+  {
+    long nPos = nPosition;
+    while (aBuffer.hasRemaining ())
+    {
+      final int nRead = m_aChannel.read (aBuffer, nPos);
+      if (nRead < 0)
+        throw new IOException ("Unexpected end of packed container '" + m_aFile.getAbsolutePath () + "'");
+      nPos += nRead;
+    }
+    aBuffer.flip ();
+  }
+
+  @NonNull
+  private IOException _invalid (@NonNull final String sReason)
+  {
+    return new IOException ("The file '" + m_aFile.getAbsolutePath () + "' is not a valid packed container: " + sReason);
+  }
+
+  private static boolean _hasMagic (@NonNull final ByteBuffer aBuffer, @NonNull final String sMagic)
+  {
+    final byte [] aMagic = new byte [sMagic.length ()];
+    aBuffer.get (aMagic);
+    return Arrays.equals (aMagic, sMagic.getBytes (StandardCharsets.US_ASCII));
+  }
+
+  @NonNull
+  private ICommonsList <Entry> _readIndex () throws IOException
+  {
+    final long nFileSize = m_aChannel.size ();
+    if (nFileSize < HEADER_MAGIC.length () + TRAILER_SIZE)
+      throw _invalid ("too small");
+
+    final ByteBuffer aHeader = ByteBuffer.allocate (HEADER_MAGIC.length ());
+    _readFully (aHeader, 0);
+    if (!_hasMagic (aHeader, HEADER_MAGIC))
+      throw _invalid ("header missing");
+
+    final ByteBuffer aTrailer = ByteBuffer.allocate (TRAILER_SIZE);
+    _readFully (aTrailer, nFileSize - TRAILER_SIZE);
+    final long nIndexOffset = aTrailer.getLong ();
+    final int nEntryCount = aTrailer.getInt ();
+    if (!_hasMagic (aTrailer, TRAILER_MAGIC))
+      throw _invalid ("trailer missing - the container was not closed properly");
+
+    final long nIndexSize = nFileSize - TRAILER_SIZE - nIndexOffset;
+    if (nIndexOffset < HEADER_MAGIC.length () || nIndexSize < 0 || nIndexSize > Integer.MAX_VALUE || nEntryCount < 0)
+      throw _invalid ("corrupt trailer");
+
+    final ByteBuffer aIndex = ByteBuffer.allocate ((int) nIndexSize);
+    _readFully (aIndex, nIndexOffset);
+
+    final ICommonsList <Entry> ret = new CommonsArrayList <> (nEntryCount);
+    try (final DataInputStream aDIS = new DataInputStream (new NonBlockingByteArrayInputStream (aIndex.array ())))
+    {
+      for (int i = 0; i < nEntryCount; ++i)
+      {
+        final int nDocumentID = aDIS.readInt ();
+        final String sInputName = aDIS.readUTF ();
+        final long nOffset = aDIS.readLong ();
+        final int nLength = aDIS.readInt ();
+        if (nOffset < HEADER_MAGIC.length () || nLength < 0 || nOffset + nLength > nIndexOffset)
+          throw _invalid ("entry " + nDocumentID + " points outside of the data area");
+        ret.add (new Entry (nDocumentID, sInputName, nOffset, nLength));
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @return All entries of the container in the order they were written.
+   *         Never <code>null</code>.
+   */
+  @NonNull
+  @ReturnsMutableCopy
+  public ICommonsList <Entry> getAllEntries ()
+  {
+    return m_aEntries.getClone ();
+  }
+
+  /**
+   * @return The number of documents in the container.
+   */
+  public int getEntryCount ()
+  {
+    return m_aEntries.size ();
+  }
+
+  /**
+   * Read the bytes of a document as stored.
+   *
+   * @param aEntry
+   *        The entry to read. May not be <code>null</code>.
+   * @return The stored bytes, which may be GZIP compressed. Never
+   *         <code>null</code>.
+   * @throws IOException
+   *         In case of a read error
+   */
+  public byte @NonNull [] readRawEntry (@NonNull final Entry aEntry) throws IOException
+  {
+    ValueEnforcer.notNull (aEntry, "Entry");
+    final ByteBuffer aBuffer = ByteBuffer.allocate (aEntry.getLength ());
+    _readFully (aBuffer, aEntry.getOffset ());
+    return aBuffer.array ();
+  }
+
+  /**
+   * Read a document and decompress it if it is stored GZIP compressed. The
+   * uncompressed size is limited to {@link CLIStreamHelper#DEFAULT_MAX_ENTRY_SIZE}
+   * bytes.
+   *
+   * @param aEntry
+   *        The entry to read. May not be <code>null</code>.
+   * @return The CII XML bytes. Never <code>null</code>.
+   * @throws IOException
+   *         In case of a read or decompression error or if the document is too
+   *         large
+   */
+  public byte @NonNull [] readEntry (@NonNull final Entry aEntry) throws IOException
+  {
+    return readEntry (aEntry, CLIStreamHelper.DEFAULT_MAX_ENTRY_SIZE);
+  }
+
+  /**
+   * Read a document and decompress it if it is stored GZIP compressed.
+   *
+   * @param aEntry
+   *        The entry to read. May not be <code>null</code>.
+   * @param nMaxSize
+   *        The maximum uncompressed size of the document in bytes. Must be
+   *        &gt; 0.
+   * @return The CII XML bytes. Never <code>null</code>.
+   * @throws IOException
+   *         In case of a read or decompression error or if the document is
+   *         larger than nMaxSize
+   */
+  public byte @NonNull [] readEntry (@NonNull final Entry aEntry, final long nMaxSize) throws IOException
+  {
+    ValueEnforcer.isGT0 (nMaxSize, "MaxSize");
+    ValueEnforcer.notNull (aEntry, "Entry");
+    // GZIP never shrinks below the stored size to a relevant degree
+    if (aEntry.getLength () > nMaxSize)
+      throw _tooLarge (aEntry, nMaxSize);
+
+    final byte [] aRaw = readRawEntry (aEntry);
+    if (!UBLToCIIConversionHelper.isGZIPCompressed (aRaw))
+      return aRaw;
+    try (final InputStream aIS = UBLToCIIConversionHelper.getUncompressedInputStream (new NonBlockingByteArrayInputStream (aRaw)))
+    {
+      return CLIStreamHelper.readAllBytes (aIS, nMaxSize);
+    }
+    catch (final CLIStreamHelper.SizeLimitExceededException ex)
+    {
+      throw _tooLarge (aEntry, nMaxSize);
+    }
+  }
+
+  @NonNull
+  private IOException _tooLarge (@NonNull final Entry aEntry, final long nMaxSize)
+  {
+    return new IOException ("Document " +
+                            aEntry.getDocumentID () +
+                            " of packed container '" +
+                            m_aFile.getAbsolutePath () +
+                            "' exceeds the maximum size of " +
+                            nMaxSize +
+                            " bytes");
+  }
+
+  public void close () throws IOException
+  {
+    m_aChannel.close ();
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.concurrent.Immutable;
+import com.helger.base.enforce.ValueEnforcer;
+
+import picocli.CommandLine.ITypeConverter;
+import picocli.CommandLine.TypeConversionException;
+
+/**
+ * Selects a deterministic subset of the inputs, so that multiple independent
+ * processes can share a batch without coordination. Each input is assigned to
+ * exactly one of the n shards, based on a stable hash of its path relative to
+ * the current working directory. Processes started with the same inputs from
+ * the same directory with shards 1/n to n/n therefore convert each input
+ * exactly once.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class ShardSpec
+{
+  /**
+   * Picocli converter for the syntax <code>i/n</code>.
+   *
+   * @author Philip Helger
+   */
+  public static final class Converter implements ITypeConverter <ShardSpec>
+  {
+    public ShardSpec convert (final String sValue)
+    {
+      final int nSlash = sValue.indexOf ('/');
+      if (nSlash > 0)
+        try
+        {
+          final int nIndex = Integer.parseInt (sValue.substring (0, nSlash).trim ());
+          final int nCount = Integer.parseInt (sValue.substring (nSlash + 1).trim ());
+          if (nCount > 0 && nIndex >= 1 && nIndex <= nCount)
+            return new ShardSpec (nIndex, nCount);
+        }
+        catch (final NumberFormatException ex)
+        {
+          // fall through
+        }
+      throw new TypeConversionException ("Invalid shard '" + sValue + "' - expected 'i/n' with 1 <= i <= n");
+    }
+  }
+
+  private final int m_nIndex;
+  private final int m_nCount;
+
+  /**
+   * @param nIndex
+   *        The 1-based index of this shard. Must be between 1 and nCount.
+   * @param nCount
+   *        The total number of shards. Must be &gt; 0.
+   */
+  public ShardSpec (final int nIndex, final int nCount)
+  {
+    ValueEnforcer.isGT0 (nCount, "Count");
+    ValueEnforcer.isBetweenInclusive (nIndex, "Index", 1, nCount);
+    m_nIndex = nIndex;
+    m_nCount = nCount;
+  }
+
+  public int getIndex ()
+  {
+    return m_nIndex;
+  }
+
+  public int getCount ()
+  {
+    return m_nCount;
+  }
+
+  /**
+   * Get the shard key of a file: its path relative to the current working
+   * directory with '/' as separator. Files on a different root use their
+   * absolute path.
+   *
+   * @param aFile
+   *        The file to get the key of. May not be <code>null</code>.
+   * @return The key. Never <code>null</code>.
+   */
+  @NonNull
+  public static String getShardKey (@NonNull final File aFile)
+  {
+    final Path aPath = aFile.toPath ().toAbsolutePath ().normalize ();
+    Path aKey;
+    try
+    {
+      aKey = Paths.get ("").toAbsolutePath ().relativize (aPath);
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      aKey = aPath;
+    }
+    return aKey.toString ().replace (File.separatorChar, '/');
+  }
+
+  /**
+   * Get the 1-based shard a key belongs to. The first 8 bytes of the SHA-256
+   * of the UTF-8 encoded key are used, which is identical on all platforms and
+   * JVMs.
+   *
+   * @param sKey
+   *        The key. May not be <code>null</code>.
+   * @param nCount
+   *        The total number of shards. Must be &gt; 0.
+   * @return The shard index between 1 and nCount.
+   */
+  public static int getShardOf (@NonNull final String sKey, final int nCount)
+  {
+    final byte [] aDigest;
+    try
+    {
+      aDigest = MessageDigest.getInstance ("SHA-256").digest (sKey.getBytes (StandardCharsets.UTF_8));
+    }
+    catch (final NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException ("SHA-256 is not supported", ex);
+    }
+    long nHash = 0;
+    for (int i = 0; i < 8; ++i)
+      nHash = (nHash << 8) | (aDigest[i] & 0xff);
+    return (int) Long.remainderUnsigned (nHash, nCount) + 1;
+  }
+
+  /**
+   * @param aFile
+   *        The file to check. May not be <code>null</code>.
+   * @return <code>true</code> if the file belongs to this shard.
+   */
+  public boolean contains (@NonNull final File aFile)
+  {
+    return getShardOf (getShardKey (aFile), m_nCount) == m_nIndex;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return m_nIndex + "/" + m_nCount;
+  }
+}
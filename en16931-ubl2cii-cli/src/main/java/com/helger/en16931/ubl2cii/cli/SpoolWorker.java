@@ -0,0 +1,512 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.state.ESuccess;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+
+/**
+ * One of several workers, possibly on different hosts, that consume the same
+ * spool directory on a shared file system. A file is claimed by atomically
+ * renaming it into the worker's own directory <code>.claims/&lt;worker
+ * ID&gt;</code> below the spool directory - only one worker can win that
+ * rename. After conversion, the file is moved to the "done" or "failed"
+ * directory. This happens once per polling cycle for all files converted in
+ * the meantime, after their results were forced to disk via
+ * {@link IFileConverter#syncBatch()}. An existing file in these directories is
+ * never replaced - a counter is added to the name instead.
+ * <p>
+ * Every worker regularly touches its heartbeat file
+ * <code>.claims/&lt;worker ID&gt;.alive</code>. If the heartbeat of a worker is
+ * older than the claim timeout, any other worker moves the claimed files of
+ * the dead worker back into the spool directory, so that they are converted
+ * again. The timeout must therefore be much larger than the clock skew between
+ * the hosts and than the poll interval.
+ *
+ * @author Philip Helger
+ */
+public final class SpoolWorker
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (SpoolWorker.class);
+
+  private static final String CLAIMS_DIR = ".claims";
+  private static final String HEARTBEAT_SUFFIX = ".alive";
+
+  private static final class PendingMove
+  {
+    private final Path m_aFile;
+    private final Path m_aTargetDir;
+
+    PendingMove (@NonNull final Path aFile, @NonNull final Path aTargetDir)
+    {
+      m_aFile = aFile;
+      m_aTargetDir = aTargetDir;
+    }
+  }
+
+  private final Path m_aSpoolDir;
+  private final Path m_aDoneDir;
+  private final Path m_aFailedDir;
+  private final String m_sWorkerID;
+  private final Path m_aClaimsRoot;
+  private final Path m_aClaimDir;
+  private final Path m_aHeartbeatFile;
+  private final int m_nThreads;
+  private final long m_nStableMillis;
+  private final long m_nPollMillis;
+  private final long m_nClaimTimeoutMillis;
+  private final IFileConverter m_aConverter;
+
+  // One permit per idle conversion thread - only claim what can be processed
+  private final Semaphore m_aIdleThreads;
+  // Converted files waiting for the batch sync
+  private final Queue <PendingMove> m_aPendingMoves = new ConcurrentLinkedQueue <> ();
+  private final CountDownLatch m_aStopRequested = new CountDownLatch (1);
+  private final CountDownLatch m_aStopped = new CountDownLatch (1);
+
+  public SpoolWorker (@NonNull final File aSpoolDir,
+                      @NonNull final File aDoneDir,
+                      @NonNull final File aFailedDir,
+                      @NonNull final String sWorkerID,
+                      final int nThreads,
+                      final long nStableMillis,
+                      final long nPollMillis,
+                      final long nClaimTimeoutMillis,
+                      @NonNull final IFileConverter aConverter)
+  {
+    ValueEnforcer.notNull (aSpoolDir, "SpoolDir");
+    ValueEnforcer.notNull (aDoneDir, "DoneDir");
+    ValueEnforcer.notNull (aFailedDir, "FailedDir");
+    ValueEnforcer.notEmpty (sWorkerID, "WorkerID");
+    ValueEnforcer.isTrue (sWorkerID.indexOf ('/') < 0 && sWorkerID.indexOf ('\\') < 0 && !sWorkerID.startsWith ("."),
+                          "WorkerID must be a valid filename");
+    ValueEnforcer.isGT0 (nThreads, "Threads");
+    ValueEnforcer.isGE0 (nStableMillis, "StableMillis");
+    ValueEnforcer.isGT0 (nPollMillis, "PollMillis");
+    ValueEnforcer.isGT0 (nClaimTimeoutMillis, "ClaimTimeoutMillis");
+    ValueEnforcer.notNull (aConverter, "Converter");
+    m_aSpoolDir = aSpoolDir.toPath ().toAbsolutePath ().normalize ();
+    m_aDoneDir = aDoneDir.toPath ().toAbsolutePath ().normalize ();
+    m_aFailedDir = aFailedDir.toPath ().toAbsolutePath ().normalize ();
+    m_sWorkerID = sWorkerID;
+    m_aClaimsRoot = m_aSpoolDir.resolve (CLAIMS_DIR);
+    m_aClaimDir = m_aClaimsRoot.resolve (sWorkerID);
+    m_aHeartbeatFile = m_aClaimsRoot.resolve (sWorkerID + HEARTBEAT_SUFFIX);
+    m_nThreads = nThreads;
+    m_nStableMillis = nStableMillis;
+    m_nPollMillis = nPollMillis;
+    m_nClaimTimeoutMillis = nClaimTimeoutMillis;
+    m_aConverter = aConverter;
+    m_aIdleThreads = new Semaphore (nThreads);
+  }
+
+  private static boolean _isIgnoredFilename (@NonNull final String sFilename)
+  {
+    return sFilename.startsWith (".") || sFilename.endsWith (".tmp") || sFilename.endsWith (".part");
+  }
+
+  /**
+   * Atomically rename a file without replacing an existing target. An atomic
+   * move may silently replace the target (e.g. on POSIX), so the target is
+   * checked explicitly before. This is race free for the claim directory, as
+   * only its owner adds files to it. For the spool directory it relies on the
+   * producers creating files under an ignored temporary name first.
+   *
+   * @throws FileAlreadyExistsException
+   *         If the target exists
+   */
+  private static void _moveNoReplace (@NonNull final Path aSource, @NonNull final Path aTarget) throws IOException
+  {
+    if (Files.exists (aTarget, LinkOption.NOFOLLOW_LINKS))
+      throw new FileAlreadyExistsException (aTarget.toString ());
+    try
+    {
+      Files.move (aSource, aTarget, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (final AtomicMoveNotSupportedException ex)
+    {
+      // Claiming is only safe with atomic renames, so this is a setup error
+      throw new IOException ("The file system of '" + aSource + "' does not support atomic renames", ex);
+    }
+  }
+
+  private void _touchHeartbeat () throws IOException
+  {
+    final FileTime aNow = FileTime.fromMillis (System.currentTimeMillis ());
+    try
+    {
+      Files.setLastModifiedTime (m_aHeartbeatFile, aNow);
+    }
+    catch (final NoSuchFileException ex)
+    {
+      Files.createFile (m_aHeartbeatFile);
+    }
+  }
+
+  /**
+   * Move all files claimed by the worker with the provided claim directory back
+   * into the spool directory. A file for which a file with the same name was
+   * added to the spool directory in the meantime stays claimed, so that neither
+   * of them is overwritten.
+   *
+   * @return The files that stay claimed. Never <code>null</code>.
+   */
+  @NonNull
+  private ICommonsList <Path> _releaseClaims (@NonNull final Path aClaimDir)
+  {
+    final ICommonsList <Path> ret = new CommonsArrayList <> ();
+    int nReleased = 0;
+    try (final DirectoryStream <Path> aDS = Files.newDirectoryStream (aClaimDir))
+    {
+      for (final Path aFile : aDS)
+        try
+        {
+          _moveNoReplace (aFile, m_aSpoolDir.resolve (aFile.getFileName ()));
+          nReleased++;
+        }
+        catch (final NoSuchFileException ex)
+        {
+          // Another worker was faster
+        }
+        catch (final FileAlreadyExistsException ex)
+        {
+          LOGGER.warn ("Cannot release '" + aFile + "' because a file with the same name is in the spool directory");
+          ret.add (aFile);
+        }
+    }
+    catch (final NoSuchFileException ex)
+    {
+      // Already cleaned up by another worker
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.error ("Failed to release the claims in '" + aClaimDir + "'", ex);
+    }
+    if (nReleased > 0)
+      LOGGER.info ("Released " + nReleased + " claimed file(s) from '" + aClaimDir + "'");
+    return ret;
+  }
+
+  private void _releaseStaleClaims () throws IOException
+  {
+    final long nNow = System.currentTimeMillis ();
+    try (final DirectoryStream <Path> aDS = Files.newDirectoryStream (m_aClaimsRoot, Files::isDirectory))
+    {
+      for (final Path aOtherClaimDir : aDS)
+      {
+        if (aOtherClaimDir.equals (m_aClaimDir))
+          continue;
+
+        final Path aHeartbeat = m_aClaimsRoot.resolve (aOtherClaimDir.getFileName () + HEARTBEAT_SUFFIX);
+        long nLastBeat;
+        try
+        {
+          nLastBeat = Files.getLastModifiedTime (aHeartbeat).toMillis ();
+        }
+        catch (final NoSuchFileException ex)
+        {
+          // Fall back to the directory itself
+          nLastBeat = Files.getLastModifiedTime (aOtherClaimDir).toMillis ();
+        }
+        if (nNow - nLastBeat > m_nClaimTimeoutMillis)
+        {
+          LOGGER.warn ("Worker '" + aOtherClaimDir.getFileName () + "' seems to be dead - releasing its claims");
+          _releaseClaims (aOtherClaimDir);
+          try
+          {
+            Files.deleteIfExists (aOtherClaimDir);
+            Files.deleteIfExists (aHeartbeat);
+          }
+          catch (final IOException ex)
+          {
+            // Not empty or removed concurrently - try again next time
+          }
+        }
+      }
+    }
+  }
+
+  private void _process (@NonNull final Path aClaimedFile)
+  {
+    try
+    {
+      ESuccess eSuccess;
+      try
+      {
+        eSuccess = m_aConverter.convert (aClaimedFile.toFile ());
+      }
+      catch (final IOException | RuntimeException ex)
+      {
+        LOGGER.error ("Error converting UBL file '" + aClaimedFile + "'", ex);
+        eSuccess = ESuccess.FAILURE;
+      }
+      m_aPendingMoves.add (new PendingMove (aClaimedFile, eSuccess.isSuccess () ? m_aDoneDir : m_aFailedDir));
+    }
+    finally
+    {
+      m_aIdleThreads.release ();
+    }
+  }
+
+  /**
+   * Force the results of all conversions finished so far to disk and only then
+   * move their claimed source files away, so that a crash never loses a result
+   * whose source was already moved. Until then, the files stay claimed.
+   */
+  private void _completeBatch ()
+  {
+    // Only the moves taken here are covered by the following sync
+    final ICommonsList <PendingMove> aMoves = new CommonsArrayList <> ();
+    PendingMove aMove;
+    while ((aMove = m_aPendingMoves.poll ()) != null)
+      aMoves.add (aMove);
+    if (aMoves.isEmpty ())
+      return;
+
+    try
+    {
+      m_aConverter.syncBatch ();
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.error ("Failed to force the results of " + aMoves.size () + " conversion(s) to disk - retrying", ex);
+      m_aPendingMoves.addAll (aMoves);
+      return;
+    }
+
+    for (final PendingMove aPendingMove : aMoves)
+    {
+      try
+      {
+        // Other workers move into the same directories
+        final Path aTarget = CLIFileHelper.moveToUniqueName (aPendingMove.m_aFile, aPendingMove.m_aTargetDir);
+        if (!aTarget.getFileName ().equals (aPendingMove.m_aFile.getFileName ()))
+          LOGGER.warn ("Moved '" + aPendingMove.m_aFile + "' to '" + aTarget + "', as the name was already used");
+      }
+      catch (final IOException ex)
+      {
+        LOGGER.error ("Failed to move '" + aPendingMove.m_aFile + "' to '" + aPendingMove.m_aTargetDir + "'", ex);
+      }
+    }
+  }
+
+  /**
+   * Claim and submit as many files as there are idle threads.
+   *
+   * @return The number of claimed files.
+   */
+  private int _claimFiles (@NonNull final ExecutorService aExecutor) throws IOException, InterruptedException
+  {
+    final long nNow = System.currentTimeMillis ();
+    final ICommonsList <Path> aCandidates = new CommonsArrayList <> ();
+    try (final DirectoryStream <Path> aDS = Files.newDirectoryStream (m_aSpoolDir))
+    {
+      for (final Path aFile : aDS)
+        if (!_isIgnoredFilename (aFile.getFileName ().toString ()) && Files.isRegularFile (aFile))
+          aCandidates.add (aFile);
+    }
+
+    int nClaimed = 0;
+    for (final Path aFile : aCandidates)
+    {
+      if (m_aStopRequested.getCount () == 0)
+        break;
+      // Don't pick up files that are still being written
+      try
+      {
+        if (nNow - Files.getLastModifiedTime (aFile).toMillis () < m_nStableMillis)
+          continue;
+      }
+      catch (final NoSuchFileException ex)
+      {
+        continue;
+      }
+
+      // Wait for an idle thread, but keep the heartbeat alive
+      if (!m_aIdleThreads.tryAcquire (m_nPollMillis, TimeUnit.MILLISECONDS))
+        break;
+
+      final Path aClaimedFile = m_aClaimDir.resolve (aFile.getFileName ());
+      try
+      {
+        _moveNoReplace (aFile, aClaimedFile);
+      }
+      catch (final NoSuchFileException ex)
+      {
+        // Claimed by another worker in the meantime
+        m_aIdleThreads.release ();
+        continue;
+      }
+      catch (final FileAlreadyExistsException ex)
+      {
+        // A file with the same name is still claimed by this worker - claim
+        // this one after the other one was moved away
+        m_aIdleThreads.release ();
+        continue;
+      }
+      LOGGER.debug ("Claimed '" + aFile + "'");
+      nClaimed++;
+      aExecutor.execute ( () -> _process (aClaimedFile));
+    }
+    return nClaimed;
+  }
+
+  /**
+   * Request the processing loop to stop. Conversions that are already running
+   * are completed.
+   */
+  public void stop ()
+  {
+    m_aStopRequested.countDown ();
+  }
+
+  /**
+   * Request the processing loop to stop and wait until all running conversions
+   * are finished. This is meant to be called from a shutdown hook.
+   *
+   * @param nTimeoutMillis
+   *        The maximum number of milliseconds to wait.
+   */
+  public void stopAndWait (final long nTimeoutMillis)
+  {
+    stop ();
+    try
+    {
+      if (!m_aStopped.await (nTimeoutMillis, TimeUnit.MILLISECONDS))
+        LOGGER.warn ("Spool worker did not stop in time");
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+    }
+  }
+
+  /**
+   * Run the worker loop until {@link #stop()} is called or the thread is
+   * interrupted. This method blocks.
+   *
+   * @throws IOException
+   *         If the directories cannot be created
+   */
+  public void run () throws IOException
+  {
+    Files.createDirectories (m_aDoneDir);
+    Files.createDirectories (m_aFailedDir);
+    Files.createDirectories (m_aClaimDir);
+    _touchHeartbeat ();
+
+    // Leftovers of a previous run with the same worker ID
+    final ICommonsList <Path> aLeftovers = _releaseClaims (m_aClaimDir);
+
+    final ExecutorService aExecutor = Executors.newFixedThreadPool (m_nThreads);
+    LOGGER.info ("Worker '" +
+                 m_sWorkerID +
+                 "' consuming spool directory '" +
+                 m_aSpoolDir +
+                 "' with " +
+                 m_nThreads +
+                 " thread(s); results are moved to '" +
+                 m_aDoneDir +
+                 "' and '" +
+                 m_aFailedDir +
+                 "'");
+    try
+    {
+      // Leftovers that cannot be released are still claimed - otherwise they
+      // would block the file with the same name forever
+      for (final Path aLeftover : aLeftovers)
+      {
+        m_aIdleThreads.acquire ();
+        aExecutor.execute ( () -> _process (aLeftover));
+      }
+
+      while (m_aStopRequested.getCount () > 0)
+      {
+        try
+        {
+          _touchHeartbeat ();
+          _releaseStaleClaims ();
+          if (_claimFiles (aExecutor) == 0)
+            m_aStopRequested.await (m_nPollMillis, TimeUnit.MILLISECONDS);
+          _completeBatch ();
+        }
+        catch (final IOException ex)
+        {
+          // E.g. a temporary network file system outage
+          LOGGER.error ("Error processing spool directory '" + m_aSpoolDir + "'", ex);
+          m_aStopRequested.await (m_nPollMillis, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+    }
+    finally
+    {
+      aExecutor.shutdown ();
+      try
+      {
+        if (!aExecutor.awaitTermination (1, TimeUnit.MINUTES))
+          LOGGER.warn ("Not all running conversions finished in time");
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+      }
+      _completeBatch ();
+      // Nothing is claimed anymore - a restart should not wait for the timeout
+      _releaseClaims (m_aClaimDir);
+      try
+      {
+        Files.deleteIfExists (m_aHeartbeatFile);
+      }
+      catch (final IOException ex)
+      {
+        // ignore
+      }
+      LOGGER.info ("Worker '" + m_sWorkerID + "' stopped");
+      m_aStopped.countDown ();
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+
+/**
+ * Writes all converted documents to a single output stream (usually stdout).
+ * Without framing only a single document may be written. With framing, a
+ * failed conversion results in an empty record, so that the n-th output record
+ * always belongs to the n-th input record. When compression is enabled, each
+ * document is written as a separate GZIP member.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public class StreamConversionTarget implements IConversionTarget
+{
+  private final OutputStream m_aOS;
+  private final String m_sName;
+  private final EFraming m_eFraming;
+  private final boolean m_bCompress;
+  private int m_nRecords = 0;
+
+  /**
+   * @param aOS
+   *        The output stream to write to. It is closed when this target is
+   *        closed. May not be <code>null</code>.
+   * @param sName
+   *        The name of the stream for logging. May not be <code>null</code>.
+   * @param eFraming
+   *        The framing to use. May be <code>null</code> to write exactly one
+   *        document.
+   * @param bCompress
+   *        <code>true</code> to GZIP compress each document. Requires no
+   *        framing or a binary safe framing.
+   */
+  public StreamConversionTarget (@NonNull final OutputStream aOS,
+                                 @NonNull final String sName,
+                                 @Nullable final EFraming eFraming,
+                                 final boolean bCompress)
+  {
+    ValueEnforcer.notNull (aOS, "OutputStream");
+    ValueEnforcer.notNull (sName, "Name");
+    ValueEnforcer.isFalse (bCompress && eFraming != null && !eFraming.isBinarySafe (),
+                           "GZIP compressed documents require a binary safe framing");
+    m_aOS = aOS;
+    m_sName = sName;
+    m_eFraming = eFraming;
+    m_bCompress = bCompress;
+  }
+
+  public boolean isThreadSafe ()
+  {
+    return false;
+  }
+
+  private void _writeRecord (final byte @NonNull [] aRecord) throws IOException
+  {
+    if (m_eFraming != null)
+      m_eFraming.writeRecord (m_aOS, aRecord);
+    else
+    {
+      if (m_nRecords > 0)
+        throw new IOException ("Writing multiple documents to " + m_sName + " requires framing");
+      m_aOS.write (aRecord);
+    }
+    m_nRecords++;
+    // Pipelines want to see each result as soon as possible
+    m_aOS.flush ();
+  }
+
+  @NonNull
+  public String write (@NonNull final String sBaseName, final byte @NonNull [] aCII) throws IOException
+  {
+    _writeRecord (m_bCompress ? CLIStreamHelper.compress (aCII) : aCII);
+    return m_sName;
+  }
+
+  @Override
+  public void writeFailure (@NonNull final String sBaseName) throws IOException
+  {
+    if (m_eFraming != null)
+      _writeRecord (new byte [0]);
+  }
+
+  public void close () throws IOException
+  {
+    m_aOS.close ();
+  }
+}
@@ -18,52 +18,77 @@
 package com.helger.en16931.ubl2cii.cli;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.helger.base.io.nonblocking.NonBlockingBufferedInputStream;
+import com.helger.base.io.nonblocking.NonBlockingBufferedOutputStream;
 import com.helger.base.state.ESuccess;
-import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
 import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.CommonsHashMap;
+import com.helger.collection.commons.CommonsHashSet;
 import com.helger.collection.commons.ICommonsList;
-import com.helger.diagnostics.error.IError;
-import com.helger.diagnostics.error.list.ErrorList;
-import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+import com.helger.collection.commons.ICommonsMap;
+import com.helger.collection.commons.ICommonsSet;
 import com.helger.en16931.ubl2cii.UBLToCIIVersion;
 import com.helger.io.file.FileHelper;
 import com.helger.io.file.FileSystemIterator;
 import com.helger.io.file.FileSystemRecursiveIterator;
-import com.helger.io.file.FilenameHelper;
+import com.helger.json.serialize.JsonWriterSettings;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
 import picocli.CommandLine.Parameters;
-import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import picocli.CommandLine.Spec;
 
 /**
  * Main command line client
  *
  * @author Philip Helger
  */
-@Command (description = "UBL to CII Converter for EN 16931 invoices", name = "UBLtoCIIConverter", mixinStandardHelpOptions = true, separator = " ")
+@Command (description = "UBL to CII Converter for EN 16931 invoices", name = "UBLtoCIIConverter", mixinStandardHelpOptions = true, separator = " ", subcommands = { ConversionServerCommand.class, UnpackCommand.class })
 public class UBLToCIIConverter implements Callable <Integer>
 {
+  @FunctionalInterface
+  private interface IOExceptionRunnable
+  {
+    void run () throws IOException;
+  }
+
   private static final Logger LOGGER = LoggerFactory.getLogger (UBLToCIIConverter.class);
 
+  /** The source or target name that denotes stdin or stdout */
+  private static final String STD_STREAM = "-";
+  private static final int STD_STREAM_BUFFER_SIZE = 64 * 1024;
+
   @Option (names = { "-t",
-                     "--target" }, paramLabel = "directory", defaultValue = ".", description = "The target directory for result output (default: '${DEFAULT-VALUE}')")
+                     "--target" }, paramLabel = "directory", defaultValue = ".", description = "The target directory for result output, a '.zip' file, a '" + PackedContainerReader.FILE_EXTENSION + "' packed container or '-' for stdout (default: '${DEFAULT-VALUE}')")
   private String m_sOutputDir;
 
   @Option (names = "--output-suffix", paramLabel = "filename part", defaultValue = "-cii", description = "The suffix added to the output filename (default: '${DEFAULT-VALUE}')")
@@ -75,7 +100,84 @@ public class UBLToCIIConverter implements Callable <Integer>
   @Option (names = "--disable-wildcard-expansion", paramLabel = "boolean", defaultValue = "false", description = "Disable wildcard expansion of filenames")
   private boolean m_bDisableWildcardExpansion;
 
-  @Parameters (arity = "1..*", paramLabel = "source files", description = "One or more UBL file(s)")
+  @Option (names = "--journal", paramLabel = "file", description = "Append the outcome of every conversion to this journal file")
+  private File m_aJournalFile;
+
+  @Option (names = "--resume", paramLabel = "journal", description = "Skip all inputs that were successfully converted according to this journal and whose output file still has the recorded checksum. Requires a target directory. Unless '--journal' is provided, new entries are appended to it.")
+  private File m_aResumeJournalFile;
+
+  @Option (names = "--journal-sync-interval", paramLabel = "count", defaultValue = "100", description = "Force the journal to disk after this many entries (default: '${DEFAULT-VALUE}')")
+  private int m_nJournalSyncInterval;
+
+  @Option (names = "--threads", paramLabel = "count", defaultValue = "1", description = "The number of conversion threads (default: '${DEFAULT-VALUE}')")
+  private int m_nThreads;
+
+  @Option (names = "--keep-order", paramLabel = "boolean", defaultValue = "false", description = "Start the conversions in the provided order. By default, with more than one thread, the largest inputs are started first. ZIP, packed and stdout output is always written in the provided order.")
+  private boolean m_bKeepOrder;
+
+  @Option (names = "--heap-budget", paramLabel = "size", description = "With more than one thread, only run as many conversions at the same time as fit into this heap budget - either a percentage of the max. heap (e.g. '75%') or an absolute size (e.g. '2g')")
+  private String m_sHeapBudget;
+
+  @Option (names = "--heap-factor", paramLabel = "factor", defaultValue = "" + HeapBudget.DEFAULT_FACTOR, description = "The estimated heap bytes needed per input byte for '--heap-budget' (default: '${DEFAULT-VALUE}')")
+  private int m_nHeapFactor;
+
+  @Option (names = "--watch", paramLabel = "boolean", defaultValue = "false", description = "Continuously convert all files appearing in the single source directory until the process is terminated")
+  private boolean m_bWatch;
+
+  @Option (names = "--watch-stable-time", paramLabel = "milliseconds", defaultValue = "1000", description = "In watch and spool mode, the time a file must be unchanged before it is converted (default: '${DEFAULT-VALUE}')")
+  private long m_nWatchStableMillis;
+
+  @Option (names = "--done-dir", paramLabel = "directory", description = "In watch and spool mode, the directory to move successfully converted source files to (default: 'done' in the source directory)")
+  private File m_aDoneDir;
+
+  @Option (names = "--failed-dir", paramLabel = "directory", description = "In watch and spool mode, the directory to move source files that failed to convert to (default: 'failed' in the source directory)")
+  private File m_aFailedDir;
+
+  @Option (names = "--spool", paramLabel = "boolean", defaultValue = "false", description = "Act as one of several workers, possibly on different hosts, that consume the single source directory on a shared file system until the process is terminated")
+  private boolean m_bSpool;
+
+  @Option (names = "--worker-id", paramLabel = "id", description = "In spool mode, the unique name of this worker (default: host name and process ID)")
+  private String m_sWorkerID;
+
+  @Option (names = "--spool-poll-interval", paramLabel = "milliseconds", defaultValue = "1000", description = "In spool mode, how often the source directory is checked for new files (default: '${DEFAULT-VALUE}')")
+  private long m_nSpoolPollMillis;
+
+  @Option (names = "--claim-timeout", paramLabel = "milliseconds", defaultValue = "600000", description = "In spool mode, the time after which files claimed by a worker without heartbeat are released to the other workers (default: '${DEFAULT-VALUE}')")
+  private long m_nClaimTimeoutMillis;
+
+  @Option (names = "--framing", paramLabel = "type", description = "Read and write multiple documents on stdin/stdout. Valid values: ${COMPLETION-CANDIDATES}. LENGTH prefixes each document with its length as a 4 byte big endian integer; NUL separates documents by a NUL byte.")
+  private EFraming m_eFraming;
+
+  @Option (names = "--compress-output", paramLabel = "boolean", defaultValue = "false", description = "GZIP compress the created CII documents (default: '${DEFAULT-VALUE}'). Compressed UBL input is always detected automatically.")
+  private boolean m_bCompressOutput;
+
+  @Option (names = "--fsync", paramLabel = "policy", defaultValue = "NONE", description = "When to force written files to disk. Valid values: ${COMPLETION-CANDIDATES} (default: '${DEFAULT-VALUE}')")
+  private EFsyncPolicy m_eFsyncPolicy;
+
+  @Option (names = "--bulk-format", paramLabel = "format", description = "Treat every source file as a bulk file with many UBL documents. Valid values: ${COMPLETION-CANDIDATES}. LENGTH and NUL are as for '--framing'; XML splits concatenated XML documents after each root element.")
+  private EBulkFormat m_eBulkFormat;
+
+  @Option (names = "--shard", paramLabel = "i/n", converter = ShardSpec.Converter.class, description = "Only convert the inputs of shard i of n (1-based). Inputs are assigned by a stable hash of their path relative to the working directory, so n processes with shards 1/n to n/n cover each input exactly once.")
+  private ShardSpec m_aShard;
+
+  @Option (names = "--max-entry-size", paramLabel = "size", defaultValue = CLIStreamHelper.DEFAULT_MAX_ENTRY_SIZE_SPEC, description = "The maximum uncompressed size of a single ZIP entry, e.g. '512m'. Larger entries are reported as failed conversions. (default: '${DEFAULT-VALUE}')")
+  private String m_sMaxEntrySize;
+
+  @Option (names = "--stats", paramLabel = "file", description = "Write a JSON summary with throughput and per phase latency figures to this file")
+  private File m_aStatisticsFile;
+
+  @Option (names = "--stats-slowest", paramLabel = "count", defaultValue = "10", description = "The number of slowest documents to list in the statistics (default: '${DEFAULT-VALUE}')")
+  private int m_nStatisticsSlowest;
+
+  @Spec
+  private CommandSpec m_aSpec;
+
+  // The journal keys of all inputs converted by a previous run
+  private ICommonsSet <String> m_aCompletedInputs = new CommonsHashSet <> ();
+  private int m_nSkippedInputs = 0;
+
+  // Not required on the syntax level, so that sub commands work
+  @Parameters (arity = "0..*", paramLabel = "source files", description = "One or more UBL or '.zip' file(s) or '-' for stdin. In watch and spool mode the single directory to consume.")
   private List <String> m_aSourceFilenames;
 
   private void _verboseLog (@NonNull final Supplier <String> aSupplier)
@@ -180,56 +282,387 @@ public class UBLToCIIConverter implements Callable <Integer>
     return ret;
   }
 
-  private static void _log (@NonNull final IError aError)
+  private static boolean _isZipFile (@NonNull final String sFilename)
   {
-    final String sMsg = "  " + aError.getAsString (Locale.US);
-    if (aError.isError ())
-      LOGGER.error (sMsg);
-    else
-      if (aError.isFailure ())
-        LOGGER.warn (sMsg);
+    return sFilename.toLowerCase (Locale.ROOT).endsWith (".zip");
+  }
+
+  private static boolean _isPackedContainer (@NonNull final String sFilename)
+  {
+    return sFilename.toLowerCase (Locale.ROOT).endsWith (PackedContainerReader.FILE_EXTENSION);
+  }
+
+  @NonNull
+  private IConversionTarget _createTarget (final boolean bStdOut) throws IOException
+  {
+    if (bStdOut)
+      return new StreamConversionTarget (new NonBlockingBufferedOutputStream (new FileOutputStream (FileDescriptor.out),
+                                                                              STD_STREAM_BUFFER_SIZE),
+                                         "stdout",
+                                         m_eFraming,
+                                         m_bCompressOutput);
+    if (_isPackedContainer (m_sOutputDir))
+      return new PackedContainerConversionTarget (new File (m_sOutputDir), m_bCompressOutput, m_eFsyncPolicy);
+    if (_isZipFile (m_sOutputDir))
+      return new ZipConversionTarget (new File (m_sOutputDir), m_sOutputFileSuffix, m_eFsyncPolicy);
+    return new DirectoryConversionTarget (new File (m_sOutputDir),
+                                          m_sOutputFileSuffix,
+                                          m_bCompressOutput,
+                                          m_eFsyncPolicy);
+  }
+
+  private void _submitStdIn (@NonNull final ConversionPipeline aPipeline) throws IOException
+  {
+    final InputStream aStdIn = new NonBlockingBufferedInputStream (new FileInputStream (FileDescriptor.in),
+                                                                   STD_STREAM_BUFFER_SIZE);
+    if (m_eFraming == null)
+    {
+      // Exactly one document
+      aPipeline.submit (ConversionInput.ofBytes ("document from stdin", "stdin", aStdIn.readAllBytes ()));
+      return;
+    }
+
+    // Continuous stream of documents
+    int nIndex = 0;
+    byte [] aRecord;
+    while ((aRecord = m_eFraming.readRecord (aStdIn)) != null)
+    {
+      nIndex++;
+      aPipeline.submit (ConversionInput.ofBytes ("record " + nIndex + " from stdin", "record-" + nIndex, aRecord));
+    }
+    LOGGER.info ("Read " + nIndex + " record(s) from stdin");
+  }
+
+  private boolean _isCompleted (@NonNull final String sJournalKey)
+  {
+    if (!m_aCompletedInputs.contains (sJournalKey))
+      return false;
+    _verboseLog ( () -> "Skipping already converted UBL input '" + sJournalKey + "'");
+    m_nSkippedInputs++;
+    return true;
+  }
+
+  private void _submitZipEntries (@NonNull final File aZipFile,
+                                  @NonNull final ConversionPipeline aPipeline,
+                                  final long nMaxEntrySize) throws IOException
+  {
+    final InputStream aIS = FileHelper.getBufferedInputStream (aZipFile);
+    if (aIS == null)
+    {
+      LOGGER.error ("Failed to open ZIP file '" + aZipFile.getAbsolutePath () + "' for reading");
+      return;
+    }
+
+    int nEntries = 0;
+    try (final ZipInputStream aZIS = new ZipInputStream (aIS))
+    {
+      ZipEntry aEntry;
+      while ((aEntry = aZIS.getNextEntry ()) != null)
+      {
+        if (aEntry.isDirectory ())
+          continue;
+
+        // Only the filename of the entry is used for the output, to avoid path
+        // traversal
+        final String sEntryName = aEntry.getName ();
+        final String sJournalKey = ConversionInput.getZipEntryJournalKey (aZipFile, sEntryName);
+        nEntries++;
+        if (_isCompleted (sJournalKey))
+          continue;
+
+        final String sDisplayName = "entry '" + sEntryName + "' of ZIP file '" + aZipFile.getAbsolutePath () + "'";
+        final String sBaseName = ConversionInput.getBaseName (sEntryName);
+        // The declared size may be missing or wrong, so the read is bounded
+        // as well
+        byte [] aBytes = null;
+        if (aEntry.getSize () <= nMaxEntrySize)
+          try
+          {
+            aBytes = CLIStreamHelper.readAllBytes (aZIS, nMaxEntrySize);
+          }
+          catch (final CLIStreamHelper.SizeLimitExceededException ex)
+          {
+            // Handled below
+          }
+        if (aBytes != null)
+          aPipeline.submit (ConversionInput.ofBytes (sDisplayName, sBaseName, sJournalKey, aBytes));
+        else
+        {
+          final String sError = "the entry exceeds the maximum entry size of " + nMaxEntrySize + " bytes";
+          aPipeline.submit (ConversionInput.ofError (sDisplayName, sBaseName, sJournalKey, sError));
+        }
+      }
+    }
+    LOGGER.info ("Read " + nEntries + " entries from ZIP file '" + aZipFile.getAbsolutePath () + "'");
+  }
+
+  private void _submitBulkRecords (@NonNull final File aBulkFile,
+                                   @NonNull final EBulkFormat eFormat,
+                                   @NonNull final ConversionPipeline aPipeline) throws IOException
+  {
+    final String sBaseName = ConversionInput.getBaseName (aBulkFile.getName ());
+    final String sDisplaySuffix = " of bulk file '" + aBulkFile.getAbsolutePath () + "'";
+    // The records are read-only slices of the mapped file - nothing is copied
+    final int nRecords = BulkInputSplitter.split (aBulkFile, eFormat, (nIndex, aRecord) -> {
+      final String sJournalKey = ConversionInput.getBulkRecordJournalKey (aBulkFile, nIndex);
+      if (!_isCompleted (sJournalKey))
+        aPipeline.submit (ConversionInput.ofBuffer ("record " + nIndex + sDisplaySuffix,
+                                                    sBaseName + "-record-" + nIndex,
+                                                    sJournalKey,
+                                                    aRecord));
+    });
+    LOGGER.info ("Read " + nRecords + " record(s) from bulk file '" + aBulkFile.getAbsolutePath () + "'");
+  }
+
+  private void _submitFiles (@NonNull final ConversionPipeline aPipeline, final long nMaxEntrySize) throws IOException
+  {
+    final List <File> aSourceFiles = _normalizeInputFiles (m_aSourceFilenames);
+    if (m_aShard != null)
+    {
+      final int nAll = aSourceFiles.size ();
+      aSourceFiles.removeIf (f -> !m_aShard.contains (f));
+      LOGGER.info ("Shard " + m_aShard + " covers " + aSourceFiles.size () + " of " + nAll + " input file(s)");
+    }
+
+    if (m_nThreads > 1 && !m_bKeepOrder && !aPipeline.isOrdered ())
+    {
+      // Longest processing time first: start the largest inputs first, so that
+      // they don't keep a single thread busy at the end of the run. Determine
+      // each size only once. Targets that write in submission order do this
+      // among the waiting inputs in the pipeline instead.
+      final ICommonsMap <File, Long> aSizes = new CommonsHashMap <> ();
+      for (final File f : aSourceFiles)
+        aSizes.put (f, Long.valueOf (f.length ()));
+      aSourceFiles.sort (Comparator.comparing ((final File f) -> aSizes.get (f)).reversed ());
+    }
+
+    // Determine what was already done in a previous run
+    if (m_aResumeJournalFile != null)
+    {
+      m_aCompletedInputs = ConversionJournal.readCompletedInputs (m_aResumeJournalFile);
+      LOGGER.info ("Resuming from journal '" +
+                   m_aResumeJournalFile.getAbsolutePath () +
+                   "' with " +
+                   m_aCompletedInputs.size () +
+                   " completed input(s)");
+    }
+    m_nSkippedInputs = 0;
+
+    for (final File f : aSourceFiles)
+    {
+      if (_isZipFile (f.getName ()))
+        _submitZipEntries (f, aPipeline, nMaxEntrySize);
       else
-        LOGGER.info (sMsg);
+        if (m_eBulkFormat != null)
+          _submitBulkRecords (f, m_eBulkFormat, aPipeline);
+        else
+          if (!_isCompleted (f.getAbsolutePath ()))
+            aPipeline.submit (ConversionInput.ofFile (f));
+    }
+
+    if (m_nSkippedInputs > 0)
+      LOGGER.info ("Skipped " + m_nSkippedInputs + " UBL input(s) that were already converted");
   }
 
-  // doing the business
-  public Integer call () throws Exception
+  @NonNull
+  private static String _getDefaultWorkerID ()
   {
-    if (m_bVerbose)
-      System.setProperty ("org.slf4j.simpleLogger.defaultLogLevel", "debug");
+    String sHost;
+    try
+    {
+      sHost = InetAddress.getLocalHost ().getHostName ();
+    }
+    catch (final IOException ex)
+    {
+      sHost = "worker";
+    }
+    return sHost + "-" + ProcessHandle.current ().pid ();
+  }
 
-    m_sOutputDir = _normalizeOutputDirectory (m_sOutputDir);
-    final List <File> m_aSourceFiles = _normalizeInputFiles (m_aSourceFilenames);
+  @NonNull
+  private ESuccess _runWatch (@Nullable final ConversionJournal aJournal) throws IOException
+  {
+    final String sMode = m_bSpool ? "spool" : "watch";
+    if (m_aSourceFilenames.size () != 1)
+    {
+      LOGGER.error ("Exactly one source directory must be provided in " + sMode + " mode");
+      return ESuccess.FAILURE;
+    }
 
-    for (final File f : m_aSourceFiles)
+    final File aWatchDir = _normalizeFile (Paths.get (m_aSourceFilenames.get (0)));
+    if (!aWatchDir.isDirectory ())
     {
-      final File aDestFile = new File (m_sOutputDir, FilenameHelper.getBaseName (f) + m_sOutputFileSuffix + ".xml");
+      LOGGER.error ("The " + sMode + " source '" + aWatchDir.getAbsolutePath () + "' is not a directory");
+      return ESuccess.FAILURE;
+    }
 
-      LOGGER.info ("Converting UBL file '" + f.getAbsolutePath () + "' to CII");
+    final File aDoneDir = m_aDoneDir != null ? _normalizeFile (m_aDoneDir.toPath ()) : new File (aWatchDir, "done");
+    final File aFailedDir = m_aFailedDir != null ? _normalizeFile (m_aFailedDir.toPath ()) : new File (aWatchDir,
+                                                                                                       "failed");
+
+    // The watch processor and the spool worker have their own thread pool
+    try (final IConversionTarget aTarget = new DirectoryConversionTarget (new File (m_sOutputDir),
+                                                                         m_sOutputFileSuffix,
+                                                                         m_bCompressOutput,
+                                                                         m_eFsyncPolicy);
+         final ConversionPipeline aPipeline = new ConversionPipeline (aTarget, aJournal, null, null, 1))
+    {
+      final IFileConverter aConverter = new IFileConverter ()
+      {
+        @NonNull
+        public ESuccess convert (@NonNull final File aSrcFile) throws IOException
+        {
+          return aPipeline.convertAndWrite (ConversionInput.ofFile (aSrcFile));
+        }
 
-      // Perform the main conversion
-      final ErrorList aErrorList = new ErrorList ();
-      final CrossIndustryInvoiceType aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (FileHelper.getInputStream (f),
-                                                                                                      aErrorList);
-      if (aErrorList.containsAtLeastOneError () || aCII == null)
+        @Override
+        public void syncBatch () throws IOException
+        {
+          aTarget.syncBatch ();
+        }
+      };
+      final Runnable aStopper;
+      final IOExceptionRunnable aRunner;
+      if (m_bSpool)
       {
-        LOGGER.error ("Failed to convert UBL file '" + f.getAbsolutePath () + "' to CII:");
-        for (final IError aError : aErrorList)
-          _log (aError);
+        final SpoolWorker aWorker = new SpoolWorker (aWatchDir,
+                                                     aDoneDir,
+                                                     aFailedDir,
+                                                     m_sWorkerID != null ? m_sWorkerID : _getDefaultWorkerID (),
+                                                     m_nThreads,
+                                                     m_nWatchStableMillis,
+                                                     m_nSpoolPollMillis,
+                                                     m_nClaimTimeoutMillis,
+                                                     aConverter);
+        aStopper = () -> aWorker.stopAndWait (TimeUnit.MINUTES.toMillis (2));
+        aRunner = aWorker::run;
       }
       else
       {
-        for (final IError aError : aErrorList)
-          _log (aError);
+        final WatchFolderProcessor aProcessor = new WatchFolderProcessor (aWatchDir,
+                                                                          aDoneDir,
+                                                                          aFailedDir,
+                                                                          m_nThreads,
+                                                                          m_nWatchStableMillis,
+                                                                          aConverter);
+        aStopper = () -> aProcessor.stopAndWait (TimeUnit.MINUTES.toMillis (2));
+        aRunner = aProcessor::run;
+      }
+
+      // Finish running conversions on Ctrl+C or SIGTERM
+      final Thread aShutdownHook = new Thread (aStopper, "ubl2cii-" + sMode + "-shutdown");
+      Runtime.getRuntime ().addShutdownHook (aShutdownHook);
+
+      aRunner.run ();
+      try
+      {
+        Runtime.getRuntime ().removeShutdownHook (aShutdownHook);
+      }
+      catch (final IllegalStateException ex)
+      {
+        // Shutdown is already in progress
+      }
+    }
+    return ESuccess.SUCCESS;
+  }
+
+  // doing the business
+  public Integer call () throws Exception
+  {
+    if (m_bVerbose)
+      System.setProperty ("org.slf4j.simpleLogger.defaultLogLevel", "debug");
+
+    if (m_aSourceFilenames == null || m_aSourceFilenames.isEmpty ())
+      throw new ParameterException (m_aSpec.commandLine (), "Missing required parameter: 'source files'");
+
+    final boolean bStdIn = m_aSourceFilenames.contains (STD_STREAM);
+    if (bStdIn && m_aSourceFilenames.size () > 1)
+      throw new ParameterException (m_aSpec.commandLine (), "stdin ('" + STD_STREAM + "') must be the only source");
+    final boolean bStdOut = STD_STREAM.equals (m_sOutputDir);
+    if (m_bWatch && m_bSpool)
+      throw new ParameterException (m_aSpec.commandLine (), "'--watch' and '--spool' cannot be combined");
+    if ((m_bWatch || m_bSpool) && (bStdIn || bStdOut || _isZipFile (m_sOutputDir) || _isPackedContainer (m_sOutputDir)))
+      throw new ParameterException (m_aSpec.commandLine (), "Watch and spool mode require a target directory");
+    if (m_aShard != null && (bStdIn || m_bWatch || m_bSpool))
+      throw new ParameterException (m_aSpec.commandLine (), "'--shard' can only be used with source files");
+    if (m_aResumeJournalFile != null &&
+        (bStdIn || bStdOut || _isZipFile (m_sOutputDir) || _isPackedContainer (m_sOutputDir)))
+      throw new ParameterException (m_aSpec.commandLine (),
+                                    "'--resume' requires source files and a target directory, as only separate output files can be verified");
+    if (m_bCompressOutput && bStdOut && m_eFraming != null && !m_eFraming.isBinarySafe ())
+      throw new ParameterException (m_aSpec.commandLine (),
+                                    "'--compress-output' on stdout requires '--framing LENGTH', as compressed documents may contain the delimiter of '--framing " +
+                                                          m_eFraming +
+                                                          "'");
+    if (m_bCompressOutput && _isZipFile (m_sOutputDir))
+      throw new ParameterException (m_aSpec.commandLine (),
+                                    "'--compress-output' cannot be used with a ZIP target, as ZIP entries are compressed already");
+
+    final long nMaxEntrySize = HeapBudget.parseBudget (m_sMaxEntrySize, Runtime.getRuntime ().maxMemory ());
+    if (nMaxEntrySize <= 0)
+      throw new ParameterException (m_aSpec.commandLine (),
+                                    "Invalid maximum entry size '" + m_sMaxEntrySize + "' - expected e.g. '256m'");
+
+    HeapBudget aHeapBudget = null;
+    if (m_sHeapBudget != null)
+    {
+      final long nMaxHeap = Runtime.getRuntime ().maxMemory ();
+      final long nBudget = HeapBudget.parseBudget (m_sHeapBudget, nMaxHeap);
+      if (nBudget <= 0)
+        throw new ParameterException (m_aSpec.commandLine (),
+                                      "Invalid heap budget '" + m_sHeapBudget + "' - expected e.g. '75%' or '2g'");
+      if (m_nHeapFactor <= 0)
+        throw new ParameterException (m_aSpec.commandLine (), "The heap factor must be > 0");
+      aHeapBudget = new HeapBudget (nBudget, m_nHeapFactor);
+      LOGGER.info ("Limiting concurrent conversions to an estimated " +
+                   nBudget / (1024 * 1024) +
+                   " MB of " +
+                   nMaxHeap / (1024 * 1024) +
+                   " MB max. heap");
+    }
 
-        final boolean bFormattedOutput = true;
-        final ESuccess eSuccess = new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (bFormattedOutput)
-                                                                                  .write (aCII, aDestFile);
+    if (!bStdOut)
+      m_sOutputDir = _normalizeOutputDirectory (m_sOutputDir);
 
-        if (eSuccess.isSuccess ())
-          LOGGER.info ("Successfully wrote CII file '" + aDestFile.getAbsolutePath () + "'");
+    // When resuming without an explicit journal, continue the old journal
+    final File aJournalFile = m_aJournalFile != null ? m_aJournalFile : m_aResumeJournalFile;
+
+    try (final ConversionJournal aJournal = aJournalFile == null ? null : new ConversionJournal (aJournalFile,
+                                                                                                 m_nJournalSyncInterval))
+    {
+      if (m_bWatch || m_bSpool)
+        return Integer.valueOf (_runWatch (aJournal).isSuccess () ? 0 : 1);
+
+      final ConversionStatistics aStatistics = m_aStatisticsFile == null ? null : new ConversionStatistics (m_nStatisticsSlowest);
+      try (final IConversionTarget aTarget = _createTarget (bStdOut);
+           final ConversionPipeline aPipeline = new ConversionPipeline (aTarget,
+                                                                        aJournal,
+                                                                        aStatistics,
+                                                                        aHeapBudget,
+                                                                        m_nThreads,
+                                                                        !m_bKeepOrder))
+      {
+        if (bStdIn)
+          _submitStdIn (aPipeline);
         else
-          LOGGER.error ("Failed to write CII file '" + aDestFile.getAbsolutePath () + "'");
+          _submitFiles (aPipeline, nMaxEntrySize);
+        aPipeline.flush ();
+        // Only now archives may be published
+        aTarget.complete ();
+
+        LOGGER.info ("Successfully converted " +
+                     aPipeline.getSuccessCount () +
+                     " document(s), " +
+                     aPipeline.getFailureCount () +
+                     " failed");
+      }
+
+      if (aStatistics != null)
+      {
+        Files.writeString (m_aStatisticsFile.toPath (),
+                           aStatistics.getAsJson ().getAsJsonString (JsonWriterSettings.DEFAULT_SETTINGS_FORMATTED),
+                           StandardCharsets.UTF_8);
+        LOGGER.info ("Wrote conversion statistics to '" + m_aStatisticsFile.getAbsolutePath () + "'");
       }
     }
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.collection.commons.CommonsHashSet;
+import com.helger.base.string.StringHelper;
+import com.helger.collection.commons.ICommonsSet;
+import com.helger.io.file.FilenameHelper;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Sub command to list or extract the documents of a packed container.
+ *
+ * @author Philip Helger
+ */
+@Command (description = "List or extract the CII documents of a packed container", name = "unpack", mixinStandardHelpOptions = true, separator = " ")
+public class UnpackCommand implements Callable <Integer>
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (UnpackCommand.class);
+
+  @Option (names = { "-t",
+                     "--target" }, paramLabel = "directory", defaultValue = ".", description = "The target directory for the extracted documents (default: '${DEFAULT-VALUE}')")
+  private File m_aOutputDir;
+
+  @Option (names = "--output-suffix", paramLabel = "filename part", defaultValue = "-cii", description = "The suffix added to the output filename (default: '${DEFAULT-VALUE}')")
+  private String m_sOutputFileSuffix;
+
+  @Option (names = "--list", paramLabel = "boolean", defaultValue = "false", description = "Only list the index instead of extracting")
+  private boolean m_bList;
+
+  @Option (names = "--max-entry-size", paramLabel = "size", defaultValue = CLIStreamHelper.DEFAULT_MAX_ENTRY_SIZE_SPEC, description = "The maximum uncompressed size of a single document, e.g. '512m' (default: '${DEFAULT-VALUE}')")
+  private String m_sMaxEntrySize;
+
+  @Parameters (arity = "1", paramLabel = "container", description = "The packed container file to read")
+  private File m_aContainerFile;
+
+  /**
+   * The input names are read from the container index and are not trusted.
+   *
+   * @param sInputName
+   *        The input name from the index. May be <code>null</code>.
+   * @return The name without any path, restricted to safe ASCII characters.
+   *         Never <code>null</code> nor empty.
+   */
+  @NonNull
+  static String getSafeBaseName (@Nullable final String sInputName)
+  {
+    final String ret = FilenameHelper.getAsSecureValidASCIIFilename (FilenameHelper.getWithoutPath (sInputName));
+    return StringHelper.isEmpty (ret) ? "document" : ret;
+  }
+
+  /**
+   * @return <code>true</code> if the canonical path of the file is directly
+   *         inside the provided canonical directory.
+   */
+  static boolean isInsideDirectory (@NonNull final File aCanonicalDir, @NonNull final File aFile) throws IOException
+  {
+    return aCanonicalDir.equals (aFile.getCanonicalFile ().getParentFile ());
+  }
+
+  public Integer call () throws Exception
+  {
+    final long nMaxEntrySize = HeapBudget.parseBudget (m_sMaxEntrySize, Runtime.getRuntime ().maxMemory ());
+    if (nMaxEntrySize <= 0)
+      throw new IllegalArgumentException ("Invalid maximum entry size '" + m_sMaxEntrySize + "' - expected e.g. '256m'");
+
+    try (final PackedContainerReader aReader = new PackedContainerReader (m_aContainerFile))
+    {
+      if (m_bList)
+      {
+        for (final PackedContainerReader.Entry aEntry : aReader.getAllEntries ())
+          System.out.println (aEntry.getDocumentID () +
+                              "\t" +
+                              aEntry.getInputName () +
+                              "\t" +
+                              aEntry.getOffset () +
+                              "\t" +
+                              aEntry.getLength ());
+        return Integer.valueOf (0);
+      }
+
+      if (!m_aOutputDir.isDirectory () && !m_aOutputDir.mkdirs ())
+        throw new IllegalStateException ("Failed to create target directory '" + m_aOutputDir.getAbsolutePath () + "'");
+
+      final File aCanonicalDir = m_aOutputDir.getCanonicalFile ();
+      final AtomicFileWriter aWriter = new AtomicFileWriter (EFsyncPolicy.NONE);
+      final ICommonsSet <String> aUsedNames = new CommonsHashSet <> ();
+      int nExtracted = 0;
+      int nRejected = 0;
+      for (final PackedContainerReader.Entry aEntry : aReader.getAllEntries ())
+      {
+        // The same input name may occur multiple times
+        final String sBaseName = getSafeBaseName (aEntry.getInputName ());
+        String sFilename = sBaseName + m_sOutputFileSuffix + ".xml";
+        if (!aUsedNames.add (sFilename))
+        {
+          sFilename = sBaseName + m_sOutputFileSuffix + "-" + aEntry.getDocumentID () + ".xml";
+          aUsedNames.add (sFilename);
+        }
+        final File aFile = new File (aCanonicalDir, sFilename);
+        if (!isInsideDirectory (aCanonicalDir, aFile))
+        {
+          LOGGER.error ("Ignoring document " +
+                        aEntry.getDocumentID () +
+                        " with input name '" +
+                        aEntry.getInputName () +
+                        "', as it would be written outside of the target directory");
+          nRejected++;
+          continue;
+        }
+        aWriter.write (aFile, aReader.readEntry (aEntry, nMaxEntrySize), false);
+        nExtracted++;
+      }
+      LOGGER.info ("Extracted " +
+                   nExtracted +
+                   " CII document(s) from packed container '" +
+                   m_aContainerFile.getAbsolutePath () +
+                   "' to '" +
+                   m_aOutputDir.getAbsolutePath () +
+                   "'");
+      if (nRejected > 0)
+        return Integer.valueOf (1);
+    }
+    return Integer.valueOf (0);
+  }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.state.ESuccess;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.CommonsHashMap;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.collection.commons.ICommonsMap;
+
+/**
+ * Continuously convert all files that appear in a single directory. A file is
+ * only picked up once its size and modification time did not change for a
+ * configurable period, so that partially written files are not processed.
+ * Files starting with a dot or ending with <code>.tmp</code> or
+ * <code>.part</code> are ignored, so that producers using a "write and rename"
+ * approach are supported as well. After conversion, the source file is moved
+ * either to the "done" or to the "failed" directory. This happens once per
+ * polling cycle for all files converted in the meantime, after their results
+ * were forced to disk via {@link IFileConverter#syncBatch()}. An existing file
+ * in these directories is never replaced - a counter is added to the name
+ * instead. A move that fails is retried in the following polling cycles. If it
+ * still fails, the file is left in the watched directory and is not converted
+ * again until the processor is restarted.
+ *
+ * @author Philip Helger
+ */
+public final class WatchFolderProcessor
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (WatchFolderProcessor.class);
+
+  /** The number of polling cycles in which moving a converted file is tried */
+  static final int MAX_MOVE_ATTEMPTS = 5;
+
+  private static final class Candidate
+  {
+    private final long m_nSize;
+    private final long m_nLastModified;
+    private final long m_nSinceMillis;
+
+    Candidate (final long nSize, final long nLastModified, final long nSinceMillis)
+    {
+      m_nSize = nSize;
+      m_nLastModified = nLastModified;
+      m_nSinceMillis = nSinceMillis;
+    }
+  }
+
+  private static final class PendingMove
+  {
+    private final Path m_aFile;
+    private final Path m_aTargetDir;
+    private int m_nAttempts = 0;
+
+    PendingMove (@NonNull final Path aFile, @NonNull final Path aTargetDir)
+    {
+      m_aFile = aFile;
+      m_aTargetDir = aTargetDir;
+    }
+  }
+
+  private final Path m_aWatchDir;
+  private final Path m_aDoneDir;
+  private final Path m_aFailedDir;
+  private final int m_nThreads;
+  private final long m_nStableMillis;
+  private final IFileConverter m_aConverter;
+
+  // Files that are not yet stable
+  private final ICommonsMap <Path, Candidate> m_aCandidates = new CommonsHashMap <> ();
+  // Files currently being converted or waiting to be moved
+  private final Set <Path> m_aInProgress = ConcurrentHashMap.newKeySet ();
+  // Converted files waiting for the batch sync
+  private final Queue <PendingMove> m_aPendingMoves = new ConcurrentLinkedQueue <> ();
+  private final CountDownLatch m_aStopped = new CountDownLatch (1);
+  private volatile boolean m_bStopRequested = false;
+  private volatile WatchService m_aWatchService;
+
+  public WatchFolderProcessor (@NonNull final File aWatchDir,
+                               @NonNull final File aDoneDir,
+                               @NonNull final File aFailedDir,
+                               final int nThreads,
+                               final long nStableMillis,
+                               @NonNull final IFileConverter aConverter)
+  {
+    ValueEnforcer.notNull (aWatchDir, "WatchDir");
+    ValueEnforcer.notNull (aDoneDir, "DoneDir");
+    ValueEnforcer.notNull (aFailedDir, "FailedDir");
+    ValueEnforcer.isGT0 (nThreads, "Threads");
+    ValueEnforcer.isGE0 (nStableMillis, "StableMillis");
+    ValueEnforcer.notNull (aConverter, "Converter");
+    m_aWatchDir = aWatchDir.toPath ().toAbsolutePath ().normalize ();
+    m_aDoneDir = aDoneDir.toPath ().toAbsolutePath ().normalize ();
+    m_aFailedDir = aFailedDir.toPath ().toAbsolutePath ().normalize ();
+    m_nThreads = nThreads;
+    m_nStableMillis = nStableMillis;
+    m_aConverter = aConverter;
+  }
+
+  private static boolean _isIgnoredFilename (@NonNull final String sFilename)
+  {
+    return sFilename.startsWith (".") || sFilename.endsWith (".tmp") || sFilename.endsWith (".part");
+  }
+
+  private void _addCandidate (@NonNull final Path aFile, final long nNow)
+  {
+    if (_isIgnoredFilename (aFile.getFileName ().toString ()))
+      return;
+    if (!Files.isRegularFile (aFile) || m_aInProgress.contains (aFile))
+      return;
+    final File f = aFile.toFile ();
+    m_aCandidates.put (aFile, new Candidate (f.length (), f.lastModified (), nNow));
+  }
+
+  private void _scanDirectory () throws IOException
+  {
+    final long nNow = System.currentTimeMillis ();
+    try (final DirectoryStream <Path> aDS = Files.newDirectoryStream (m_aWatchDir))
+    {
+      for (final Path aFile : aDS)
+        if (!m_aCandidates.containsKey (aFile))
+          _addCandidate (aFile, nNow);
+    }
+  }
+
+  /**
+   * @return <code>false</code> if the move failed and should be retried.
+   */
+  private static boolean _moveTo (@NonNull final PendingMove aMove)
+  {
+    aMove.m_nAttempts++;
+    try
+    {
+      final Path aTarget = CLIFileHelper.moveToUniqueName (aMove.m_aFile, aMove.m_aTargetDir);
+      if (!aTarget.getFileName ().equals (aMove.m_aFile.getFileName ()))
+        LOGGER.warn ("Moved '" + aMove.m_aFile + "' to '" + aTarget + "', as the name was already used");
+      return true;
+    }
+    catch (final IOException ex)
+    {
+      // The target directory may be missing as well
+      if (!Files.exists (aMove.m_aFile))
+      {
+        LOGGER.warn ("The converted file '" + aMove.m_aFile + "' was removed before it could be moved");
+        return true;
+      }
+      if (aMove.m_nAttempts < MAX_MOVE_ATTEMPTS)
+      {
+        LOGGER.warn ("Failed to move '" + aMove.m_aFile + "' to '" + aMove.m_aTargetDir + "' - retrying", ex);
+        return false;
+      }
+      LOGGER.error ("Failed to move '" +
+                    aMove.m_aFile +
+                    "' to '" +
+                    aMove.m_aTargetDir +
+                    "' after " +
+                    aMove.m_nAttempts +
+                    " attempts - it is not converted again until it is moved away manually and the processor is restarted",
+                    ex);
+      return true;
+    }
+  }
+
+  private void _process (@NonNull final Path aFile)
+  {
+    ESuccess eSuccess;
+    try
+    {
+      eSuccess = m_aConverter.convert (aFile.toFile ());
+    }
+    catch (final IOException | RuntimeException ex)
+    {
+      LOGGER.error ("Error converting UBL file '" + aFile + "'", ex);
+      eSuccess = ESuccess.FAILURE;
+    }
+    m_aPendingMoves.add (new PendingMove (aFile, eSuccess.isSuccess () ? m_aDoneDir : m_aFailedDir));
+  }
+
+  /**
+   * Force the results of all conversions finished so far to disk and only then
+   * move their source files away, so that a crash never loses a result whose
+   * source was already moved.
+   */
+  private void _completeBatch ()
+  {
+    // Only the moves taken here are covered by the following sync
+    final ICommonsList <PendingMove> aMoves = new CommonsArrayList <> ();
+    PendingMove aMove;
+    while ((aMove = m_aPendingMoves.poll ()) != null)
+      aMoves.add (aMove);
+    if (aMoves.isEmpty ())
+      return;
+
+    try
+    {
+      m_aConverter.syncBatch ();
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.error ("Failed to force the results of " + aMoves.size () + " conversion(s) to disk - retrying", ex);
+      m_aPendingMoves.addAll (aMoves);
+      return;
+    }
+
+    for (final PendingMove aPendingMove : aMoves)
+      if (_moveTo (aPendingMove))
+      {
+        // A file that could not be moved stays in progress, so that it is not
+        // converted over and over again
+        if (!Files.exists (aPendingMove.m_aFile))
+          m_aInProgress.remove (aPendingMove.m_aFile);
+      }
+      else
+        m_aPendingMoves.add (aPendingMove);
+  }
+
+  private void _submitStableCandidates (@NonNull final ExecutorService aExecutor)
+  {
+    final long nNow = System.currentTimeMillis ();
+    final Iterator <Map.Entry <Path, Candidate>> it = m_aCandidates.entrySet ().iterator ();
+    while (it.hasNext ())
+    {
+      final Map.Entry <Path, Candidate> aEntry = it.next ();
+      final Path aFile = aEntry.getKey ();
+      final File f = aFile.toFile ();
+      if (!f.isFile ())
+      {
+        // Deleted or renamed in the meantime
+        it.remove ();
+        continue;
+      }
+
+      final Candidate aOld = aEntry.getValue ();
+      final long nSize = f.length ();
+      final long nLastModified = f.lastModified ();
+      if (nSize != aOld.m_nSize || nLastModified != aOld.m_nLastModified)
+      {
+        // Still being written
+        aEntry.setValue (new Candidate (nSize, nLastModified, nNow));
+        continue;
+      }
+
+      if (nNow - aOld.m_nSinceMillis >= m_nStableMillis)
+      {
+        it.remove ();
+        m_aInProgress.add (aFile);
+        aExecutor.execute ( () -> _process (aFile));
+      }
+    }
+  }
+
+  /**
+   * Request the processing loop to stop. Conversions that are already running
+   * are completed.
+   */
+  public void stop ()
+  {
+    m_bStopRequested = true;
+    final WatchService aWatchService = m_aWatchService;
+    if (aWatchService != null)
+      try
+      {
+        aWatchService.close ();
+      }
+      catch (final IOException ex)
+      {
+        // ignore
+      }
+  }
+
+  /**
+   * Request the processing loop to stop and wait until all running conversions
+   * are finished. This is meant to be called from a shutdown hook.
+   *
+   * @param nTimeoutMillis
+   *        The maximum number of milliseconds to wait.
+   */
+  public void stopAndWait (final long nTimeoutMillis)
+  {
+    stop ();
+    try
+    {
+      if (!m_aStopped.await (nTimeoutMillis, TimeUnit.MILLISECONDS))
+        LOGGER.warn ("Watch processing did not stop in time");
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+    }
+  }
+
+  /**
+   * Run the watch loop until {@link #stop()} is called or the thread is
+   * interrupted. This method blocks.
+   *
+   * @throws IOException
+   *         If the directories cannot be created or watched
+   */
+  public void run () throws IOException
+  {
+    Files.createDirectories (m_aDoneDir);
+    Files.createDirectories (m_aFailedDir);
+
+    final ExecutorService aExecutor = Executors.newFixedThreadPool (m_nThreads);
+    try (final WatchService aWatchService = m_aWatchDir.getFileSystem ().newWatchService ())
+    {
+      m_aWatchService = aWatchService;
+      m_aWatchDir.register (aWatchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+      LOGGER.info ("Watching directory '" +
+                   m_aWatchDir +
+                   "' with " +
+                   m_nThreads +
+                   " worker thread(s); results are moved to '" +
+                   m_aDoneDir +
+                   "' and '" +
+                   m_aFailedDir +
+                   "'");
+
+      // Files that were already present before the watch started
+      _scanDirectory ();
+
+      // Poll often enough to detect stable files in time
+      final long nPollMillis = Math.max (50, Math.min (m_nStableMillis / 2, 500));
+      while (!m_bStopRequested)
+      {
+        final WatchKey aKey = aWatchService.poll (nPollMillis, TimeUnit.MILLISECONDS);
+        if (aKey != null)
+        {
+          final long nNow = System.currentTimeMillis ();
+          for (final WatchEvent <?> aEvent : aKey.pollEvents ())
+          {
+            if (aEvent.kind () == StandardWatchEventKinds.OVERFLOW)
+              _scanDirectory ();
+            else
+            {
+              final Path aFile = m_aWatchDir.resolve ((Path) aEvent.context ());
+              if (!m_aCandidates.containsKey (aFile))
+                _addCandidate (aFile, nNow);
+            }
+          }
+          if (!aKey.reset ())
+          {
+            LOGGER.error ("Watch directory '" + m_aWatchDir + "' is no longer accessible");
+            break;
+          }
+        }
+        _submitStableCandidates (aExecutor);
+        _completeBatch ();
+      }
+    }
+    catch (final ClosedWatchServiceException ex)
+    {
+      // stop() was called
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+    }
+    finally
+    {
+      m_aWatchService = null;
+      aExecutor.shutdown ();
+      try
+      {
+        if (!aExecutor.awaitTermination (1, TimeUnit.MINUTES))
+          LOGGER.warn ("Not all running conversions finished in time");
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+      }
+      _completeBatch ();
+      LOGGER.info ("Stopped watching directory '" + m_aWatchDir + "'");
+      m_aStopped.countDown ();
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.annotation.concurrent.NotThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.collection.commons.CommonsHashSet;
+import com.helger.collection.commons.ICommonsSet;
+import com.helger.base.io.nonblocking.NonBlockingBufferedOutputStream;
+
+/**
+ * Writes all converted documents as entries into a single ZIP archive. The
+ * archive is created under a temporary name and only moved to its final name
+ * when it is closed after {@link #complete()}; otherwise it is discarded.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public class ZipConversionTarget implements IConversionTarget
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (ZipConversionTarget.class);
+
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  private final File m_aFile;
+  private final String m_sFileSuffix;
+  private final AtomicFileWriter m_aWriter;
+  private final Path m_aTempFile;
+  private final ZipOutputStream m_aZOS;
+  private final ICommonsSet <String> m_aUsedNames = new CommonsHashSet <> ();
+  private int m_nEntries = 0;
+  private boolean m_bComplete = false;
+
+  /**
+   * @param aFile
+   *        The ZIP file to create. May not be <code>null</code>.
+   * @param sFileSuffix
+   *        The suffix to append to the base name of each source document. May
+   *        not be <code>null</code>.
+   * @param eFsyncPolicy
+   *        When to force the archive to disk. As there is only a single file,
+   *        {@link EFsyncPolicy#PER_FILE} and {@link EFsyncPolicy#PER_BATCH}
+   *        are identical. May not be <code>null</code>.
+   * @throws IOException
+   *         If the file cannot be created
+   */
+  public ZipConversionTarget (@NonNull final File aFile,
+                              @NonNull final String sFileSuffix,
+                              @NonNull final EFsyncPolicy eFsyncPolicy) throws IOException
+  {
+    ValueEnforcer.notNull (aFile, "File");
+    ValueEnforcer.notNull (sFileSuffix, "FileSuffix");
+    m_aFile = aFile;
+    m_sFileSuffix = sFileSuffix;
+    m_aWriter = new AtomicFileWriter (eFsyncPolicy);
+    m_aTempFile = m_aWriter.createTempFile (aFile);
+    final OutputStream aOS = Channels.newOutputStream (FileChannel.open (m_aTempFile, StandardOpenOption.WRITE));
+    m_aZOS = new ZipOutputStream (new NonBlockingBufferedOutputStream (aOS, BUFFER_SIZE));
+  }
+
+  public boolean isThreadSafe ()
+  {
+    return false;
+  }
+
+  @NonNull
+  private String _getUniqueEntryName (@NonNull final String sBaseName)
+  {
+    String ret = sBaseName + m_sFileSuffix + ".xml";
+    int nIndex = 1;
+    while (!m_aUsedNames.add (ret))
+    {
+      // Same base name from different sources
+      nIndex++;
+      ret = sBaseName + m_sFileSuffix + "-" + nIndex + ".xml";
+    }
+    return ret;
+  }
+
+  @NonNull
+  public String write (@NonNull final String sBaseName, final byte @NonNull [] aCII) throws IOException
+  {
+    final String sEntryName = _getUniqueEntryName (sBaseName);
+    m_aZOS.putNextEntry (new ZipEntry (sEntryName));
+    m_aZOS.write (aCII);
+    m_aZOS.closeEntry ();
+    m_nEntries++;
+    LOGGER.info ("Successfully wrote CII entry '" + sEntryName + "' to ZIP file '" + m_aFile.getAbsolutePath () + "'");
+    return m_aFile.getAbsolutePath () + "!/" + sEntryName;
+  }
+
+  @Override
+  public void complete ()
+  {
+    m_bComplete = true;
+  }
+
+  public void close () throws IOException
+  {
+    if (!m_bComplete)
+    {
+      // Don't publish a partial archive that looks complete
+      try
+      {
+        m_aZOS.close ();
+      }
+      catch (final IOException ex)
+      {
+        // Discarded anyway
+      }
+      m_aWriter.discard (m_aTempFile);
+      LOGGER.warn ("Discarded the incomplete ZIP file '" + m_aFile.getAbsolutePath () + "' with " + m_nEntries + " entries");
+      return;
+    }
+
+    try
+    {
+      m_aZOS.close ();
+    }
+    catch (final IOException ex)
+    {
+      m_aWriter.discard (m_aTempFile);
+      throw ex;
+    }
+    m_aWriter.commit (m_aTempFile, m_aFile);
+    m_aWriter.syncBatch ();
+    LOGGER.info ("Wrote " + m_nEntries + " CII document(s) to ZIP file '" + m_aFile.getAbsolutePath () + "'");
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.jspecify.annotations.NonNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for class {@link AtomicFileWriter}.
+ *
+ * @author Philip Helger
+ */
+public final class AtomicFileWriterTest
+{
+  private static final byte [] CONTENT = "<CrossIndustryInvoice/>".getBytes (StandardCharsets.UTF_8);
+
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  private static void _assertNoTempFiles (@NonNull final File aDir)
+  {
+    for (final String sName : aDir.list ())
+      assertFalse (sName, sName.endsWith (".tmp"));
+  }
+
+  @Test
+  public void testWrite () throws IOException
+  {
+    for (final EFsyncPolicy e : EFsyncPolicy.values ())
+    {
+      final AtomicFileWriter aWriter = new AtomicFileWriter (e);
+      assertEquals (e, aWriter.getFsyncPolicy ());
+
+      final File aTarget = new File (m_aTempDir.getRoot (), e.name () + ".xml");
+      aWriter.write (aTarget, CONTENT, false);
+      assertArrayEquals (CONTENT, Files.readAllBytes (aTarget.toPath ()));
+
+      // Replace an existing file
+      final byte [] aNewContent = "<x/>".getBytes (StandardCharsets.UTF_8);
+      aWriter.write (aTarget, aNewContent, false);
+      assertArrayEquals (aNewContent, Files.readAllBytes (aTarget.toPath ()));
+
+      aWriter.syncBatch ();
+    }
+    _assertNoTempFiles (m_aTempDir.getRoot ());
+  }
+
+  @Test
+  public void testWriteCompressed () throws IOException
+  {
+    final AtomicFileWriter aWriter = new AtomicFileWriter (EFsyncPolicy.PER_FILE);
+    final File aTarget = new File (m_aTempDir.getRoot (), "a.xml.gz");
+    aWriter.write (aTarget, CONTENT, true);
+    try (final InputStream aIS = new GZIPInputStream (Files.newInputStream (aTarget.toPath ())))
+    {
+      assertArrayEquals (CONTENT, aIS.readAllBytes ());
+    }
+    _assertNoTempFiles (m_aTempDir.getRoot ());
+  }
+
+  @Test
+  public void testTempFile () throws IOException
+  {
+    final AtomicFileWriter aWriter = new AtomicFileWriter (EFsyncPolicy.NONE);
+    final File aTarget = new File (m_aTempDir.getRoot (), "a.xml");
+    final Path aTempFile = aWriter.createTempFile (aTarget);
+    final String sName = aTempFile.getFileName ().toString ();
+    // Ignored by the watch and spool mode
+    assertTrue (sName, sName.startsWith (".a.xml."));
+    assertTrue (sName, sName.endsWith (".tmp"));
+    assertEquals (aTarget.getParentFile ().getAbsoluteFile ().toPath (), aTempFile.getParent ());
+    assertFalse (aTarget.exists ());
+
+    aWriter.discard (aTempFile);
+    assertFalse (Files.exists (aTempFile));
+    // Discarding twice is fine
+    aWriter.discard (aTempFile);
+  }
+
+  @Test
+  public void testCommitFailure () throws IOException
+  {
+    final AtomicFileWriter aWriter = new AtomicFileWriter (EFsyncPolicy.PER_BATCH);
+    final Path aTempFile = aWriter.createTempFile (new File (m_aTempDir.getRoot (), "a.xml"));
+    try
+    {
+      aWriter.commit (aTempFile, new File (m_aTempDir.getRoot (), "missing/a.xml"));
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      // expected
+    }
+    // The temporary file is cleaned up
+    assertFalse (Files.exists (aTempFile));
+    aWriter.syncBatch ();
+  }
+}
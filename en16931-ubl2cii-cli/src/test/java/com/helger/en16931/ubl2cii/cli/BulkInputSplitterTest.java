@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.jspecify.annotations.NonNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+
+/**
+ * Test class for class {@link BulkInputSplitter}.
+ *
+ * @author Philip Helger
+ */
+public final class BulkInputSplitterTest
+{
+  private static final String BOM = "\uFEFF";
+  private static final String XML1 = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                                     "<Invoice xmlns=\"urn:test\"><!-- </Invoice> -->" +
+                                     "<ID scheme='a>b'>1</ID>" +
+                                     "<Note><![CDATA[</Invoice>]]></Note>" +
+                                     "<Empty/></Invoice>";
+  private static final String XML2 = "<Invoice><ID>2</ID></Invoice>";
+  private static final String XML3 = "<Invoice/>";
+
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  private static final class Collector implements BulkInputSplitter.IRecordHandler
+  {
+    private final ICommonsList <String> m_aRecords = new CommonsArrayList <> ();
+
+    public void onRecord (final int nIndex, @NonNull final ByteBuffer aRecord)
+    {
+      assertEquals (m_aRecords.size () + 1, nIndex);
+      assertTrue (aRecord.isReadOnly ());
+      m_aRecords.add (StandardCharsets.UTF_8.decode (aRecord).toString ());
+    }
+  }
+
+  private static byte @NonNull [] _utf8 (@NonNull final String s)
+  {
+    return s.getBytes (StandardCharsets.UTF_8);
+  }
+
+  private static byte @NonNull [] _lengthPrefixed (@NonNull final String... aRecords)
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    for (final String sRecord : aRecords)
+    {
+      final byte [] aBytes = _utf8 (sRecord);
+      aBAOS.write (ByteBuffer.allocate (4).putInt (aBytes.length).array (), 0, 4);
+      aBAOS.write (aBytes, 0, aBytes.length);
+    }
+    return aBAOS.toByteArray ();
+  }
+
+  @NonNull
+  private File _createFile (final byte @NonNull [] aContent) throws IOException
+  {
+    final File aFile = m_aTempDir.newFile ();
+    Files.write (aFile.toPath (), aContent);
+    return aFile;
+  }
+
+  @NonNull
+  private static ICommonsList <String> _split (final byte @NonNull [] aContent,
+                                               @NonNull final EBulkFormat eFormat) throws IOException
+  {
+    final Collector aCollector = new Collector ();
+    final int nRecords = BulkInputSplitter.split (ByteBuffer.wrap (aContent), eFormat, aCollector);
+    assertEquals (aCollector.m_aRecords.size (), nRecords);
+    return aCollector.m_aRecords;
+  }
+
+  @NonNull
+  private static ICommonsList <String> _split (@NonNull final File aFile,
+                                               @NonNull final EBulkFormat eFormat,
+                                               final int nMaxWindowSize) throws IOException
+  {
+    final Collector aCollector = new Collector ();
+    final int nRecords = BulkInputSplitter.split (aFile, eFormat, nMaxWindowSize, aCollector);
+    assertEquals (aCollector.m_aRecords.size (), nRecords);
+    return aCollector.m_aRecords;
+  }
+
+  private static void _assertMalformed (final byte @NonNull [] aContent, @NonNull final EBulkFormat eFormat)
+  {
+    try
+    {
+      _split (aContent, eFormat);
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testXML () throws IOException
+  {
+    final byte [] aContent = _utf8 (BOM + XML1 + "\r\n" + XML2 + "  " + BOM + XML3 + "\n");
+    assertEquals (new CommonsArrayList <> (XML1, XML2, XML3), _split (aContent, EBulkFormat.XML));
+    assertEquals (new CommonsArrayList <> (XML1), _split (_utf8 (XML1), EBulkFormat.XML));
+    assertTrue (_split (_utf8 (" \n" + BOM), EBulkFormat.XML).isEmpty ());
+
+    _assertMalformed (_utf8 (XML2 + "<Invoice>"), EBulkFormat.XML);
+    _assertMalformed (_utf8 ("<Invoice><!-- </Invoice>"), EBulkFormat.XML);
+    _assertMalformed (_utf8 ("<Invoice a=\"></Invoice>"), EBulkFormat.XML);
+    _assertMalformed (_utf8 ("</Invoice>"), EBulkFormat.XML);
+  }
+
+  @Test
+  public void testLength () throws IOException
+  {
+    final byte [] aContent = _lengthPrefixed (XML1, "", XML2);
+    assertEquals (new CommonsArrayList <> (XML1, "", XML2), _split (aContent, EBulkFormat.LENGTH));
+
+    // Truncated length
+    _assertMalformed (new byte [] { 0, 0, 0 }, EBulkFormat.LENGTH);
+    // Truncated record
+    _assertMalformed (new byte [] { 0, 0, 0, 2, 'a' }, EBulkFormat.LENGTH);
+    // Length with the highest bit set
+    _assertMalformed (new byte [] { (byte) 0xff, 0, 0, 0, 'a' }, EBulkFormat.LENGTH);
+  }
+
+  @Test
+  public void testNUL () throws IOException
+  {
+    assertEquals (new CommonsArrayList <> (XML1, XML2), _split (_utf8 (XML1 + "\0" + XML2 + "\0"), EBulkFormat.NUL));
+    // The last record does not need to be terminated
+    assertEquals (new CommonsArrayList <> (XML1, XML2), _split (_utf8 (XML1 + "\0" + XML2), EBulkFormat.NUL));
+    assertEquals (new CommonsArrayList <> ("", XML2), _split (_utf8 ("\0" + XML2), EBulkFormat.NUL));
+  }
+
+  @Test
+  public void testEmptyFile () throws IOException
+  {
+    final File aFile = _createFile (new byte [0]);
+    for (final EBulkFormat eFormat : EBulkFormat.values ())
+    {
+      assertEquals (0, BulkInputSplitter.split (aFile, eFormat, (nIndex, aRecord) -> fail ()));
+      assertTrue (_split (new byte [0], eFormat).isEmpty ());
+    }
+  }
+
+  @Test
+  public void testRecordsStraddlingWindows () throws IOException
+  {
+    final byte [] aXML = _utf8 (BOM + XML1 + "\r\n" + XML2 + "  " + BOM + XML3 + "\n" + XML2 + XML1);
+    final byte [] aLength = _lengthPrefixed (XML1, XML2, "", XML3, XML2);
+    final byte [] aNUL = _utf8 (XML1 + "\0" + XML2 + "\0\0" + XML3 + "\0" + XML2);
+
+    for (final EBulkFormat eFormat : EBulkFormat.values ())
+    {
+      final byte [] aContent = eFormat == EBulkFormat.XML ? aXML : eFormat == EBulkFormat.LENGTH ? aLength : aNUL;
+      final File aFile = _createFile (aContent);
+      final ICommonsList <String> aExpected = _split (aContent, eFormat);
+      assertEquals (5, aExpected.size ());
+      assertEquals (aExpected, _split (aFile, eFormat, BulkInputSplitter.MAX_WINDOW_SIZE));
+
+      // Every window size that can hold the largest record, so that the window
+      // boundaries fall on each position of the file, including inside tags
+      for (int nWindowSize = _utf8 (XML1).length + 4; nWindowSize <= aContent.length + 1; ++nWindowSize)
+        assertEquals (eFormat + " with window size " + nWindowSize,
+                      aExpected,
+                      _split (aFile, eFormat, nWindowSize));
+    }
+  }
+
+  @Test
+  public void testRecordLargerThanWindow () throws IOException
+  {
+    final File aFile = _createFile (_utf8 (XML2 + XML1 + XML2));
+    final Collector aCollector = new Collector ();
+    try
+    {
+      BulkInputSplitter.split (aFile, EBulkFormat.XML, XML1.length () - 1, aCollector);
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      // expected
+    }
+    // The records before were handled
+    assertEquals (new CommonsArrayList <> (XML2), aCollector.m_aRecords);
+  }
+
+  @Test
+  public void testMalformedLastWindow () throws IOException
+  {
+    final File aFile = _createFile (_utf8 (XML2 + XML2 + "<Invoice>"));
+    try
+    {
+      BulkInputSplitter.split (aFile, EBulkFormat.XML, XML2.length () + 1, new Collector ());
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      // expected
+    }
+  }
+}
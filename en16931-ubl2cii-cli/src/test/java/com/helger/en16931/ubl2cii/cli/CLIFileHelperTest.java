@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jspecify.annotations.NonNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for class {@link CLIFileHelper}.
+ *
+ * @author Philip Helger
+ */
+public final class CLIFileHelperTest
+{
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  @NonNull
+  private static Path _write (@NonNull final File aFile, @NonNull final String sContent) throws IOException
+  {
+    return Files.write (aFile.toPath (), sContent.getBytes (StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testGetIndexedFilename ()
+  {
+    assertEquals ("a-2.xml", CLIFileHelper.getIndexedFilename ("a.xml", 2));
+    assertEquals ("a-3.xml.gz", CLIFileHelper.getIndexedFilename ("a.xml.gz", 3));
+    assertEquals ("a-2", CLIFileHelper.getIndexedFilename ("a", 2));
+    assertEquals (".a-2", CLIFileHelper.getIndexedFilename (".a", 2));
+  }
+
+  @Test
+  public void testMoveToUniqueName () throws IOException
+  {
+    final File aSrcDir = m_aTempDir.newFolder ("src");
+    final File aTargetDir = m_aTempDir.newFolder ("target");
+    _write (new File (aTargetDir, "a.xml"), "existing");
+    _write (new File (aTargetDir, "a-2.xml"), "existing 2");
+
+    final Path aSource = _write (new File (aSrcDir, "a.xml"), "new");
+    final Path aTarget = CLIFileHelper.moveToUniqueName (aSource, aTargetDir.toPath ());
+    assertEquals ("a-3.xml", aTarget.getFileName ().toString ());
+    assertFalse (Files.exists (aSource));
+    assertEquals ("existing", new String (Files.readAllBytes (new File (aTargetDir, "a.xml").toPath ()), StandardCharsets.UTF_8));
+    assertEquals ("new", new String (Files.readAllBytes (aTarget), StandardCharsets.UTF_8));
+
+    // Without collision the name is kept
+    final Path aSource2 = _write (new File (aSrcDir, "b.xml"), "b");
+    assertEquals ("b.xml", CLIFileHelper.moveToUniqueName (aSource2, aTargetDir.toPath ()).getFileName ().toString ());
+  }
+
+  @Test
+  public void testMissingTargetDirKeepsSource () throws IOException
+  {
+    final File aSrcDir = m_aTempDir.newFolder ("src");
+    final Path aSource = _write (new File (aSrcDir, "a.xml"), "a");
+    try
+    {
+      CLIFileHelper.moveToUniqueName (aSource, new File (m_aTempDir.getRoot (), "missing").toPath ());
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      // expected
+    }
+    assertEquals ("a", new String (Files.readAllBytes (aSource), StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import com.helger.base.io.nonblocking.NonBlockingByteArrayInputStream;
+
+/**
+ * Test class for class {@link CLIStreamHelper}.
+ *
+ * @author Philip Helger
+ */
+public final class CLIStreamHelperTest
+{
+  /** An endless stream, as delivered by a decompression bomb */
+  private static final class EndlessInputStream extends InputStream
+  {
+    private long m_nRead = 0;
+
+    @Override
+    public int read ()
+    {
+      m_nRead++;
+      return 'x';
+    }
+
+    @Override
+    public int read (final byte [] aBuf, final int nOfs, final int nLen)
+    {
+      for (int i = 0; i < nLen; ++i)
+        aBuf[nOfs + i] = 'x';
+      m_nRead += nLen;
+      return nLen;
+    }
+  }
+
+  @Test
+  public void testReadAllBytes () throws IOException
+  {
+    final byte [] aData = new byte [1000];
+    for (int i = 0; i < aData.length; ++i)
+      aData[i] = (byte) i;
+
+    assertArrayEquals (aData, CLIStreamHelper.readAllBytes (new NonBlockingByteArrayInputStream (aData), 1000));
+    assertArrayEquals (aData, CLIStreamHelper.readAllBytes (new NonBlockingByteArrayInputStream (aData), 1001));
+    assertEquals (0, CLIStreamHelper.readAllBytes (new NonBlockingByteArrayInputStream (new byte [0]), 1).length);
+
+    try
+    {
+      CLIStreamHelper.readAllBytes (new NonBlockingByteArrayInputStream (aData), 999);
+      fail ();
+    }
+    catch (final CLIStreamHelper.SizeLimitExceededException ex)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEndlessStream () throws IOException
+  {
+    final EndlessInputStream aIS = new EndlessInputStream ();
+    try
+    {
+      CLIStreamHelper.readAllBytes (aIS, 1024 * 1024);
+      fail ();
+    }
+    catch (final CLIStreamHelper.SizeLimitExceededException ex)
+    {
+      // expected
+    }
+    // Reading stopped right after the limit
+    assertEquals (1024 * 1024 + 1, aIS.m_nRead);
+  }
+}
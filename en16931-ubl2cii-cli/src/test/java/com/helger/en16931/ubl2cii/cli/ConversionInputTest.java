@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for class {@link ConversionInput}.
+ *
+ * @author Philip Helger
+ */
+public final class ConversionInputTest
+{
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  private static byte [] _createContent ()
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    for (int i = 0; i < 1000; ++i)
+      aSB.append ("<cbc:Note>Line ").append (i).append ("</cbc:Note>\n");
+    return aSB.toString ().getBytes (StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testUncompressedSize () throws Exception
+  {
+    final byte [] aPlain = _createContent ();
+    final ConversionInput aPlainInput = ConversionInput.ofBytes ("plain", "plain", aPlain);
+    assertEquals (aPlain.length, aPlainInput.getSize ());
+    assertEquals (aPlain.length, aPlainInput.getUncompressedSize ());
+
+    final byte [] aCompressed = CLIStreamHelper.compress (aPlain);
+    final ConversionInput aBytesInput = ConversionInput.ofBytes ("gz", "gz", aCompressed);
+    assertEquals (aCompressed.length, aBytesInput.getSize ());
+    assertEquals (aPlain.length, aBytesInput.getUncompressedSize ());
+
+    // Buffer with a position other than 0
+    final byte [] aPadded = new byte [aCompressed.length + 3];
+    System.arraycopy (aCompressed, 0, aPadded, 3, aCompressed.length);
+    final ByteBuffer aBuffer = ByteBuffer.wrap (aPadded);
+    aBuffer.position (3);
+    final ConversionInput aBufferInput = ConversionInput.ofBuffer ("gz", "gz", null, aBuffer);
+    assertEquals (aCompressed.length, aBufferInput.getSize ());
+    assertEquals (aPlain.length, aBufferInput.getUncompressedSize ());
+
+    final File aFile = m_aTempDir.newFile ("a.xml.gz");
+    Files.write (aFile.toPath (), aCompressed);
+    final ConversionInput aFileInput = ConversionInput.ofFile (aFile);
+    assertEquals (aCompressed.length, aFileInput.getSize ());
+    assertEquals (aPlain.length, aFileInput.getUncompressedSize ());
+  }
+
+  @Test
+  public void testUncompressedSizeTooShort ()
+  {
+    // GZIP magic bytes, but too short for a GZIP trailer
+    final byte [] aBytes = { 0x1f, (byte) 0x8b, 0, 0 };
+    final ConversionInput aInput = ConversionInput.ofBytes ("short", "short", aBytes);
+    assertEquals (4, aInput.getUncompressedSize ());
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.helger.collection.commons.ICommonsSet;
+
+/**
+ * Test class for class {@link ConversionJournal}.
+ *
+ * @author Philip Helger
+ */
+public final class ConversionJournalTest
+{
+  private static final byte [] CII = "<CrossIndustryInvoice/>".getBytes (StandardCharsets.UTF_8);
+  private static final String CHECKSUM = ConversionJournal.getChecksum (CII);
+
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  @Test
+  public void testEmpty () throws IOException
+  {
+    final File aJournalFile = new File (m_aTempDir.getRoot (), "journal.txt");
+    assertTrue (ConversionJournal.readCompletedInputs (aJournalFile).isEmpty ());
+
+    try (final ConversionJournal aJournal = new ConversionJournal (aJournalFile, 1))
+    {
+      assertEquals (aJournalFile, aJournal.getFile ());
+    }
+    assertTrue (aJournalFile.length () > 0);
+    assertTrue (ConversionJournal.readCompletedInputs (aJournalFile).isEmpty ());
+  }
+
+  @Test
+  public void testWriteCrashResume () throws IOException
+  {
+    final File aJournalFile = new File (m_aTempDir.getRoot (), "journal.txt");
+    final File aOut1 = m_aTempDir.newFile ("a-cii.xml");
+    final File aOut2 = m_aTempDir.newFile ("b-cii.xml");
+    final File aOut3 = m_aTempDir.newFile ("c-cii.xml");
+    Files.write (aOut1.toPath (), CII);
+    Files.write (aOut2.toPath (), CII);
+    // Output that was not durable at the time of the crash
+    Files.write (aOut3.toPath (), new byte [0]);
+
+    // No close - simulates an abnormal termination after the sync
+    final ConversionJournal aJournal = new ConversionJournal (aJournalFile, 1);
+    aJournal.append (ConversionJournal.EStatus.SUCCESS, "/in/a.xml", aOut1.getAbsolutePath (), CHECKSUM);
+    aJournal.append (ConversionJournal.EStatus.FAILURE, "/in/b.xml", null, null);
+    aJournal.append (ConversionJournal.EStatus.SUCCESS, "/in/c.xml", aOut3.getAbsolutePath (), CHECKSUM);
+    aJournal.append (ConversionJournal.EStatus.SUCCESS, "/in/d.zip!/d.xml", "/does/not/exist.xml", CHECKSUM);
+    // A line torn by the crash
+    Files.write (aJournalFile.toPath (),
+                 ("ok\t/in/b.xml\t" + aOut2.getAbsolutePath ()).getBytes (StandardCharsets.UTF_8),
+                 StandardOpenOption.APPEND);
+
+    ICommonsSet <String> aCompleted = ConversionJournal.readCompletedInputs (aJournalFile);
+    assertEquals (1, aCompleted.size ());
+    assertTrue (aCompleted.contains ("/in/a.xml"));
+
+    // The resumed run converts the remaining inputs and appends to the journal
+    try (final ConversionJournal aResumed = new ConversionJournal (aJournalFile, 100))
+    {
+      aResumed.append (ConversionJournal.EStatus.SUCCESS, "/in/b.xml", aOut2.getAbsolutePath (), CHECKSUM);
+      Files.write (aOut3.toPath (), CII);
+      aResumed.append (ConversionJournal.EStatus.SUCCESS, "/in/c.xml", aOut3.getAbsolutePath (), CHECKSUM);
+    }
+
+    aCompleted = ConversionJournal.readCompletedInputs (aJournalFile);
+    assertEquals (3, aCompleted.size ());
+    assertTrue (aCompleted.contains ("/in/a.xml"));
+    assertTrue (aCompleted.contains ("/in/b.xml"));
+    assertTrue (aCompleted.contains ("/in/c.xml"));
+    assertFalse (aCompleted.contains ("/in/d.zip!/d.xml"));
+
+    // Damaged output after the run
+    Files.write (aOut2.toPath (), "<Cross".getBytes (StandardCharsets.UTF_8));
+    aCompleted = ConversionJournal.readCompletedInputs (aJournalFile);
+    assertEquals (2, aCompleted.size ());
+    assertFalse (aCompleted.contains ("/in/b.xml"));
+    aJournal.close ();
+  }
+
+  @Test
+  public void testLastStatusWins () throws IOException
+  {
+    final File aJournalFile = new File (m_aTempDir.getRoot (), "journal.txt");
+    final File aOut = m_aTempDir.newFile ("a-cii.xml");
+    Files.write (aOut.toPath (), CII);
+
+    try (final ConversionJournal aJournal = new ConversionJournal (aJournalFile, 1))
+    {
+      aJournal.append (ConversionJournal.EStatus.SUCCESS, "/in/a.xml", aOut.getAbsolutePath (), CHECKSUM);
+      aJournal.append (ConversionJournal.EStatus.FAILURE, "/in/a.xml", null, null);
+    }
+    assertTrue (ConversionJournal.readCompletedInputs (aJournalFile).isEmpty ());
+
+    try (final ConversionJournal aJournal = new ConversionJournal (aJournalFile, 1))
+    {
+      aJournal.append (ConversionJournal.EStatus.SUCCESS, "/in/a.xml", aOut.getAbsolutePath (), CHECKSUM);
+    }
+    assertEquals (1, ConversionJournal.readCompletedInputs (aJournalFile).size ());
+  }
+
+  @Test
+  public void testSpecialCharsInKey () throws IOException
+  {
+    final File aJournalFile = new File (m_aTempDir.getRoot (), "journal.txt");
+    final File aOut = m_aTempDir.newFile ("a-cii.xml");
+    Files.write (aOut.toPath (), CII);
+
+    try (final ConversionJournal aJournal = new ConversionJournal (aJournalFile, 1))
+    {
+      // Tabs and line breaks are replaced, so that the line stays parsable
+      aJournal.append (ConversionJournal.EStatus.SUCCESS, "/in/a\tb\nc.xml", aOut.getAbsolutePath (), CHECKSUM);
+    }
+    final ICommonsSet <String> aCompleted = ConversionJournal.readCompletedInputs (aJournalFile);
+    assertEquals (1, aCompleted.size ());
+    assertTrue (aCompleted.contains ("/in/a b c.xml"));
+  }
+
+  @Test
+  public void testCompressedOutput () throws IOException
+  {
+    final File aOut = m_aTempDir.newFile ("a-cii.xml.gz");
+    try (final OutputStream aOS = new GZIPOutputStream (Files.newOutputStream (aOut.toPath ())))
+    {
+      aOS.write (CII);
+    }
+    assertTrue (ConversionJournal.isOutputIntact (aOut.getAbsolutePath (), CHECKSUM));
+
+    // Truncated GZIP
+    final byte [] aCompressed = Files.readAllBytes (aOut.toPath ());
+    Files.write (aOut.toPath (), Arrays.copyOf (aCompressed, aCompressed.length / 2));
+    assertFalse (ConversionJournal.isOutputIntact (aOut.getAbsolutePath (), CHECKSUM));
+
+    assertFalse (ConversionJournal.isOutputIntact (m_aTempDir.getRoot ().getAbsolutePath (), CHECKSUM));
+    assertFalse (ConversionJournal.isOutputIntact ("stdout", CHECKSUM));
+  }
+}
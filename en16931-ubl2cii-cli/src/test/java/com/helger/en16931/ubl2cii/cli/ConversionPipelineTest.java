@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.junit.Test;
+
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+
+/**
+ * Test class for class {@link ConversionPipeline}.
+ *
+ * @author Philip Helger
+ */
+public final class ConversionPipelineTest
+{
+  private static final int INPUTS = 100;
+
+  /** Records the order of all documents, like a ZIP or stdout target */
+  private static final class OrderedTarget implements IConversionTarget
+  {
+    private final ICommonsList <String> m_aBaseNames = new CommonsArrayList <> ();
+    // Written by the pipeline threads, read by the test thread
+    private final AtomicInteger m_aWritten = new AtomicInteger (0);
+
+    public boolean isThreadSafe ()
+    {
+      return false;
+    }
+
+    @Nullable
+    public String write (@NonNull final String sBaseName, final byte @NonNull [] aCII)
+    {
+      m_aBaseNames.add (sBaseName);
+      m_aWritten.incrementAndGet ();
+      return sBaseName;
+    }
+
+    @Override
+    public void writeFailure (@NonNull final String sBaseName)
+    {
+      m_aBaseNames.add (sBaseName);
+      m_aWritten.incrementAndGet ();
+    }
+
+    public void close ()
+    {}
+  }
+
+  @NonNull
+  private static ICommonsList <String> _convert (final int nThreads,
+                                                 final boolean bLargestFirst,
+                                                 @Nullable final HeapBudget aHeapBudget) throws IOException
+  {
+    final OrderedTarget aTarget = new OrderedTarget ();
+    try (final ConversionPipeline aPipeline = new ConversionPipeline (aTarget,
+                                                                      null,
+                                                                      null,
+                                                                      aHeapBudget,
+                                                                      nThreads,
+                                                                      bLargestFirst))
+    {
+      assertTrue (aPipeline.isOrdered ());
+      for (int i = 0; i < INPUTS; ++i)
+      {
+        // Growing and shrinking sizes, so that largest first reorders them.
+        // The content is no valid UBL, so only the order of the failures is
+        // relevant.
+        final byte [] aContent = new byte [1 + (i % 7) * 1000 + (i % 3) * 10_000];
+        Arrays.fill (aContent, (byte) 'x');
+        aPipeline.submit (ConversionInput.ofBytes ("input " + i, "doc" + i, aContent));
+      }
+      aPipeline.flush ();
+      assertEquals (0, aPipeline.getSuccessCount ());
+      assertEquals (INPUTS, aPipeline.getFailureCount ());
+    }
+    return aTarget.m_aBaseNames;
+  }
+
+  @Test
+  public void testOrderedTargetKeepsSubmissionOrder () throws IOException
+  {
+    final ICommonsList <String> aExpected = new CommonsArrayList <> ();
+    for (int i = 0; i < INPUTS; ++i)
+      aExpected.add ("doc" + i);
+
+    assertEquals (aExpected, _convert (1, true, null));
+    assertEquals (aExpected, _convert (4, false, null));
+    assertEquals (aExpected, _convert (4, true, null));
+    assertEquals (aExpected, _convert (3, true, new HeapBudget (50_000, HeapBudget.DEFAULT_FACTOR)));
+  }
+
+  @Test
+  public void testOrderedTargetWritesWithoutFlush () throws Exception
+  {
+    // Like a framed stdin stream, where the producer waits for each answer
+    // before it sends the next document
+    final OrderedTarget aTarget = new OrderedTarget ();
+    try (final ConversionPipeline aPipeline = new ConversionPipeline (aTarget, null, null, null, 4, true))
+    {
+      for (int i = 0; i < 5; ++i)
+      {
+        aPipeline.submit (ConversionInput.ofBytes ("input " + i, "doc" + i, new byte [] { 'x' }));
+        final long nEnd = System.currentTimeMillis () + 10_000;
+        while (aTarget.m_aWritten.get () <= i)
+        {
+          assertTrue ("Input " + i + " was not written without flush", System.currentTimeMillis () < nEnd);
+          Thread.sleep (10);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.junit.After;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import picocli.CommandLine;
+
+/**
+ * Test class for class {@link ConversionServerCommand}.
+ *
+ * @author Philip Helger
+ */
+public final class ConversionServerCommandTest
+{
+  private static final File EXAMPLE_FILE = new File ("src/test/resources/base-example.xml");
+
+  /** The status, headers and body of a single response */
+  private static final class Response
+  {
+    private final int m_nStatus;
+    private final String m_sContentType;
+    private final long m_nContentLength;
+    private final byte [] m_aBody;
+
+    Response (final int nStatus, final String sContentType, final long nContentLength, final byte [] aBody)
+    {
+      m_nStatus = nStatus;
+      m_sContentType = sContentType;
+      m_nContentLength = nContentLength;
+      m_aBody = aBody;
+    }
+
+    @NonNull
+    String getBodyAsString ()
+    {
+      return new String (m_aBody, StandardCharsets.UTF_8);
+    }
+  }
+
+  private ExecutorService m_aExecutor;
+  private HttpServer m_aServer;
+
+  @After
+  public void tearDown ()
+  {
+    if (m_aServer != null)
+      m_aServer.stop (0);
+    if (m_aExecutor != null)
+      m_aExecutor.shutdownNow ();
+  }
+
+  private void _start (final String @NonNull... aArgs) throws IOException
+  {
+    final ConversionServerCommand aCmd = new ConversionServerCommand ();
+    final String [] aAllArgs = new String [aArgs.length + 2];
+    // Any free port
+    aAllArgs[0] = "--port";
+    aAllArgs[1] = "0";
+    System.arraycopy (aArgs, 0, aAllArgs, 2, aArgs.length);
+    new CommandLine (aCmd).parseArgs (aAllArgs);
+
+    m_aExecutor = Executors.newFixedThreadPool (4);
+    m_aServer = aCmd.createServer (m_aExecutor);
+    m_aServer.start ();
+  }
+
+  @NonNull
+  private Response _request (@NonNull final String sMethod,
+                             @NonNull final String sPath,
+                             final byte @Nullable [] aBody) throws IOException
+  {
+    final URL aURL = URI.create ("http://127.0.0.1:" + m_aServer.getAddress ().getPort () + sPath).toURL ();
+    final HttpURLConnection aConn = (HttpURLConnection) aURL.openConnection ();
+    try
+    {
+      aConn.setRequestMethod (sMethod);
+      if (aBody != null)
+      {
+        aConn.setDoOutput (true);
+        aConn.setFixedLengthStreamingMode (aBody.length);
+        try (final OutputStream aOS = aConn.getOutputStream ())
+        {
+          aOS.write (aBody);
+        }
+      }
+      final int nStatus = aConn.getResponseCode ();
+      final byte [] aResponseBody;
+      try (final InputStream aIS = nStatus < 400 ? aConn.getInputStream () : aConn.getErrorStream ())
+      {
+        aResponseBody = aIS == null ? new byte [0] : aIS.readAllBytes ();
+      }
+      return new Response (nStatus, aConn.getContentType (), aConn.getContentLengthLong (), aResponseBody);
+    }
+    finally
+    {
+      aConn.disconnect ();
+    }
+  }
+
+  @Test
+  public void testHealth () throws IOException
+  {
+    _start ();
+    assertEquals (200, _request ("GET", "/health", null).m_nStatus);
+    assertEquals (405, _request ("POST", "/health", new byte [0]).m_nStatus);
+  }
+
+  @Test
+  public void testConvert () throws IOException
+  {
+    _start ();
+    final Response aResponse = _request ("POST", "/convert", Files.readAllBytes (EXAMPLE_FILE.toPath ()));
+    assertEquals (aResponse.getBodyAsString (), 200, aResponse.m_nStatus);
+    assertEquals ("application/xml", aResponse.m_sContentType);
+    // The complete document is announced before it is sent
+    assertEquals (aResponse.m_aBody.length, aResponse.m_nContentLength);
+    final String sCII = aResponse.getBodyAsString ();
+    assertTrue (sCII, sCII.contains ("CrossIndustryInvoice"));
+    assertTrue (sCII, sCII.trim ().endsWith (">"));
+  }
+
+  @Test
+  public void testInvalidRequests () throws IOException
+  {
+    _start ("--max-request-size", "1000");
+
+    assertEquals (405, _request ("GET", "/convert", null).m_nStatus);
+
+    // Not UBL
+    final Response aResponse = _request ("POST", "/convert", "<root/>".getBytes (StandardCharsets.UTF_8));
+    assertEquals (400, aResponse.m_nStatus);
+    assertTrue (aResponse.m_sContentType.startsWith ("text/plain"));
+
+    // Exceeds the maximum size
+    assertEquals (413, _request ("POST", "/convert", Files.readAllBytes (EXAMPLE_FILE.toPath ())).m_nStatus);
+  }
+
+  @Test
+  public void testTimeoutIsNoSuccess () throws IOException
+  {
+    // The deadline expires before the conversion can finish
+    _start ("--timeout", "1");
+    final byte [] aUBL = Files.readAllBytes (EXAMPLE_FILE.toPath ());
+    for (int i = 0; i < 5; ++i)
+    {
+      final Response aResponse = _request ("POST", "/convert", aUBL);
+      // Never a truncated document with status 200
+      if (aResponse.m_nStatus == 200)
+        assertEquals (aResponse.m_aBody.length, aResponse.m_nContentLength);
+      else
+        assertEquals (aResponse.getBodyAsString (), 504, aResponse.m_nStatus);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+import com.helger.en16931.ubl2cii.CountingConversionMetrics;
+import com.helger.en16931.ubl2cii.EConversionPhase;
+import com.helger.en16931.ubl2cii.IConversionMetrics;
+import com.helger.json.IJsonObject;
+
+/**
+ * Test class for class {@link ConversionStatistics}.
+ *
+ * @author Philip Helger
+ */
+public final class ConversionStatisticsTest
+{
+  private static double _getTotalMillis (final IJsonObject aPhases, final EConversionPhase ePhase)
+  {
+    return aPhases.getAsObject (ePhase.getID ()).getAsValue ("totalMillis").getAsDouble ();
+  }
+
+  @Test
+  public void testPhasesFromMetrics ()
+  {
+    final CountingConversionMetrics aDelegate = new CountingConversionMetrics ();
+    final IConversionMetrics aMetrics = ConversionStatistics.createMetrics (aDelegate);
+
+    final ConversionStatistics.DocumentMeasurement aMeasurement = new ConversionStatistics.DocumentMeasurement ("doc");
+    ConversionStatistics.bind (aMeasurement);
+    try
+    {
+      aMetrics.onPhase (EConversionPhase.PARSE, 1_000_000);
+      aMetrics.onPhase (EConversionPhase.MAP_HEADER, 2_000_000);
+      aMetrics.onPhase (EConversionPhase.MAP_HEADER, 2_000_000);
+    }
+    finally
+    {
+      ConversionStatistics.bind (null);
+    }
+    // Not bound anymore
+    aMetrics.onPhase (EConversionPhase.PARSE, 1_000_000);
+    aMeasurement.addDuration (EConversionPhase.WRITE, 3_000_000);
+    aMeasurement.setSuccess (true);
+
+    // The delegate receives everything
+    assertEquals (2, aDelegate.getPhaseCount (EConversionPhase.PARSE));
+    assertEquals (2, aDelegate.getPhaseCount (EConversionPhase.MAP_HEADER));
+
+    final ConversionStatistics aStatistics = new ConversionStatistics (1);
+    aStatistics.add (aMeasurement);
+    final IJsonObject aJson = aStatistics.getAsJson ();
+    assertEquals (1, aJson.getAsValue ("documents").getAsInt ());
+
+    // All phases are reported with the IDs of the core phases
+    final IJsonObject aPhases = aJson.getAsObject ("phases");
+    for (final EConversionPhase ePhase : EConversionPhase.values ())
+      assertNotNull (ePhase.getID (), aPhases.getAsObject (ePhase.getID ()));
+    assertEquals (1, _getTotalMillis (aPhases, EConversionPhase.PARSE), 0.001);
+    assertEquals (4, _getTotalMillis (aPhases, EConversionPhase.MAP_HEADER), 0.001);
+    assertEquals (0, _getTotalMillis (aPhases, EConversionPhase.MARSHAL), 0.001);
+    assertEquals (3, _getTotalMillis (aPhases, EConversionPhase.WRITE), 0.001);
+    assertEquals (8, aPhases.getAsObject ("total").getAsValue ("totalMillis").getAsDouble (), 0.001);
+
+    final IJsonObject aSlowest = aJson.getAsArray ("slowest").getObjectAtIndex (0);
+    assertEquals ("doc", aSlowest.getAsValue ("name").getAsString ());
+    assertEquals (4, aSlowest.getAsObject ("phaseMillis").getAsValue ("map-header").getAsDouble (), 0.001);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for class {@link DirectoryConversionTarget}.
+ *
+ * @author Philip Helger
+ */
+public final class DirectoryConversionTargetTest
+{
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  @Test
+  public void testSameBaseName () throws Exception
+  {
+    final File aDir = m_aTempDir.newFolder ("out");
+    final byte [] aFirst = "<first/>".getBytes (StandardCharsets.UTF_8);
+    final byte [] aSecond = "<second/>".getBytes (StandardCharsets.UTF_8);
+    final byte [] aThird = "<third/>".getBytes (StandardCharsets.UTF_8);
+    try (final DirectoryConversionTarget aTarget = new DirectoryConversionTarget (aDir, "-cii", false, EFsyncPolicy.NONE))
+    {
+      // E.g. 'a/x.xml' and 'b/x.xml' from a ZIP file
+      assertEquals (new File (aDir, "x-cii.xml").getAbsolutePath (), aTarget.write ("x", aFirst));
+      assertEquals (new File (aDir, "x-cii-2.xml").getAbsolutePath (), aTarget.write ("x", aSecond));
+      assertArrayEquals (aFirst, Files.readAllBytes (new File (aDir, "x-cii.xml").toPath ()));
+      assertArrayEquals (aSecond, Files.readAllBytes (new File (aDir, "x-cii-2.xml").toPath ()));
+
+      // A later batch replaces the files of the previous one
+      aTarget.syncBatch ();
+      assertEquals (new File (aDir, "x-cii.xml").getAbsolutePath (), aTarget.write ("x", aThird));
+      assertArrayEquals (aThird, Files.readAllBytes (new File (aDir, "x-cii.xml").toPath ()));
+    }
+    assertEquals (2, aDir.list ().length);
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.helger.base.io.nonblocking.NonBlockingByteArrayInputStream;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+
+/**
+ * Test class for class {@link EFraming}.
+ *
+ * @author Philip Helger
+ */
+public final class EFramingTest
+{
+  private static final byte [] [] RECORDS = { "<a/>".getBytes (StandardCharsets.UTF_8),
+                                              new byte [0],
+                                              "<Invoice>äöü</Invoice>".getBytes (StandardCharsets.UTF_8) };
+
+  @Test
+  public void testRoundTrip () throws IOException
+  {
+    for (final EFraming e : EFraming.values ())
+    {
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      for (final byte [] aRecord : RECORDS)
+        e.writeRecord (aBAOS, aRecord);
+
+      final InputStream aIS = new NonBlockingByteArrayInputStream (aBAOS.toByteArray ());
+      for (final byte [] aRecord : RECORDS)
+        assertArrayEquals (e.name (), aRecord, e.readRecord (aIS));
+      assertNull (e.readRecord (aIS));
+    }
+  }
+
+  @Test
+  public void testEmptyStream () throws IOException
+  {
+    for (final EFraming e : EFraming.values ())
+      assertNull (e.readRecord (new NonBlockingByteArrayInputStream (new byte [0])));
+  }
+
+  @Test
+  public void testNULUnterminatedLastRecord () throws IOException
+  {
+    final InputStream aIS = new NonBlockingByteArrayInputStream ("a\0b".getBytes (StandardCharsets.US_ASCII));
+    assertArrayEquals ("a".getBytes (StandardCharsets.US_ASCII), EFraming.NUL.readRecord (aIS));
+    assertArrayEquals ("b".getBytes (StandardCharsets.US_ASCII), EFraming.NUL.readRecord (aIS));
+    assertNull (EFraming.NUL.readRecord (aIS));
+  }
+
+  @Test
+  public void testBinarySafe () throws IOException
+  {
+    assertTrue (EFraming.LENGTH.isBinarySafe ());
+    assertFalse (EFraming.NUL.isBinarySafe ());
+
+    final byte [] aBinary = { 0x1f, (byte) 0x8b, 0, 1, 0 };
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    EFraming.LENGTH.writeRecord (aBAOS, aBinary);
+    assertArrayEquals (aBinary, EFraming.LENGTH.readRecord (new NonBlockingByteArrayInputStream (aBAOS.toByteArray ())));
+
+    try
+    {
+      EFraming.NUL.writeRecord (new NonBlockingByteArrayOutputStream (), aBinary);
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testLengthLimit ()
+  {
+    // 0xffffffff is a valid unsigned length, but too large for an array
+    try
+    {
+      EFraming.LENGTH.readRecord (new NonBlockingByteArrayInputStream (new byte [] { (byte) 0xff,
+                                                                                     (byte) 0xff,
+                                                                                     (byte) 0xff,
+                                                                                     (byte) 0xff }));
+      fail ();
+    }
+    catch (final EOFException ex)
+    {
+      fail ("The length must be rejected before reading");
+    }
+    catch (final IOException ex)
+    {
+      assertTrue (ex.getMessage ().contains ("4294967295"));
+    }
+  }
+
+  @Test
+  public void testTruncated ()
+  {
+    // Truncated length
+    try
+    {
+      EFraming.LENGTH.readRecord (new NonBlockingByteArrayInputStream (new byte [] { 0, 0 }));
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      assertTrue (ex instanceof EOFException);
+    }
+
+    // Truncated content
+    try
+    {
+      EFraming.LENGTH.readRecord (new NonBlockingByteArrayInputStream (new byte [] { 0, 0, 0, 10, 'a', 'b' }));
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      assertTrue (ex instanceof EOFException);
+    }
+  }
+}
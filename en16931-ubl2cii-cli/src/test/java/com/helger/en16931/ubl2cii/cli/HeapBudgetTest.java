@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test class for class {@link HeapBudget}.
+ *
+ * @author Philip Helger
+ */
+public final class HeapBudgetTest
+{
+  private static final long MB = 1024L * 1024;
+
+  @Test
+  public void testEstimate ()
+  {
+    final HeapBudget aBudget = new HeapBudget (100 * MB, HeapBudget.DEFAULT_FACTOR);
+    assertEquals (100 * MB, aBudget.getBudget ());
+    assertEquals (HeapBudget.DEFAULT_FACTOR * MB, aBudget.getEstimate (MB));
+    // Empty inputs still need some memory
+    assertEquals (HeapBudget.DEFAULT_FACTOR, aBudget.getEstimate (0));
+    assertEquals (Long.MAX_VALUE, aBudget.getEstimate (Long.MAX_VALUE / 2));
+  }
+
+  @Test
+  public void testTryAcquire ()
+  {
+    final HeapBudget aBudget = new HeapBudget (100, 1);
+    assertTrue (aBudget.tryAcquire (60));
+    assertTrue (aBudget.tryAcquire (40));
+    assertFalse (aBudget.tryAcquire (1));
+    aBudget.release (40);
+    assertFalse (aBudget.tryAcquire (41));
+    assertTrue (aBudget.tryAcquire (40));
+    aBudget.release (40);
+    aBudget.release (60);
+
+    // Larger than the whole budget is only admitted when nothing else runs
+    assertTrue (aBudget.tryAcquire (1000));
+    assertFalse (aBudget.tryAcquire (1));
+    aBudget.release (1000);
+    assertTrue (aBudget.tryAcquire (1));
+    assertFalse (aBudget.tryAcquire (1000));
+    aBudget.release (1);
+  }
+
+  @Test
+  public void testAcquireWaits () throws InterruptedException
+  {
+    final HeapBudget aBudget = new HeapBudget (100, 1);
+    aBudget.acquire (80);
+
+    final CountDownLatch aAcquired = new CountDownLatch (1);
+    final Thread aThread = new Thread ( () -> {
+      try
+      {
+        aBudget.acquire (50);
+        aAcquired.countDown ();
+      }
+      catch (final InterruptedException ex)
+      {
+        Thread.currentThread ().interrupt ();
+      }
+    });
+    aThread.start ();
+    assertFalse (aAcquired.await (200, TimeUnit.MILLISECONDS));
+
+    aBudget.release (80);
+    assertTrue (aAcquired.await (10, TimeUnit.SECONDS));
+    aThread.join ();
+    assertFalse (aBudget.tryAcquire (51));
+    aBudget.release (50);
+  }
+
+  @Test
+  public void testParseBudget ()
+  {
+    final long nMaxHeap = 1000 * MB;
+    assertEquals (750 * MB, HeapBudget.parseBudget ("75%", nMaxHeap));
+    assertEquals (nMaxHeap, HeapBudget.parseBudget ("100%", nMaxHeap));
+    assertEquals (5 * MB, HeapBudget.parseBudget (" 0.5% ", nMaxHeap));
+    assertEquals (12345, HeapBudget.parseBudget ("12345", nMaxHeap));
+    assertEquals (64 * 1024, HeapBudget.parseBudget ("64k", nMaxHeap));
+    assertEquals (256 * MB, HeapBudget.parseBudget ("256M", nMaxHeap));
+    assertEquals (2 * 1024 * MB, HeapBudget.parseBudget ("2g", nMaxHeap));
+    // Independent of the heap size
+    assertEquals (2 * 1024 * MB, HeapBudget.parseBudget ("2g", MB));
+
+    for (final String sInvalid : new String [] { "",
+                                                 "%",
+                                                 "0%",
+                                                 "101%",
+                                                 "-5%",
+                                                 "0",
+                                                 "-1",
+                                                 "1t",
+                                                 "g",
+                                                 "abc",
+                                                 "1.5g",
+                                                 "99999999999g" })
+      assertEquals (sInvalid, -1, HeapBudget.parseBudget (sInvalid, nMaxHeap));
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.jspecify.annotations.NonNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.helger.collection.commons.ICommonsList;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+
+/**
+ * Test class for classes {@link PackedContainerConversionTarget} and
+ * {@link PackedContainerReader}.
+ *
+ * @author Philip Helger
+ */
+public final class PackedContainerTest
+{
+  private static final byte [] CII1 = "<CrossIndustryInvoice>1</CrossIndustryInvoice>".getBytes (StandardCharsets.UTF_8);
+  private static final byte [] CII2 = "<CrossIndustryInvoice>2</CrossIndustryInvoice>".getBytes (StandardCharsets.UTF_8);
+
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  @NonNull
+  private File _createContainer (final boolean bCompress) throws IOException
+  {
+    final File aFile = new File (m_aTempDir.getRoot (), "out" + PackedContainerReader.FILE_EXTENSION);
+    try (final PackedContainerConversionTarget aTarget = new PackedContainerConversionTarget (aFile,
+                                                                                             bCompress,
+                                                                                             EFsyncPolicy.PER_BATCH))
+    {
+      assertFalse (aTarget.isThreadSafe ());
+      assertEquals (aFile.getAbsolutePath () + "#1", aTarget.write ("a", CII1));
+      assertEquals (aFile.getAbsolutePath () + "#2", aTarget.write ("b", CII2));
+      // Names are not necessarily unique
+      assertEquals (aFile.getAbsolutePath () + "#3", aTarget.write ("a", CII2));
+      aTarget.complete ();
+      // Not visible before it was closed
+      assertFalse (aFile.exists ());
+    }
+    assertTrue (aFile.exists ());
+    return aFile;
+  }
+
+  private static void _assertInvalid (@NonNull final File aFile)
+  {
+    try (final PackedContainerReader aReader = new PackedContainerReader (aFile))
+    {
+      fail ("Expected '" + aFile + "' to be invalid but got " + aReader.getEntryCount () + " entries");
+    }
+    catch (final IOException ex)
+    {
+      // expected
+    }
+  }
+
+  private void _assertRoundTrip (final boolean bCompress) throws IOException
+  {
+    final File aFile = _createContainer (bCompress);
+    try (final PackedContainerReader aReader = new PackedContainerReader (aFile))
+    {
+      assertEquals (3, aReader.getEntryCount ());
+      final ICommonsList <PackedContainerReader.Entry> aEntries = aReader.getAllEntries ();
+      assertEquals (3, aEntries.size ());
+
+      final String [] aNames = { "a", "b", "a" };
+      final byte [] [] aContents = { CII1, CII2, CII2 };
+      long nExpectedOffset = PackedContainerReader.HEADER_MAGIC.length ();
+      for (int i = 0; i < aEntries.size (); ++i)
+      {
+        final PackedContainerReader.Entry aEntry = aEntries.get (i);
+        assertEquals (i + 1, aEntry.getDocumentID ());
+        assertEquals (aNames[i], aEntry.getInputName ());
+        assertEquals (nExpectedOffset, aEntry.getOffset ());
+        nExpectedOffset += aEntry.getLength ();
+
+        final byte [] aRaw = aReader.readRawEntry (aEntry);
+        assertEquals (aEntry.getLength (), aRaw.length);
+        assertEquals (bCompress, UBLToCIIConversionHelper.isGZIPCompressed (aRaw));
+        assertArrayEquals (aContents[i], aReader.readEntry (aEntry));
+      }
+
+      // Limit the uncompressed size
+      try
+      {
+        aReader.readEntry (aEntries.get (0), CII1.length - 1);
+        fail ();
+      }
+      catch (final IOException ex)
+      {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testRoundTrip () throws IOException
+  {
+    _assertRoundTrip (false);
+  }
+
+  @Test
+  public void testRoundTripCompressed () throws IOException
+  {
+    _assertRoundTrip (true);
+  }
+
+  @Test
+  public void testIncompleteIsDiscarded () throws IOException
+  {
+    final File aFile = new File (m_aTempDir.getRoot (), "aborted" + PackedContainerReader.FILE_EXTENSION);
+    try (final PackedContainerConversionTarget aTarget = new PackedContainerConversionTarget (aFile,
+                                                                                             false,
+                                                                                             EFsyncPolicy.NONE))
+    {
+      aTarget.write ("a", CII1);
+      // No complete, like a run that failed
+    }
+    assertFalse (aFile.exists ());
+    // The temporary file is gone as well
+    assertEquals (0, m_aTempDir.getRoot ().list ().length);
+  }
+
+  @Test
+  public void testEmpty () throws IOException
+  {
+    final File aFile = new File (m_aTempDir.getRoot (), "empty" + PackedContainerReader.FILE_EXTENSION);
+    try (final PackedContainerConversionTarget aTarget = new PackedContainerConversionTarget (aFile,
+                                                                                             false,
+                                                                                             EFsyncPolicy.NONE))
+    {
+      aTarget.complete ();
+    }
+    try (final PackedContainerReader aReader = new PackedContainerReader (aFile))
+    {
+      assertEquals (0, aReader.getEntryCount ());
+      assertTrue (aReader.getAllEntries ().isEmpty ());
+    }
+  }
+
+  @Test
+  public void testTooSmall () throws IOException
+  {
+    final File aFile = m_aTempDir.newFile ("small" + PackedContainerReader.FILE_EXTENSION);
+    _assertInvalid (aFile);
+    Files.write (aFile.toPath (), PackedContainerReader.HEADER_MAGIC.getBytes (StandardCharsets.US_ASCII));
+    _assertInvalid (aFile);
+  }
+
+  @Test
+  public void testCorruptHeader () throws IOException
+  {
+    final File aFile = _createContainer (false);
+    final byte [] aBytes = Files.readAllBytes (aFile.toPath ());
+    aBytes[0] = 'X';
+    Files.write (aFile.toPath (), aBytes);
+    _assertInvalid (aFile);
+  }
+
+  @Test
+  public void testTruncated () throws IOException
+  {
+    // E.g. the process died before the target was closed
+    final File aFile = _createContainer (false);
+    final byte [] aBytes = Files.readAllBytes (aFile.toPath ());
+    for (final int nCut : new int [] { 1, PackedContainerReader.TRAILER_SIZE, aBytes.length / 2 })
+    {
+      Files.write (aFile.toPath (), Arrays.copyOf (aBytes, aBytes.length - nCut));
+      _assertInvalid (aFile);
+    }
+  }
+
+  @Test
+  public void testCorruptTrailer () throws IOException
+  {
+    final File aFile = _createContainer (false);
+    final byte [] aBytes = Files.readAllBytes (aFile.toPath ());
+    final int nTrailerStart = aBytes.length - PackedContainerReader.TRAILER_SIZE;
+    final long nIndexOffset = ByteBuffer.wrap (aBytes, nTrailerStart, 8).getLong ();
+
+    // Index offset inside the header
+    ByteBuffer.wrap (aBytes, nTrailerStart, 8).putLong (1);
+    Files.write (aFile.toPath (), aBytes);
+    _assertInvalid (aFile);
+
+    // Index offset behind the trailer
+    ByteBuffer.wrap (aBytes, nTrailerStart, 8).putLong (aBytes.length);
+    Files.write (aFile.toPath (), aBytes);
+    _assertInvalid (aFile);
+
+    // Negative entry count
+    ByteBuffer.wrap (aBytes, nTrailerStart, 8).putLong (nIndexOffset);
+    ByteBuffer.wrap (aBytes, nTrailerStart + 8, 4).putInt (-1);
+    Files.write (aFile.toPath (), aBytes);
+    _assertInvalid (aFile);
+
+    // More entries than the index contains
+    ByteBuffer.wrap (aBytes, nTrailerStart + 8, 4).putInt (4);
+    Files.write (aFile.toPath (), aBytes);
+    _assertInvalid (aFile);
+
+    // Restored
+    ByteBuffer.wrap (aBytes, nTrailerStart + 8, 4).putInt (3);
+    Files.write (aFile.toPath (), aBytes);
+    try (final PackedContainerReader aReader = new PackedContainerReader (aFile))
+    {
+      assertEquals (3, aReader.getEntryCount ());
+    }
+  }
+
+  @Test
+  public void testCorruptIndex () throws IOException
+  {
+    final File aFile = _createContainer (false);
+    final byte [] aBytes = Files.readAllBytes (aFile.toPath ());
+    final int nTrailerStart = aBytes.length - PackedContainerReader.TRAILER_SIZE;
+    final int nIndexOffset = (int) ByteBuffer.wrap (aBytes, nTrailerStart, 8).getLong ();
+    // Document ID (int), input name "a" (short length + 1 byte), offset (long)
+    final int nOffsetPos = nIndexOffset + 4 + 2 + 1;
+    final int nLengthPos = nOffsetPos + 8;
+    final long nOffset = ByteBuffer.wrap (aBytes, nOffsetPos, 8).getLong ();
+    final int nLength = ByteBuffer.wrap (aBytes, nLengthPos, 4).getInt ();
+    assertEquals (PackedContainerReader.HEADER_MAGIC.length (), nOffset);
+    assertEquals (CII1.length, nLength);
+
+    // Offset inside the header
+    ByteBuffer.wrap (aBytes, nOffsetPos, 8).putLong (0);
+    Files.write (aFile.toPath (), aBytes);
+    _assertInvalid (aFile);
+
+    // Document overlaps the index
+    ByteBuffer.wrap (aBytes, nOffsetPos, 8).putLong (nOffset);
+    ByteBuffer.wrap (aBytes, nLengthPos, 4).putInt (nIndexOffset);
+    Files.write (aFile.toPath (), aBytes);
+    _assertInvalid (aFile);
+
+    // Negative length
+    ByteBuffer.wrap (aBytes, nLengthPos, 4).putInt (-1);
+    Files.write (aFile.toPath (), aBytes);
+    _assertInvalid (aFile);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import picocli.CommandLine.TypeConversionException;
+
+/**
+ * Test class for class {@link ShardSpec}.
+ *
+ * @author Philip Helger
+ */
+public final class ShardSpecTest
+{
+  @Test
+  public void testParse ()
+  {
+    final ShardSpec.Converter aConverter = new ShardSpec.Converter ();
+    ShardSpec aShard = aConverter.convert ("1/4");
+    assertEquals (1, aShard.getIndex ());
+    assertEquals (4, aShard.getCount ());
+    assertEquals ("1/4", aShard.toString ());
+
+    aShard = aConverter.convert (" 3 / 3 ");
+    assertEquals (3, aShard.getIndex ());
+    assertEquals (3, aShard.getCount ());
+
+    aShard = aConverter.convert ("1/1");
+    assertEquals (1, aShard.getIndex ());
+    assertEquals (1, aShard.getCount ());
+
+    for (final String sInvalid : new String [] { "",
+                                                 "1",
+                                                 "/4",
+                                                 "1/",
+                                                 "0/4",
+                                                 "5/4",
+                                                 "-1/4",
+                                                 "1/0",
+                                                 "1/-4",
+                                                 "a/b",
+                                                 "1/2/3",
+                                                 "1.5/4" })
+      try
+      {
+        aConverter.convert (sInvalid);
+        fail ("'" + sInvalid + "' should be invalid");
+      }
+      catch (final TypeConversionException ex)
+      {
+        // expected
+      }
+  }
+
+  @Test
+  public void testShardOf ()
+  {
+    // Must be identical on all platforms and JVMs
+    assertEquals (1, ShardSpec.getShardOf ("invoices/a.xml", 1));
+    assertEquals (2, ShardSpec.getShardOf ("invoices/a.xml", 2));
+    assertEquals (4, ShardSpec.getShardOf ("invoices/a.xml", 7));
+    assertEquals (16, ShardSpec.getShardOf ("b.xml", 16));
+    assertEquals (2, ShardSpec.getShardOf ("dir/sub/c.xml", 3));
+
+    for (int nCount = 1; nCount <= 10; ++nCount)
+      for (int i = 0; i < 100; ++i)
+      {
+        final int nShard = ShardSpec.getShardOf ("file" + i + ".xml", nCount);
+        assertTrue (nShard >= 1 && nShard <= nCount);
+      }
+  }
+
+  @Test
+  public void testShardKey ()
+  {
+    assertEquals ("invoices/a.xml", ShardSpec.getShardKey (new File ("invoices/a.xml")));
+    assertEquals ("invoices/a.xml", ShardSpec.getShardKey (new File ("invoices/../invoices/./a.xml")));
+    assertEquals ("a.xml", ShardSpec.getShardKey (new File ("a.xml").getAbsoluteFile ()));
+  }
+
+  @Test
+  public void testEachFileInExactlyOneShard ()
+  {
+    final int nCount = 4;
+    final int [] aPerShard = new int [nCount];
+    for (int i = 0; i < 200; ++i)
+    {
+      final File aFile = new File ("batch/invoice-" + i + ".xml");
+      int nMatches = 0;
+      for (int nIndex = 1; nIndex <= nCount; ++nIndex)
+        if (new ShardSpec (nIndex, nCount).contains (aFile))
+        {
+          nMatches++;
+          aPerShard[nIndex - 1]++;
+        }
+      assertEquals (1, nMatches);
+    }
+    // Roughly equally distributed
+    for (final int nFiles : aPerShard)
+      assertTrue (Integer.toString (nFiles), nFiles > 20);
+  }
+}
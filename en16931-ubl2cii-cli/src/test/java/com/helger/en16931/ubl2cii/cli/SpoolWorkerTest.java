@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.jspecify.annotations.NonNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.helger.base.state.ESuccess;
+import com.helger.collection.commons.CommonsHashSet;
+import com.helger.collection.commons.ICommonsSet;
+
+/**
+ * Test class for class {@link SpoolWorker}.
+ *
+ * @author Philip Helger
+ */
+public final class SpoolWorkerTest
+{
+  private static final String WORKER_ID = "worker1";
+
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  private static void _write (@NonNull final File aFile, @NonNull final String sContent) throws IOException
+  {
+    aFile.getParentFile ().mkdirs ();
+    Files.write (aFile.toPath (), sContent.getBytes (StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSameNameIsNotOverwritten () throws Exception
+  {
+    final File aSpoolDir = m_aTempDir.newFolder ("spool");
+    final File aDoneDir = new File (m_aTempDir.getRoot (), "done");
+    final File aFailedDir = new File (m_aTempDir.getRoot (), "failed");
+    final File aClaimDir = new File (aSpoolDir, ".claims/" + WORKER_ID);
+
+    // Claimed by a previous run that crashed, and delivered again since
+    _write (new File (aClaimDir, "a.xml"), "old");
+    _write (new File (aSpoolDir, "a.xml"), "new");
+    _write (new File (aSpoolDir, "b.xml"), "b");
+
+    final ICommonsSet <String> aConverted = new CommonsHashSet <> ();
+    final IFileConverter aConverter = aSrcFile -> {
+      final String sContent = new String (Files.readAllBytes (aSrcFile.toPath ()), StandardCharsets.UTF_8);
+      synchronized (aConverted)
+      {
+        assertTrue (sContent, aConverted.add (sContent));
+        aConverted.notifyAll ();
+      }
+      return ESuccess.SUCCESS;
+    };
+    final SpoolWorker aWorker = new SpoolWorker (aSpoolDir, aDoneDir, aFailedDir, WORKER_ID, 2, 0, 20, 60_000, aConverter);
+    final Thread aThread = new Thread ( () -> {
+      try
+      {
+        aWorker.run ();
+      }
+      catch (final IOException ex)
+      {
+        throw new IllegalStateException (ex);
+      }
+    });
+    aThread.start ();
+    try
+    {
+      final long nEnd = System.nanoTime () + TimeUnit.SECONDS.toNanos (10);
+      synchronized (aConverted)
+      {
+        while (aConverted.size () < 3 && System.nanoTime () < nEnd)
+          aConverted.wait (100);
+      }
+    }
+    finally
+    {
+      aWorker.stopAndWait (10_000);
+      aThread.join ();
+    }
+
+    // Both versions of a.xml were converted
+    assertEquals (new CommonsHashSet <> ("old", "new", "b"), aConverted);
+    assertTrue (new File (aDoneDir, "a.xml").exists ());
+    assertTrue (new File (aDoneDir, "a-2.xml").exists ());
+    assertTrue (new File (aDoneDir, "b.xml").exists ());
+    assertFalse (new File (aSpoolDir, "a.xml").exists ());
+    assertEquals (0, aClaimDir.list ().length);
+  }
+}
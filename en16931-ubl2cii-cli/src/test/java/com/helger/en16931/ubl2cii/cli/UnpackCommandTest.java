@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.jspecify.annotations.NonNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.helger.collection.commons.CommonsTreeSet;
+
+import picocli.CommandLine;
+
+/**
+ * Test class for class {@link UnpackCommand}.
+ *
+ * @author Philip Helger
+ */
+public final class UnpackCommandTest
+{
+  private static final byte [] CII = "<CrossIndustryInvoice/>".getBytes (StandardCharsets.UTF_8);
+
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  @NonNull
+  private File _createContainer (final String @NonNull... aInputNames) throws IOException
+  {
+    final File aFile = new File (m_aTempDir.getRoot (), "in" + PackedContainerReader.FILE_EXTENSION);
+    try (final PackedContainerConversionTarget aTarget = new PackedContainerConversionTarget (aFile,
+                                                                                             false,
+                                                                                             EFsyncPolicy.NONE))
+    {
+      for (final String sInputName : aInputNames)
+        aTarget.write (sInputName, CII);
+      aTarget.complete ();
+    }
+    return aFile;
+  }
+
+  private static int _unpack (final String @NonNull... aArgs)
+  {
+    return new CommandLine (new UnpackCommand ()).execute (aArgs);
+  }
+
+  @Test
+  public void testGetSafeBaseName ()
+  {
+    assertEquals ("a", UnpackCommand.getSafeBaseName ("a"));
+    assertEquals ("evil", UnpackCommand.getSafeBaseName ("../../evil"));
+    assertEquals ("passwd", UnpackCommand.getSafeBaseName ("/etc/passwd"));
+    assertEquals ("evil", UnpackCommand.getSafeBaseName ("..\\..\\evil"));
+    assertEquals ("document", UnpackCommand.getSafeBaseName (null));
+    assertEquals ("document", UnpackCommand.getSafeBaseName (""));
+    assertEquals ("document", UnpackCommand.getSafeBaseName ("dir/"));
+  }
+
+  @Test
+  public void testIsInsideDirectory () throws IOException
+  {
+    final File aDir = m_aTempDir.newFolder ("out").getCanonicalFile ();
+    assertTrue (UnpackCommand.isInsideDirectory (aDir, new File (aDir, "a.xml")));
+    assertFalse (UnpackCommand.isInsideDirectory (aDir, new File (aDir, "../a.xml")));
+    assertFalse (UnpackCommand.isInsideDirectory (aDir, new File (aDir, "sub/a.xml")));
+  }
+
+  @Test
+  public void testUntrustedInputNames () throws IOException
+  {
+    final File aContainer = _createContainer ("a", "../../evil", "/etc/passwd", "a", "");
+    final File aDstDir = new File (m_aTempDir.getRoot (), "out");
+
+    assertEquals (0, _unpack ("-t", aDstDir.getAbsolutePath (), aContainer.getAbsolutePath ()));
+
+    // Everything ends up directly in the target directory
+    assertEquals (new CommonsTreeSet <> ("a-cii.xml", "a-cii-4.xml", "evil-cii.xml", "passwd-cii.xml", "document-cii.xml"),
+                  new CommonsTreeSet <> (aDstDir.list ()));
+    for (final File aFile : aDstDir.listFiles ())
+      assertArrayEquals (CII, Files.readAllBytes (aFile.toPath ()));
+    // Only the container and the target directory
+    assertEquals (2, m_aTempDir.getRoot ().list ().length);
+  }
+
+  @Test
+  public void testSuffixOutsideTargetIsRejected () throws IOException
+  {
+    final File aContainer = _createContainer ("a");
+    final File aDstDir = m_aTempDir.newFolder ("nested", "out");
+
+    assertEquals (1, _unpack ("-t", aDstDir.getAbsolutePath (), "--output-suffix", "/../../x", aContainer.getAbsolutePath ()));
+
+    assertEquals (0, aDstDir.list ().length);
+    // Would have been "nested/x.xml"
+    assertEquals (1, aDstDir.getParentFile ().list ().length);
+    // Only the container and the nested directory
+    assertEquals (2, m_aTempDir.getRoot ().list ().length);
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.jspecify.annotations.NonNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.helger.base.state.ESuccess;
+
+/**
+ * Test class for class {@link WatchFolderProcessor}.
+ *
+ * @author Philip Helger
+ */
+public final class WatchFolderProcessorTest
+{
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  private static void _write (@NonNull final File aFile, @NonNull final String sContent) throws IOException
+  {
+    // Write and rename, so that no partial file is picked up
+    final File aTmpFile = new File (aFile.getParentFile (), aFile.getName () + ".tmp");
+    Files.write (aTmpFile.toPath (), sContent.getBytes (StandardCharsets.UTF_8));
+    Files.move (aTmpFile.toPath (), aFile.toPath ());
+  }
+
+  @NonNull
+  private static String _read (@NonNull final File aFile) throws IOException
+  {
+    return new String (Files.readAllBytes (aFile.toPath ()), StandardCharsets.UTF_8);
+  }
+
+  private static boolean _waitFor (@NonNull final BooleanSupplier aCondition) throws InterruptedException
+  {
+    final long nEnd = System.nanoTime () + TimeUnit.SECONDS.toNanos (10);
+    while (!aCondition.getAsBoolean ())
+    {
+      if (System.nanoTime () > nEnd)
+        return false;
+      Thread.sleep (20);
+    }
+    return true;
+  }
+
+  @NonNull
+  private static Thread _start (@NonNull final WatchFolderProcessor aProcessor)
+  {
+    final Thread aThread = new Thread ( () -> {
+      try
+      {
+        aProcessor.run ();
+      }
+      catch (final IOException ex)
+      {
+        throw new IllegalStateException (ex);
+      }
+    });
+    aThread.start ();
+    return aThread;
+  }
+
+  @Test
+  public void testSameNameIsNotOverwritten () throws Exception
+  {
+    final File aWatchDir = m_aTempDir.newFolder ("watch");
+    final File aDoneDir = new File (m_aTempDir.getRoot (), "done");
+    final File aFailedDir = new File (m_aTempDir.getRoot (), "failed");
+
+    _write (new File (aWatchDir, "a.xml"), "first");
+    _write (new File (aWatchDir, "b.xml"), "fail");
+
+    final IFileConverter aConverter = aSrcFile -> "fail".equals (_read (aSrcFile)) ? ESuccess.FAILURE
+                                                                                   : ESuccess.SUCCESS;
+    final WatchFolderProcessor aProcessor = new WatchFolderProcessor (aWatchDir, aDoneDir, aFailedDir, 2, 0, aConverter);
+    final Thread aThread = _start (aProcessor);
+    try
+    {
+      assertTrue (_waitFor ( () -> new File (aDoneDir, "a.xml").exists () && new File (aFailedDir, "b.xml").exists ()));
+
+      // Delivered again with the same name
+      _write (new File (aWatchDir, "a.xml"), "second");
+      assertTrue (_waitFor ( () -> new File (aDoneDir, "a-2.xml").exists ()));
+    }
+    finally
+    {
+      aProcessor.stopAndWait (10_000);
+      aThread.join ();
+    }
+
+    assertEquals ("first", _read (new File (aDoneDir, "a.xml")));
+    assertEquals ("second", _read (new File (aDoneDir, "a-2.xml")));
+    assertEquals ("fail", _read (new File (aFailedDir, "b.xml")));
+    assertEquals (0, aWatchDir.list ().length);
+  }
+
+  @Test
+  public void testFailedMoveIsNotConvertedAgain () throws Exception
+  {
+    final File aWatchDir = m_aTempDir.newFolder ("watch");
+    final File aDoneDir = new File (m_aTempDir.getRoot (), "done");
+    final File aFailedDir = new File (m_aTempDir.getRoot (), "failed");
+
+    _write (new File (aWatchDir, "a.xml"), "a");
+
+    final AtomicInteger aConversions = new AtomicInteger ();
+    final IFileConverter aConverter = aSrcFile -> {
+      // Moving into the done directory fails from now on
+      Files.delete (aDoneDir.toPath ());
+      aConversions.incrementAndGet ();
+      return ESuccess.SUCCESS;
+    };
+    final WatchFolderProcessor aProcessor = new WatchFolderProcessor (aWatchDir, aDoneDir, aFailedDir, 1, 0, aConverter);
+    final Thread aThread = _start (aProcessor);
+    try
+    {
+      assertTrue (_waitFor ( () -> aConversions.get () > 0));
+      // Give all move attempts time to fail
+      Thread.sleep (WatchFolderProcessor.MAX_MOVE_ATTEMPTS * 200L);
+    }
+    finally
+    {
+      aProcessor.stopAndWait (10_000);
+      aThread.join ();
+    }
+
+    assertEquals (1, aConversions.get ());
+    assertTrue (new File (aWatchDir, "a.xml").exists ());
+    assertFalse (aDoneDir.exists ());
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2019-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii.cli;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.jspecify.annotations.NonNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.helger.collection.commons.CommonsTreeMap;
+import com.helger.collection.commons.ICommonsSortedMap;
+
+import picocli.CommandLine;
+
+/**
+ * Test class for class {@link ZipConversionTarget} and the ZIP streaming of
+ * {@link UBLToCIIConverter}.
+ *
+ * @author Philip Helger
+ */
+public final class ZipConversionTargetTest
+{
+  private static final File EXAMPLE_FILE = new File ("src/test/resources/base-example.xml");
+  private static final byte [] CII1 = "<CrossIndustryInvoice>1</CrossIndustryInvoice>".getBytes (StandardCharsets.UTF_8);
+  private static final byte [] CII2 = "<CrossIndustryInvoice>2</CrossIndustryInvoice>".getBytes (StandardCharsets.UTF_8);
+
+  @Rule
+  public final TemporaryFolder m_aTempDir = new TemporaryFolder ();
+
+  @NonNull
+  private static ICommonsSortedMap <String, byte []> _readZip (@NonNull final File aFile) throws IOException
+  {
+    final ICommonsSortedMap <String, byte []> ret = new CommonsTreeMap <> ();
+    try (final ZipFile aZipFile = new ZipFile (aFile))
+    {
+      for (final ZipEntry aEntry : Collections.list (aZipFile.entries ()))
+        ret.put (aEntry.getName (), aZipFile.getInputStream (aEntry).readAllBytes ());
+    }
+    return ret;
+  }
+
+  private static void _writeZip (@NonNull final File aFile, final String @NonNull... aNamesAndContents) throws IOException
+  {
+    try (final ZipOutputStream aZOS = new ZipOutputStream (Files.newOutputStream (aFile.toPath ())))
+    {
+      for (int i = 0; i < aNamesAndContents.length; i += 2)
+      {
+        aZOS.putNextEntry (new ZipEntry (aNamesAndContents[i]));
+        aZOS.write (aNamesAndContents[i + 1].getBytes (StandardCharsets.UTF_8));
+        aZOS.closeEntry ();
+      }
+    }
+  }
+
+  private static int _convert (final String @NonNull... aArgs)
+  {
+    final CommandLine aCmd = new CommandLine (new UBLToCIIConverter ());
+    aCmd.setCaseInsensitiveEnumValuesAllowed (true);
+    return aCmd.execute (aArgs);
+  }
+
+  @Test
+  public void testWriteAndComplete () throws IOException
+  {
+    final File aFile = new File (m_aTempDir.getRoot (), "out.zip");
+    try (final ZipConversionTarget aTarget = new ZipConversionTarget (aFile, "-cii", EFsyncPolicy.PER_BATCH))
+    {
+      assertFalse (aTarget.isThreadSafe ());
+      assertEquals (aFile.getAbsolutePath () + "!/a-cii.xml", aTarget.write ("a", CII1));
+      assertEquals (aFile.getAbsolutePath () + "!/b-cii.xml", aTarget.write ("b", CII2));
+      // Same base name from a different source
+      assertEquals (aFile.getAbsolutePath () + "!/a-cii-2.xml", aTarget.write ("a", CII2));
+      aTarget.complete ();
+      // Not visible before it was closed
+      assertFalse (aFile.exists ());
+    }
+
+    final ICommonsSortedMap <String, byte []> aEntries = _readZip (aFile);
+    assertEquals (3, aEntries.size ());
+    assertArrayEquals (CII1, aEntries.get ("a-cii.xml"));
+    assertArrayEquals (CII2, aEntries.get ("b-cii.xml"));
+    assertArrayEquals (CII2, aEntries.get ("a-cii-2.xml"));
+    // No temporary file left
+    assertEquals (1, m_aTempDir.getRoot ().list ().length);
+  }
+
+  @Test
+  public void testIncompleteIsDiscarded () throws IOException
+  {
+    final File aFile = new File (m_aTempDir.getRoot (), "aborted.zip");
+    try (final ZipConversionTarget aTarget = new ZipConversionTarget (aFile, "-cii", EFsyncPolicy.NONE))
+    {
+      aTarget.write ("a", CII1);
+      // No complete, like a run that failed
+    }
+    assertFalse (aFile.exists ());
+    // The temporary file is gone as well
+    assertEquals (0, m_aTempDir.getRoot ().list ().length);
+  }
+
+  @Test
+  public void testStreamZipToZip () throws IOException
+  {
+    final String sUBL = Files.readString (EXAMPLE_FILE.toPath (), StandardCharsets.UTF_8);
+    final File aSrcFile = new File (m_aTempDir.getRoot (), "in.zip");
+    _writeZip (aSrcFile, "base-example.xml", sUBL, "sub/base-example.xml", sUBL, "broken.xml", "no xml");
+    final File aDstFile = new File (m_aTempDir.getRoot (), "out.zip");
+
+    assertEquals (0, _convert ("--threads", "2", "-t", aDstFile.getAbsolutePath (), aSrcFile.getAbsolutePath ()));
+
+    final ICommonsSortedMap <String, byte []> aEntries = _readZip (aDstFile);
+    // The failed entry is not part of the result
+    assertEquals (aEntries.keySet ().toString (), 2, aEntries.size ());
+    for (final String sName : new String [] { "base-example-cii.xml", "base-example-cii-2.xml" })
+    {
+      final String sCII = new String (aEntries.get (sName), StandardCharsets.UTF_8);
+      assertTrue (sName, sCII.contains ("CrossIndustryInvoice"));
+    }
+  }
+
+  @Test
+  public void testTruncatedSourceLeavesNoArchive () throws IOException
+  {
+    final String sUBL = Files.readString (EXAMPLE_FILE.toPath (), StandardCharsets.UTF_8);
+    final File aCompleteFile = new File (m_aTempDir.newFolder ("complete"), "in.zip");
+    _writeZip (aCompleteFile, "a.xml", sUBL, "b.xml", sUBL);
+
+    // Cut off in the middle of the second entry, like an interrupted download
+    final byte [] aBytes = Files.readAllBytes (aCompleteFile.toPath ());
+    final File aSrcFile = new File (m_aTempDir.getRoot (), "in.zip");
+    try (final OutputStream aOS = Files.newOutputStream (aSrcFile.toPath ()))
+    {
+      aOS.write (Arrays.copyOf (aBytes, aBytes.length * 3 / 4));
+    }
+    final File aDstDir = m_aTempDir.newFolder ("out");
+    final File aDstFile = new File (aDstDir, "out.zip");
+
+    assertNotEquals (0, _convert ("-t", aDstFile.getAbsolutePath (), aSrcFile.getAbsolutePath ()));
+
+    // Neither the archive with only the first entry nor a temporary file
+    assertFalse (aDstFile.exists ());
+    assertEquals (0, aDstDir.list ().length);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.util.Locale;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.diagnostics.error.IError;
+
+/**
+ * Thrown internally when a conversion is abandoned, because its
+ * {@link ConversionDeadline} expired or was cancelled. The public conversion
+ * methods never propagate it, but add the contained error to the error list
+ * instead.
+ *
+ * @author Philip Helger
+ */
+public final class ConversionAbortedException extends RuntimeException
+{
+  private static final long serialVersionUID = 1L;
+
+  private final transient IError m_aError;
+
+  public ConversionAbortedException (@NonNull final IError aError)
+  {
+    super (aError.getErrorText (Locale.ROOT));
+    m_aError = aError;
+  }
+
+  /**
+   * @return The error describing why the conversion was abandoned. Its error
+   *         ID is either {@link ConversionDeadline#ERROR_ID_TIMEOUT} or
+   *         {@link ConversionDeadline#ERROR_ID_CANCELLED}. Never
+   *         <code>null</code>.
+   */
+  @NonNull
+  public IError getError ()
+  {
+    return m_aError;
+  }
+}
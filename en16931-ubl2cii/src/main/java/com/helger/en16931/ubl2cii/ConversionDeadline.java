@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.annotation.concurrent.ThreadSafe;
+import com.helger.base.enforce.ValueEnforcer;
+import com.helger.diagnostics.error.IError;
+import com.helger.diagnostics.error.SingleError;
+import com.helger.diagnostics.error.list.ErrorList;
+
+/**
+ * A deadline and cancellation token for a single conversion. It is checked
+ * between the phases of a conversion (read, map, write), between the lines of
+ * a document and on every read and write of the streams wrapped by it. Once
+ * the deadline is exceeded, {@link #cancel()} was called or the converting
+ * thread was interrupted, the conversion is abandoned and an error with the ID
+ * {@link #ERROR_ID_TIMEOUT} or {@link #ERROR_ID_CANCELLED} is reported.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class ConversionDeadline
+{
+  /** The error ID used if a conversion exceeded its deadline */
+  public static final String ERROR_ID_TIMEOUT = "ubl2cii-timeout";
+  /** The error ID used if a conversion was cancelled or interrupted */
+  public static final String ERROR_ID_CANCELLED = "ubl2cii-cancelled";
+
+  private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+  private final long m_nStartNanos;
+  private final long m_nTimeoutNanos;
+  private volatile boolean m_bCancelled = false;
+
+  private ConversionDeadline (final long nTimeoutNanos)
+  {
+    m_nStartNanos = System.nanoTime ();
+    m_nTimeoutNanos = nTimeoutNanos;
+  }
+
+  /**
+   * @return A token without time limit that can only be cancelled. Never
+   *         <code>null</code>.
+   */
+  @NonNull
+  public static ConversionDeadline unlimited ()
+  {
+    return new ConversionDeadline (NO_DEADLINE);
+  }
+
+  /**
+   * @param aTimeout
+   *        The maximum duration of the conversion, starting now. May not be
+   *        <code>null</code> and must not be negative.
+   * @return A new token. Never <code>null</code>.
+   */
+  @NonNull
+  public static ConversionDeadline timeout (@NonNull final Duration aTimeout)
+  {
+    ValueEnforcer.notNull (aTimeout, "Timeout");
+    ValueEnforcer.isFalse (aTimeout.isNegative (), "Timeout may not be negative");
+    return new ConversionDeadline (aTimeout.toNanos ());
+  }
+
+  /**
+   * Cancel the conversion. It is abandoned at the next check. May be called
+   * from any thread.
+   */
+  public void cancel ()
+  {
+    m_bCancelled = true;
+  }
+
+  /**
+   * @return <code>true</code> if {@link #cancel()} was called or the current
+   *         thread was interrupted.
+   */
+  public boolean isCancelled ()
+  {
+    return m_bCancelled || Thread.currentThread ().isInterrupted ();
+  }
+
+  /**
+   * @return <code>true</code> if the deadline has passed.
+   */
+  public boolean isExpired ()
+  {
+    return m_nTimeoutNanos != NO_DEADLINE && System.nanoTime () - m_nStartNanos >= m_nTimeoutNanos;
+  }
+
+  /**
+   * @return <code>true</code> if the conversion should be abandoned.
+   */
+  public boolean isAborted ()
+  {
+    return isCancelled () || isExpired ();
+  }
+
+  @Nullable
+  private IError _getAbortError (@NonNull final String sPhase)
+  {
+    // Cancellation takes precedence, as it was explicitly requested
+    if (isCancelled ())
+      return SingleError.builderError ()
+                        .errorID (ERROR_ID_CANCELLED)
+                        .errorText ("The conversion was cancelled during the " + sPhase + " phase")
+                        .build ();
+    if (isExpired ())
+      return SingleError.builderError ()
+                        .errorID (ERROR_ID_TIMEOUT)
+                        .errorText ("The conversion exceeded its deadline of " +
+                                    Duration.ofNanos (m_nTimeoutNanos).toMillis () +
+                                    " ms during the " +
+                                    sPhase +
+                                    " phase")
+                        .build ();
+    return null;
+  }
+
+  /**
+   * Check if the conversion should be abandoned.
+   *
+   * @param sPhase
+   *        The name of the current phase for the error message. May not be
+   *        <code>null</code>.
+   * @throws ConversionAbortedException
+   *         If the deadline expired or the conversion was cancelled.
+   */
+  public void checkAborted (@NonNull final String sPhase)
+  {
+    final IError aError = _getAbortError (sPhase);
+    if (aError != null)
+      throw new ConversionAbortedException (aError);
+  }
+
+  /**
+   * Add the timeout or cancellation error to the provided error list, if the
+   * conversion should be abandoned. This is used after a phase failed, to
+   * report the real reason instead of the secondary error of the phase.
+   *
+   * @param sPhase
+   *        The name of the current phase for the error message. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to add to. May not be <code>null</code>.
+   * @return <code>true</code> if an error was added.
+   */
+  public boolean addErrorIfAborted (@NonNull final String sPhase, @NonNull final ErrorList aErrorList)
+  {
+    final IError aError = _getAbortError (sPhase);
+    if (aError == null)
+      return false;
+    aErrorList.add (aError);
+    return true;
+  }
+
+  private void _checkIO (@NonNull final String sPhase) throws InterruptedIOException
+  {
+    if (isAborted ())
+      throw new InterruptedIOException ("The conversion was abandoned during the " + sPhase + " phase");
+  }
+
+  /**
+   * Wrap an input stream, so that every read fails with an
+   * {@link InterruptedIOException} once the conversion should be abandoned.
+   * Closing the returned stream closes the provided stream.
+   *
+   * @param aIS
+   *        The stream to wrap. May not be <code>null</code>.
+   * @return The wrapped stream. Never <code>null</code>.
+   */
+  @NonNull
+  public InputStream getCheckedInputStream (@NonNull final InputStream aIS)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    return new FilterInputStream (aIS)
+    {
+      @Override
+      public int read () throws IOException
+      {
+        _checkIO ("read");
+        return super.read ();
+      }
+
+      @Override
+      public int read (final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+      {
+        _checkIO ("read");
+        return super.read (aBuf, nOfs, nLen);
+      }
+
+      @Override
+      public long skip (final long n) throws IOException
+      {
+        _checkIO ("read");
+        return super.skip (n);
+      }
+    };
+  }
+
+  /**
+   * Wrap an output stream, so that every write fails with an
+   * {@link InterruptedIOException} once the conversion should be abandoned.
+   * Closing the returned stream closes the provided stream.
+   *
+   * @param aOS
+   *        The stream to wrap. May not be <code>null</code>.
+   * @return The wrapped stream. Never <code>null</code>.
+   */
+  @NonNull
+  public OutputStream getCheckedOutputStream (@NonNull final OutputStream aOS)
+  {
+    ValueEnforcer.notNull (aOS, "OutputStream");
+    return new FilterOutputStream (aOS)
+    {
+      @Override
+      public void write (final int b) throws IOException
+      {
+        _checkIO ("write");
+        out.write (b);
+      }
+
+      @Override
+      public void write (final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+      {
+        // FilterOutputStream would write byte by byte
+        _checkIO ("write");
+        out.write (aBuf, nOfs, nLen);
+      }
+    };
+  }
+}
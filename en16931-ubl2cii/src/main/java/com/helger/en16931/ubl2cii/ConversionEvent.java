@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.diagnostics.error.list.ErrorList;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for a single conversion, from reading the UBL
+ * document to writing the CII document, as far as the called entry point of
+ * {@link UBLToCIIConversionHelper} or the converters goes. It is disabled by
+ * default and must be enabled in the recording settings, e.g. with
+ * <code>-XX:StartFlightRecording:settings=profile,+com.helger.en16931.ubl2cii.Conversion#enabled=true</code>
+ * (JDK 17+). While disabled, no fields are filled.
+ *
+ * @author Philip Helger
+ */
+@Name (ConversionEvent.NAME)
+@Label ("UBL to CII Conversion")
+@Description ("The conversion of a single UBL 2.1 document to CII D16B")
+@Category ({ "EN16931", "UBL to CII" })
+@Enabled (false)
+@StackTrace (false)
+final class ConversionEvent extends Event
+{
+  static final String NAME = "com.helger.en16931.ubl2cii.Conversion";
+
+  static final String OUTCOME_SUCCESS = "success";
+  static final String OUTCOME_FAILURE = "failure";
+
+  @Name ("documentID")
+  @Label ("Document ID")
+  @Description ("The ID of the UBL document (BT-1)")
+  String m_sDocumentID;
+
+  @Name ("documentType")
+  @Label ("Document Type")
+  String m_sDocumentType;
+
+  @Name ("lineCount")
+  @Label ("Line Count")
+  int m_nLineCount;
+
+  @Name ("bytesRead")
+  @Label ("Bytes Read")
+  @Description ("The bytes read from the source stream, before decompression")
+  @DataAmount
+  long m_nBytesRead;
+
+  @Name ("bytesWritten")
+  @Label ("Bytes Written")
+  @DataAmount
+  long m_nBytesWritten;
+
+  @Name ("outcome")
+  @Label ("Outcome")
+  @Description ("'success', 'failure' or the error category of an abandoned conversion")
+  String m_sOutcome;
+
+  /**
+   * @return A new event that has already begun. Never <code>null</code>.
+   */
+  @NonNull
+  static ConversionEvent start ()
+  {
+    final ConversionEvent ret = new ConversionEvent ();
+    ret.begin ();
+    return ret;
+  }
+
+  void setDocument (@Nullable final String sDocumentID,
+                    @NonNull final EConversionDocumentType eType,
+                    final int nLineCount)
+  {
+    m_sDocumentID = sDocumentID;
+    m_sDocumentType = eType.getID ();
+    m_nLineCount = nLineCount;
+  }
+
+  void addBytesRead (final long nBytes)
+  {
+    m_nBytesRead += nBytes;
+  }
+
+  void addBytesWritten (final long nBytes)
+  {
+    m_nBytesWritten += nBytes;
+  }
+
+  /**
+   * End the event and commit it, if it is enabled and above the threshold.
+   *
+   * @param bSuccess
+   *        <code>true</code> if the conversion succeeded.
+   * @param aErrorList
+   *        The error list of the conversion, to determine the reason of a
+   *        failure. May not be <code>null</code>.
+   */
+  void finish (final boolean bSuccess, @NonNull final ErrorList aErrorList)
+  {
+    end ();
+    if (shouldCommit ())
+    {
+      if (bSuccess)
+        m_sOutcome = OUTCOME_SUCCESS;
+      else
+        if (aErrorList.containsAny (x -> ConversionDeadline.ERROR_ID_TIMEOUT.equals (x.getErrorID ())))
+          m_sOutcome = EConversionErrorCategory.TIMEOUT.getID ();
+        else
+          if (aErrorList.containsAny (x -> ConversionDeadline.ERROR_ID_CANCELLED.equals (x.getErrorID ())))
+            m_sOutcome = EConversionErrorCategory.CANCELLED.getID ();
+          else
+            m_sOutcome = OUTCOME_FAILURE;
+      commit ();
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.helger.annotation.concurrent.ThreadSafe;
+
+/**
+ * Holds the global {@link IConversionMetrics} instance. Initially this is the
+ * first implementation found via the {@link ServiceLoader} or {@link #NO_OP}
+ * if there is none. The no-op instance is disabled, so that the conversion
+ * does not even take timestamps.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class ConversionMetrics
+{
+  /** The metrics implementation that ignores everything */
+  public static final IConversionMetrics NO_OP = new IConversionMetrics ()
+  {
+    @Override
+    public boolean isEnabled ()
+    {
+      return false;
+    }
+  };
+
+  private static volatile IConversionMetrics s_aInstance = _loadSPI ();
+
+  private ConversionMetrics ()
+  {}
+
+  @NonNull
+  private static IConversionMetrics _loadSPI ()
+  {
+    final Iterator <IConversionMetrics> it = ServiceLoader.load (IConversionMetrics.class,
+                                                                 ConversionMetrics.class.getClassLoader ())
+                                                          .iterator ();
+    return it.hasNext () ? it.next () : NO_OP;
+  }
+
+  /**
+   * @return The metrics to report to. Never <code>null</code>.
+   */
+  @NonNull
+  public static IConversionMetrics getInstance ()
+  {
+    return s_aInstance;
+  }
+
+  /**
+   * Set the metrics to report all subsequent conversions to.
+   *
+   * @param aMetrics
+   *        The metrics to use. May be <code>null</code> to disable metrics.
+   */
+  public static void setInstance (@Nullable final IConversionMetrics aMetrics)
+  {
+    s_aInstance = aMetrics != null ? aMetrics : NO_OP;
+  }
+}
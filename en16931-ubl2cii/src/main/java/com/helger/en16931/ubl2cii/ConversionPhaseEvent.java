@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for a single {@link EConversionPhase} of a
+ * conversion. It is disabled by default, like {@link ConversionEvent}.
+ *
+ * @author Philip Helger
+ */
+@Name (ConversionPhaseEvent.NAME)
+@Label ("UBL to CII Conversion Phase")
+@Description ("A single phase of the conversion of a UBL 2.1 document to CII D16B")
+@Category ({ "EN16931", "UBL to CII" })
+@Enabled (false)
+@StackTrace (false)
+final class ConversionPhaseEvent extends Event
+{
+  static final String NAME = "com.helger.en16931.ubl2cii.ConversionPhase";
+
+  @Name ("phase")
+  @Label ("Phase")
+  String m_sPhase;
+
+  @Name ("documentID")
+  @Label ("Document ID")
+  @Description ("The ID of the UBL document (BT-1), if already known in this phase")
+  String m_sDocumentID;
+
+  @Name ("documentType")
+  @Label ("Document Type")
+  @Description ("The UBL document type, if already known in this phase")
+  String m_sDocumentType;
+
+  /**
+   * @return A new event that has already begun. Never <code>null</code>.
+   */
+  @NonNull
+  static ConversionPhaseEvent start ()
+  {
+    final ConversionPhaseEvent ret = new ConversionPhaseEvent ();
+    ret.begin ();
+    return ret;
+  }
+
+  /**
+   * End the event and commit it, if it is enabled and above the threshold.
+   *
+   * @param ePhase
+   *        The phase that ended. May not be <code>null</code>.
+   * @param sDocumentID
+   *        The document ID if known. May be <code>null</code>.
+   * @param eType
+   *        The document type if known. May be <code>null</code>.
+   */
+  void finish (@NonNull final EConversionPhase ePhase,
+               @Nullable final String sDocumentID,
+               @Nullable final EConversionDocumentType eType)
+  {
+    end ();
+    if (shouldCommit ())
+    {
+      m_sPhase = ePhase.getID ();
+      m_sDocumentID = sDocumentID;
+      m_sDocumentType = eType == null ? null : eType.getID ();
+      commit ();
+    }
+  }
+}
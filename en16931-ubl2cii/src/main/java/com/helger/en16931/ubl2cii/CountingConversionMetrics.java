@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.concurrent.ThreadSafe;
+
+/**
+ * An {@link IConversionMetrics} implementation that sums up everything in
+ * {@link LongAdder} counters, so that concurrent conversions do not contend.
+ * The values can be polled by an exporter of the application.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class CountingConversionMetrics implements IConversionMetrics
+{
+  private final LongAdder [] m_aPhaseCount = _createAdders (EConversionPhase.values ().length);
+  private final LongAdder [] m_aPhaseNanos = _createAdders (EConversionPhase.values ().length);
+  private final LongAdder [] m_aDocumentCount = _createAdders (EConversionDocumentType.values ().length);
+  private final LongAdder [] m_aLineCount = _createAdders (EConversionDocumentType.values ().length);
+  private final LongAdder [] m_aErrorCount = _createAdders (EConversionErrorCategory.values ().length);
+  private final LongAdder m_aBytesRead = new LongAdder ();
+  private final LongAdder m_aBytesWritten = new LongAdder ();
+
+  @NonNull
+  private static LongAdder [] _createAdders (final int nCount)
+  {
+    final LongAdder [] ret = new LongAdder [nCount];
+    for (int i = 0; i < nCount; ++i)
+      ret[i] = new LongAdder ();
+    return ret;
+  }
+
+  public void onPhase (@NonNull final EConversionPhase ePhase, final long nNanos)
+  {
+    m_aPhaseCount[ePhase.ordinal ()].increment ();
+    m_aPhaseNanos[ePhase.ordinal ()].add (nNanos);
+  }
+
+  public void onDocumentConverted (@NonNull final EConversionDocumentType eType, final int nLineCount)
+  {
+    m_aDocumentCount[eType.ordinal ()].increment ();
+    m_aLineCount[eType.ordinal ()].add (nLineCount);
+  }
+
+  public void onError (@NonNull final EConversionErrorCategory eCategory)
+  {
+    m_aErrorCount[eCategory.ordinal ()].increment ();
+  }
+
+  public void onBytesRead (final long nBytes)
+  {
+    m_aBytesRead.add (nBytes);
+  }
+
+  public void onBytesWritten (final long nBytes)
+  {
+    m_aBytesWritten.add (nBytes);
+  }
+
+  /**
+   * @param ePhase
+   *        The phase to query. May not be <code>null</code>.
+   * @return How often the phase was executed.
+   */
+  public long getPhaseCount (@NonNull final EConversionPhase ePhase)
+  {
+    return m_aPhaseCount[ePhase.ordinal ()].sum ();
+  }
+
+  /**
+   * @param ePhase
+   *        The phase to query. May not be <code>null</code>.
+   * @return The total duration of all executions of the phase in nanoseconds.
+   */
+  public long getPhaseNanos (@NonNull final EConversionPhase ePhase)
+  {
+    return m_aPhaseNanos[ePhase.ordinal ()].sum ();
+  }
+
+  /**
+   * @param eType
+   *        The document type to query. May not be <code>null</code>.
+   * @return The number of successfully mapped documents of that type.
+   */
+  public long getDocumentCount (@NonNull final EConversionDocumentType eType)
+  {
+    return m_aDocumentCount[eType.ordinal ()].sum ();
+  }
+
+  /**
+   * @param eType
+   *        The document type to query. May not be <code>null</code>.
+   * @return The number of lines of all successfully mapped documents of that
+   *         type.
+   */
+  public long getLineCount (@NonNull final EConversionDocumentType eType)
+  {
+    return m_aLineCount[eType.ordinal ()].sum ();
+  }
+
+  /**
+   * @param eCategory
+   *        The error category to query. May not be <code>null</code>.
+   * @return The number of failed conversions of that category.
+   */
+  public long getErrorCount (@NonNull final EConversionErrorCategory eCategory)
+  {
+    return m_aErrorCount[eCategory.ordinal ()].sum ();
+  }
+
+  public long getBytesRead ()
+  {
+    return m_aBytesRead.sum ();
+  }
+
+  public long getBytesWritten ()
+  {
+    return m_aBytesWritten.sum ();
+  }
+}
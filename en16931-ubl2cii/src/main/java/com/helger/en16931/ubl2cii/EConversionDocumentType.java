@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import org.jspecify.annotations.NonNull;
+
+/**
+ * The UBL document types that can be converted.
+ *
+ * @author Philip Helger
+ */
+public enum EConversionDocumentType
+{
+  INVOICE ("invoice"),
+  CREDIT_NOTE ("creditnote");
+
+  private final String m_sID;
+
+  EConversionDocumentType (@NonNull final String sID)
+  {
+    m_sID = sID;
+  }
+
+  @NonNull
+  public String getID ()
+  {
+    return m_sID;
+  }
+}
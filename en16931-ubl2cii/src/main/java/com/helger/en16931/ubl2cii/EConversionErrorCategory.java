@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import org.jspecify.annotations.NonNull;
+
+/**
+ * The categories of conversion errors, as reported to
+ * {@link IConversionMetrics}.
+ *
+ * @author Philip Helger
+ */
+public enum EConversionErrorCategory
+{
+  /** The input could not be read or is not well-formed XML */
+  READ ("read"),
+  /** The XML is neither a UBL 2.1 Invoice nor a CreditNote */
+  UNSUPPORTED_DOCUMENT_TYPE ("unsupported-document-type"),
+  /** The XML could not be bound to UBL objects, e.g. as it is invalid */
+  UNMARSHAL ("unmarshal"),
+  /** The CII document could not be serialized or written */
+  MARSHAL ("marshal"),
+  /** The conversion exceeded its deadline */
+  TIMEOUT ("timeout"),
+  /** The conversion was cancelled or interrupted */
+  CANCELLED ("cancelled");
+
+  private final String m_sID;
+
+  EConversionErrorCategory (@NonNull final String sID)
+  {
+    m_sID = sID;
+  }
+
+  @NonNull
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  /**
+   * @param aDeadline
+   *        The deadline that aborted a conversion. May not be
+   *        <code>null</code>.
+   * @return {@link #CANCELLED} or {@link #TIMEOUT}, with the same precedence
+   *         as the error reported by the deadline.
+   */
+  @NonNull
+  static EConversionErrorCategory getAbortCategory (@NonNull final ConversionDeadline aDeadline)
+  {
+    return aDeadline.isCancelled () ? CANCELLED : TIMEOUT;
+  }
+
+  /**
+   * @param ex
+   *        The exception that aborted a conversion. May not be
+   *        <code>null</code>.
+   * @return {@link #CANCELLED} or {@link #TIMEOUT}, depending on the error ID.
+   */
+  @NonNull
+  static EConversionErrorCategory getAbortCategory (@NonNull final ConversionAbortedException ex)
+  {
+    return ConversionDeadline.ERROR_ID_TIMEOUT.equals (ex.getError ().getErrorID ()) ? TIMEOUT : CANCELLED;
+  }
+}
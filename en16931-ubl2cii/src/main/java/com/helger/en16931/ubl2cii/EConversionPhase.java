@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import org.jspecify.annotations.NonNull;
+
+/**
+ * The phases of a single conversion, as reported to {@link IConversionMetrics}.
+ *
+ * @author Philip Helger
+ */
+public enum EConversionPhase
+{
+  /** Reading the XML into a DOM */
+  PARSE ("parse"),
+  /** Binding the XML to UBL objects */
+  UNMARSHAL ("unmarshal"),
+  /** Mapping everything except the lines to CII */
+  MAP_HEADER ("map-header"),
+  /** Mapping the invoice or credit note lines to CII */
+  MAP_LINES ("map-lines"),
+  /** Serializing the CII document */
+  MARSHAL ("marshal"),
+  /**
+   * Writing the serialized CII document to its target. Only reported by
+   * callers that serialize and write separately, e.g. the CLI.
+   */
+  WRITE ("write");
+
+  private final String m_sID;
+
+  EConversionPhase (@NonNull final String sID)
+  {
+    m_sID = sID;
+  }
+
+  @NonNull
+  public String getID ()
+  {
+    return m_sID;
+  }
+}
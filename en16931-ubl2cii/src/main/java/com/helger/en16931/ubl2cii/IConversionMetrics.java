@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import org.jspecify.annotations.NonNull;
+
+import com.helger.annotation.style.IsSPIInterface;
+
+/**
+ * Receives metrics of all conversions. Implementations are called on the hot
+ * path from many threads concurrently, so they must be thread-safe and should
+ * not block - see {@link CountingConversionMetrics} for an implementation
+ * based on {@link java.util.concurrent.atomic.LongAdder}. The active
+ * implementation is managed by {@link ConversionMetrics}, either set
+ * explicitly or found via the {@link java.util.ServiceLoader}.
+ *
+ * @author Philip Helger
+ */
+@IsSPIInterface
+public interface IConversionMetrics
+{
+  /**
+   * @return <code>false</code> if nothing should be measured at all. This is
+   *         queried before any timestamp is taken, so that disabled metrics
+   *         cost nothing.
+   */
+  default boolean isEnabled ()
+  {
+    return true;
+  }
+
+  /**
+   * A phase of a conversion finished, successfully or not.
+   *
+   * @param ePhase
+   *        The phase. Never <code>null</code>.
+   * @param nNanos
+   *        The duration in nanoseconds.
+   */
+  default void onPhase (@NonNull final EConversionPhase ePhase, final long nNanos)
+  {}
+
+  /**
+   * A UBL document was successfully mapped to CII.
+   *
+   * @param eType
+   *        The document type. Never <code>null</code>.
+   * @param nLineCount
+   *        The number of invoice or credit note lines.
+   */
+  default void onDocumentConverted (@NonNull final EConversionDocumentType eType, final int nLineCount)
+  {}
+
+  /**
+   * A conversion failed.
+   *
+   * @param eCategory
+   *        The error category. Never <code>null</code>.
+   */
+  default void onError (@NonNull final EConversionErrorCategory eCategory)
+  {}
+
+  /**
+   * @param nBytes
+   *        The number of bytes read from a source stream, before
+   *        decompression.
+   */
+  default void onBytesRead (final long nBytes)
+  {}
+
+  /**
+   * @param nBytes
+   *        The number of bytes written to a target stream.
+   */
+  default void onBytesWritten (final long nBytes)
+  {}
+}
@@ -512,13 +512,15 @@ public final class UBL21InvoiceToCIID16BConverter extends AbstractToCIID16BConve
     return ret;
   }
 
-  @Nullable
-  public static CrossIndustryInvoiceType convertToCrossIndustryInvoice (@NonNull final InvoiceType aUBLDoc,
-                                                                        @NonNull final ErrorList aErrorList)
+  @NonNull
+  private static CrossIndustryInvoiceType _convertToCrossIndustryInvoice (@NonNull final InvoiceType aUBLDoc,
+                                                                          @NonNull final IConversionMetrics aMetrics,
+                                                                          @Nullable final ConversionDeadline aDeadline)
   {
-    ValueEnforcer.notNull (aUBLDoc, "UBLInvoice");
-    ValueEnforcer.notNull (aErrorList, "ErrorList");
-
+    final boolean bMetrics = aMetrics.isEnabled ();
+    final long nStart = bMetrics ? System.nanoTime () : 0;
+    final String sDocumentID = aUBLDoc.getIDValue ();
+    final ConversionPhaseEvent aHeaderEvent = ConversionPhaseEvent.start ();
     final CrossIndustryInvoiceType aCIIInvoice = new CrossIndustryInvoiceType ();
 
     {
@@ -561,10 +563,6 @@ public final class UBL21InvoiceToCIID16BConverter extends AbstractToCIID16BConve
     {
       final SupplyChainTradeTransactionType aSCTT = new SupplyChainTradeTransactionType ();
 
-      // BG-25 INVOICE LINE
-      for (final var aLine : aUBLDoc.getInvoiceLine ())
-        aSCTT.addIncludedSupplyChainTradeLineItem (_convertInvoiceLine (aLine));
-
       // ApplicableHeaderTradeAgreement
       {
         final HeaderTradeAgreementType aHTAT = new HeaderTradeAgreementType ();
@@ -667,9 +665,104 @@ public final class UBL21InvoiceToCIID16BConverter extends AbstractToCIID16BConve
       // ApplicableHeaderTradeSettlement
       aSCTT.setApplicableHeaderTradeSettlement (_createApplicableHeaderTradeSettlement (aUBLDoc));
 
+      // The lines are mapped last, so that each phase is a single contiguous
+      // period
+      aHeaderEvent.finish (EConversionPhase.MAP_HEADER, sDocumentID, EConversionDocumentType.INVOICE);
+      final long nLinesStart = bMetrics ? System.nanoTime () : 0;
+      final ConversionPhaseEvent aLinesEvent = ConversionPhaseEvent.start ();
+      // BG-25 INVOICE LINE
+      for (final var aLine : aUBLDoc.getInvoiceLine ())
+      {
+        if (aDeadline != null)
+          aDeadline.checkAborted ("map");
+        aSCTT.addIncludedSupplyChainTradeLineItem (_convertInvoiceLine (aLine));
+      }
+      aLinesEvent.finish (EConversionPhase.MAP_LINES, sDocumentID, EConversionDocumentType.INVOICE);
+      if (bMetrics)
+      {
+        aMetrics.onPhase (EConversionPhase.MAP_HEADER, nLinesStart - nStart);
+        aMetrics.onPhase (EConversionPhase.MAP_LINES, System.nanoTime () - nLinesStart);
+      }
+
       aCIIInvoice.setSupplyChainTradeTransaction (aSCTT);
     }
 
     return aCIIInvoice;
   }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertToCrossIndustryInvoice (@NonNull final InvoiceType aUBLDoc,
+                                                                        @NonNull final ErrorList aErrorList)
+  {
+    return convertToCrossIndustryInvoice (aUBLDoc, aErrorList, null);
+  }
+
+  /**
+   * Convert the provided UBL document to CII, abandoning the conversion if the
+   * provided deadline expires or is cancelled. The deadline is checked before
+   * each line is converted.
+   *
+   * @param aUBLDoc
+   *        The UBL document to convert. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aDeadline
+   *        The deadline to respect. May be <code>null</code> for no limit.
+   * @return <code>null</code> if the conversion was abandoned. The error list
+   *         contains the reason in this case.
+   */
+  @Nullable
+  public static CrossIndustryInvoiceType convertToCrossIndustryInvoice (@NonNull final InvoiceType aUBLDoc,
+                                                                        @NonNull final ErrorList aErrorList,
+                                                                        @Nullable final ConversionDeadline aDeadline)
+  {
+    ValueEnforcer.notNull (aUBLDoc, "UBLInvoice");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final ConversionEvent aEvent = ConversionEvent.start ();
+    final CrossIndustryInvoiceType ret = convertToCrossIndustryInvoice (aUBLDoc, aErrorList, aDeadline, aEvent);
+    aEvent.finish (ret != null, aErrorList);
+    return ret;
+  }
+
+  /**
+   * Convert the provided UBL document to CII as part of a conversion that is
+   * recorded by the provided event.
+   *
+   * @param aUBLDoc
+   *        The UBL document to convert. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aDeadline
+   *        The deadline to respect. May be <code>null</code> for no limit.
+   * @param aEvent
+   *        The event of the complete conversion. Only the document details
+   *        are set, it is not finished. May not be <code>null</code>.
+   * @return <code>null</code> if the conversion was abandoned.
+   */
+  @Nullable
+  static CrossIndustryInvoiceType convertToCrossIndustryInvoice (@NonNull final InvoiceType aUBLDoc,
+                                                                 @NonNull final ErrorList aErrorList,
+                                                                 @Nullable final ConversionDeadline aDeadline,
+                                                                 @NonNull final ConversionEvent aEvent)
+  {
+    if (aEvent.isEnabled ())
+      aEvent.setDocument (aUBLDoc.getIDValue (), EConversionDocumentType.INVOICE, aUBLDoc.getInvoiceLine ().size ());
+
+    final IConversionMetrics aMetrics = ConversionMetrics.getInstance ();
+    try
+    {
+      final CrossIndustryInvoiceType ret = _convertToCrossIndustryInvoice (aUBLDoc, aMetrics, aDeadline);
+      if (aMetrics.isEnabled ())
+        aMetrics.onDocumentConverted (EConversionDocumentType.INVOICE, aUBLDoc.getInvoiceLine ().size ());
+      return ret;
+    }
+    catch (final ConversionAbortedException ex)
+    {
+      aErrorList.add (ex.getError ());
+      if (aMetrics.isEnabled ())
+        aMetrics.onError (EConversionErrorCategory.getAbortCategory (ex));
+      return null;
+    }
+  }
 }
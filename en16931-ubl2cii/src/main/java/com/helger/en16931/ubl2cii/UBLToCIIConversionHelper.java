@@ -17,8 +17,14 @@
  */
 package com.helger.en16931.ubl2cii;
 
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
@@ -28,6 +34,8 @@ import com.helger.annotation.WillClose;
 import com.helger.annotation.WillNotClose;
 import com.helger.annotation.concurrent.Immutable;
 import com.helger.base.enforce.ValueEnforcer;
+import com.helger.base.io.nonblocking.NonBlockingBufferedInputStream;
+import com.helger.base.io.stream.StreamHelper;
 import com.helger.base.state.ESuccess;
 import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
 import com.helger.diagnostics.error.SingleError;
@@ -41,6 +49,7 @@ import com.helger.xml.serialize.read.DOMReaderSettings;
 import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
 import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
 import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ExchangedDocumentType;
 
 /**
  * @author Vartika Gupta
@@ -49,23 +58,312 @@ import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryIn
 @Immutable
 public final class UBLToCIIConversionHelper
 {
+  /** The buffer size used when reading compressed input */
+  public static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  // The first two bytes of every GZIP stream (RFC 1952)
+  private static final int GZIP_MAGIC_1 = 0x1f;
+  private static final int GZIP_MAGIC_2 = 0x8b;
+
+  /** Counts the bytes read from the wrapped stream, for the metrics */
+  private static final class CountingInputStream extends FilterInputStream
+  {
+    private long m_nCount = 0;
+
+    CountingInputStream (@NonNull final InputStream aIS)
+    {
+      super (aIS);
+    }
+
+    @Override
+    public boolean markSupported ()
+    {
+      // Reset would count bytes twice
+      return false;
+    }
+
+    @Override
+    public int read () throws IOException
+    {
+      final int ret = super.read ();
+      if (ret >= 0)
+        m_nCount++;
+      return ret;
+    }
+
+    @Override
+    public int read (final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+    {
+      final int ret = super.read (aBuf, nOfs, nLen);
+      if (ret > 0)
+        m_nCount += ret;
+      return ret;
+    }
+
+    @Override
+    public long skip (final long n) throws IOException
+    {
+      final long ret = super.skip (n);
+      m_nCount += ret;
+      return ret;
+    }
+  }
+
+  /** Counts the bytes written to the wrapped stream, for the metrics */
+  private static final class CountingOutputStream extends FilterOutputStream
+  {
+    private long m_nCount = 0;
+
+    CountingOutputStream (@NonNull final OutputStream aOS)
+    {
+      super (aOS);
+    }
+
+    @Override
+    public void write (final int b) throws IOException
+    {
+      out.write (b);
+      m_nCount++;
+    }
+
+    @Override
+    public void write (final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+    {
+      // FilterOutputStream would write byte by byte
+      out.write (aBuf, nOfs, nLen);
+      m_nCount += nLen;
+    }
+  }
+
   private UBLToCIIConversionHelper ()
   {}
 
-  @Nullable
-  public static CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@NonNull @WillNotClose final InputStream aIS,
-                                                                       @NonNull final ErrorList aErrorList)
+  /**
+   * Check if the provided bytes start with the GZIP magic bytes.
+   *
+   * @param aBytes
+   *        The bytes to check. May be <code>null</code>.
+   * @return <code>true</code> if the bytes are GZIP compressed.
+   */
+  public static boolean isGZIPCompressed (final byte @Nullable [] aBytes)
+  {
+    return aBytes != null &&
+           aBytes.length >= 2 &&
+           (aBytes[0] & 0xff) == GZIP_MAGIC_1 &&
+           (aBytes[1] & 0xff) == GZIP_MAGIC_2;
+  }
+
+  /**
+   * Get an input stream that delivers the uncompressed content of the provided
+   * stream. If the stream starts with the GZIP magic bytes, it is transparently
+   * decompressed, otherwise it is returned as is. Closing the returned stream
+   * does not close the provided stream.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @return The uncompressed input stream. Never <code>null</code>.
+   * @throws IOException
+   *         If the first bytes cannot be read or the GZIP header is invalid
+   */
+  @NonNull
+  public static InputStream getUncompressedInputStream (@NonNull @WillNotClose final InputStream aIS) throws IOException
   {
     ValueEnforcer.notNull (aIS, "InputStream");
+
+    final InputStream aBufferedIS = aIS.markSupported () ? aIS
+                                                         : new NonBlockingBufferedInputStream (aIS, GZIP_BUFFER_SIZE);
+    // Peek at the magic bytes
+    aBufferedIS.mark (2);
+    final int nByte1 = aBufferedIS.read ();
+    final int nByte2 = aBufferedIS.read ();
+    aBufferedIS.reset ();
+
+    // Shield the source stream from being closed
+    final InputStream aNonClosingIS = new FilterInputStream (aBufferedIS)
+    {
+      @Override
+      public void close ()
+      {}
+    };
+    if (nByte1 == GZIP_MAGIC_1 && nByte2 == GZIP_MAGIC_2)
+      return new GZIPInputStream (aNonClosingIS, GZIP_BUFFER_SIZE);
+    return aNonClosingIS;
+  }
+
+  private static void _addReadError (@NonNull final ErrorList aErrorList, @NonNull final IOException ex)
+  {
+    aErrorList.add (SingleError.builderError ()
+                               .errorText ("Failed to read the input: " + ex.getMessage ())
+                               .linkedException (ex)
+                               .build ());
+  }
+
+  /**
+   * Read a UBL document directly from a stream, reporting the time as
+   * {@link EConversionPhase#UNMARSHAL} phase.
+   */
+  @Nullable
+  private static <T> T _readUBL (@NonNull @WillNotClose final InputStream aIS,
+                                 @NonNull final ErrorList aErrorList,
+                                 @NonNull final EConversionDocumentType eType,
+                                 @NonNull final Function <InputStream, T> aReader,
+                                 @NonNull final ConversionEvent aEvent)
+  {
+    final IConversionMetrics aMetrics = ConversionMetrics.getInstance ();
+    final boolean bMetrics = aMetrics.isEnabled ();
+    final boolean bEvent = aEvent.isEnabled ();
+    final ConversionPhaseEvent aPhaseEvent = ConversionPhaseEvent.start ();
+    final long nStart = bMetrics ? System.nanoTime () : 0;
+    final CountingInputStream aCountingIS = bMetrics || bEvent ? new CountingInputStream (aIS) : null;
+    try (final InputStream aUncompressedIS = getUncompressedInputStream (aCountingIS != null ? aCountingIS : aIS))
+    {
+      final T ret = aReader.apply (aUncompressedIS);
+      if (ret == null && bMetrics)
+        aMetrics.onError (EConversionErrorCategory.UNMARSHAL);
+      return ret;
+    }
+    catch (final IOException ex)
+    {
+      _addReadError (aErrorList, ex);
+      if (bMetrics)
+        aMetrics.onError (EConversionErrorCategory.READ);
+      return null;
+    }
+    finally
+    {
+      aPhaseEvent.finish (EConversionPhase.UNMARSHAL, null, eType);
+      if (bMetrics)
+      {
+        aMetrics.onPhase (EConversionPhase.UNMARSHAL, System.nanoTime () - nStart);
+        aMetrics.onBytesRead (aCountingIS.m_nCount);
+      }
+      if (bEvent)
+        aEvent.addBytesRead (aCountingIS.m_nCount);
+    }
+  }
+
+  /**
+   * Write the CII document, reporting the time as
+   * {@link EConversionPhase#MARSHAL} phase.
+   */
+  @NonNull
+  private static ESuccess _writeCII (@NonNull final CrossIndustryInvoiceType aCrossIndustryInvoice,
+                                     @NonNull @WillClose final OutputStream aOS,
+                                     final boolean bFormattedOutput,
+                                     @NonNull final ErrorList aErrorList,
+                                     @Nullable final ConversionDeadline aDeadline,
+                                     @Nullable final ConversionEvent aEvent)
+  {
+    final IConversionMetrics aMetrics = ConversionMetrics.getInstance ();
+    final boolean bMetrics = aMetrics.isEnabled ();
+    final boolean bEvent = aEvent != null && aEvent.isEnabled ();
+    final ConversionPhaseEvent aPhaseEvent = ConversionPhaseEvent.start ();
+    final long nStart = bMetrics ? System.nanoTime () : 0;
+    final OutputStream aCheckedOS = aDeadline == null ? aOS : aDeadline.getCheckedOutputStream (aOS);
+    final CountingOutputStream aCountingOS = bMetrics || bEvent ? new CountingOutputStream (aCheckedOS) : null;
+
+    // Write CII D16B XML
+    final ESuccess eSuccess = new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (bFormattedOutput)
+                                                                              .setCollectErrors (aErrorList)
+                                                                              .write (aCrossIndustryInvoice,
+                                                                                      aCountingOS != null ? aCountingOS
+                                                                                                          : aCheckedOS);
+    if (eSuccess.isFailure ())
+    {
+      if (aDeadline != null && aDeadline.addErrorIfAborted ("write", aErrorList))
+      {
+        if (bMetrics)
+          aMetrics.onError (EConversionErrorCategory.getAbortCategory (aDeadline));
+      }
+      else
+        if (bMetrics)
+          aMetrics.onError (EConversionErrorCategory.MARSHAL);
+    }
+    if (aPhaseEvent.isEnabled ())
+    {
+      final ExchangedDocumentType aExchangedDoc = aCrossIndustryInvoice.getExchangedDocument ();
+      aPhaseEvent.finish (EConversionPhase.MARSHAL, aExchangedDoc == null ? null : aExchangedDoc.getIDValue (), null);
+    }
+    if (bMetrics)
+    {
+      aMetrics.onPhase (EConversionPhase.MARSHAL, System.nanoTime () - nStart);
+      aMetrics.onBytesWritten (aCountingOS.m_nCount);
+    }
+    if (bEvent)
+      aEvent.addBytesWritten (aCountingOS.m_nCount);
+    return eSuccess;
+  }
+
+  /**
+   * Write a CII document created by one of the conversion methods, reporting
+   * the time and the written bytes to the {@link ConversionMetrics} as
+   * {@link EConversionPhase#MARSHAL} phase. Use this instead of the CII
+   * marshaller when the conversion and the serialization happen separately.
+   *
+   * @param aCrossIndustryInvoice
+   *        The CII document to write. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. Is closed by this method. May not be
+   *        <code>null</code>.
+   * @param bFormattedOutput
+   *        <code>true</code> to write formatted XML.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aDeadline
+   *        The optional deadline, that aborts the writing when exceeded. May
+   *        be <code>null</code>.
+   * @return {@link ESuccess#FAILURE} if writing failed.
+   */
+  @NonNull
+  public static ESuccess writeCIID16B (@NonNull final CrossIndustryInvoiceType aCrossIndustryInvoice,
+                                       @NonNull @WillClose final OutputStream aOS,
+                                       final boolean bFormattedOutput,
+                                       @NonNull final ErrorList aErrorList,
+                                       @Nullable final ConversionDeadline aDeadline)
+  {
+    ValueEnforcer.notNull (aCrossIndustryInvoice, "CrossIndustryInvoice");
+    ValueEnforcer.notNull (aOS, "OutputStream");
     ValueEnforcer.notNull (aErrorList, "ErrorList");
 
+    try
+    {
+      return _writeCII (aCrossIndustryInvoice, aOS, bFormattedOutput, aErrorList, aDeadline, null);
+    }
+    finally
+    {
+      StreamHelper.close (aOS);
+    }
+  }
+
+  @Nullable
+  private static CrossIndustryInvoiceType _convertUBL21InvoiceToCIID16B (@NonNull @WillNotClose final InputStream aIS,
+                                                                         @NonNull final ErrorList aErrorList,
+                                                                         @NonNull final ConversionEvent aEvent)
+  {
     // Read UBL 2.1
-    final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ().setCollectErrors (aErrorList).read (aIS);
+    final InvoiceType aUBLInvoice = _readUBL (aIS,
+                                              aErrorList,
+                                              EConversionDocumentType.INVOICE,
+                                              x -> UBL21Marshaller.invoice ().setCollectErrors (aErrorList).read (x),
+                                              aEvent);
     if (aUBLInvoice == null)
       return null;
 
     // Main conversion
-    return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice, aErrorList);
+    return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice, aErrorList, null, aEvent);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@NonNull @WillNotClose final InputStream aIS,
+                                                                       @NonNull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final ConversionEvent aEvent = ConversionEvent.start ();
+    final CrossIndustryInvoiceType ret = _convertUBL21InvoiceToCIID16B (aIS, aErrorList, aEvent);
+    aEvent.finish (ret != null, aErrorList);
+    return ret;
   }
 
   @NonNull
@@ -77,30 +375,59 @@ public final class UBLToCIIConversionHelper
     ValueEnforcer.notNull (aOS, "OutputStream");
     ValueEnforcer.notNull (aErrorList, "ErrorList");
 
-    final CrossIndustryInvoiceType aCrossIndustryInvoice = convertUBL21InvoiceToCIID16B (aIS, aErrorList);
-    if (aCrossIndustryInvoice == null)
-      return ESuccess.FAILURE;
+    try
+    {
+      final ConversionEvent aEvent = ConversionEvent.start ();
+      final CrossIndustryInvoiceType aCrossIndustryInvoice = _convertUBL21InvoiceToCIID16B (aIS, aErrorList, aEvent);
+      if (aCrossIndustryInvoice == null)
+      {
+        aEvent.finish (false, aErrorList);
+        return ESuccess.FAILURE;
+      }
 
-    // Write CII D16B XML
-    return new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true)
-                                                           .setCollectErrors (aErrorList)
-                                                           .write (aCrossIndustryInvoice, aOS);
+      // Write CII D16B XML
+      final ESuccess eSuccess = _writeCII (aCrossIndustryInvoice, aOS, true, aErrorList, null, aEvent);
+      aEvent.finish (eSuccess.isSuccess (), aErrorList);
+      return eSuccess;
+    }
+    finally
+    {
+      // Also on the failure paths that never reach the marshaller
+      StreamHelper.close (aOS);
+    }
   }
 
   @Nullable
-  public static CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@NonNull @WillNotClose final InputStream aIS,
-                                                                          @NonNull final ErrorList aErrorList)
+  private static CrossIndustryInvoiceType _convertUBL21CreditNoteToCIID16B (@NonNull @WillNotClose final InputStream aIS,
+                                                                            @NonNull final ErrorList aErrorList,
+                                                                            @NonNull final ConversionEvent aEvent)
   {
-    ValueEnforcer.notNull (aIS, "InputStream");
-    ValueEnforcer.notNull (aErrorList, "ErrorList");
-
     // Read UBL 2.1
-    final CreditNoteType aUBLCreditNote = UBL21Marshaller.creditNote ().setCollectErrors (aErrorList).read (aIS);
+    final CreditNoteType aUBLCreditNote = _readUBL (aIS,
+                                                    aErrorList,
+                                                    EConversionDocumentType.CREDIT_NOTE,
+                                                    x -> UBL21Marshaller.creditNote ()
+                                                                        .setCollectErrors (aErrorList)
+                                                                        .read (x),
+                                                    aEvent);
     if (aUBLCreditNote == null)
       return null;
 
     // Main conversion
-    return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBLCreditNote, aErrorList);
+    return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBLCreditNote, aErrorList, null, aEvent);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@NonNull @WillNotClose final InputStream aIS,
+                                                                          @NonNull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final ConversionEvent aEvent = ConversionEvent.start ();
+    final CrossIndustryInvoiceType ret = _convertUBL21CreditNoteToCIID16B (aIS, aErrorList, aEvent);
+    aEvent.finish (ret != null, aErrorList);
+    return ret;
   }
 
   @NonNull
@@ -112,52 +439,255 @@ public final class UBLToCIIConversionHelper
     ValueEnforcer.notNull (aOS, "OutputStream");
     ValueEnforcer.notNull (aErrorList, "ErrorList");
 
-    // Main conversion
-    final CrossIndustryInvoiceType aCrossIndustryInvoice = convertUBL21CreditNoteToCIID16B (aIS, aErrorList);
-    if (aCrossIndustryInvoice == null)
-      return ESuccess.FAILURE;
+    try
+    {
+      // Main conversion
+      final ConversionEvent aEvent = ConversionEvent.start ();
+      final CrossIndustryInvoiceType aCrossIndustryInvoice = _convertUBL21CreditNoteToCIID16B (aIS, aErrorList, aEvent);
+      if (aCrossIndustryInvoice == null)
+      {
+        aEvent.finish (false, aErrorList);
+        return ESuccess.FAILURE;
+      }
 
-    // Write CII D16B XML
-    return new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true)
-                                                           .setCollectErrors (aErrorList)
-                                                           .write (aCrossIndustryInvoice, aOS);
+      // Write CII D16B XML
+      final ESuccess eSuccess = _writeCII (aCrossIndustryInvoice, aOS, true, aErrorList, null, aEvent);
+      aEvent.finish (eSuccess.isSuccess (), aErrorList);
+      return eSuccess;
+    }
+    finally
+    {
+      // Also on the failure paths that never reach the marshaller
+      StreamHelper.close (aOS);
+    }
   }
 
+  /**
+   * Read the provided input stream into a DOM document, without interpreting
+   * it. GZIP compressed input is detected by its magic bytes and decompressed
+   * on the fly. This is the first step of
+   * {@link #convertUBL21AutoDetectToCIID16B(InputStream, ErrorList)} and is
+   * provided separately for callers that need to treat parsing and mapping
+   * separately.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if the XML could not be read.
+   */
   @Nullable
-  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@NonNull @WillNotClose final InputStream aIS,
-                                                                          @NonNull final ErrorList aErrorList)
+  public static Document readXMLDocument (@NonNull @WillNotClose final InputStream aIS,
+                                          @NonNull final ErrorList aErrorList)
+  {
+    return readXMLDocument (aIS, aErrorList, null);
+  }
+
+  /**
+   * Read the provided input stream into a DOM document like
+   * {@link #readXMLDocument(InputStream, ErrorList)}, but abandon reading as
+   * soon as the provided deadline expires or is cancelled.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aDeadline
+   *        The deadline to respect. May be <code>null</code> for no limit.
+   * @return <code>null</code> if the XML could not be read or reading was
+   *         abandoned.
+   */
+  @Nullable
+  public static Document readXMLDocument (@NonNull @WillNotClose final InputStream aIS,
+                                          @NonNull final ErrorList aErrorList,
+                                          @Nullable final ConversionDeadline aDeadline)
   {
     ValueEnforcer.notNull (aIS, "InputStream");
     ValueEnforcer.notNull (aErrorList, "ErrorList");
 
-    // Read exactly once into XML
-    final Document aDoc = DOMReader.readXMLDOM (aIS,
-                                                new DOMReaderSettings ().setErrorHandler (new WrappedCollectingSAXErrorHandler (aErrorList)));
-    if (aDoc == null || aDoc.getDocumentElement () == null)
+    return _readXMLDocument (aIS, aErrorList, aDeadline, null);
+  }
+
+  @Nullable
+  private static Document _readXMLDocument (@NonNull @WillNotClose final InputStream aIS,
+                                            @NonNull final ErrorList aErrorList,
+                                            @Nullable final ConversionDeadline aDeadline,
+                                            @Nullable final ConversionEvent aEvent)
+  {
+    final IConversionMetrics aMetrics = ConversionMetrics.getInstance ();
+    final boolean bMetrics = aMetrics.isEnabled ();
+    if (aDeadline != null && aDeadline.addErrorIfAborted ("read", aErrorList))
+    {
+      if (bMetrics)
+        aMetrics.onError (EConversionErrorCategory.getAbortCategory (aDeadline));
       return null;
+    }
+
+    final boolean bEvent = aEvent != null && aEvent.isEnabled ();
+    final ConversionPhaseEvent aPhaseEvent = ConversionPhaseEvent.start ();
+    final long nStart = bMetrics ? System.nanoTime () : 0;
+    final CountingInputStream aCountingIS = bMetrics || bEvent ? new CountingInputStream (aIS) : null;
+    final InputStream aMeasuredIS = aCountingIS != null ? aCountingIS : aIS;
+    // Not closed, as the checked stream would close the source stream
+    final InputStream aSourceIS = aDeadline == null ? aMeasuredIS : aDeadline.getCheckedInputStream (aMeasuredIS);
+    Document aDoc;
+    EConversionErrorCategory eError = null;
+    try (final InputStream aUncompressedIS = getUncompressedInputStream (aSourceIS))
+    {
+      aDoc = DOMReader.readXMLDOM (aUncompressedIS,
+                                   new DOMReaderSettings ().setErrorHandler (new WrappedCollectingSAXErrorHandler (aErrorList)));
+    }
+    catch (final IOException ex)
+    {
+      if (aDeadline != null && aDeadline.addErrorIfAborted ("read", aErrorList))
+        eError = EConversionErrorCategory.getAbortCategory (aDeadline);
+      else
+      {
+        _addReadError (aErrorList, ex);
+        eError = EConversionErrorCategory.READ;
+      }
+      aDoc = null;
+    }
+    if (eError == null && (aDoc == null || aDoc.getDocumentElement () == null))
+    {
+      // Report the real reason if the parser gave up because of the deadline
+      if (aDeadline != null && aDeadline.addErrorIfAborted ("read", aErrorList))
+        eError = EConversionErrorCategory.getAbortCategory (aDeadline);
+      else
+        eError = EConversionErrorCategory.READ;
+    }
+
+    aPhaseEvent.finish (EConversionPhase.PARSE, null, null);
+    if (bMetrics)
+    {
+      aMetrics.onPhase (EConversionPhase.PARSE, System.nanoTime () - nStart);
+      aMetrics.onBytesRead (aCountingIS.m_nCount);
+      if (eError != null)
+        aMetrics.onError (eError);
+    }
+    if (bEvent)
+      aEvent.addBytesRead (aCountingIS.m_nCount);
+    return eError == null ? aDoc : null;
+  }
+
+  /**
+   * Bind an already parsed DOM document to UBL objects, reporting the time as
+   * {@link EConversionPhase#UNMARSHAL} phase.
+   */
+  @Nullable
+  private static <T> T _unmarshal (@NonNull final IConversionMetrics aMetrics,
+                                   @NonNull final EConversionDocumentType eType,
+                                   @NonNull final Supplier <T> aReader)
+  {
+    final ConversionPhaseEvent aPhaseEvent = ConversionPhaseEvent.start ();
+    if (!aMetrics.isEnabled ())
+    {
+      final T ret = aReader.get ();
+      aPhaseEvent.finish (EConversionPhase.UNMARSHAL, null, eType);
+      return ret;
+    }
+
+    final long nStart = System.nanoTime ();
+    final T ret = aReader.get ();
+    aPhaseEvent.finish (EConversionPhase.UNMARSHAL, null, eType);
+    aMetrics.onPhase (EConversionPhase.UNMARSHAL, System.nanoTime () - nStart);
+    if (ret == null)
+      aMetrics.onError (EConversionErrorCategory.UNMARSHAL);
+    return ret;
+  }
+
+  /**
+   * Convert an already parsed UBL 2.1 Invoice or CreditNote to CII D16B. The
+   * document type is determined by the local name of the root element.
+   *
+   * @param aDoc
+   *        The DOM document to convert. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if the conversion failed.
+   */
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@NonNull final Document aDoc,
+                                                                          @NonNull final ErrorList aErrorList)
+  {
+    return convertUBL21AutoDetectToCIID16B (aDoc, aErrorList, null);
+  }
+
+  /**
+   * Convert an already parsed UBL 2.1 Invoice or CreditNote to CII D16B like
+   * {@link #convertUBL21AutoDetectToCIID16B(Document, ErrorList)}, but abandon
+   * the conversion as soon as the provided deadline expires or is cancelled.
+   *
+   * @param aDoc
+   *        The DOM document to convert. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aDeadline
+   *        The deadline to respect. May be <code>null</code> for no limit.
+   * @return <code>null</code> if the conversion failed or was abandoned.
+   */
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@NonNull final Document aDoc,
+                                                                          @NonNull final ErrorList aErrorList,
+                                                                          @Nullable final ConversionDeadline aDeadline)
+  {
+    ValueEnforcer.notNull (aDoc, "Document");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final ConversionEvent aEvent = ConversionEvent.start ();
+    final CrossIndustryInvoiceType ret = _convertUBL21AutoDetectToCIID16B (aDoc, aErrorList, aDeadline, aEvent);
+    aEvent.finish (ret != null, aErrorList);
+    return ret;
+  }
+
+  @Nullable
+  private static CrossIndustryInvoiceType _convertUBL21AutoDetectToCIID16B (@NonNull final Document aDoc,
+                                                                            @NonNull final ErrorList aErrorList,
+                                                                            @Nullable final ConversionDeadline aDeadline,
+                                                                            @NonNull final ConversionEvent aEvent)
+  {
+    final IConversionMetrics aMetrics = ConversionMetrics.getInstance ();
+    final boolean bMetrics = aMetrics.isEnabled ();
+    if (aDeadline != null && aDeadline.addErrorIfAborted ("map", aErrorList))
+    {
+      if (bMetrics)
+        aMetrics.onError (EConversionErrorCategory.getAbortCategory (aDeadline));
+      return null;
+    }
 
     final String sRootLocalName = aDoc.getDocumentElement ().getLocalName ();
 
     if ("Invoice".equals (sRootLocalName))
     {
       // Read UBL 2.1 Invoice
-      final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ().setCollectErrors (aErrorList).read (aDoc);
+      final InvoiceType aUBLInvoice = _unmarshal (aMetrics,
+                                                  EConversionDocumentType.INVOICE,
+                                                  () -> UBL21Marshaller.invoice ()
+                                                                       .setCollectErrors (aErrorList)
+                                                                       .read (aDoc));
       if (aUBLInvoice == null)
         return null;
 
       // Main conversion
-      return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice, aErrorList);
+      return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice, aErrorList, aDeadline, aEvent);
     }
 
     if ("CreditNote".equals (sRootLocalName))
     {
       // Read UBL 2.1 Credit Note
-      final CreditNoteType aUBLCreditNote = UBL21Marshaller.creditNote ().setCollectErrors (aErrorList).read (aDoc);
+      final CreditNoteType aUBLCreditNote = _unmarshal (aMetrics,
+                                                        EConversionDocumentType.CREDIT_NOTE,
+                                                        () -> UBL21Marshaller.creditNote ()
+                                                                             .setCollectErrors (aErrorList)
+                                                                             .read (aDoc));
       if (aUBLCreditNote == null)
         return null;
 
       // Main conversion
-      return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBLCreditNote, aErrorList);
+      return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBLCreditNote,
+                                                                              aErrorList,
+                                                                              aDeadline,
+                                                                              aEvent);
     }
 
     aErrorList.add (SingleError.builderError ()
@@ -165,25 +695,124 @@ public final class UBLToCIIConversionHelper
                                            XMLHelper.getQName (aDoc.getDocumentElement ()) +
                                            " is not supported")
                                .build ());
+    if (bMetrics)
+      aMetrics.onError (EConversionErrorCategory.UNSUPPORTED_DOCUMENT_TYPE);
     return null;
   }
 
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@NonNull @WillNotClose final InputStream aIS,
+                                                                          @NonNull final ErrorList aErrorList)
+  {
+    return convertUBL21AutoDetectToCIID16B (aIS, aErrorList, null);
+  }
+
+  /**
+   * Read and convert a UBL 2.1 Invoice or CreditNote to CII D16B, abandoning
+   * the conversion as soon as the provided deadline expires or is cancelled.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aDeadline
+   *        The deadline to respect. May be <code>null</code> for no limit.
+   * @return <code>null</code> if the conversion failed or was abandoned.
+   */
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@NonNull @WillNotClose final InputStream aIS,
+                                                                          @NonNull final ErrorList aErrorList,
+                                                                          @Nullable final ConversionDeadline aDeadline)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final ConversionEvent aEvent = ConversionEvent.start ();
+    final CrossIndustryInvoiceType ret = _convertUBL21AutoDetectToCIID16B (aIS, aErrorList, aDeadline, aEvent);
+    aEvent.finish (ret != null, aErrorList);
+    return ret;
+  }
+
+  @Nullable
+  private static CrossIndustryInvoiceType _convertUBL21AutoDetectToCIID16B (@NonNull @WillNotClose final InputStream aIS,
+                                                                            @NonNull final ErrorList aErrorList,
+                                                                            @Nullable final ConversionDeadline aDeadline,
+                                                                            @NonNull final ConversionEvent aEvent)
+  {
+    // Read exactly once into XML
+    final Document aDoc = _readXMLDocument (aIS, aErrorList, aDeadline, aEvent);
+    if (aDoc == null)
+      return null;
+
+    return _convertUBL21AutoDetectToCIID16B (aDoc, aErrorList, aDeadline, aEvent);
+  }
+
   @NonNull
   public static ESuccess convertUBL21AutoDetectToCIID16B (@NonNull @WillNotClose final InputStream aIS,
                                                           @NonNull @WillClose final OutputStream aOS,
                                                           @NonNull final ErrorList aErrorList)
+  {
+    return convertUBL21AutoDetectToCIID16B (aIS, aOS, aErrorList, null);
+  }
+
+  /**
+   * Read, convert and write a UBL 2.1 Invoice or CreditNote as CII D16B,
+   * abandoning the conversion as soon as the provided deadline expires or is
+   * cancelled. The deadline is checked between the phases, between the lines
+   * and on every read and write.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aDeadline
+   *        The deadline to respect. May be <code>null</code> for no limit.
+   * @return {@link ESuccess#FAILURE} if the conversion failed or was abandoned.
+   *         Output already written is not revoked in this case.
+   */
+  @NonNull
+  public static ESuccess convertUBL21AutoDetectToCIID16B (@NonNull @WillNotClose final InputStream aIS,
+                                                          @NonNull @WillClose final OutputStream aOS,
+                                                          @NonNull final ErrorList aErrorList,
+                                                          @Nullable final ConversionDeadline aDeadline)
   {
     ValueEnforcer.notNull (aIS, "InputStream");
     ValueEnforcer.notNull (aOS, "OutputStream");
     ValueEnforcer.notNull (aErrorList, "ErrorList");
 
-    final CrossIndustryInvoiceType aCrossIndustryInvoice = convertUBL21AutoDetectToCIID16B (aIS, aErrorList);
-    if (aCrossIndustryInvoice == null)
-      return ESuccess.FAILURE;
+    try
+    {
+      final ConversionEvent aEvent = ConversionEvent.start ();
+      final CrossIndustryInvoiceType aCrossIndustryInvoice = _convertUBL21AutoDetectToCIID16B (aIS,
+                                                                                               aErrorList,
+                                                                                               aDeadline,
+                                                                                               aEvent);
+      if (aCrossIndustryInvoice == null)
+      {
+        aEvent.finish (false, aErrorList);
+        return ESuccess.FAILURE;
+      }
 
-    // Write CII D16B XML
-    return new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true)
-                                                           .setCollectErrors (aErrorList)
-                                                           .write (aCrossIndustryInvoice, aOS);
+      if (aDeadline != null && aDeadline.addErrorIfAborted ("write", aErrorList))
+      {
+        final IConversionMetrics aMetrics = ConversionMetrics.getInstance ();
+        if (aMetrics.isEnabled ())
+          aMetrics.onError (EConversionErrorCategory.getAbortCategory (aDeadline));
+        aEvent.finish (false, aErrorList);
+        return ESuccess.FAILURE;
+      }
+
+      // Write CII D16B XML
+      final ESuccess eSuccess = _writeCII (aCrossIndustryInvoice, aOS, true, aErrorList, aDeadline, aEvent);
+      aEvent.finish (eSuccess.isSuccess (), aErrorList);
+      return eSuccess;
+    }
+    finally
+    {
+      // Also on the failure paths that never reach the marshaller
+      StreamHelper.close (aOS);
+    }
   }
 }
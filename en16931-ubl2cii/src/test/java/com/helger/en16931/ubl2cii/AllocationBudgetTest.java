@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.CommonsTreeMap;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.collection.commons.ICommonsSortedMap;
+import com.helger.diagnostics.error.list.ErrorList;
+import com.helger.ubl21.UBL21Marshaller;
+
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Checks the bytes allocated by the converters for each test document against
+ * the budgets in <code>src/test/resources/allocation-budgets.properties</code>.
+ * Only the mapping of already parsed UBL is measured. The allocation differs
+ * between Java versions, so the budgets are keyed by the Java feature version,
+ * e.g. <code>21.inv/peppol/x.xml</code>. The test is opt-in and only runs with
+ * <code>-Dubl2cii.allocation=true</code>; then a test document without a
+ * budget for the current Java version fails the test. Run with
+ * <code>-Dubl2cii.allocation.update=true</code> to write the measured values
+ * as the new budgets of the current Java version, and with
+ * <code>-Dubl2cii.allocation.tolerance=x</code> to change the tolerated
+ * increase (default 0.1 = 10%).
+ *
+ * @author Philip Helger
+ */
+public final class AllocationBudgetTest
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (AllocationBudgetTest.class);
+
+  private static final File BASE_DIR = new File ("src/test/resources/external/ubl21");
+  private static final File BUDGET_FILE = new File ("src/test/resources/allocation-budgets.properties");
+  private static final int WARMUP_ITERATIONS = 20;
+  private static final int MEASURE_ITERATIONS = 5;
+
+  private static com.sun.management.@Nullable ThreadMXBean _getThreadMXBean ()
+  {
+    final ThreadMXBean aBean = ManagementFactory.getThreadMXBean ();
+    if (!(aBean instanceof com.sun.management.ThreadMXBean))
+      return null;
+    final com.sun.management.ThreadMXBean ret = (com.sun.management.ThreadMXBean) aBean;
+    return ret.isThreadAllocatedMemorySupported () && ret.isThreadAllocatedMemoryEnabled () ? ret : null;
+  }
+
+  /**
+   * @return The minimum number of bytes allocated by the current thread for a
+   *         single call of the provided conversion. The minimum is least
+   *         affected by unrelated allocations, e.g. of the JIT.
+   */
+  private static long _measure (final com.sun.management.@NonNull ThreadMXBean aBean,
+                                @NonNull final Supplier <Object> aConversion)
+  {
+    for (int i = 0; i < WARMUP_ITERATIONS; ++i)
+      assertNotNull (aConversion.get ());
+
+    long ret = Long.MAX_VALUE;
+    for (int i = 0; i < MEASURE_ITERATIONS; ++i)
+    {
+      final long nBefore = aBean.getCurrentThreadAllocatedBytes ();
+      final Object aResult = aConversion.get ();
+      final long nAllocated = aBean.getCurrentThreadAllocatedBytes () - nBefore;
+      assertNotNull (aResult);
+      ret = Math.min (ret, nAllocated);
+    }
+    return ret;
+  }
+
+  @NonNull
+  private static String _getKey (@NonNull final File aFile)
+  {
+    return Runtime.version ().feature () +
+           "." +
+           BASE_DIR.toPath ().relativize (aFile.toPath ()).toString ().replace ('\\', '/');
+  }
+
+  @NonNull
+  private static Properties _readBudgets () throws IOException
+  {
+    final Properties ret = new Properties ();
+    try (final Reader aReader = Files.newBufferedReader (BUDGET_FILE.toPath (), StandardCharsets.ISO_8859_1))
+    {
+      ret.load (aReader);
+    }
+    return ret;
+  }
+
+  private static void _writeBudgets (@NonNull final Properties aBudgets,
+                                     @NonNull final ICommonsSortedMap <String, Long> aMeasured) throws IOException
+  {
+    // Keep the budgets of the other Java versions
+    final String sPrefix = Runtime.version ().feature () + ".";
+    final ICommonsSortedMap <String, String> aAll = new CommonsTreeMap <> ();
+    for (final String sKey : aBudgets.stringPropertyNames ())
+      if (!sKey.startsWith (sPrefix))
+        aAll.put (sKey, aBudgets.getProperty (sKey));
+    for (final Map.Entry <String, Long> aEntry : aMeasured.entrySet ())
+      aAll.put (aEntry.getKey (), aEntry.getValue ().toString ());
+
+    // Keep the header comments
+    final ICommonsList <String> aLines = new CommonsArrayList <> ();
+    for (final String sLine : Files.readAllLines (BUDGET_FILE.toPath (), StandardCharsets.ISO_8859_1))
+      if (sLine.startsWith ("#") || sLine.isBlank ())
+        aLines.add (sLine);
+      else
+        break;
+    try (final Writer aWriter = Files.newBufferedWriter (BUDGET_FILE.toPath (), StandardCharsets.ISO_8859_1))
+    {
+      for (final String sLine : aLines)
+        aWriter.write (sLine + "\n");
+      for (final Map.Entry <String, String> aEntry : aAll.entrySet ())
+        aWriter.write (aEntry.getKey () + "=" + aEntry.getValue () + "\n");
+    }
+  }
+
+  @Test
+  public void testAllocationBudgets () throws IOException
+  {
+    final boolean bUpdate = Boolean.getBoolean ("ubl2cii.allocation.update");
+    // Opt-in, as the allocation depends on the JVM
+    assumeTrue ("Allocation budgets are only checked with -Dubl2cii.allocation=true",
+                bUpdate || Boolean.getBoolean ("ubl2cii.allocation"));
+
+    final com.sun.management.ThreadMXBean aBean = _getThreadMXBean ();
+    assumeTrue ("Thread allocation measurement is not supported by this JVM", aBean != null);
+
+    final double dTolerance = Double.parseDouble (System.getProperty ("ubl2cii.allocation.tolerance", "0.1"));
+    final Properties aBudgets = _readBudgets ();
+
+    // Measure all documents
+    final ICommonsSortedMap <String, Long> aMeasured = new CommonsTreeMap <> ();
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      final InvoiceType aUBL = UBL21Marshaller.invoice ().read (aFile);
+      assertNotNull (aUBL);
+      aMeasured.put (_getKey (aFile),
+                     Long.valueOf (_measure (aBean,
+                                             () -> UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBL,
+                                                                                                                 new ErrorList ()))));
+    }
+    for (final File aFile : MockSettings.getAllTestFilesUBL21CreditNote ())
+    {
+      final CreditNoteType aUBL = UBL21Marshaller.creditNote ().read (aFile);
+      assertNotNull (aUBL);
+      aMeasured.put (_getKey (aFile),
+                     Long.valueOf (_measure (aBean,
+                                             () -> UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBL,
+                                                                                                                    new ErrorList ()))));
+    }
+
+    if (bUpdate)
+    {
+      _writeBudgets (aBudgets, aMeasured);
+      LOGGER.info ("Wrote " + aMeasured.size () + " allocation budget(s) to '" + BUDGET_FILE.getAbsolutePath () + "'");
+      return;
+    }
+
+    // Compare all, so that every regression is reported at once
+    final ICommonsList <String> aExceeded = new CommonsArrayList <> ();
+    final ICommonsList <String> aMissing = new CommonsArrayList <> ();
+    for (final Map.Entry <String, Long> aEntry : aMeasured.entrySet ())
+    {
+      final String sKey = aEntry.getKey ();
+      final long nMeasured = aEntry.getValue ().longValue ();
+      final String sBudget = aBudgets.getProperty (sKey);
+      if (sBudget == null)
+      {
+        LOGGER.error (sKey + ": allocated " + nMeasured + " bytes - no budget defined");
+        aMissing.add (sKey);
+        continue;
+      }
+      final long nBudget = Long.parseLong (sBudget.trim ());
+      final String sMsg = String.format (Locale.ROOT,
+                                         "%s: allocated %,d bytes, budget %,d bytes (%+.1f%%)",
+                                         sKey,
+                                         Long.valueOf (nMeasured),
+                                         Long.valueOf (nBudget),
+                                         Double.valueOf ((nMeasured - nBudget) * 100d / nBudget));
+      LOGGER.info (sMsg);
+      if (nMeasured > nBudget * (1 + dTolerance))
+        aExceeded.add (sMsg);
+    }
+    assertTrue ("No allocation budget is defined for " +
+                aMissing.size () +
+                " test document(s) on Java " +
+                Runtime.version ().feature () +
+                " - record them with -Dubl2cii.allocation.update=true:\n" +
+                String.join ("\n", aMissing),
+                aMissing.isEmpty ());
+    assertTrue ("Allocation budget exceeded by more than " +
+                (dTolerance * 100) +
+                "%:\n" +
+                String.join ("\n", aExceeded),
+                aExceeded.isEmpty ());
+  }
+}
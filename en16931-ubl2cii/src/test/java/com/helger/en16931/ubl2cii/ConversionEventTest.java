@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.helger.base.io.nonblocking.NonBlockingByteArrayInputStream;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.collection.commons.CommonsArrayList;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.diagnostics.error.list.ErrorList;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test class for classes {@link ConversionEvent} and
+ * {@link ConversionPhaseEvent}.
+ *
+ * @author Philip Helger
+ */
+public final class ConversionEventTest
+{
+  @Test
+  public void testDisabledByDefault ()
+  {
+    final ConversionEvent aEvent = ConversionEvent.start ();
+    assertFalse (aEvent.isEnabled ());
+    final ConversionPhaseEvent aPhaseEvent = ConversionPhaseEvent.start ();
+    assertFalse (aPhaseEvent.isEnabled ());
+  }
+
+  @Test
+  public void testRecording () throws IOException
+  {
+    final ICommonsList <File> aFiles = MockSettings.getAllTestFilesUBL21Invoice ();
+    aFiles.addAll (MockSettings.getAllTestFilesUBL21CreditNote ());
+
+    final Path aDump = Files.createTempFile ("ubl2cii", ".jfr");
+    try
+    {
+      long nBytesOut = 0;
+      try (final Recording aRecording = new Recording ())
+      {
+        aRecording.enable (ConversionEvent.NAME);
+        aRecording.enable (ConversionPhaseEvent.NAME);
+        aRecording.start ();
+        for (final File aFile : aFiles)
+        {
+          final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+          assertTrue (UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (Files.readAllBytes (aFile.toPath ())),
+                                                                                aBAOS,
+                                                                                new ErrorList ())
+                                              .isSuccess ());
+          nBytesOut += aBAOS.size ();
+        }
+        // An abandoned conversion
+        UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (Files.readAllBytes (aFiles.getFirstOrNull ()
+                                                                                                                                  .toPath ())),
+                                                                  new ErrorList (),
+                                                                  ConversionDeadline.timeout (Duration.ZERO));
+        aRecording.stop ();
+        aRecording.dump (aDump);
+      }
+
+      final List <RecordedEvent> aAllEvents = RecordingFile.readAllEvents (aDump);
+      final ICommonsList <RecordedEvent> aConversions = new CommonsArrayList <> ();
+      int nPhases = 0;
+      int nMapHeaderPhases = 0;
+      for (final RecordedEvent aEvent : aAllEvents)
+        if (aEvent.getEventType ().getName ().equals (ConversionEvent.NAME))
+          aConversions.add (aEvent);
+        else
+          if (aEvent.getEventType ().getName ().equals (ConversionPhaseEvent.NAME))
+          {
+            nPhases++;
+            if (EConversionPhase.MAP_HEADER.getID ().equals (aEvent.getString ("phase")))
+              nMapHeaderPhases++;
+          }
+
+      assertEquals (aFiles.size () + 1, aConversions.size ());
+      long nRecordedBytesOut = 0;
+      int nSuccess = 0;
+      int nTimeout = 0;
+      for (final RecordedEvent aEvent : aConversions)
+      {
+        final String sOutcome = aEvent.getString ("outcome");
+        if (ConversionEvent.OUTCOME_SUCCESS.equals (sOutcome))
+        {
+          nSuccess++;
+          assertTrue (aEvent.getLong ("bytesRead") > 0);
+          assertTrue (aEvent.getInt ("lineCount") > 0);
+        }
+        else
+          if (EConversionErrorCategory.TIMEOUT.getID ().equals (sOutcome))
+            nTimeout++;
+        nRecordedBytesOut += aEvent.getLong ("bytesWritten");
+      }
+      assertEquals (aFiles.size (), nSuccess);
+      assertEquals (1, nTimeout);
+      assertEquals (nBytesOut, nRecordedBytesOut);
+      // parse, unmarshal, map-header, map-lines and marshal per document
+      assertTrue (nPhases >= aFiles.size () * 5);
+      // The abandoned conversion never reaches the mapping
+      assertEquals (aFiles.size (), nMapHeaderPhases);
+    }
+    finally
+    {
+      Files.deleteIfExists (aDump);
+    }
+  }
+}
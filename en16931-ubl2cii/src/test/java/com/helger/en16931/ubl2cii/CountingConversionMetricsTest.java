@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2024-2026 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.helger.base.io.nonblocking.NonBlockingByteArrayInputStream;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.collection.commons.ICommonsList;
+import com.helger.diagnostics.error.list.ErrorList;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link CountingConversionMetrics}.
+ *
+ * @author Philip Helger
+ */
+public final class CountingConversionMetricsTest
+{
+  @After
+  public void tearDown ()
+  {
+    ConversionMetrics.setInstance (null);
+  }
+
+  @Test
+  public void testDefault ()
+  {
+    assertSame (ConversionMetrics.NO_OP, ConversionMetrics.getInstance ());
+    ConversionMetrics.setInstance (new CountingConversionMetrics ());
+    ConversionMetrics.setInstance (null);
+    assertSame (ConversionMetrics.NO_OP, ConversionMetrics.getInstance ());
+  }
+
+  @Test
+  public void testConvertAll () throws IOException
+  {
+    final CountingConversionMetrics aMetrics = new CountingConversionMetrics ();
+    ConversionMetrics.setInstance (aMetrics);
+
+    int nInvoices = 0;
+    int nCreditNotes = 0;
+    long nBytesIn = 0;
+    long nBytesOut = 0;
+    final ICommonsList <File> aFiles = MockSettings.getAllTestFilesUBL21Invoice ();
+    aFiles.addAll (MockSettings.getAllTestFilesUBL21CreditNote ());
+    for (final File aFile : aFiles)
+    {
+      final byte [] aBytes = Files.readAllBytes (aFile.toPath ());
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      final ErrorList aErrorList = new ErrorList ();
+      assertTrue (UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBytes),
+                                                                            aBAOS,
+                                                                            aErrorList)
+                                          .isSuccess ());
+      if (aFile.getPath ().replace ('\\', '/').contains ("/cn/"))
+        nCreditNotes++;
+      else
+        nInvoices++;
+      nBytesIn += aBytes.length;
+      nBytesOut += aBAOS.size ();
+    }
+
+    assertEquals (nInvoices, aMetrics.getDocumentCount (EConversionDocumentType.INVOICE));
+    assertEquals (nCreditNotes, aMetrics.getDocumentCount (EConversionDocumentType.CREDIT_NOTE));
+    assertTrue (aMetrics.getLineCount (EConversionDocumentType.INVOICE) >= nInvoices);
+    for (final EConversionPhase ePhase : EConversionPhase.values ())
+      if (ePhase != EConversionPhase.WRITE)
+        assertEquals (ePhase.getID (), nInvoices + nCreditNotes, aMetrics.getPhaseCount (ePhase));
+    // Marshalling to a stream includes writing
+    assertEquals (0, aMetrics.getPhaseCount (EConversionPhase.WRITE));
+    // The parser may stop before trailing whitespace
+    assertTrue (aMetrics.getBytesRead () > 0 && aMetrics.getBytesRead () <= nBytesIn);
+    assertEquals (nBytesOut, aMetrics.getBytesWritten ());
+    for (final EConversionErrorCategory eCategory : EConversionErrorCategory.values ())
+      assertEquals (eCategory.getID (), 0, aMetrics.getErrorCount (eCategory));
+  }
+
+  @Test
+  public void testWriteSeparately () throws IOException
+  {
+    final CountingConversionMetrics aMetrics = new CountingConversionMetrics ();
+    ConversionMetrics.setInstance (aMetrics);
+
+    final File aFile = MockSettings.getAllTestFilesUBL21Invoice ().getFirstOrNull ();
+    final ErrorList aErrorList = new ErrorList ();
+    final CrossIndustryInvoiceType aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (Files.readAllBytes (aFile.toPath ())),
+                                                                                                    aErrorList);
+    assertNotNull (aCII);
+    assertEquals (0, aMetrics.getPhaseCount (EConversionPhase.MARSHAL));
+
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    assertTrue (UBLToCIIConversionHelper.writeCIID16B (aCII, aBAOS, false, aErrorList, null).isSuccess ());
+    assertEquals (1, aMetrics.getPhaseCount (EConversionPhase.MARSHAL));
+    assertEquals (aBAOS.size (), aMetrics.getBytesWritten ());
+  }
+
+  @Test
+  public void testErrors ()
+  {
+    final CountingConversionMetrics aMetrics = new CountingConversionMetrics ();
+    ConversionMetrics.setInstance (aMetrics);
+
+    // Not XML
+    UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream ("no xml".getBytes (StandardCharsets.UTF_8)),
+                                                              new ErrorList ());
+    assertEquals (1, aMetrics.getErrorCount (EConversionErrorCategory.READ));
+
+    // Not UBL
+    UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream ("<root/>".getBytes (StandardCharsets.UTF_8)),
+                                                              new ErrorList ());
+    assertEquals (1, aMetrics.getErrorCount (EConversionErrorCategory.UNSUPPORTED_DOCUMENT_TYPE));
+
+    // Expired
+    UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream ("<root/>".getBytes (StandardCharsets.UTF_8)),
+                                                              new ErrorList (),
+                                                              ConversionDeadline.timeout (Duration.ZERO));
+    assertEquals (1, aMetrics.getErrorCount (EConversionErrorCategory.TIMEOUT));
+    assertEquals (0, aMetrics.getErrorCount (EConversionErrorCategory.CANCELLED));
+  }
+}
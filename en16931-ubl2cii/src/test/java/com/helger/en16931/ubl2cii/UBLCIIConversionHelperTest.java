@@ -17,14 +17,28 @@
  */
 package com.helger.en16931.ubl2cii;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
 
+import org.jspecify.annotations.NonNull;
 import org.junit.Test;
+import org.w3c.dom.Document;
 
+import com.helger.base.io.nonblocking.NonBlockingByteArrayInputStream;
+import com.helger.base.io.nonblocking.NonBlockingByteArrayOutputStream;
+import com.helger.base.state.ESuccess;
+import com.helger.collection.commons.ICommonsList;
 import com.helger.diagnostics.error.list.ErrorList;
 import com.helger.io.file.FileHelper;
 
@@ -56,4 +70,227 @@ public final class UBLCIIConversionHelperTest
         assertNotNull (aCII);
       }
   }
+
+  @Test
+  public void testReadAndConvertSeparately () throws IOException
+  {
+    final ICommonsList <File> aFiles = MockSettings.getAllTestFilesUBL21Invoice ();
+    aFiles.addAll (MockSettings.getAllTestFilesUBL21CreditNote ());
+    for (final File aFile : aFiles)
+      try (InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final ErrorList aErrorList = new ErrorList ();
+        final Document aDoc = UBLToCIIConversionHelper.readXMLDocument (aIS, aErrorList);
+        assertNotNull (aDoc);
+        final CrossIndustryInvoiceType aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (aDoc, aErrorList);
+        assertNotNull (aCII);
+      }
+  }
+
+  @Test
+  public void testConvertUnsupportedDocument ()
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    final byte [] aXML = "<Order xmlns='urn:oasis:names:specification:ubl:schema:xsd:Order-2' />".getBytes (StandardCharsets.UTF_8);
+    final CrossIndustryInvoiceType aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aXML),
+                                                                                                    aErrorList);
+    assertNull (aCII);
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+
+  @NonNull
+  private static byte [] _gzip (final byte @NonNull [] aBytes) throws IOException
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    try (final GZIPOutputStream aGZOS = new GZIPOutputStream (aBAOS))
+    {
+      aGZOS.write (aBytes);
+    }
+    return aBAOS.toByteArray ();
+  }
+
+  @Test
+  public void testConvertGZIPCompressed () throws IOException
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      final byte [] aPlain = Files.readAllBytes (aFile.toPath ());
+      assertFalse (UBLToCIIConversionHelper.isGZIPCompressed (aPlain));
+
+      final byte [] aCompressed = _gzip (aPlain);
+      assertTrue (UBLToCIIConversionHelper.isGZIPCompressed (aCompressed));
+
+      ErrorList aErrorList = new ErrorList ();
+      CrossIndustryInvoiceType aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aCompressed),
+                                                                                              aErrorList);
+      assertNotNull (aFile.getName (), aCII);
+
+      aErrorList = new ErrorList ();
+      aCII = UBLToCIIConversionHelper.convertUBL21InvoiceToCIID16B (new NonBlockingByteArrayInputStream (aCompressed),
+                                                                   aErrorList);
+      assertNotNull (aFile.getName (), aCII);
+    }
+
+    for (final File aFile : MockSettings.getAllTestFilesUBL21CreditNote ())
+    {
+      final byte [] aCompressed = _gzip (Files.readAllBytes (aFile.toPath ()));
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCII = UBLToCIIConversionHelper.convertUBL21CreditNoteToCIID16B (new NonBlockingByteArrayInputStream (aCompressed),
+                                                                                                      aErrorList);
+      assertNotNull (aFile.getName (), aCII);
+    }
+  }
+
+  @Test
+  public void testConvertBrokenGZIP ()
+  {
+    // Magic bytes followed by garbage
+    final byte [] aBroken = { 0x1f, (byte) 0x8b, 1, 2, 3 };
+    final ErrorList aErrorList = new ErrorList ();
+    final CrossIndustryInvoiceType aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBroken),
+                                                                                                    aErrorList);
+    assertNull (aCII);
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+
+  private static boolean _containsErrorID (@NonNull final ErrorList aErrorList, @NonNull final String sErrorID)
+  {
+    return aErrorList.containsAny (x -> sErrorID.equals (x.getErrorID ()));
+  }
+
+  @Test
+  public void testConvertWithinDeadline () throws IOException
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+      try (InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final ErrorList aErrorList = new ErrorList ();
+        final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+        final ESuccess eSuccess = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (aIS,
+                                                                                           aBAOS,
+                                                                                           aErrorList,
+                                                                                           ConversionDeadline.unlimited ());
+        assertTrue (aFile.getName (), eSuccess.isSuccess ());
+        assertTrue (aBAOS.size () > 0);
+      }
+  }
+
+  @Test
+  public void testConvertWithExpiredDeadline () throws IOException
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      final byte [] aBytes = Files.readAllBytes (aFile.toPath ());
+
+      // Expired before reading
+      ErrorList aErrorList = new ErrorList ();
+      CrossIndustryInvoiceType aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBytes),
+                                                                                              aErrorList,
+                                                                                              ConversionDeadline.timeout (Duration.ZERO));
+      assertNull (aCII);
+      assertTrue (_containsErrorID (aErrorList, ConversionDeadline.ERROR_ID_TIMEOUT));
+
+      // Expired before mapping
+      aErrorList = new ErrorList ();
+      final Document aDoc = UBLToCIIConversionHelper.readXMLDocument (new NonBlockingByteArrayInputStream (aBytes),
+                                                                      aErrorList);
+      assertNotNull (aDoc);
+      aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (aDoc,
+                                                                      aErrorList,
+                                                                      ConversionDeadline.timeout (Duration.ZERO));
+      assertNull (aCII);
+      assertTrue (_containsErrorID (aErrorList, ConversionDeadline.ERROR_ID_TIMEOUT));
+      assertFalse (_containsErrorID (aErrorList, ConversionDeadline.ERROR_ID_CANCELLED));
+    }
+  }
+
+  @Test
+  public void testConvertCancelled () throws IOException
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21CreditNote ())
+      try (InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final ConversionDeadline aDeadline = ConversionDeadline.timeout (Duration.ofHours (1));
+        aDeadline.cancel ();
+        final ErrorList aErrorList = new ErrorList ();
+        final ESuccess eSuccess = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (aIS,
+                                                                                           new NonBlockingByteArrayOutputStream (),
+                                                                                           aErrorList,
+                                                                                           aDeadline);
+        assertTrue (eSuccess.isFailure ());
+        assertTrue (_containsErrorID (aErrorList, ConversionDeadline.ERROR_ID_CANCELLED));
+        assertFalse (_containsErrorID (aErrorList, ConversionDeadline.ERROR_ID_TIMEOUT));
+      }
+  }
+
+  /** Remembers whether it was closed */
+  private static final class CloseTrackingOutputStream extends NonBlockingByteArrayOutputStream
+  {
+    private boolean m_bClosed = false;
+
+    @Override
+    public void close ()
+    {
+      m_bClosed = true;
+      super.close ();
+    }
+  }
+
+  @Test
+  public void testOutputStreamClosedOnFailure ()
+  {
+    final byte [] aXML = "<Order xmlns='urn:oasis:names:specification:ubl:schema:xsd:Order-2' />".getBytes (StandardCharsets.UTF_8);
+
+    CloseTrackingOutputStream aOS = new CloseTrackingOutputStream ();
+    assertTrue (UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aXML),
+                                                                         aOS,
+                                                                         new ErrorList ())
+                                        .isFailure ());
+    assertTrue (aOS.m_bClosed);
+
+    aOS = new CloseTrackingOutputStream ();
+    assertTrue (UBLToCIIConversionHelper.convertUBL21InvoiceToCIID16B (new NonBlockingByteArrayInputStream (aXML),
+                                                                      aOS,
+                                                                      new ErrorList ())
+                                        .isFailure ());
+    assertTrue (aOS.m_bClosed);
+
+    aOS = new CloseTrackingOutputStream ();
+    assertTrue (UBLToCIIConversionHelper.convertUBL21CreditNoteToCIID16B (new NonBlockingByteArrayInputStream (aXML),
+                                                                         aOS,
+                                                                         new ErrorList ())
+                                        .isFailure ());
+    assertTrue (aOS.m_bClosed);
+  }
+
+  @Test
+  public void testOutputStreamClosedOnAbort () throws IOException
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      final byte [] aBytes = Files.readAllBytes (aFile.toPath ());
+
+      // Abandoned
+      final ConversionDeadline aDeadline = ConversionDeadline.timeout (Duration.ofHours (1));
+      aDeadline.cancel ();
+      final CloseTrackingOutputStream aOS = new CloseTrackingOutputStream ();
+      final ESuccess eSuccess = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBytes),
+                                                                                         aOS,
+                                                                                         new ErrorList (),
+                                                                                         aDeadline);
+      assertTrue (eSuccess.isFailure ());
+      assertTrue (aOS.m_bClosed);
+      assertEquals (0, aOS.size ());
+
+      // Successful conversion
+      final CloseTrackingOutputStream aOS2 = new CloseTrackingOutputStream ();
+      assertTrue (UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBytes),
+                                                                           aOS2,
+                                                                           new ErrorList (),
+                                                                           ConversionDeadline.unlimited ())
+                                          .isSuccess ());
+      assertTrue (aOS2.m_bClosed);
+      assertTrue (aOS2.size () > 0);
+    }
+  }
 }